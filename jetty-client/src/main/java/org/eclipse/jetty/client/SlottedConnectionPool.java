@@ -0,0 +1,406 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.client;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.eclipse.jetty.client.api.Connection;
+import org.eclipse.jetty.util.AtomicBiInteger;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.component.Dumpable;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+import org.eclipse.jetty.util.thread.Sweeper;
+
+/**
+ * <p>A {@link ConnectionPool} that does not use locks.</p>
+ * <p>Connections are stored in a fixed array of slots, one per connection up to
+ * the max number of connections. Each slot atomically tracks the number of
+ * requests in use on its connection, so that acquiring and releasing a connection
+ * is a compare-and-set on its slot, and threads acquiring different connections
+ * do not contend.</p>
+ * <p>The slot to acquire is chosen by the {@link Strategy}, and connections may be
+ * {@link #setMaxMultiplex(int) multiplexed}, so that this pool can be used for
+ * both HTTP/1.1 and HTTP/2 transports.</p>
+ */
+@ManagedObject
+public class SlottedConnectionPool extends AbstractConnectionPool implements ConnectionPool.Multiplexable, Sweeper.Sweepable
+{
+    private static final Logger LOG = Log.getLogger(SlottedConnectionPool.class);
+
+    /**
+     * <p>The strategies to choose the connection to acquire among those that can be acquired.</p>
+     */
+    public enum Strategy
+    {
+        /**
+         * The first available connection, so that the least possible number of connections is used.
+         */
+        FIRST,
+        /**
+         * The next available connection after the last one acquired, so that the load is spread over all the connections.
+         */
+        ROUND_ROBIN,
+        /**
+         * An available connection chosen randomly, so that the load is spread over all the connections
+         * without contention among the threads on a shared cursor.
+         */
+        RANDOM,
+        /**
+         * The available connection with the least number of requests in use.
+         */
+        LEAST_LOADED
+    }
+
+    private final AtomicReferenceArray<Slot> slots;
+    private final Map<Connection, Slot> connections = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicInteger cursor = new AtomicInteger();
+    private final Strategy strategy;
+    private volatile int maxMultiplex;
+
+    public SlottedConnectionPool(HttpDestination destination, int maxConnections, Callback requester)
+    {
+        this(destination, maxConnections, requester, 1, Strategy.FIRST);
+    }
+
+    public SlottedConnectionPool(HttpDestination destination, int maxConnections, Callback requester, int maxMultiplex, Strategy strategy)
+    {
+        super(destination, maxConnections, requester);
+        this.slots = new AtomicReferenceArray<>(maxConnections);
+        this.maxMultiplex = maxMultiplex;
+        this.strategy = strategy;
+    }
+
+    @ManagedAttribute(value = "The strategy to select the connection to acquire", readonly = true)
+    public Strategy getStrategy()
+    {
+        return strategy;
+    }
+
+    @Override
+    @ManagedAttribute(value = "The max number of requests multiplexable on a single connection", readonly = true)
+    public int getMaxMultiplex()
+    {
+        return maxMultiplex;
+    }
+
+    @Override
+    public void setMaxMultiplex(int maxMultiplex)
+    {
+        this.maxMultiplex = maxMultiplex;
+    }
+
+    @ManagedAttribute(value = "The number of active connections", readonly = true)
+    public int getActiveConnectionCount()
+    {
+        int active = 0;
+        for (Slot slot : connections.values())
+        {
+            if (slot.state.getLo() > 0)
+                ++active;
+        }
+        return active;
+    }
+
+    @ManagedAttribute(value = "The number of idle connections", readonly = true)
+    public int getIdleConnectionCount()
+    {
+        int idle = 0;
+        for (Slot slot : connections.values())
+        {
+            if (slot.state.getLo() == 0)
+                ++idle;
+        }
+        return idle;
+    }
+
+    @Override
+    protected Connection acquire(boolean create)
+    {
+        Connection connection = activate();
+        if (connection == null && create)
+        {
+            int queuedRequests = getHttpDestination().getQueuedRequestCount();
+            int maxMultiplex = getMaxMultiplex();
+            tryCreate((queuedRequests + maxMultiplex - 1) / maxMultiplex);
+            connection = activate();
+        }
+        return connection;
+    }
+
+    @Override
+    protected void onCreated(Connection connection)
+    {
+        Slot slot = new Slot(connection);
+        connections.put(connection, slot);
+        for (int i = 0; i < slots.length(); ++i)
+        {
+            if (slots.compareAndSet(i, null, slot))
+            {
+                size.accumulateAndGet(i + 1, Math::max);
+                idle(connection, false);
+                return;
+            }
+        }
+
+        // Cannot happen, as the number of connections is bounded by the number of slots.
+        connections.remove(connection);
+        LOG.warn("No free slot for {} in {}", connection, this);
+        removed(connection);
+        connection.close();
+    }
+
+    @Override
+    protected Connection activate()
+    {
+        int size = this.size.get();
+        if (size == 0)
+            return null;
+
+        if (strategy == Strategy.LEAST_LOADED)
+            return activateLeastLoaded(size);
+
+        int start;
+        switch (strategy)
+        {
+            case ROUND_ROBIN:
+                start = (cursor.getAndIncrement() & Integer.MAX_VALUE) % size;
+                break;
+            case RANDOM:
+                start = ThreadLocalRandom.current().nextInt(size);
+                break;
+            default:
+                start = 0;
+                break;
+        }
+
+        int maxMultiplex = getMaxMultiplex();
+        for (int i = 0; i < size; ++i)
+        {
+            int index = start + i;
+            if (index >= size)
+                index -= size;
+            Slot slot = slots.get(index);
+            if (slot != null && slot.tryAcquire(maxMultiplex))
+                return active(slot.connection);
+        }
+        return null;
+    }
+
+    private Connection activateLeastLoaded(int size)
+    {
+        int maxMultiplex = getMaxMultiplex();
+        while (true)
+        {
+            Slot leastLoaded = null;
+            int leastInUse = maxMultiplex;
+            for (int i = 0; i < size; ++i)
+            {
+                Slot slot = slots.get(i);
+                if (slot == null)
+                    continue;
+                int inUse = slot.state.getLo();
+                if (inUse >= 0 && inUse < leastInUse)
+                {
+                    leastLoaded = slot;
+                    leastInUse = inUse;
+                    if (inUse == 0)
+                        break;
+                }
+            }
+            if (leastLoaded == null)
+                return null;
+            if (leastLoaded.tryAcquire(maxMultiplex))
+                return active(leastLoaded.connection);
+        }
+    }
+
+    @Override
+    public boolean isActive(Connection connection)
+    {
+        Slot slot = connections.get(connection);
+        return slot != null && slot.state.getLo() > 0;
+    }
+
+    @Override
+    public boolean release(Connection connection)
+    {
+        Slot slot = connections.get(connection);
+        if (slot == null)
+            return false;
+        int inUse = slot.release();
+        if (inUse < 0)
+            return false;
+
+        released(connection);
+        boolean closed = isClosed();
+        if (inUse == 0 || closed)
+            return idle(connection, closed);
+        return true;
+    }
+
+    @Override
+    public boolean remove(Connection connection)
+    {
+        return remove(connection, false);
+    }
+
+    protected boolean remove(Connection connection, boolean force)
+    {
+        Slot slot = connections.remove(connection);
+        boolean activeRemoved = false;
+        boolean idleRemoved = false;
+        if (slot != null)
+        {
+            int inUse = slot.state.getAndSetLo(-1);
+            activeRemoved = inUse > 0;
+            idleRemoved = inUse == 0;
+            for (int i = 0; i < slots.length(); ++i)
+            {
+                if (slots.compareAndSet(i, slot, null))
+                    break;
+            }
+        }
+
+        if (activeRemoved || force)
+            released(connection);
+        boolean removed = activeRemoved || idleRemoved || force;
+        if (removed)
+            removed(connection);
+        return removed;
+    }
+
+    @Override
+    public void close()
+    {
+        super.close();
+        List<Connection> toClose = new ArrayList<>(connections.keySet());
+        connections.clear();
+        for (int i = 0; i < slots.length(); ++i)
+        {
+            slots.set(i, null);
+        }
+        close(toClose);
+    }
+
+    @Override
+    public boolean sweep()
+    {
+        for (Slot slot : connections.values())
+        {
+            Connection connection = slot.connection;
+            if (slot.state.getLo() > 0 && connection instanceof Sweeper.Sweepable && ((Sweeper.Sweepable)connection).sweep())
+            {
+                boolean removed = remove(connection, true);
+                LOG.warn("Connection swept: {}{}{} from active connections{}{}",
+                    connection,
+                    System.lineSeparator(),
+                    removed ? "Removed" : "Not removed",
+                    System.lineSeparator(),
+                    dump());
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void dump(Appendable out, String indent) throws IOException
+    {
+        List<Slot> dump = new ArrayList<>();
+        for (int i = 0; i < slots.length(); ++i)
+        {
+            Slot slot = slots.get(i);
+            if (slot != null)
+                dump.add(slot);
+        }
+        Dumpable.dumpObjects(out, indent, this, dump);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[s=%s,c=%d/%d/%d,a=%d,i=%d]",
+            getClass().getSimpleName(),
+            hashCode(),
+            strategy,
+            getPendingConnectionCount(),
+            getConnectionCount(),
+            getMaxConnectionCount(),
+            getActiveConnectionCount(),
+            getIdleConnectionCount());
+    }
+
+    private static class Slot
+    {
+        private final Connection connection;
+        /**
+         * The hi 32 bits count the times the connection has been acquired, the lo 32 bits
+         * count the requests in use on the connection, or are -1 if the connection is removed.
+         */
+        private final AtomicBiInteger state = new AtomicBiInteger();
+
+        private Slot(Connection connection)
+        {
+            this.connection = connection;
+        }
+
+        private boolean tryAcquire(int maxMultiplex)
+        {
+            while (true)
+            {
+                long encoded = state.get();
+                int inUse = AtomicBiInteger.getLo(encoded);
+                if (inUse < 0 || inUse >= maxMultiplex)
+                    return false;
+                if (state.compareAndSet(encoded, AtomicBiInteger.getHi(encoded) + 1, inUse + 1))
+                    return true;
+            }
+        }
+
+        private int release()
+        {
+            while (true)
+            {
+                long encoded = state.get();
+                int inUse = AtomicBiInteger.getLo(encoded);
+                if (inUse <= 0)
+                    return -1;
+                if (state.compareAndSet(encoded, AtomicBiInteger.getHi(encoded), inUse - 1))
+                    return inUse - 1;
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            long encoded = state.get();
+            return String.format("%s[u=%d,a=%d]", connection, AtomicBiInteger.getHi(encoded), AtomicBiInteger.getLo(encoded));
+        }
+    }
+}
@@ -67,7 +67,11 @@ public class ConnectionPoolTest
         return Stream.of(
             new ConnectionPoolFactory("duplex", destination -> new DuplexConnectionPool(destination, destination.getHttpClient().getMaxConnectionsPerDestination(), destination)),
             new ConnectionPoolFactory("round-robin", destination -> new RoundRobinConnectionPool(destination, destination.getHttpClient().getMaxConnectionsPerDestination(), destination)),
-            new ConnectionPoolFactory("multiplex", destination -> new MultiplexConnectionPool(destination, destination.getHttpClient().getMaxConnectionsPerDestination(), destination, 1))
+            new ConnectionPoolFactory("multiplex", destination -> new MultiplexConnectionPool(destination, destination.getHttpClient().getMaxConnectionsPerDestination(), destination, 1)),
+            new ConnectionPoolFactory("slotted-first", destination -> new SlottedConnectionPool(destination, destination.getHttpClient().getMaxConnectionsPerDestination(), destination, 1, SlottedConnectionPool.Strategy.FIRST)),
+            new ConnectionPoolFactory("slotted-round-robin", destination -> new SlottedConnectionPool(destination, destination.getHttpClient().getMaxConnectionsPerDestination(), destination, 1, SlottedConnectionPool.Strategy.ROUND_ROBIN)),
+            new ConnectionPoolFactory("slotted-random", destination -> new SlottedConnectionPool(destination, destination.getHttpClient().getMaxConnectionsPerDestination(), destination, 1, SlottedConnectionPool.Strategy.RANDOM)),
+            new ConnectionPoolFactory("slotted-least-loaded", destination -> new SlottedConnectionPool(destination, destination.getHttpClient().getMaxConnectionsPerDestination(), destination, 1, SlottedConnectionPool.Strategy.LEAST_LOADED))
         );
     }
 
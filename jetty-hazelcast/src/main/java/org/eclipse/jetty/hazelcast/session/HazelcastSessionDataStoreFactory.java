@@ -92,7 +92,7 @@ public class HazelcastSessionDataStoreFactory
                         }
 
                         SerializerConfig sc = new SerializerConfig()
-                            .setImplementation(new SessionDataSerializer())
+                            .setImplementation(new SessionDataSerializer(getSessionDataCodec()))
                             .setTypeClass(SessionData.class);
                         config.getSerializationConfig().addSerializerConfig(sc);
                         hazelcastInstance = HazelcastClient.newHazelcastClient(config);
@@ -110,7 +110,7 @@ public class HazelcastSessionDataStoreFactory
                     {
 
                         SerializerConfig sc = new SerializerConfig()
-                            .setImplementation(new SessionDataSerializer())
+                            .setImplementation(new SessionDataSerializer(getSessionDataCodec()))
                             .setTypeClass(SessionData.class);
                         config = new Config();
                         config.getSerializationConfig().addSerializerConfig(sc);
@@ -144,6 +144,7 @@ public class HazelcastSessionDataStoreFactory
         hazelcastSessionDataStore.setSessionDataMap(hazelcastInstance.getMap(mapName));
         hazelcastSessionDataStore.setGracePeriodSec(getGracePeriodSec());
         hazelcastSessionDataStore.setSavePeriodSec(getSavePeriodSec());
+        hazelcastSessionDataStore.setSessionDataCodec(getSessionDataCodec());
         hazelcastSessionDataStore.setScavengeZombieSessions(scavengeZombies);
         return hazelcastSessionDataStore;
     }
@@ -48,6 +48,14 @@ import org.eclipse.jetty.util.log.Logger;
  * single thread.
  *
  * <p>The cookie handling provided by this class is guided by the Servlet specification and RFC6265.
+ *
+ * <p>Fields are looked up with a linear scan, which is the fastest for the small number of
+ * fields of typical messages. When there are more than {@value #INDEX_THRESHOLD} fields, or
+ * when {@link #setIndexed(boolean) indexed}, lookups by {@link HttpHeader} use a table indexed
+ * by the header ordinal and lookups by name use a small open addressed hash table, so that
+ * they are O(1) regardless of the number of fields.
+ * Both tables chain the fields with the same header or name in insertion order, are updated
+ * when fields are appended, and are lazily rebuilt after any other modification.
  */
 public class HttpFields implements Iterable<HttpField>
 {
@@ -56,8 +64,22 @@ public class HttpFields implements Iterable<HttpField>
 
     private static final Logger LOG = Log.getLogger(HttpFields.class);
 
+    private static final int HEADERS = HttpHeader.values().length;
+    /**
+     * The number of fields from which lookups use the index even when not {@link #setIndexed(boolean) indexed}.
+     */
+    public static final int INDEX_THRESHOLD = 32;
+
     private HttpField[] _fields;
     private int _size;
+    private boolean _indexed;
+    private boolean _indexValid;
+    private int[] _headerFirst;
+    private int[] _headerLast;
+    private int[] _headerNext;
+    private int[] _nameFirst;
+    private int[] _nameLast;
+    private int[] _nameNext;
 
     /**
      * Initialize an empty HttpFields.
@@ -86,6 +108,38 @@ public class HttpFields implements Iterable<HttpField>
     {
         _fields = Arrays.copyOf(fields._fields, fields._fields.length);
         _size = fields._size;
+        _indexed = fields._indexed;
+    }
+
+    /**
+     * @return whether lookups always use an index rather than a linear scan
+     */
+    public boolean isIndexed()
+    {
+        return _indexed;
+    }
+
+    /**
+     * <p>Sets whether lookups always use an index rather than a linear scan.</p>
+     * <p>The index costs some memory and some work to build, so by default it
+     * is only used when there are more than {@value #INDEX_THRESHOLD} fields;
+     * forcing it is only worth it for large numbers of lookups.</p>
+     *
+     * @param indexed whether lookups always use an index
+     */
+    public void setIndexed(boolean indexed)
+    {
+        _indexed = indexed;
+        _indexValid = false;
+        if (!indexed)
+        {
+            _headerFirst = null;
+            _headerLast = null;
+            _headerNext = null;
+            _nameFirst = null;
+            _nameLast = null;
+            _nameNext = null;
+        }
     }
 
     public int size()
@@ -153,48 +207,46 @@ public class HttpFields implements Iterable<HttpField>
 
     public HttpField getField(HttpHeader header)
     {
-        for (int i = 0; i < _size; i++)
-        {
-            HttpField f = _fields[i];
-            if (f.getHeader() == header)
-                return f;
-        }
-        return null;
+        int i = first(header);
+        return i < 0 ? null : _fields[i];
     }
 
     public HttpField getField(String name)
     {
-        for (int i = 0; i < _size; i++)
-        {
-            HttpField f = _fields[i];
-            if (f.getName().equalsIgnoreCase(name))
-                return f;
-        }
-        return null;
+        int i = first(name);
+        return i < 0 ? null : _fields[i];
     }
 
     public List<HttpField> getFields(HttpHeader header)
     {
         List<HttpField> fields = null;
-        for (int i = 0; i < _size; i++)
+        for (int i = first(header); i >= 0; i = next(i, header))
         {
-            HttpField f = _fields[i];
-            if (f.getHeader() == header)
-            {
-                if (fields == null)
-                    fields = new ArrayList<>();
-                fields.add(f);
-            }
+            if (fields == null)
+                fields = new ArrayList<>();
+            fields.add(_fields[i]);
         }
         return fields == null ? Collections.emptyList() : fields;
     }
 
     public boolean contains(HttpField field)
     {
-        for (int i = _size; i-- > 0; )
+        // Fields with the same name have either the same header or the same name.
+        HttpHeader header = field.getHeader();
+        if (header != null)
+        {
+            for (int i = first(header); i >= 0; i = next(i, header))
+            {
+                HttpField f = _fields[i];
+                if (f.equals(field) || f.contains(field.getValue()))
+                    return true;
+            }
+        }
+        String name = field.getName();
+        for (int i = first(name); i >= 0; i = next(i, name))
         {
             HttpField f = _fields[i];
-            if (f.isSameName(field) && (f.equals(field) || f.contains(field.getValue())))
+            if (f.equals(field) || f.contains(field.getValue()))
                 return true;
         }
         return false;
@@ -202,10 +254,9 @@ public class HttpFields implements Iterable<HttpField>
 
     public boolean contains(HttpHeader header, String value)
     {
-        for (int i = _size; i-- > 0; )
+        for (int i = first(header); i >= 0; i = next(i, header))
         {
-            HttpField f = _fields[i];
-            if (f.getHeader() == header && f.contains(value))
+            if (_fields[i].contains(value))
                 return true;
         }
         return false;
@@ -213,10 +264,9 @@ public class HttpFields implements Iterable<HttpField>
 
     public boolean contains(String name, String value)
     {
-        for (int i = _size; i-- > 0; )
+        for (int i = first(name); i >= 0; i = next(i, name))
         {
-            HttpField f = _fields[i];
-            if (f.getName().equalsIgnoreCase(name) && f.contains(value))
+            if (_fields[i].contains(value))
                 return true;
         }
         return false;
@@ -224,24 +274,12 @@ public class HttpFields implements Iterable<HttpField>
 
     public boolean contains(HttpHeader header)
     {
-        for (int i = _size; i-- > 0; )
-        {
-            HttpField f = _fields[i];
-            if (f.getHeader() == header)
-                return true;
-        }
-        return false;
+        return first(header) >= 0;
     }
 
     public boolean containsKey(String name)
     {
-        for (int i = _size; i-- > 0; )
-        {
-            HttpField f = _fields[i];
-            if (f.getName().equalsIgnoreCase(name))
-                return true;
-        }
-        return false;
+        return first(name) >= 0;
     }
 
     @Deprecated
@@ -252,13 +290,8 @@ public class HttpFields implements Iterable<HttpField>
 
     public String get(HttpHeader header)
     {
-        for (int i = 0; i < _size; i++)
-        {
-            HttpField f = _fields[i];
-            if (f.getHeader() == header)
-                return f.getValue();
-        }
-        return null;
+        int i = first(header);
+        return i < 0 ? null : _fields[i].getValue();
     }
 
     @Deprecated
@@ -269,13 +302,8 @@ public class HttpFields implements Iterable<HttpField>
 
     public String get(String header)
     {
-        for (int i = 0; i < _size; i++)
-        {
-            HttpField f = _fields[i];
-            if (f.getName().equalsIgnoreCase(header))
-                return f.getValue();
-        }
-        return null;
+        int i = first(header);
+        return i < 0 ? null : _fields[i].getValue();
     }
 
     /**
@@ -287,11 +315,9 @@ public class HttpFields implements Iterable<HttpField>
     public List<String> getValuesList(HttpHeader header)
     {
         final List<String> list = new ArrayList<>();
-        for (int i = 0; i < _size; i++)
+        for (int i = first(header); i >= 0; i = next(i, header))
         {
-            HttpField f = _fields[i];
-            if (f.getHeader() == header)
-                list.add(f.getValue());
+            list.add(_fields[i].getValue());
         }
         return list;
     }
@@ -305,15 +331,11 @@ public class HttpFields implements Iterable<HttpField>
     public List<String> getValuesList(String name)
     {
         List<String> list = null;
-        for (int i = 0; i < _size; i++)
+        for (int i = first(name); i >= 0; i = next(i, name))
         {
-            HttpField f = _fields[i];
-            if (f.getName().equalsIgnoreCase(name))
-            {
-                if (list == null)
-                    list = new ArrayList<>(size() - i);
-                list.add(f.getValue());
-            }
+            if (list == null)
+                list = new ArrayList<>(size() - i);
+            list.add(_fields[i].getValue());
         }
         return list == null ? Collections.emptyList() : list;
     }
@@ -329,15 +351,11 @@ public class HttpFields implements Iterable<HttpField>
     public boolean addCSV(HttpHeader header, String... values)
     {
         QuotedCSV existing = null;
-        for (int i = 0; i < _size; i++)
+        for (int i = first(header); i >= 0; i = next(i, header))
         {
-            HttpField f = _fields[i];
-            if (f.getHeader() == header)
-            {
-                if (existing == null)
-                    existing = new QuotedCSV(false);
-                existing.addValue(f.getValue());
-            }
+            if (existing == null)
+                existing = new QuotedCSV(false);
+            existing.addValue(_fields[i].getValue());
         }
 
         String value = addCSV(existing, values);
@@ -360,15 +378,11 @@ public class HttpFields implements Iterable<HttpField>
     public boolean addCSV(String name, String... values)
     {
         QuotedCSV existing = null;
-        for (int i = 0; i < _size; i++)
+        for (int i = first(name); i >= 0; i = next(i, name))
         {
-            HttpField f = _fields[i];
-            if (f.getName().equalsIgnoreCase(name))
-            {
-                if (existing == null)
-                    existing = new QuotedCSV(false);
-                existing.addValue(f.getValue());
-            }
+            if (existing == null)
+                existing = new QuotedCSV(false);
+            existing.addValue(_fields[i].getValue());
         }
         String value = addCSV(existing, values);
         if (value != null)
@@ -426,14 +440,11 @@ public class HttpFields implements Iterable<HttpField>
     public List<String> getCSV(HttpHeader header, boolean keepQuotes)
     {
         QuotedCSV values = null;
-        for (HttpField f : this)
+        for (int i = first(header); i >= 0; i = next(i, header))
         {
-            if (f.getHeader() == header)
-            {
-                if (values == null)
-                    values = new QuotedCSV(keepQuotes);
-                values.addValue(f.getValue());
-            }
+            if (values == null)
+                values = new QuotedCSV(keepQuotes);
+            values.addValue(_fields[i].getValue());
         }
         return values == null ? Collections.emptyList() : values.getValues();
     }
@@ -449,14 +460,11 @@ public class HttpFields implements Iterable<HttpField>
     public List<String> getCSV(String name, boolean keepQuotes)
     {
         QuotedCSV values = null;
-        for (HttpField f : this)
+        for (int i = first(name); i >= 0; i = next(i, name))
         {
-            if (f.getName().equalsIgnoreCase(name))
-            {
-                if (values == null)
-                    values = new QuotedCSV(keepQuotes);
-                values.addValue(f.getValue());
-            }
+            if (values == null)
+                values = new QuotedCSV(keepQuotes);
+            values.addValue(_fields[i].getValue());
         }
         return values == null ? Collections.emptyList() : values.getValues();
     }
@@ -484,14 +492,11 @@ public class HttpFields implements Iterable<HttpField>
     public List<String> getQualityCSV(HttpHeader header, ToIntFunction<String> secondaryOrdering)
     {
         QuotedQualityCSV values = null;
-        for (HttpField f : this)
+        for (int i = first(header); i >= 0; i = next(i, header))
         {
-            if (f.getHeader() == header)
-            {
-                if (values == null)
-                    values = new QuotedQualityCSV(secondaryOrdering);
-                values.addValue(f.getValue());
-            }
+            if (values == null)
+                values = new QuotedQualityCSV(secondaryOrdering);
+            values.addValue(_fields[i].getValue());
         }
 
         return values == null ? Collections.emptyList() : values.getValues();
@@ -507,14 +512,11 @@ public class HttpFields implements Iterable<HttpField>
     public List<String> getQualityCSV(String name)
     {
         QuotedQualityCSV values = null;
-        for (HttpField f : this)
+        for (int i = first(name); i >= 0; i = next(i, name))
         {
-            if (f.getName().equalsIgnoreCase(name))
-            {
-                if (values == null)
-                    values = new QuotedQualityCSV();
-                values.addValue(f.getValue());
-            }
+            if (values == null)
+                values = new QuotedQualityCSV();
+            values.addValue(_fields[i].getValue());
         }
         return values == null ? Collections.emptyList() : values.getValues();
     }
@@ -527,27 +529,27 @@ public class HttpFields implements Iterable<HttpField>
      */
     public Enumeration<String> getValues(final String name)
     {
-        for (int i = 0; i < _size; i++)
+        for (int i = first(name); i >= 0; i = next(i, name))
         {
             final HttpField f = _fields[i];
 
-            if (f.getName().equalsIgnoreCase(name) && f.getValue() != null)
+            if (f.getValue() != null)
             {
                 final int first = i;
                 return new Enumeration<String>()
                 {
                     HttpField field = f;
-                    int i = first + 1;
+                    int i = first;
 
                     @Override
                     public boolean hasMoreElements()
                     {
                         if (field == null)
                         {
-                            while (i < _size)
+                            while ((i = next(i, name)) >= 0)
                             {
-                                field = _fields[i++];
-                                if (field.getName().equalsIgnoreCase(name) && field.getValue() != null)
+                                field = _fields[i];
+                                if (field.getValue() != null)
                                     return true;
                             }
                             field = null;
@@ -628,6 +630,16 @@ public class HttpFields implements Iterable<HttpField>
 
     public void put(HttpField field)
     {
+        if (field == null)
+            return;
+
+        HttpHeader header = field.getHeader();
+        if (index() && (header == null || first(header) < 0) && first(field.getName()) < 0)
+        {
+            add(field);
+            return;
+        }
+
         boolean put = false;
         for (int i = _size; i-- > 0; )
         {
@@ -646,7 +658,9 @@ public class HttpFields implements Iterable<HttpField>
                 }
             }
         }
-        if (!put)
+        if (put)
+            _indexValid = false;
+        else
             add(field);
     }
 
@@ -754,6 +768,9 @@ public class HttpFields implements Iterable<HttpField>
      */
     public HttpField remove(HttpHeader name)
     {
+        if (name != null && index() && first(name) < 0)
+            return null;
+
         HttpField removed = null;
         for (int i = _size; i-- > 0; )
         {
@@ -765,6 +782,8 @@ public class HttpFields implements Iterable<HttpField>
                 System.arraycopy(_fields, i + 1, _fields, i, _size - i);
             }
         }
+        if (removed != null)
+            _indexValid = false;
         return removed;
     }
 
@@ -776,6 +795,9 @@ public class HttpFields implements Iterable<HttpField>
      */
     public HttpField remove(String name)
     {
+        if (index() && first(name) < 0)
+            return null;
+
         HttpField removed = null;
         for (int i = _size; i-- > 0; )
         {
@@ -787,6 +809,8 @@ public class HttpFields implements Iterable<HttpField>
                 System.arraycopy(_fields, i + 1, _fields, i, _size - i);
             }
         }
+        if (removed != null)
+            _indexValid = false;
         return removed;
     }
 
@@ -958,6 +982,7 @@ public class HttpFields implements Iterable<HttpField>
     public void clear()
     {
         _size = 0;
+        _indexValid = false;
     }
 
     public void add(HttpField field)
@@ -967,6 +992,13 @@ public class HttpFields implements Iterable<HttpField>
             if (_size == _fields.length)
                 _fields = Arrays.copyOf(_fields, _size * 2);
             _fields[_size++] = field;
+            if (_indexValid)
+            {
+                if (_headerNext.length < _fields.length)
+                    _indexValid = false;
+                else
+                    link(_size - 1);
+            }
         }
     }
 
@@ -1156,6 +1188,174 @@ public class HttpFields implements Iterable<HttpField>
         return values.getValues();
     }
 
+    /**
+     * @param header the header to look up
+     * @return the index of the first field with the given header, or -1
+     */
+    private int first(HttpHeader header)
+    {
+        if (header != null && index())
+            return _headerFirst[header.ordinal()];
+        return scan(0, header);
+    }
+
+    /**
+     * @param i the index of a field with the given header
+     * @param header the header to look up
+     * @return the index of the next field with the given header, or -1
+     */
+    private int next(int i, HttpHeader header)
+    {
+        if (header != null && _indexValid)
+            return _headerNext[i];
+        return scan(i + 1, header);
+    }
+
+    private int scan(int from, HttpHeader header)
+    {
+        for (int i = from; i < _size; i++)
+        {
+            if (_fields[i].getHeader() == header)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * @param name the case-insensitive field name to look up
+     * @return the index of the first field with the given name, or -1
+     */
+    private int first(String name)
+    {
+        if (name != null && index())
+        {
+            int mask = _nameFirst.length - 1;
+            int slot = nameHash(name) & mask;
+            while (true)
+            {
+                int first = _nameFirst[slot];
+                if (first < 0 || _fields[first].getName().equalsIgnoreCase(name))
+                    return first;
+                slot = (slot + 1) & mask;
+            }
+        }
+        return scan(0, name);
+    }
+
+    /**
+     * @param i the index of a field with the given name
+     * @param name the case-insensitive field name to look up
+     * @return the index of the next field with the given name, or -1
+     */
+    private int next(int i, String name)
+    {
+        if (name != null && _indexValid)
+            return _nameNext[i];
+        return scan(i + 1, name);
+    }
+
+    private int scan(int from, String name)
+    {
+        for (int i = from; i < _size; i++)
+        {
+            if (_fields[i].getName().equalsIgnoreCase(name))
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * @return whether lookups can use the index, which is rebuilt if necessary
+     */
+    private boolean index()
+    {
+        if (!_indexValid && !_indexed && _size <= INDEX_THRESHOLD)
+            return false;
+        if (!_indexValid)
+        {
+            int capacity = _fields.length;
+            if (_headerNext == null || _headerNext.length < capacity)
+            {
+                _headerFirst = new int[HEADERS];
+                _headerLast = new int[HEADERS];
+                _headerNext = new int[capacity];
+                // At most half full, so that probe sequences are short.
+                int slots = Integer.highestOneBit(Math.max(8, capacity) * 2 - 1) * 2;
+                _nameFirst = new int[slots];
+                _nameLast = new int[slots];
+                _nameNext = new int[capacity];
+            }
+            Arrays.fill(_headerFirst, -1);
+            Arrays.fill(_headerLast, -1);
+            Arrays.fill(_nameFirst, -1);
+            for (int i = 0; i < _size; i++)
+            {
+                link(i);
+            }
+            _indexValid = true;
+        }
+        return true;
+    }
+
+    /**
+     * <p>Appends the field at the given index to the chains of its header and name.</p>
+     *
+     * @param i the index of the field, which must be after all the indexed fields
+     */
+    private void link(int i)
+    {
+        HttpField field = _fields[i];
+
+        _headerNext[i] = -1;
+        HttpHeader header = field.getHeader();
+        if (header != null)
+        {
+            int ordinal = header.ordinal();
+            int last = _headerLast[ordinal];
+            if (last < 0)
+                _headerFirst[ordinal] = i;
+            else
+                _headerNext[last] = i;
+            _headerLast[ordinal] = i;
+        }
+
+        _nameNext[i] = -1;
+        String name = field.getName();
+        int mask = _nameFirst.length - 1;
+        int slot = nameHash(name) & mask;
+        while (true)
+        {
+            int first = _nameFirst[slot];
+            if (first < 0)
+            {
+                _nameFirst[slot] = i;
+                _nameLast[slot] = i;
+                return;
+            }
+            if (_fields[first].getName().equalsIgnoreCase(name))
+            {
+                _nameNext[_nameLast[slot]] = i;
+                _nameLast[slot] = i;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private static int nameHash(String name)
+    {
+        // Case insensitive, assuming US-ASCII names as HttpField does.
+        int h = 0;
+        for (int i = 0; i < name.length(); i++)
+        {
+            char c = name.charAt(i);
+            if (c >= 'a' && c <= 'z')
+                c -= 0x20;
+            h = 31 * h + c;
+        }
+        return h ^ (h >>> 16);
+    }
+
     private class ListItr implements ListIterator<HttpField>
     {
         int _cursor;       // index of next element to return
@@ -1186,6 +1386,7 @@ public class HttpFields implements Iterable<HttpField>
             _fields[_size] = null;
             _cursor = _current;
             _current = -1;
+            _indexValid = false;
         }
 
         @Override
@@ -1223,7 +1424,10 @@ public class HttpFields implements Iterable<HttpField>
             if (field == null)
                 remove();
             else
+            {
                 _fields[_current] = field;
+                _indexValid = false;
+            }
         }
 
         @Override
@@ -1236,6 +1440,7 @@ public class HttpFields implements Iterable<HttpField>
                 _fields[_cursor++] = field;
                 _size++;
                 _current = -1;
+                _indexValid = false;
             }
         }
     }
@@ -69,6 +69,8 @@ import static org.eclipse.jetty.http.HttpComplianceSection.TRANSFER_ENCODING_WIT
  * For headers who's value is not known statically (eg. Host, COOKIE) then a
  * per parser dynamic Trie of {@link HttpFields} from previous parsed messages
  * is used to help the parsing of subsequent messages.
+ * Optionally, a {@link SharedHttpFieldCache} learns the fields that are common
+ * to the messages of many parsers, so that they can be looked up by all of them.
  * </p>
  * <p>
  * The parser can work in varying compliance modes:
@@ -179,6 +181,11 @@ public class HttpParser
     private boolean _cr;
     private ByteBuffer _contentChunk;
     private Trie<HttpField> _fieldCache;
+    private SharedHttpFieldCache _sharedFieldCache;
+    private int _connectionCacheHits;
+    private int _sharedCacheHits;
+    private int _staticCacheHits;
+    private int _cacheMisses;
 
     private int _length;
     private final StringBuilder _string = new StringBuilder();
@@ -957,6 +964,7 @@ public class HttpParser
             if (_header != null)
             {
                 boolean addToConnectionTrie = false;
+                boolean addToSharedCache = false;
                 switch (_header)
                 {
                     case CONTENT_LENGTH:
@@ -1030,6 +1038,7 @@ public class HttpParser
                                 _compliances.contains(HttpComplianceSection.FIELD_NAME_CASE_INSENSITIVE) ? _header.asString() : _headerString,
                                 _valueString);
                             addToConnectionTrie = _fieldCache != null;
+                            addToSharedCache = _sharedFieldCache != null;
                         }
                         break;
 
@@ -1040,14 +1049,19 @@ public class HttpParser
                         break;
 
                     case AUTHORIZATION:
+                    case COOKIE:
+                        // Credentials are never shared with other connections.
+                        addToConnectionTrie = _fieldCache != null && _field == null;
+                        break;
+
                     case ACCEPT:
                     case ACCEPT_CHARSET:
                     case ACCEPT_ENCODING:
                     case ACCEPT_LANGUAGE:
-                    case COOKIE:
                     case CACHE_CONTROL:
                     case USER_AGENT:
                         addToConnectionTrie = _fieldCache != null && _field == null;
+                        addToSharedCache = _sharedFieldCache != null && _field == null;
                         break;
 
                     default:
@@ -1060,6 +1074,13 @@ public class HttpParser
                         _field = new HttpField(_header, caseInsensitiveHeader(_headerString, _header.asString()), _valueString);
                     _fieldCache.put(_field);
                 }
+
+                if (addToSharedCache && _header != null && _valueString != null)
+                {
+                    if (_field == null)
+                        _field = new HttpField(_header, caseInsensitiveHeader(_headerString, _header.asString()), _valueString);
+                    _sharedFieldCache.observe(_field);
+                }
             }
             _handler.parsedHeader(_field != null ? _field : new HttpField(_header, _headerString, _valueString));
         }
@@ -1161,6 +1182,9 @@ public class HttpParser
                                 return _handler.messageComplete();
                             }
 
+                            if (_sharedFieldCache != null)
+                                updateFieldCacheStatistics();
+
                             // We found Transfer-Encoding headers, but none declared the 'chunked' token
                             if (_hasTransferEncoding && _endOfContent != EndOfContent.CHUNKED_CONTENT)
                             {
@@ -1238,9 +1262,18 @@ public class HttpParser
                             if (buffer.hasRemaining())
                             {
                                 // Try a look ahead for the known header name and value.
+                                int cache = 0;
                                 HttpField cachedField = _fieldCache == null ? null : _fieldCache.getBest(buffer, -1, buffer.remaining());
+                                if (cachedField == null && _sharedFieldCache != null)
+                                {
+                                    cache = 1;
+                                    cachedField = _sharedFieldCache.getBest(buffer, -1, buffer.remaining());
+                                }
                                 if (cachedField == null)
+                                {
+                                    cache = 2;
                                     cachedField = CACHE.getBest(buffer, -1, buffer.remaining());
+                                }
 
                                 if (cachedField != null)
                                 {
@@ -1276,6 +1309,7 @@ public class HttpParser
                                     if (v == null)
                                     {
                                         // Header only
+                                        ++_cacheMisses;
                                         setState(FieldState.VALUE);
                                         _string.setLength(0);
                                         _length = 0;
@@ -1288,6 +1322,12 @@ public class HttpParser
                                     byte peek = buffer.get(pos);
                                     if (peek == HttpTokens.CARRIAGE_RETURN || peek == HttpTokens.LINE_FEED)
                                     {
+                                        if (cache == 0)
+                                            ++_connectionCacheHits;
+                                        else if (cache == 1)
+                                            ++_sharedCacheHits;
+                                        else
+                                            ++_staticCacheHits;
                                         _field = cachedField;
                                         _valueString = v;
                                         setState(FieldState.IN_VALUE);
@@ -1301,6 +1341,7 @@ public class HttpParser
                                             buffer.position(pos);
                                         break;
                                     }
+                                    ++_cacheMisses;
                                     setState(FieldState.IN_VALUE);
                                     setString(v);
                                     buffer.position(pos);
@@ -1309,6 +1350,7 @@ public class HttpParser
                             }
 
                             // New header
+                            ++_cacheMisses;
                             setState(FieldState.IN_NAME);
                             _string.setLength(0);
                             _string.append(t.getChar());
@@ -1899,6 +1941,28 @@ public class HttpParser
         return _fieldCache;
     }
 
+    public SharedHttpFieldCache getSharedFieldCache()
+    {
+        return _sharedFieldCache;
+    }
+
+    /**
+     * @param sharedFieldCache the field cache shared with other parsers, or null for none
+     */
+    public void setSharedFieldCache(SharedHttpFieldCache sharedFieldCache)
+    {
+        _sharedFieldCache = sharedFieldCache;
+    }
+
+    private void updateFieldCacheStatistics()
+    {
+        _sharedFieldCache.onLookups(_connectionCacheHits, _sharedCacheHits, _staticCacheHits, _cacheMisses);
+        _connectionCacheHits = 0;
+        _sharedCacheHits = 0;
+        _staticCacheHits = 0;
+        _cacheMisses = 0;
+    }
+
     @Override
     public String toString()
     {
@@ -0,0 +1,305 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.http;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.util.ArrayTernaryTrie;
+import org.eclipse.jetty.util.Trie;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+
+/**
+ * <p>A cache of {@link HttpField}s learned from the messages parsed by many {@link HttpParser}s.</p>
+ * <p>The per parser field cache only helps subsequent messages on the same connection.
+ * Fields that are observed by parsers more than {@code promotionThreshold} times
+ * (for example, the same {@code User-Agent} or {@code Accept} header sent by many
+ * clients) are promoted to this shared cache, so that parsers of any connection
+ * resolve them to the same {@link HttpField} instance without allocation.</p>
+ * <p>The cache is bounded both in the number of fields and in the capacity of its
+ * {@link Trie}, which grows as fields are promoted up to {@code maxCapacity}.
+ * When the cache is full, promoting a field evicts the oldest promoted fields, so
+ * that the cache adapts to a changing traffic; a field that is still common is
+ * promoted again after being observed another {@code promotionThreshold} times.
+ * Lookups are lock free on an immutable {@link Trie}, which is copied on every
+ * promotion.</p>
+ * <p>The cache {@link Trie} is case sensitive, so that a field is only resolved
+ * from this cache when it is exactly the same as the cached one.</p>
+ * <p>The cache also collects the statistics of the lookups of the field caches
+ * from the parsers that use it.</p>
+ */
+@ManagedObject("Shared HTTP field cache")
+public class SharedHttpFieldCache
+{
+    private static final Logger LOG = Log.getLogger(SharedHttpFieldCache.class);
+
+    private final Map<HttpField, AtomicInteger> _candidates = new ConcurrentHashMap<>();
+    private final List<HttpField> _fields = new ArrayList<>();
+    private final LongAdder _connectionHits = new LongAdder();
+    private final LongAdder _sharedHits = new LongAdder();
+    private final LongAdder _staticHits = new LongAdder();
+    private final LongAdder _misses = new LongAdder();
+    private final int _maxFields;
+    private final int _maxCapacity;
+    private final int _promotionThreshold;
+    private volatile Trie<HttpField> _trie;
+
+    public SharedHttpFieldCache()
+    {
+        this(512, 16 * 1024, 8);
+    }
+
+    /**
+     * @param maxFields the max number of fields in the cache
+     * @param maxCapacity the max capacity of the cache {@link Trie}, which in the worst
+     * case is the total number of characters of all the fields (at most 65535)
+     * @param promotionThreshold the number of times a field must be observed before
+     * it is promoted to the cache
+     */
+    public SharedHttpFieldCache(int maxFields, int maxCapacity, int promotionThreshold)
+    {
+        if (maxCapacity > Character.MAX_VALUE)
+            throw new IllegalArgumentException("Invalid max capacity " + maxCapacity);
+        _maxFields = maxFields;
+        _maxCapacity = maxCapacity;
+        _promotionThreshold = Math.max(1, promotionThreshold);
+    }
+
+    @ManagedAttribute("The max number of fields in the cache")
+    public int getMaxFields()
+    {
+        return _maxFields;
+    }
+
+    @ManagedAttribute("The max capacity of the cache")
+    public int getMaxCapacity()
+    {
+        return _maxCapacity;
+    }
+
+    @ManagedAttribute("The number of observations before a field is promoted to the cache")
+    public int getPromotionThreshold()
+    {
+        return _promotionThreshold;
+    }
+
+    @ManagedAttribute("The number of fields in the cache")
+    public int getSize()
+    {
+        synchronized (this)
+        {
+            return _fields.size();
+        }
+    }
+
+    /**
+     * <p>Looks up the best matching field for the bytes in the buffer.</p>
+     *
+     * @param buffer the buffer to look up the field from
+     * @param offset the offset within the buffer remaining bytes
+     * @param length the max number of bytes to match
+     * @return the best matching field, or null if there is no match
+     * @see Trie#getBest(ByteBuffer, int, int)
+     */
+    public HttpField getBest(ByteBuffer buffer, int offset, int length)
+    {
+        Trie<HttpField> trie = _trie;
+        return trie == null ? null : trie.getBest(buffer, offset, length);
+    }
+
+    /**
+     * <p>Notifies that a parser has parsed a field that is a candidate for caching.</p>
+     *
+     * @param field the field parsed
+     */
+    public void observe(HttpField field)
+    {
+        AtomicInteger count = _candidates.get(field);
+        if (count == null)
+        {
+            // Age the candidates when there are too many distinct ones.
+            if (_candidates.size() >= 4 * _maxFields)
+                _candidates.clear();
+            count = _candidates.computeIfAbsent(field, f -> new AtomicInteger());
+        }
+
+        if (count.incrementAndGet() == _promotionThreshold)
+            promote(field);
+    }
+
+    private void promote(HttpField field)
+    {
+        synchronized (this)
+        {
+            _candidates.remove(field);
+
+            List<HttpField> fields = new ArrayList<>(_fields);
+            fields.add(field);
+            // Evict the oldest fields when the cache is full.
+            while (fields.size() > _maxFields)
+            {
+                fields.remove(0);
+            }
+
+            Trie<HttpField> trie = newTrie(fields);
+            // Evict more of the oldest fields if the field does not fit the capacity.
+            while (trie == null && fields.size() > 1)
+            {
+                fields.remove(0);
+                trie = newTrie(fields);
+            }
+            if (trie == null)
+                return;
+
+            if (LOG.isDebugEnabled())
+                LOG.debug("Promoted {} to {}", field, this);
+            _fields.clear();
+            _fields.addAll(fields);
+            _trie = trie;
+        }
+    }
+
+    private Trie<HttpField> newTrie(List<HttpField> fields)
+    {
+        int length = 0;
+        for (HttpField field : fields)
+        {
+            length += field.toString().length();
+        }
+        // Grow with some headroom to avoid rebuilds that fail for lack of capacity.
+        int capacity = Math.min(_maxCapacity, Math.max(256, length + length / 2));
+        while (true)
+        {
+            // Case sensitive, so that values differing only in case are not confused.
+            Trie<HttpField> trie = new ArrayTernaryTrie<>(false, capacity);
+            boolean fits = true;
+            for (HttpField field : fields)
+            {
+                if (!trie.put(field))
+                {
+                    fits = false;
+                    break;
+                }
+            }
+            if (fits)
+                return trie;
+            if (capacity == _maxCapacity)
+                return null;
+            capacity = Math.min(_maxCapacity, capacity * 2);
+        }
+    }
+
+    /**
+     * <p>Removes all the fields from the cache.</p>
+     */
+    @ManagedOperation(value = "Clears the cache", impact = "ACTION")
+    public void clear()
+    {
+        synchronized (this)
+        {
+            _candidates.clear();
+            _fields.clear();
+            _trie = null;
+        }
+    }
+
+    /**
+     * <p>Records the statistics of the field lookups of a parser.</p>
+     *
+     * @param connectionHits the number of fields resolved by the parser own cache
+     * @param sharedHits the number of fields resolved by this cache
+     * @param staticHits the number of fields resolved by the static {@link HttpParser#CACHE}
+     * @param misses the number of fields not resolved by any cache
+     */
+    public void onLookups(int connectionHits, int sharedHits, int staticHits, int misses)
+    {
+        if (connectionHits > 0)
+            _connectionHits.add(connectionHits);
+        if (sharedHits > 0)
+            _sharedHits.add(sharedHits);
+        if (staticHits > 0)
+            _staticHits.add(staticHits);
+        if (misses > 0)
+            _misses.add(misses);
+    }
+
+    @ManagedAttribute("The number of fields resolved by the connection field caches")
+    public long getConnectionHits()
+    {
+        return _connectionHits.sum();
+    }
+
+    @ManagedAttribute("The number of fields resolved by the shared field cache")
+    public long getSharedHits()
+    {
+        return _sharedHits.sum();
+    }
+
+    @ManagedAttribute("The number of fields resolved by the static field cache")
+    public long getStaticHits()
+    {
+        return _staticHits.sum();
+    }
+
+    @ManagedAttribute("The number of fields not resolved by any field cache")
+    public long getMisses()
+    {
+        return _misses.sum();
+    }
+
+    @ManagedAttribute("The ratio of fields resolved by any field cache")
+    public double getHitRatio()
+    {
+        long hits = getConnectionHits() + getSharedHits() + getStaticHits();
+        long total = hits + getMisses();
+        return total == 0 ? 0.0D : (double)hits / total;
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void resetStats()
+    {
+        _connectionHits.reset();
+        _sharedHits.reset();
+        _staticHits.reset();
+        _misses.reset();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{size=%d/%d,hits=%d/%d/%d,misses=%d}",
+            getClass().getSimpleName(),
+            hashCode(),
+            getSize(),
+            _maxFields,
+            getConnectionHits(),
+            getSharedHits(),
+            getStaticHits(),
+            getMisses());
+    }
+}
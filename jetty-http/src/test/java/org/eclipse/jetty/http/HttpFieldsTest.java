@@ -26,6 +26,7 @@ import java.util.List;
 import java.util.ListIterator;
 import java.util.Locale;
 import java.util.NoSuchElementException;
+import java.util.Random;
 import java.util.stream.Collectors;
 
 import org.eclipse.jetty.util.BufferUtil;
@@ -866,4 +867,130 @@ public class HttpFieldsTest
         assertThat(header.stream().count(), is(3L));
         assertThat(header.stream().map(HttpField::getName).filter("name2"::equalsIgnoreCase).count(), is(1L));
     }
+
+    @Test
+    public void testIndexed()
+    {
+        HttpFields header = new HttpFields(4);
+        header.setIndexed(true);
+
+        header.add(HttpHeader.ACCEPT, "text/html");
+        header.add("X-Custom", "one");
+        header.add(new HttpField(HttpHeader.ACCEPT, "Accept", "text/plain"));
+        header.add("x-custom", "two");
+        // Grows the fields beyond the initial capacity.
+        for (int i = 0; i < 20; i++)
+        {
+            header.add("X-Other-" + i, Integer.toString(i));
+        }
+
+        assertEquals("text/html", header.get(HttpHeader.ACCEPT));
+        assertEquals("text/html", header.get("accept"));
+        assertThat(header.getValuesList(HttpHeader.ACCEPT), contains("text/html", "text/plain"));
+        assertThat(header.getValuesList("X-CUSTOM"), contains("one", "two"));
+        assertThat(header.getCSV("x-custom", false), contains("one", "two"));
+        assertEquals("19", header.get("x-other-19"));
+        assertTrue(header.contains(HttpHeader.ACCEPT, "text/plain"));
+        assertTrue(header.contains(new HttpField("X-Custom", "two")));
+        assertFalse(header.contains(HttpHeader.CONTENT_TYPE));
+        assertFalse(header.containsKey("X-Missing"));
+        assertNull(header.get((String)null));
+
+        header.put("X-Custom", "three");
+        assertThat(header.getValuesList("x-custom"), contains("three"));
+        assertNull(header.remove("X-Missing"));
+        assertEquals("text/html", header.remove(HttpHeader.ACCEPT).getValue());
+        assertNull(header.get(HttpHeader.ACCEPT));
+        assertEquals(21, header.size());
+
+        ListIterator<HttpField> iterator = header.listIterator();
+        iterator.next();
+        iterator.set(new HttpField(HttpHeader.CONTENT_TYPE, "text/xml"));
+        assertEquals("text/xml", header.get(HttpHeader.CONTENT_TYPE));
+        assertNull(header.get("X-Custom"));
+
+        header.clear();
+        assertNull(header.get(HttpHeader.CONTENT_TYPE));
+        header.add(HttpHeader.CONTENT_TYPE, "text/css");
+        assertEquals("text/css", header.get("Content-Type"));
+    }
+
+    @Test
+    public void testIndexedAboveThreshold()
+    {
+        HttpFields header = new HttpFields();
+        assertFalse(header.isIndexed());
+        for (int i = 0; i <= HttpFields.INDEX_THRESHOLD; i++)
+        {
+            header.add("X-Field-" + i, Integer.toString(i));
+        }
+        header.add(HttpHeader.ACCEPT, "text/html");
+        header.add("x-field-0", "again");
+
+        assertThat(header.getValuesList("X-FIELD-0"), contains("0", "again"));
+        assertEquals("text/html", header.get(HttpHeader.ACCEPT));
+        assertEquals(Integer.toString(HttpFields.INDEX_THRESHOLD), header.get("x-field-" + HttpFields.INDEX_THRESHOLD));
+
+        // Removals below the threshold fall back to linear lookups.
+        for (int i = 1; i <= HttpFields.INDEX_THRESHOLD; i++)
+        {
+            header.remove("X-Field-" + i);
+        }
+        assertNull(header.get("X-Field-1"));
+        assertThat(header.getValuesList("X-Field-0"), contains("0", "again"));
+        assertEquals("text/html", header.get(HttpHeader.ACCEPT));
+        header.add("X-Field-1", "1");
+        assertEquals("1", header.get("X-Field-1"));
+    }
+
+    @Test
+    public void testIndexedSameAsLinear()
+    {
+        String[] names = {"Accept", "accept", "Host", "X-A", "x-a", "X-B", "Cookie", "Via"};
+        Random random = new Random(1234);
+        HttpFields linear = new HttpFields(2);
+        HttpFields indexed = new HttpFields(2);
+        indexed.setIndexed(true);
+        for (int i = 0; i < 2000; i++)
+        {
+            String name = names[random.nextInt(names.length)];
+            String value = "v" + random.nextInt(4);
+            switch (random.nextInt(6))
+            {
+                case 0:
+                case 1:
+                    linear.add(name, value);
+                    indexed.add(name, value);
+                    break;
+                case 2:
+                    linear.put(name, value);
+                    indexed.put(name, value);
+                    break;
+                case 3:
+                    assertEquals(linear.remove(name), indexed.remove(name));
+                    break;
+                case 4:
+                    if (random.nextInt(20) == 0)
+                    {
+                        linear.clear();
+                        indexed.clear();
+                    }
+                    break;
+                default:
+                    break;
+            }
+
+            HttpHeader header = HttpHeader.CACHE.get(name);
+            assertEquals(linear.size(), indexed.size());
+            assertEquals(linear.get(name), indexed.get(name));
+            assertEquals(linear.getValuesList(name), indexed.getValuesList(name));
+            assertEquals(linear.contains(name, value), indexed.contains(name, value));
+            assertEquals(linear.contains(new HttpField(name, value)), indexed.contains(new HttpField(name, value)));
+            if (header != null)
+            {
+                assertEquals(linear.get(header), indexed.get(header));
+                assertEquals(linear.getFields(header), indexed.getFields(header));
+            }
+        }
+    }
 }
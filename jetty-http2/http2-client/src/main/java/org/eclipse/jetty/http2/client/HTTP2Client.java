@@ -134,6 +134,8 @@ public class HTTP2Client extends ContainerLifeCycle
     private int maxFrameLength = Frame.DEFAULT_MAX_LENGTH;
     private int maxConcurrentPushedStreams = 32;
     private int maxSettingsKeys = SettingsFrame.DEFAULT_MAX_KEYS;
+    private int writeCoalesceSize;
+    private long writeCoalesceDelay;
     private FlowControlStrategy.Factory flowControlStrategyFactory = () -> new BufferingFlowControlStrategy(0.5F);
 
     @Override
@@ -372,6 +374,36 @@ public class HTTP2Client extends ContainerLifeCycle
         this.maxSettingsKeys = maxSettingsKeys;
     }
 
+    @ManagedAttribute("The size of the buffers small frames are coalesced into before writing, or 0 to not coalesce")
+    public int getWriteCoalesceSize()
+    {
+        return writeCoalesceSize;
+    }
+
+    /**
+     * @param writeCoalesceSize the size of the buffers small frames are coalesced into before writing, or 0 to not coalesce
+     * @see org.eclipse.jetty.http2.HTTP2Session#setWriteCoalesceSize(int)
+     */
+    public void setWriteCoalesceSize(int writeCoalesceSize)
+    {
+        this.writeCoalesceSize = writeCoalesceSize;
+    }
+
+    @ManagedAttribute("The max delay in microseconds of writes smaller than the write coalesce size")
+    public long getWriteCoalesceDelay()
+    {
+        return writeCoalesceDelay;
+    }
+
+    /**
+     * @param writeCoalesceDelay the max delay in microseconds of writes smaller than the write coalesce size, or 0 to not delay writes
+     * @see org.eclipse.jetty.http2.HTTP2Session#setWriteCoalesceDelay(long)
+     */
+    public void setWriteCoalesceDelay(long writeCoalesceDelay)
+    {
+        this.writeCoalesceDelay = writeCoalesceDelay;
+    }
+
     public void connect(InetSocketAddress address, Session.Listener listener, Promise<Session> promise)
     {
         connect(null, address, listener, promise);
@@ -0,0 +1,172 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.http2.client;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http2.AdaptiveFlowControlStrategy;
+import org.eclipse.jetty.http2.FlowControlStrategy;
+import org.eclipse.jetty.http2.ISession;
+import org.eclipse.jetty.http2.api.Session;
+import org.eclipse.jetty.http2.api.Stream;
+import org.eclipse.jetty.http2.api.server.ServerSessionListener;
+import org.eclipse.jetty.http2.frames.DataFrame;
+import org.eclipse.jetty.http2.frames.HeadersFrame;
+import org.eclipse.jetty.http2.frames.PingFrame;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.FuturePromise;
+import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
+import org.eclipse.jetty.util.thread.Scheduler;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AdaptiveFlowControlStrategyTest extends FlowControlStrategyTest
+{
+    private final List<AdaptiveFlowControlStrategy> strategies = new CopyOnWriteArrayList<>();
+    private final AtomicInteger pingsSent = new AtomicInteger();
+    private Scheduler pingScheduler;
+    private long pingDelay;
+
+    @Override
+    protected FlowControlStrategy newFlowControlStrategy()
+    {
+        AdaptiveFlowControlStrategy strategy = new AdaptiveFlowControlStrategy()
+        {
+            @Override
+            protected void sendPing(ISession session, PingFrame frame)
+            {
+                pingsSent.incrementAndGet();
+                // Simulate a high latency link by delaying the PING frames.
+                if (pingDelay > 0)
+                    pingScheduler.schedule(() -> super.sendPing(session, frame), pingDelay, TimeUnit.MILLISECONDS);
+                else
+                    super.sendPing(session, frame);
+            }
+        };
+        strategies.add(strategy);
+        return strategy;
+    }
+
+    @Test
+    public void testWindowsGrowOnHighLatency() throws Exception
+    {
+        pingDelay = 50;
+        pingScheduler = new ScheduledExecutorScheduler();
+        pingScheduler.start();
+        try
+        {
+            upload(8 * 1024 * 1024);
+
+            // The server strategy measured the latency and grew the receive windows.
+            AdaptiveFlowControlStrategy serverStrategy = strategies.stream()
+                .filter(strategy -> strategy.getSampleCount() > 0)
+                .findFirst()
+                .orElseThrow(AssertionError::new);
+            assertThat(serverStrategy.getRoundTripTime(), greaterThan(TimeUnit.MILLISECONDS.toMicros(pingDelay)));
+            assertThat(serverStrategy.getGrowCount(), greaterThan(0L));
+            assertThat(serverStrategy.getStreamRecvWindowTarget(), greaterThan(FlowControlStrategy.DEFAULT_WINDOW_SIZE));
+            assertThat(serverStrategy.getSessionRecvWindow(), greaterThan(FlowControlStrategy.DEFAULT_WINDOW_SIZE));
+        }
+        finally
+        {
+            pingScheduler.stop();
+        }
+    }
+
+    @Test
+    public void testPingsRateLimitedOnLowLatency() throws Exception
+    {
+        long start = System.nanoTime();
+        upload(32 * 1024 * 1024);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        long minPingInterval = strategies.get(0).getMinPingInterval();
+        assertThat(pingsSent.get(), lessThanOrEqualTo((int)(2 * (elapsed / minPingInterval + 1))));
+    }
+
+    private void upload(int length) throws Exception
+    {
+        AtomicInteger received = new AtomicInteger();
+        start(new ServerSessionListener.Adapter()
+        {
+            @Override
+            public Stream.Listener onNewStream(Stream stream, HeadersFrame frame)
+            {
+                return new Stream.Listener.Adapter()
+                {
+                    @Override
+                    public void onData(Stream stream, DataFrame frame, Callback callback)
+                    {
+                        received.addAndGet(frame.getData().remaining());
+                        callback.succeeded();
+                        if (frame.isEndStream())
+                        {
+                            MetaData.Response response = new MetaData.Response(HttpVersion.HTTP_2, HttpStatus.OK_200, new HttpFields());
+                            stream.headers(new HeadersFrame(stream.getId(), response, null, true), Callback.NOOP);
+                        }
+                    }
+                };
+            }
+        });
+
+        AtomicInteger pings = new AtomicInteger();
+        Session session = newClient(new Session.Listener.Adapter()
+        {
+            @Override
+            public void onPing(Session session, PingFrame frame)
+            {
+                pings.incrementAndGet();
+            }
+        });
+
+        CountDownLatch latch = new CountDownLatch(1);
+        MetaData.Request request = newRequest("POST", new HttpFields());
+        FuturePromise<Stream> promise = new FuturePromise<>();
+        session.newStream(new HeadersFrame(request, null, false), promise, new Stream.Listener.Adapter()
+        {
+            @Override
+            public void onHeaders(Stream stream, HeadersFrame frame)
+            {
+                if (frame.isEndStream())
+                    latch.countDown();
+            }
+        });
+        Stream stream = promise.get(5, TimeUnit.SECONDS);
+        stream.data(new DataFrame(stream.getId(), ByteBuffer.allocate(length), true), Callback.NOOP);
+
+        assertTrue(latch.await(20, TimeUnit.SECONDS));
+        assertEquals(length, received.get());
+        // The PING replies are not notified to the application.
+        assertEquals(0, pings.get());
+    }
+}
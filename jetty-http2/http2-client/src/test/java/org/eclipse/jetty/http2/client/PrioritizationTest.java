@@ -0,0 +1,161 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.http2.client;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http2.FlowControlStrategy;
+import org.eclipse.jetty.http2.StreamPriority;
+import org.eclipse.jetty.http2.api.Session;
+import org.eclipse.jetty.http2.api.Stream;
+import org.eclipse.jetty.http2.api.server.ServerSessionListener;
+import org.eclipse.jetty.http2.frames.DataFrame;
+import org.eclipse.jetty.http2.frames.HeadersFrame;
+import org.eclipse.jetty.http2.frames.PriorityFrame;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.FutureCallback;
+import org.eclipse.jetty.util.FuturePromise;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PrioritizationTest extends AbstractTest
+{
+    private static final int CONTENT_LENGTH = 256 * 1024;
+
+    private final List<Callback> heldCallbacks = new ArrayList<>();
+    private final List<Integer> completed = new CopyOnWriteArrayList<>();
+    private final CountDownLatch responseLatch = new CountDownLatch(2);
+    private final CountDownLatch completeLatch = new CountDownLatch(2);
+    private boolean released;
+
+    private void start() throws Exception
+    {
+        start(new ServerSessionListener.Adapter()
+        {
+            @Override
+            public Stream.Listener onNewStream(Stream stream, HeadersFrame frame)
+            {
+                MetaData.Response response = new MetaData.Response(HttpVersion.HTTP_2, 200, new HttpFields());
+                stream.headers(new HeadersFrame(stream.getId(), response, null, false), Callback.from(() ->
+                    stream.data(new DataFrame(stream.getId(), ByteBuffer.allocate(CONTENT_LENGTH), true), Callback.NOOP), x -> {}));
+                return null;
+            }
+        }, connectionFactory -> connectionFactory.setPrioritizeStreams(true));
+        // Only the session window, not the stream windows, limits the sending of data.
+        client.setInitialSessionRecvWindow(FlowControlStrategy.DEFAULT_WINDOW_SIZE);
+        client.setInitialStreamRecvWindow(4 * CONTENT_LENGTH);
+    }
+
+    private Stream newStream(Session session, HttpFields fields) throws Exception
+    {
+        FuturePromise<Stream> promise = new FuturePromise<>();
+        session.newStream(new HeadersFrame(newRequest("GET", fields), null, true), promise, new Stream.Listener.Adapter()
+        {
+            @Override
+            public void onHeaders(Stream stream, HeadersFrame frame)
+            {
+                responseLatch.countDown();
+            }
+
+            @Override
+            public void onData(Stream stream, DataFrame frame, Callback callback)
+            {
+                if (frame.isEndStream())
+                {
+                    completed.add(stream.getId());
+                    completeLatch.countDown();
+                }
+                synchronized (heldCallbacks)
+                {
+                    // Hold the session window until both responses are being sent.
+                    if (!released)
+                    {
+                        heldCallbacks.add(callback);
+                        return;
+                    }
+                }
+                callback.succeeded();
+            }
+        });
+        return promise.get(5, TimeUnit.SECONDS);
+    }
+
+    private void release()
+    {
+        List<Callback> callbacks;
+        synchronized (heldCallbacks)
+        {
+            released = true;
+            callbacks = new ArrayList<>(heldCallbacks);
+            heldCallbacks.clear();
+        }
+        callbacks.forEach(Callback::succeeded);
+    }
+
+    @Test
+    public void testUrgentStreamSentBeforeLessUrgentStream() throws Exception
+    {
+        start();
+        Session session = newClient(new Session.Listener.Adapter());
+
+        HttpFields background = new HttpFields();
+        background.put("priority", "u=5");
+        Stream backgroundStream = newStream(session, background);
+        HttpFields urgent = new HttpFields();
+        urgent.put("priority", "u=0, i");
+        Stream urgentStream = newStream(session, urgent);
+
+        assertTrue(responseLatch.await(5, TimeUnit.SECONDS));
+        release();
+
+        assertTrue(completeLatch.await(5, TimeUnit.SECONDS));
+        // The urgent stream completes first, although it started later.
+        assertEquals(Arrays.asList(urgentStream.getId(), backgroundStream.getId()), completed);
+    }
+
+    @Test
+    public void testDependentStreamSentAfterParentStream() throws Exception
+    {
+        start();
+        Session session = newClient(new Session.Listener.Adapter());
+
+        Stream dependentStream = newStream(session, new HttpFields());
+        Stream parentStream = newStream(session, new HttpFields());
+        FutureCallback callback = new FutureCallback();
+        session.priority(new PriorityFrame(dependentStream.getId(), parentStream.getId(), StreamPriority.DEFAULT_WEIGHT, false), callback);
+        callback.get(5, TimeUnit.SECONDS);
+
+        assertTrue(responseLatch.await(5, TimeUnit.SECONDS));
+        release();
+
+        assertTrue(completeLatch.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(parentStream.getId(), dependentStream.getId()), completed);
+    }
+}
@@ -0,0 +1,110 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.http2.client;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http2.HTTP2Session;
+import org.eclipse.jetty.http2.api.Session;
+import org.eclipse.jetty.http2.api.Stream;
+import org.eclipse.jetty.http2.api.server.ServerSessionListener;
+import org.eclipse.jetty.http2.frames.DataFrame;
+import org.eclipse.jetty.http2.frames.HeadersFrame;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.Promise;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WriteCoalesceTest extends AbstractTest
+{
+    @ParameterizedTest
+    @ValueSource(longs = {0, 1000})
+    public void testSmallFramesOfManyStreamsCoalesced(long writeCoalesceDelay) throws Exception
+    {
+        AtomicReference<HTTP2Session> serverSessionRef = new AtomicReference<>();
+        start(new ServerSessionListener.Adapter()
+        {
+            @Override
+            public Stream.Listener onNewStream(Stream stream, HeadersFrame frame)
+            {
+                serverSessionRef.set((HTTP2Session)stream.getSession());
+                MetaData.Response response = new MetaData.Response(HttpVersion.HTTP_2, 200, new HttpFields());
+                stream.headers(new HeadersFrame(stream.getId(), response, null, false), Callback.from(() ->
+                {
+                    ByteBuffer content = BufferUtil.toBuffer("stream" + stream.getId(), StandardCharsets.UTF_8);
+                    stream.data(new DataFrame(stream.getId(), content, true), Callback.NOOP);
+                }, x -> {}));
+                return null;
+            }
+        }, connectionFactory ->
+            {
+                connectionFactory.setWriteCoalesceSize(16 * 1024);
+                connectionFactory.setWriteCoalesceDelay(writeCoalesceDelay);
+            });
+
+        Session session = newClient(new Session.Listener.Adapter());
+
+        int streams = 50;
+        Map<Integer, String> contents = new ConcurrentHashMap<>();
+        CountDownLatch latch = new CountDownLatch(streams);
+        for (int i = 0; i < streams; ++i)
+        {
+            MetaData.Request request = newRequest("GET", new HttpFields());
+            session.newStream(new HeadersFrame(request, null, true), new Promise.Adapter<>(), new Stream.Listener.Adapter()
+            {
+                @Override
+                public void onData(Stream stream, DataFrame frame, Callback callback)
+                {
+                    contents.put(stream.getId(), BufferUtil.toString(frame.getData(), StandardCharsets.UTF_8));
+                    callback.succeeded();
+                    if (frame.isEndStream())
+                        latch.countDown();
+                }
+            });
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(streams, contents.size());
+        contents.forEach((streamId, content) -> assertEquals("stream" + streamId, content));
+
+        HTTP2Session serverSession = serverSessionRef.get();
+        long writes = serverSession.getWriteCount();
+        assertThat(writes, greaterThan(0L));
+        if (writeCoalesceDelay > 0)
+        {
+            // The frames of different streams are written together.
+            assertThat(serverSession.getFramesPerWriteMean(), greaterThan(1.0D));
+        }
+    }
+}
@@ -0,0 +1,433 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.http2;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.http2.api.Stream;
+import org.eclipse.jetty.http2.frames.Frame;
+import org.eclipse.jetty.http2.frames.PingFrame;
+import org.eclipse.jetty.http2.frames.WindowUpdateFrame;
+import org.eclipse.jetty.util.Atomics;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+
+/**
+ * <p>A flow control strategy that sizes the receive windows after the
+ * bandwidth-delay product of the connection.</p>
+ * <p>While data is received, a PING frame is sent to measure the round trip time,
+ * and the bytes received until the PING reply arrives are counted: this is a
+ * sample of the bandwidth-delay product, that is the amount of data the sender
+ * could send during a round trip.
+ * So that peers do not mistake the PING frames for a PING flood, a PING frame is
+ * only sent at least {@link #getMinPingInterval() the min PING interval} after the
+ * previous one, and only when the data received since the previous sample is at
+ * least a quarter of the stream receive window, since smaller amounts of data are
+ * not limited by the receive windows.</p>
+ * <p>When a sample reaches 2/3 of the stream receive window, the receive windows
+ * are likely limiting the throughput (for example, on high latency links), so the
+ * stream and session receive windows are grown to twice the sample, up to
+ * {@link #getMaxWindow() the max window}.
+ * When consecutive samples are smaller than 1/4 of the stream receive window, the
+ * receive windows are larger than needed (for example, on low latency links), so
+ * they are shrunk, down to their initial size.</p>
+ * <p>Windows are grown by sending larger window updates, and shrunk by sending
+ * smaller window updates, when the consumed data reaches the
+ * {@link #getBufferRatio() buffer ratio} of the window, as in
+ * {@link BufferingFlowControlStrategy}.</p>
+ * <p>A new instance must be used for each session, so that the windows and the
+ * metrics are those of a single session.</p>
+ */
+@ManagedObject
+public class AdaptiveFlowControlStrategy extends AbstractFlowControlStrategy
+{
+    private final long pingPayload = ThreadLocalRandom.current().nextLong();
+    private final AtomicInteger sessionLevel = new AtomicInteger();
+    private final AtomicInteger sessionRecvWindow = new AtomicInteger(DEFAULT_WINDOW_SIZE);
+    private final Map<IStream, StreamWindow> streamWindows = new ConcurrentHashMap<>();
+    private final AtomicLong pingNanos = new AtomicLong();
+    private final AtomicLong lastPingNanos = new AtomicLong(System.nanoTime());
+    private final AtomicLong sampleBytes = new AtomicLong();
+    private final LongAdder samples = new LongAdder();
+    private final LongAdder grows = new LongAdder();
+    private final LongAdder shrinks = new LongAdder();
+    private final float bufferRatio;
+    private final int maxWindow;
+    private volatile int initialSessionRecvWindow = DEFAULT_WINDOW_SIZE;
+    private volatile long minPingInterval = 100;
+    private volatile int sessionRecvWindowTarget;
+    private volatile int streamRecvWindowTarget;
+    private volatile long roundTripTime;
+    private volatile long bandwidthDelayProduct;
+    private int underutilized;
+
+    public AdaptiveFlowControlStrategy()
+    {
+        this(0.5F, 16 * 1024 * 1024);
+    }
+
+    /**
+     * @param bufferRatio the ratio of the window that must be consumed before a window update is sent
+     * @param maxWindow the max size the receive windows can grow to
+     */
+    public AdaptiveFlowControlStrategy(float bufferRatio, int maxWindow)
+    {
+        this(DEFAULT_WINDOW_SIZE, bufferRatio, maxWindow);
+    }
+
+    public AdaptiveFlowControlStrategy(int initialStreamSendWindow, float bufferRatio, int maxWindow)
+    {
+        super(initialStreamSendWindow);
+        this.bufferRatio = bufferRatio;
+        this.maxWindow = maxWindow;
+    }
+
+    @ManagedAttribute(value = "The ratio of the window that must be consumed before a window update is sent", readonly = true)
+    public float getBufferRatio()
+    {
+        return bufferRatio;
+    }
+
+    @ManagedAttribute(value = "The max size of the receive windows", readonly = true)
+    public int getMaxWindow()
+    {
+        return maxWindow;
+    }
+
+    @ManagedAttribute("The min interval in ms between the PING frames sent to measure the round trip time")
+    public long getMinPingInterval()
+    {
+        return minPingInterval;
+    }
+
+    /**
+     * @param minPingInterval the min interval in ms between the PING frames sent to measure the round trip time
+     */
+    public void setMinPingInterval(long minPingInterval)
+    {
+        this.minPingInterval = minPingInterval;
+    }
+
+    @ManagedAttribute(value = "The smoothed round trip time in microseconds", readonly = true)
+    public long getRoundTripTime()
+    {
+        return TimeUnit.NANOSECONDS.toMicros(roundTripTime);
+    }
+
+    @ManagedAttribute(value = "The last bandwidth-delay product sample in bytes", readonly = true)
+    public long getBandwidthDelayProduct()
+    {
+        return bandwidthDelayProduct;
+    }
+
+    @ManagedAttribute(value = "The estimated bandwidth in bytes per second", readonly = true)
+    public long getBandwidth()
+    {
+        long roundTripTime = this.roundTripTime;
+        return roundTripTime <= 0 ? 0 : bandwidthDelayProduct * TimeUnit.SECONDS.toNanos(1) / roundTripTime;
+    }
+
+    @ManagedAttribute(value = "The size of the session receive window", readonly = true)
+    public int getSessionRecvWindow()
+    {
+        return sessionRecvWindow.get();
+    }
+
+    @ManagedAttribute(value = "The size the session receive window is adapting to", readonly = true)
+    public int getSessionRecvWindowTarget()
+    {
+        return Math.max(sessionRecvWindowTarget, initialSessionRecvWindow);
+    }
+
+    @ManagedAttribute(value = "The size the stream receive windows are adapting to", readonly = true)
+    public int getStreamRecvWindowTarget()
+    {
+        return Math.max(streamRecvWindowTarget, getInitialStreamRecvWindow());
+    }
+
+    @ManagedAttribute(value = "The number of bandwidth-delay product samples", readonly = true)
+    public long getSampleCount()
+    {
+        return samples.sum();
+    }
+
+    @ManagedAttribute(value = "The number of times the receive windows have been grown", readonly = true)
+    public long getGrowCount()
+    {
+        return grows.sum();
+    }
+
+    @ManagedAttribute(value = "The number of times the receive windows have been shrunk", readonly = true)
+    public long getShrinkCount()
+    {
+        return shrinks.sum();
+    }
+
+    @Override
+    public void onStreamCreated(IStream stream)
+    {
+        super.onStreamCreated(stream);
+        streamWindows.put(stream, new StreamWindow(getInitialStreamRecvWindow()));
+    }
+
+    @Override
+    public void onStreamDestroyed(IStream stream)
+    {
+        streamWindows.remove(stream);
+        super.onStreamDestroyed(stream);
+    }
+
+    @Override
+    public void updateInitialStreamWindow(ISession session, int initialStreamWindow, boolean local)
+    {
+        int delta = initialStreamWindow - getInitialStreamRecvWindow();
+        super.updateInitialStreamWindow(session, initialStreamWindow, local);
+        if (local && delta != 0)
+        {
+            for (Stream stream : session.getStreams())
+            {
+                StreamWindow streamWindow = streamWindows.get(stream);
+                if (streamWindow != null)
+                    streamWindow.resize(delta);
+            }
+        }
+    }
+
+    @Override
+    public void onDataReceived(ISession session, IStream stream, int length)
+    {
+        super.onDataReceived(session, stream, length);
+        if (length <= 0)
+            return;
+        // No need to measure if the sender exceeded the window, the session will fail.
+        if (session.updateRecvWindow(0) < 0 || stream != null && stream.updateRecvWindow(0) < 0)
+            return;
+
+        long received = sampleBytes.addAndGet(length);
+        if (pingNanos.get() == 0 && 4 * received >= getStreamRecvWindowTarget())
+        {
+            long now = System.nanoTime();
+            long last = lastPingNanos.get();
+            if (now - last < TimeUnit.MILLISECONDS.toNanos(minPingInterval))
+                return;
+            if (!lastPingNanos.compareAndSet(last, now))
+                return;
+            if (pingNanos.compareAndSet(0, now == 0 ? 1 : now))
+            {
+                // Only the bytes received after the PING has been sent are part of the sample.
+                sampleBytes.set(0);
+                sendPing(session, new PingFrame(pingPayload, false));
+            }
+        }
+    }
+
+    protected void sendPing(ISession session, PingFrame frame)
+    {
+        session.ping(frame, new Callback()
+        {
+            @Override
+            public void failed(Throwable x)
+            {
+                // Allow another PING to be sent.
+                pingNanos.set(0);
+            }
+        });
+    }
+
+    @Override
+    public boolean onPingReply(ISession session, PingFrame frame)
+    {
+        if (frame.getPayloadAsLong() != pingPayload)
+            return false;
+
+        long sent = pingNanos.get();
+        if (sent == 0)
+            return true;
+        long rtt = Math.max(1, System.nanoTime() - sent);
+        long sample = sampleBytes.getAndSet(0);
+        // Allow the next PING only after the sample has been taken.
+        pingNanos.set(0);
+        onSample(rtt, sample);
+        return true;
+    }
+
+    private synchronized void onSample(long rtt, long sample)
+    {
+        samples.increment();
+        long srtt = roundTripTime;
+        // Smoothed as TCP does, see RFC 6298.
+        roundTripTime = srtt == 0 ? rtt : srtt - (srtt >> 3) + (rtt >> 3);
+        bandwidthDelayProduct = sample;
+
+        int streamTarget = getStreamRecvWindowTarget();
+        int sessionTarget = getSessionRecvWindowTarget();
+        if (3 * sample >= 2L * streamTarget)
+        {
+            underutilized = 0;
+            int target = (int)Math.min(maxWindow, 2 * sample);
+            if (target > streamTarget)
+            {
+                streamRecvWindowTarget = target;
+                sessionRecvWindowTarget = Math.max(sessionTarget, target);
+                grows.increment();
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Growing recv windows to {}/{} after sample {} in {} us for {}", getStreamRecvWindowTarget(), getSessionRecvWindowTarget(), sample, TimeUnit.NANOSECONDS.toMicros(rtt), this);
+            }
+        }
+        else if (4 * sample < streamTarget && streamTarget > getInitialStreamRecvWindow())
+        {
+            if (++underutilized >= 3)
+            {
+                underutilized = 0;
+                int target = (int)Math.max(2 * sample, streamTarget / 2);
+                streamRecvWindowTarget = target;
+                sessionRecvWindowTarget = Math.max(target, sessionTarget / 2);
+                shrinks.increment();
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Shrinking recv windows to {}/{} after sample {} in {} us for {}", getStreamRecvWindowTarget(), getSessionRecvWindowTarget(), sample, TimeUnit.NANOSECONDS.toMicros(rtt), this);
+            }
+        }
+        else
+        {
+            underutilized = 0;
+        }
+    }
+
+    @Override
+    public void onDataConsumed(ISession session, IStream stream, int length)
+    {
+        if (length <= 0)
+            return;
+
+        int level = sessionLevel.addAndGet(length);
+        int maxLevel = (int)(sessionRecvWindow.get() * bufferRatio);
+        if (level > maxLevel && sessionLevel.compareAndSet(level, 0))
+        {
+            int delta = adapt(sessionRecvWindow, getSessionRecvWindowTarget(), level);
+            int update = level + delta;
+            if (update > 0)
+            {
+                session.updateRecvWindow(update);
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Data consumed, {} bytes, updated session recv window by {}/{} for {}", length, update, maxLevel, session);
+                sendWindowUpdate(null, session, new WindowUpdateFrame(0, update));
+            }
+        }
+
+        if (stream != null && !stream.isRemotelyClosed())
+        {
+            StreamWindow streamWindow = streamWindows.get(stream);
+            if (streamWindow != null)
+            {
+                level = streamWindow.level.addAndGet(length);
+                maxLevel = (int)(streamWindow.size.get() * bufferRatio);
+                if (level > maxLevel)
+                {
+                    level = streamWindow.level.getAndSet(0);
+                    int delta = adapt(streamWindow.size, getStreamRecvWindowTarget(), level);
+                    int update = level + delta;
+                    if (update > 0)
+                    {
+                        stream.updateRecvWindow(update);
+                        if (LOG.isDebugEnabled())
+                            LOG.debug("Data consumed, {} bytes, updated stream recv window by {}/{} for {}", length, update, maxLevel, stream);
+                        sendWindowUpdate(stream, session, new WindowUpdateFrame(stream.getId(), update));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @param window the current window size
+     * @param target the target window size
+     * @param level the consumed bytes to be returned to the sender
+     * @return the bytes to add to (if positive) or subtract from (if negative) the consumed bytes
+     */
+    private int adapt(AtomicInteger window, int target, int level)
+    {
+        while (true)
+        {
+            int size = window.get();
+            // The window can only shrink by the consumed bytes not returned to the sender.
+            int delta = Math.max(target - size, -level);
+            if (delta == 0 || window.compareAndSet(size, size + delta))
+                return delta;
+        }
+    }
+
+    protected void sendWindowUpdate(IStream stream, ISession session, WindowUpdateFrame frame)
+    {
+        session.frames(stream, Callback.NOOP, frame, Frame.EMPTY_ARRAY);
+    }
+
+    @Override
+    public void windowUpdate(ISession session, IStream stream, WindowUpdateFrame frame)
+    {
+        super.windowUpdate(session, stream, frame);
+        // Track the enlargements of the session window not performed by this
+        // strategy, such as the initial session window update, see
+        // BufferingFlowControlStrategy.windowUpdate(...) for details.
+        if (frame.getStreamId() == 0)
+        {
+            int sessionWindow = session.updateRecvWindow(0);
+            Atomics.updateMax(sessionRecvWindow, sessionWindow);
+            if (sessionRecvWindowTarget == 0)
+                initialSessionRecvWindow = sessionRecvWindow.get();
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[ratio=%.2f,rtt=%dus,bdp=%d,windows=%d/%d,sessionStallTime=%dms,streamsStallTime=%dms]",
+            getClass().getSimpleName(),
+            hashCode(),
+            bufferRatio,
+            getRoundTripTime(),
+            getBandwidthDelayProduct(),
+            getStreamRecvWindowTarget(),
+            getSessionRecvWindowTarget(),
+            getSessionStallTime(),
+            getStreamsStallTime());
+    }
+
+    private static class StreamWindow
+    {
+        private final AtomicInteger level = new AtomicInteger();
+        private final AtomicInteger size;
+
+        private StreamWindow(int size)
+        {
+            this.size = new AtomicInteger(size);
+        }
+
+        private void resize(int delta)
+        {
+            size.addAndGet(delta);
+        }
+    }
+}
@@ -18,6 +18,7 @@
 
 package org.eclipse.jetty.http2;
 
+import org.eclipse.jetty.http2.frames.PingFrame;
 import org.eclipse.jetty.http2.frames.WindowUpdateFrame;
 
 public interface FlowControlStrategy
@@ -42,6 +43,21 @@ public interface FlowControlStrategy
 
     void onDataSent(IStream stream, int length);
 
+    /**
+     * <p>Invoked when a PING reply is received, so that strategies that send
+     * PING frames, for example to measure the round trip time, can process
+     * the replies to their PING frames.</p>
+     *
+     * @param session the session
+     * @param frame the PING reply frame
+     * @return true if the PING reply is a reply to a PING sent by this strategy,
+     * and it must not be notified to the application
+     */
+    default boolean onPingReply(ISession session, PingFrame frame)
+    {
+        return false;
+    }
+
     interface Factory
     {
         FlowControlStrategy newFlowControlStrategy();
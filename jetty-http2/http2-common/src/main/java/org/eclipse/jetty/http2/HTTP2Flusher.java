@@ -23,37 +23,53 @@ import java.nio.ByteBuffer;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.Deque;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.eclipse.jetty.http2.frames.Frame;
+import org.eclipse.jetty.http2.frames.FrameType;
 import org.eclipse.jetty.http2.frames.WindowUpdateFrame;
 import org.eclipse.jetty.http2.hpack.HpackException;
 import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.io.EofException;
+import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.IteratingCallback;
 import org.eclipse.jetty.util.component.Dumpable;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
+import org.eclipse.jetty.util.statistic.HistogramStatistic;
+import org.eclipse.jetty.util.thread.Scheduler;
 
 public class HTTP2Flusher extends IteratingCallback implements Dumpable
 {
     private static final Logger LOG = Log.getLogger(HTTP2Flusher.class);
     private static final ByteBuffer[] EMPTY_BYTE_BUFFERS = new ByteBuffer[0];
+    private static final Comparator<Entry> PRIORITY_ORDER = Comparator.comparingInt(Entry::getPriorityOrder);
 
     private final Queue<WindowEntry> windows = new ArrayDeque<>();
     private final Deque<Entry> entries = new ArrayDeque<>();
     private final Queue<Entry> pendingEntries = new ArrayDeque<>();
     private final Collection<Entry> processedEntries = new ArrayList<>();
+    private final List<Entry> prioritizedEntries = new ArrayList<>();
+    private final List<ByteBuffer> coalesced = new ArrayList<>();
+    private final List<ByteBuffer> coalescedBuffers = new ArrayList<>();
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder framesWritten = new LongAdder();
+    private final HistogramStatistic framesPerWrite = new HistogramStatistic();
     private final HTTP2Session session;
     private final ByteBufferPool.Lease lease;
     private Throwable terminated;
     private Entry stalledEntry;
+    private int frames;
+    private boolean delayed;
 
     public HTTP2Flusher(HTTP2Session session)
     {
@@ -129,6 +145,30 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
         }
     }
 
+    /**
+     * @return the number of writes to the EndPoint
+     */
+    public long getWriteCount()
+    {
+        return writes.sum();
+    }
+
+    /**
+     * @return the number of frames written to the EndPoint
+     */
+    public long getFramesWritten()
+    {
+        return framesWritten.sum();
+    }
+
+    /**
+     * @return the distribution of the number of frames per write to the EndPoint
+     */
+    public HistogramStatistic getFramesPerWrite()
+    {
+        return framesPerWrite;
+    }
+
     @Override
     protected Action process() throws Throwable
     {
@@ -153,16 +193,25 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
             }
         }
 
-        if (pendingEntries.isEmpty())
+        // Frames may have been generated before a write coalesce delay.
+        if (pendingEntries.isEmpty() && lease.getByteBuffers().isEmpty())
         {
             if (LOG.isDebugEnabled())
                 LOG.debug("Flushed {}", session);
             return Action.IDLE;
         }
 
+        boolean prioritize = session.isPrioritizeStreams();
+        if (prioritize)
+            prioritize();
+
         while (true)
         {
             boolean progress = false;
+            // The urgency of the DATA frames generated in this pass, and
+            // whether they belong to a stream that must be sent exclusively.
+            int urgency = Integer.MAX_VALUE;
+            boolean exclusive = false;
 
             if (pendingEntries.isEmpty())
                 break;
@@ -185,14 +234,28 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
                     continue;
                 }
 
+                StreamPriority priority = prioritize ? entry.getStreamPriority() : null;
+                if (priority != null && urgency != Integer.MAX_VALUE)
+                {
+                    // Less urgent DATA frames are generated only if the
+                    // more urgent ones cannot, for example due to flow control.
+                    int entryUrgency = priority.getUrgency();
+                    if (entryUrgency > urgency || entryUrgency == urgency && (exclusive || !priority.isIncremental()))
+                        continue;
+                }
+
                 try
                 {
-                    if (entry.generate(lease))
+                    int quantum = priority == null ? 1 : priority.getQuantum();
+                    int generated = 0;
+                    while (generated < quantum && entry.generate(lease))
                     {
                         if (LOG.isDebugEnabled())
                             LOG.debug("Generated {} frame bytes for {}", entry.getFrameBytesGenerated(), entry);
 
                         progress = true;
+                        ++frames;
+                        ++generated;
 
                         // We use ArrayList contains() + add() instead of HashSet add()
                         // because that is faster for collections of size up to 250 entries.
@@ -200,7 +263,19 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
                             processedEntries.add(entry);
 
                         if (entry.getDataBytesRemaining() == 0)
+                        {
                             pending.remove();
+                            break;
+                        }
+                    }
+
+                    if (generated > 0)
+                    {
+                        if (priority != null)
+                        {
+                            urgency = Math.min(urgency, priority.getUrgency());
+                            exclusive = !priority.isIncremental();
+                        }
                     }
                     else
                     {
@@ -252,6 +327,13 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
             return Action.IDLE;
         }
 
+        if (delay())
+            return Action.SCHEDULED;
+
+        int coalesceSize = session.getWriteCoalesceSize();
+        if (coalesceSize > 0)
+            byteBuffers = coalesce(byteBuffers, coalesceSize);
+
         if (LOG.isDebugEnabled())
             LOG.debug("Writing {} buffers ({} bytes) - entries processed/pending {}/{}: {}/{}",
                 byteBuffers.size(),
@@ -261,10 +343,132 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
                 processedEntries,
                 pendingEntries);
 
+        writes.increment();
+        framesWritten.add(frames);
+        framesPerWrite.record(frames);
+        frames = 0;
+
         session.getEndPoint().write(this, byteBuffers.toArray(EMPTY_BYTE_BUFFERS));
         return Action.SCHEDULED;
     }
 
+    /**
+     * <p>Sorts the pending entries so that non-DATA frames come first, followed by the
+     * DATA frames in order of urgency, non-incremental before incremental streams.</p>
+     * <p>The sort is stable, so that the DATA frames of the same urgency retain their
+     * order, which is the arrival order rotated when the session is flow control stalled.</p>
+     */
+    private void prioritize()
+    {
+        if (pendingEntries.size() < 2)
+            return;
+        prioritizedEntries.addAll(pendingEntries);
+        prioritizedEntries.sort(PRIORITY_ORDER);
+        pendingEntries.clear();
+        pendingEntries.addAll(prioritizedEntries);
+        prioritizedEntries.clear();
+    }
+
+    /**
+     * <p>Delays the write of few bytes by the write coalesce delay, so that the frames
+     * of other streams generated in the meantime are written together with them.</p>
+     *
+     * @return whether the write has been delayed
+     */
+    private boolean delay()
+    {
+        if (delayed)
+        {
+            delayed = false;
+            return false;
+        }
+
+        long delay = session.getWriteCoalesceDelay();
+        if (delay <= 0 || stalledEntry != null)
+            return false;
+        if (lease.getTotalLength() >= Math.max(session.getWriteCoalesceSize(), 1))
+            return false;
+        synchronized (this)
+        {
+            // More frames are already queued, no need to wait for them.
+            if (!entries.isEmpty())
+                return false;
+        }
+
+        Scheduler scheduler = session.getScheduler();
+        if (scheduler == null)
+            return false;
+
+        if (LOG.isDebugEnabled())
+            LOG.debug("Delaying write of {} bytes by {} us", lease.getTotalLength(), delay);
+        delayed = true;
+        scheduler.schedule(this::onDelayExpired, delay, TimeUnit.MICROSECONDS);
+        return true;
+    }
+
+    private void onDelayExpired()
+    {
+        // Process again to generate the frames queued in the meantime,
+        // without recycling the frames already generated.
+        super.succeeded();
+    }
+
+    /**
+     * <p>Copies the buffers smaller than half the given size into buffers of the given
+     * size, so that the frames of many streams are written with fewer, larger buffers,
+     * which in turn results in fewer, larger, TLS records.</p>
+     *
+     * @param byteBuffers the buffers to coalesce
+     * @param coalesceSize the size of the coalescing buffers
+     * @return the buffers to write
+     */
+    private List<ByteBuffer> coalesce(List<ByteBuffer> byteBuffers, int coalesceSize)
+    {
+        ByteBufferPool byteBufferPool = session.getGenerator().getByteBufferPool();
+        ByteBuffer buffer = null;
+        coalesced.clear();
+        for (ByteBuffer byteBuffer : byteBuffers)
+        {
+            int remaining = byteBuffer.remaining();
+            if (remaining > coalesceSize / 2)
+            {
+                // Large buffers are written as they are.
+                if (buffer != null)
+                {
+                    BufferUtil.flipToFlush(buffer, 0);
+                    buffer = null;
+                }
+                coalesced.add(byteBuffer);
+                continue;
+            }
+
+            if (buffer != null && buffer.remaining() < remaining)
+            {
+                BufferUtil.flipToFlush(buffer, 0);
+                buffer = null;
+            }
+            if (buffer == null)
+            {
+                buffer = byteBufferPool.acquire(coalesceSize, true);
+                BufferUtil.clearToFill(buffer);
+                coalescedBuffers.add(buffer);
+                coalesced.add(buffer);
+            }
+            buffer.put(byteBuffer);
+        }
+        if (buffer != null)
+            BufferUtil.flipToFlush(buffer, 0);
+        return coalesced;
+    }
+
+    private void recycleCoalesced()
+    {
+        ByteBufferPool byteBufferPool = session.getGenerator().getByteBufferPool();
+        coalescedBuffers.forEach(byteBufferPool::release);
+        coalescedBuffers.clear();
+        coalesced.clear();
+    }
+
     void onFlushed(long bytes) throws IOException
     {
         // A single EndPoint write may be flushed multiple times (for example with SSL).
@@ -291,6 +495,7 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
     private void finish()
     {
         lease.recycle();
+        recycleCoalesced();
 
         processedEntries.forEach(Entry::succeeded);
         processedEntries.clear();
@@ -320,6 +525,7 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
     protected void onCompleteFailure(Throwable x)
     {
         lease.recycle();
+        recycleCoalesced();
 
         Throwable closed;
         Set<Entry> allEntries;
@@ -383,12 +589,14 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
     @Override
     public String toString()
     {
-        return String.format("%s[window_queue=%d,frame_queue=%d,processed/pending=%d/%d]",
+        return String.format("%s[window_queue=%d,frame_queue=%d,processed/pending=%d/%d,writes=%d,frames=%d]",
             super.toString(),
             getWindowQueueSize(),
             getFrameQueueSize(),
             processedEntries.size(),
-            pendingEntries.size());
+            pendingEntries.size(),
+            getWriteCount(),
+            getFramesWritten());
     }
 
     public abstract static class Entry extends Callback.Nested
@@ -412,6 +620,25 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
 
         protected abstract boolean generate(ByteBufferPool.Lease lease) throws HpackException;
 
+        /**
+         * @return the priority of the stream if this entry is a DATA frame, otherwise null
+         */
+        private StreamPriority getStreamPriority()
+        {
+            if (stream == null || frame.getType() != FrameType.DATA)
+                return null;
+            return stream.getPriority();
+        }
+
+        private int getPriorityOrder()
+        {
+            StreamPriority priority = getStreamPriority();
+            if (priority == null)
+                return Integer.MIN_VALUE;
+            int order = priority.getUrgency() * 2;
+            return priority.isIncremental() ? order + 1 : order;
+        }
+
         public abstract long onFlushed(long bytes) throws IOException;
 
         @Override
@@ -35,6 +35,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
+import org.eclipse.jetty.http.MetaData;
 import org.eclipse.jetty.http2.api.Session;
 import org.eclipse.jetty.http2.api.Stream;
 import org.eclipse.jetty.http2.frames.DataFrame;
@@ -96,6 +97,9 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
     private long streamIdleTimeout;
     private int initialSessionRecvWindow;
     private int writeThreshold;
+    private int writeCoalesceSize;
+    private long writeCoalesceDelay;
+    private boolean prioritizeStreams;
     private boolean pushEnabled;
     private long idleTime;
     private GoAwayFrame closeFrame;
@@ -206,6 +210,81 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
         this.writeThreshold = writeThreshold;
     }
 
+    @ManagedAttribute("The size of the buffers small frames are coalesced into before writing, or 0 to not coalesce")
+    public int getWriteCoalesceSize()
+    {
+        return writeCoalesceSize;
+    }
+
+    /**
+     * <p>Sets the size of the buffers that small frames, possibly of different streams,
+     * are copied into before being written, so that they are written with fewer, larger,
+     * buffers; a size equal to the TLS record size (16 KiB) minimizes the number of TLS records.</p>
+     *
+     * @param writeCoalesceSize the size of the coalescing buffers, or 0 to not coalesce frames
+     */
+    public void setWriteCoalesceSize(int writeCoalesceSize)
+    {
+        this.writeCoalesceSize = writeCoalesceSize;
+    }
+
+    @ManagedAttribute("The max delay in microseconds of writes smaller than the write coalesce size, or 0 to not delay writes")
+    public long getWriteCoalesceDelay()
+    {
+        return writeCoalesceDelay;
+    }
+
+    /**
+     * <p>Sets the max delay of writes smaller than the {@link #setWriteCoalesceSize(int) write
+     * coalesce size}, so that the frames generated in the meantime are written together.</p>
+     *
+     * @param writeCoalesceDelay the max delay in microseconds, or 0 to not delay writes
+     */
+    public void setWriteCoalesceDelay(long writeCoalesceDelay)
+    {
+        this.writeCoalesceDelay = writeCoalesceDelay;
+    }
+
+    @ManagedAttribute("Whether the DATA frames of the streams are sent in priority order")
+    public boolean isPrioritizeStreams()
+    {
+        return prioritizeStreams;
+    }
+
+    /**
+     * <p>Sets whether the DATA frames of the streams are sent in the order of their
+     * {@link StreamPriority priority}, rather than in a round-robin fashion.</p>
+     *
+     * @param prioritizeStreams whether to send DATA frames in priority order
+     */
+    public void setPrioritizeStreams(boolean prioritizeStreams)
+    {
+        this.prioritizeStreams = prioritizeStreams;
+    }
+
+    @ManagedAttribute(value = "The number of writes", readonly = true)
+    public long getWriteCount()
+    {
+        return flusher.getWriteCount();
+    }
+
+    @ManagedAttribute(value = "The average number of frames per write", readonly = true)
+    public double getFramesPerWriteMean()
+    {
+        return flusher.getFramesPerWrite().getMean();
+    }
+
+    @ManagedAttribute(value = "The histogram of the number of frames per write", readonly = true)
+    public String getFramesPerWriteHistogram()
+    {
+        return flusher.getFramesPerWrite().toHistogramString();
+    }
+
+    public Scheduler getScheduler()
+    {
+        return scheduler;
+    }
+
     public EndPoint getEndPoint()
     {
         return endPoint;
@@ -291,6 +370,45 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
     {
         if (LOG.isDebugEnabled())
             LOG.debug("Received {} on {}", frame, this);
+
+        if (isPrioritizeStreams())
+        {
+            IStream stream = getStream(frame.getStreamId());
+            if (stream != null)
+                stream.setPriority(newStreamPriority(frame));
+        }
+    }
+
+    /**
+     * <p>Updates the priority of the given stream with the priority information of the given
+     * HEADERS frame, either the RFC 9218 {@code priority} header or the RFC 7540 priority.</p>
+     *
+     * @param stream the stream to update the priority of
+     * @param frame the HEADERS frame carrying the priority information
+     */
+    protected void updatePriority(IStream stream, HeadersFrame frame)
+    {
+        if (!isPrioritizeStreams())
+            return;
+        StreamPriority priority = null;
+        MetaData metaData = frame.getMetaData();
+        String value = metaData == null ? null : metaData.getFields().get("priority");
+        if (value != null)
+            priority = StreamPriority.from(value);
+        else if (frame.getPriority() != null)
+            priority = newStreamPriority(frame.getPriority());
+        if (priority != null)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Priority {} for {}", priority, stream);
+            stream.setPriority(priority);
+        }
+    }
+
+    private StreamPriority newStreamPriority(PriorityFrame frame)
+    {
+        IStream parent = getStream(frame.getParentStreamId());
+        return StreamPriority.from(frame, parent == null ? null : parent.getPriority());
     }
 
     @Override
@@ -409,7 +527,8 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
 
         if (frame.isReply())
         {
-            notifyPing(this, frame);
+            if (!flowControl.onPingReply(this, frame))
+                notifyPing(this, frame);
         }
         else
         {
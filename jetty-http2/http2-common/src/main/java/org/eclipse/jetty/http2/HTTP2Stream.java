@@ -67,6 +67,7 @@ public class HTTP2Stream extends IdleTimeout implements IStream, Callback, Dumpa
     private boolean remoteReset;
     private Listener listener;
     private long dataLength;
+    private volatile StreamPriority priority = StreamPriority.DEFAULT;
 
     public HTTP2Stream(Scheduler scheduler, ISession session, int streamId, boolean local)
     {
@@ -83,6 +84,18 @@ public class HTTP2Stream extends IdleTimeout implements IStream, Callback, Dumpa
         return streamId;
     }
 
+    @Override
+    public StreamPriority getPriority()
+    {
+        return priority;
+    }
+
+    @Override
+    public void setPriority(StreamPriority priority)
+    {
+        this.priority = priority;
+    }
+
     @Override
     public Object getAttachment()
     {
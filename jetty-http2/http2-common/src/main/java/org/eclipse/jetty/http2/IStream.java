@@ -44,6 +44,26 @@ public interface IStream extends Stream, Closeable
      */
     void setAttachment(Object attachment);
 
+    /**
+     * @return the priority of this stream
+     * @see #setPriority(StreamPriority)
+     */
+    default StreamPriority getPriority()
+    {
+        return StreamPriority.DEFAULT;
+    }
+
+    /**
+     * <p>Sets the priority of this stream; implementations that do not
+     * support priorities ignore it.</p>
+     *
+     * @param priority the priority of this stream
+     * @see HTTP2Session#setPrioritizeStreams(boolean)
+     */
+    default void setPriority(StreamPriority priority)
+    {
+    }
+
     /**
      * @return whether this stream is local or remote
      */
@@ -0,0 +1,146 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.http2;
+
+import org.eclipse.jetty.http2.frames.PriorityFrame;
+import org.eclipse.jetty.util.StringUtil;
+
+/**
+ * <p>The priority of a stream, used to schedule the DATA frames of the streams
+ * of a session when {@link HTTP2Session#setPrioritizeStreams(boolean) prioritization}
+ * is enabled.</p>
+ * <p>The DATA frames of the streams with the lowest urgency are sent first;
+ * the streams with the same urgency share the bandwidth in proportion to their
+ * weight if they are incremental, or are sent one after the other if they are not.</p>
+ * <p>Priorities are built either from the {@code priority} request header defined by
+ * RFC 9218, or from the RFC 7540 priority information of HEADERS and PRIORITY frames.
+ * In the latter case, a stream depending on another stream has the urgency of its
+ * parent plus one, so that it is served after its parent, while the streams that
+ * depend on the root have the {@link #DEFAULT_URGENCY default urgency}.</p>
+ */
+public class StreamPriority
+{
+    public static final int DEFAULT_URGENCY = 3;
+    public static final int DEFAULT_WEIGHT = 16;
+    public static final int MAX_WEIGHT = 256;
+    public static final StreamPriority DEFAULT = new StreamPriority(DEFAULT_URGENCY, true, DEFAULT_WEIGHT);
+
+    private final int urgency;
+    private final boolean incremental;
+    private final int weight;
+
+    /**
+     * @param urgency the urgency, lower values being more urgent
+     * @param incremental whether the stream shares the bandwidth with other streams of the same urgency
+     * @param weight the weight, between 1 and 256, of the stream among incremental streams of the same urgency
+     */
+    public StreamPriority(int urgency, boolean incremental, int weight)
+    {
+        if (urgency < 0)
+            throw new IllegalArgumentException("Invalid urgency " + urgency);
+        if (weight < 1 || weight > MAX_WEIGHT)
+            throw new IllegalArgumentException("Invalid weight " + weight);
+        this.urgency = urgency;
+        this.incremental = incremental;
+        this.weight = weight;
+    }
+
+    /**
+     * @return the urgency, lower values being more urgent
+     */
+    public int getUrgency()
+    {
+        return urgency;
+    }
+
+    /**
+     * @return whether the stream shares the bandwidth with other streams of the same urgency
+     */
+    public boolean isIncremental()
+    {
+        return incremental;
+    }
+
+    /**
+     * @return the weight of the stream among incremental streams of the same urgency
+     */
+    public int getWeight()
+    {
+        return weight;
+    }
+
+    /**
+     * @return the max number of DATA frames generated for the stream
+     * in a scheduling round among streams of the same urgency
+     */
+    int getQuantum()
+    {
+        return Math.max(1, weight / DEFAULT_WEIGHT);
+    }
+
+    /**
+     * @param frame the RFC 7540 priority information
+     * @param parent the priority of the parent stream, or null if the stream depends on the root or on an unknown stream
+     * @return the priority of the stream
+     */
+    public static StreamPriority from(PriorityFrame frame, StreamPriority parent)
+    {
+        int urgency = parent == null ? DEFAULT_URGENCY : parent.getUrgency() + 1;
+        return new StreamPriority(urgency, true, frame.getWeight());
+    }
+
+    /**
+     * <p>Parses the value of the RFC 9218 {@code priority} header, for example {@code u=1, i}.</p>
+     * <p>Unknown or invalid parameters are ignored, as required by RFC 9218.</p>
+     *
+     * @param value the value of the {@code priority} header
+     * @return the priority of the stream
+     */
+    public static StreamPriority from(String value)
+    {
+        int urgency = DEFAULT_URGENCY;
+        boolean incremental = false;
+        for (String member : StringUtil.csvSplit(value))
+        {
+            String param = member.trim();
+            int equals = param.indexOf('=');
+            String key = equals < 0 ? param : param.substring(0, equals).trim();
+            String item = equals < 0 ? null : param.substring(equals + 1).trim();
+            if ("u".equals(key))
+            {
+                if (item != null && item.length() == 1 && item.charAt(0) >= '0' && item.charAt(0) <= '7')
+                    urgency = item.charAt(0) - '0';
+            }
+            else if ("i".equals(key))
+            {
+                if (item == null || "?1".equals(item))
+                    incremental = true;
+                else if ("?0".equals(item))
+                    incremental = false;
+            }
+        }
+        return new StreamPriority(urgency, incremental, DEFAULT_WEIGHT);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[u=%d,i=%b,w=%d]", getClass().getSimpleName(), hashCode(), urgency, incremental, weight);
+    }
+}
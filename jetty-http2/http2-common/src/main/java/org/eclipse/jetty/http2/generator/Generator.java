@@ -71,6 +71,11 @@ public class Generator
         hpackEncoder.setValidateEncoding(validateEncoding);
     }
 
+    public void setHpackIndexingStrategy(HpackEncoder.IndexingStrategy indexingStrategy)
+    {
+        hpackEncoder.setIndexingStrategy(indexingStrategy);
+    }
+
     public void setHeaderTableSize(int headerTableSize)
     {
         hpackEncoder.setRemoteMaxDynamicTableSize(headerTableSize);
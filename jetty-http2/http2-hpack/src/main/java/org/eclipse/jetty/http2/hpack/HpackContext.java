@@ -23,6 +23,7 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 
 import org.eclipse.jetty.http.HttpField;
@@ -30,7 +31,6 @@ import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpMethod;
 import org.eclipse.jetty.http.HttpScheme;
 import org.eclipse.jetty.util.ArrayTernaryTrie;
-import org.eclipse.jetty.util.StringUtil;
 import org.eclipse.jetty.util.Trie;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
@@ -190,8 +190,8 @@ public class HpackContext
     private int _maxDynamicTableSizeInBytes;
     private int _dynamicTableSizeInBytes;
     private final DynamicTable _dynamicTable;
-    private final Map<HttpField, Entry> _fieldMap = new HashMap<>();
-    private final Map<String, Entry> _nameMap = new HashMap<>();
+    private final EntryIndex _fieldIndex = new EntryIndex(true);
+    private final EntryIndex _nameIndex = new EntryIndex(false);
 
     HpackContext(int maxDynamicTableSize)
     {
@@ -212,7 +212,7 @@ public class HpackContext
 
     public Entry get(HttpField field)
     {
-        Entry entry = _fieldMap.get(field);
+        Entry entry = _fieldIndex.get(field.getName(), field.getValue());
         if (entry == null)
             entry = __staticFieldMap.get(field);
         return entry;
@@ -223,7 +223,7 @@ public class HpackContext
         Entry entry = __staticNameMap.get(name);
         if (entry != null)
             return entry;
-        return _nameMap.get(StringUtil.asciiToLowerCase(name));
+        return _nameIndex.get(name, null);
     }
 
     public Entry get(int index)
@@ -260,8 +260,8 @@ public class HpackContext
         }
         _dynamicTableSizeInBytes += size;
         _dynamicTable.add(entry);
-        _fieldMap.put(field, entry);
-        _nameMap.put(field.getLowerCaseName(), entry);
+        _fieldIndex.put(entry);
+        _nameIndex.put(entry);
 
         if (LOG.isDebugEnabled())
             LOG.debug(String.format("HdrTbl[%x] added %s", hashCode(), entry));
@@ -382,10 +382,8 @@ public class HpackContext
                     LOG.debug(String.format("HdrTbl[%x] evict %s", HpackContext.this.hashCode(), entry));
                 _dynamicTableSizeInBytes -= entry.getSize();
                 entry._slot = -1;
-                _fieldMap.remove(entry.getHttpField());
-                String lc = entry.getHttpField().getLowerCaseName();
-                if (entry == _nameMap.get(lc))
-                    _nameMap.remove(lc);
+                _fieldIndex.remove(entry);
+                _nameIndex.remove(entry);
             }
             if (LOG.isDebugEnabled())
                 LOG.debug(String.format("HdrTbl[%x] entries=%d, size=%d, max=%d", HpackContext.this.hashCode(), _dynamicTable.size(), _dynamicTableSizeInBytes, _maxDynamicTableSizeInBytes));
@@ -397,8 +395,8 @@ public class HpackContext
                 LOG.debug(String.format("HdrTbl[%x] evictAll", HpackContext.this.hashCode()));
             if (size() > 0)
             {
-                _fieldMap.clear();
-                _nameMap.clear();
+                _fieldIndex.clear();
+                _nameIndex.clear();
                 _offset = 0;
                 _size = 0;
                 _dynamicTableSizeInBytes = 0;
@@ -407,6 +405,147 @@ public class HpackContext
         }
     }
 
+    /**
+     * <p>An open addressing hash table of the dynamic table entries, keyed either by
+     * case insensitive name and value, or by case insensitive name only.</p>
+     * <p>Lookups do not allocate, unlike lookups in a {@code Map} keyed by lower
+     * case name or by {@link HttpField}, and additions only allocate when the table
+     * grows, which happens rarely as the dynamic table size is bounded.</p>
+     * <p>When more entries have the same key, the most recently added one is indexed.</p>
+     */
+    private static class EntryIndex
+    {
+        private final boolean _byValue;
+        private Entry[] _entries = new Entry[16];
+        private int[] _hashes = new int[16];
+        private int _size;
+
+        private EntryIndex(boolean byValue)
+        {
+            _byValue = byValue;
+        }
+
+        private Entry get(String name, String value)
+        {
+            int mask = _entries.length - 1;
+            int hash = hash(name, value);
+            for (int i = hash & mask; ; i = (i + 1) & mask)
+            {
+                Entry entry = _entries[i];
+                if (entry == null)
+                    return null;
+                if (_hashes[i] == hash && matches(entry, name, value))
+                    return entry;
+            }
+        }
+
+        private void put(Entry entry)
+        {
+            if (2 * (_size + 1) > _entries.length)
+                grow();
+            HttpField field = entry.getHttpField();
+            int mask = _entries.length - 1;
+            int hash = hash(field.getName(), field.getValue());
+            int i = hash & mask;
+            while (_entries[i] != null)
+            {
+                if (_hashes[i] == hash && matches(_entries[i], field.getName(), field.getValue()))
+                {
+                    // Replace the older entry with the same key.
+                    _entries[i] = entry;
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            _entries[i] = entry;
+            _hashes[i] = hash;
+            ++_size;
+        }
+
+        private void remove(Entry entry)
+        {
+            HttpField field = entry.getHttpField();
+            int mask = _entries.length - 1;
+            int i = hash(field.getName(), field.getValue()) & mask;
+            while (_entries[i] != entry)
+            {
+                // The entry may have been replaced by a more recent one with the same key.
+                if (_entries[i] == null)
+                    return;
+                i = (i + 1) & mask;
+            }
+            _entries[i] = null;
+            --_size;
+
+            // Shift back the following entries of the cluster that would not be found anymore.
+            int j = i;
+            while (true)
+            {
+                j = (j + 1) & mask;
+                if (_entries[j] == null)
+                    return;
+                int k = _hashes[j] & mask;
+                boolean reachable = i <= j ? (i < k && k <= j) : (i < k || k <= j);
+                if (!reachable)
+                {
+                    _entries[i] = _entries[j];
+                    _hashes[i] = _hashes[j];
+                    _entries[j] = null;
+                    i = j;
+                }
+            }
+        }
+
+        private void clear()
+        {
+            Arrays.fill(_entries, null);
+            _size = 0;
+        }
+
+        private void grow()
+        {
+            Entry[] entries = _entries;
+            int[] hashes = _hashes;
+            _entries = new Entry[entries.length * 2];
+            _hashes = new int[entries.length * 2];
+            int mask = _entries.length - 1;
+            for (int i = 0; i < entries.length; i++)
+            {
+                if (entries[i] != null)
+                {
+                    int j = hashes[i] & mask;
+                    while (_entries[j] != null)
+                    {
+                        j = (j + 1) & mask;
+                    }
+                    _entries[j] = entries[i];
+                    _hashes[j] = hashes[i];
+                }
+            }
+        }
+
+        private int hash(String name, String value)
+        {
+            int hash = 0;
+            for (int i = 0; i < name.length(); i++)
+            {
+                char c = name.charAt(i);
+                if (c >= 'A' && c <= 'Z')
+                    c += 0x20;
+                hash = 31 * hash + c;
+            }
+            if (_byValue)
+                hash = 31 * hash + Objects.hashCode(value);
+            return hash ^ (hash >>> 16);
+        }
+
+        private boolean matches(Entry entry, String name, String value)
+        {
+            HttpField field = entry.getHttpField();
+            return field.getName().equalsIgnoreCase(name) && (!_byValue || Objects.equals(field.getValue(), value));
+        }
+    }
+
     public static class Entry
     {
         final HttpField _field;
@@ -280,6 +280,14 @@ public class HpackDecoder
     public static String toASCIIString(ByteBuffer buffer, int length)
     {
         StringBuilder builder = new StringBuilder(length);
+        if (!buffer.hasArray())
+        {
+            for (int i = 0; i < length; i++)
+            {
+                builder.append((char)(0x7f & buffer.get()));
+            }
+            return builder.toString();
+        }
         int position = buffer.position();
         int start = buffer.arrayOffset() + position;
         int end = start + length;
@@ -22,7 +22,10 @@ import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.EnumMap;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 
 import org.eclipse.jetty.http.HttpField;
@@ -102,6 +105,7 @@ public class HpackEncoder
     private int _maxHeaderListSize;
     private int _headerListSize;
     private boolean _validateEncoding = true;
+    private IndexingStrategy _indexingStrategy = IndexingStrategy.ALWAYS;
 
     public HpackEncoder()
     {
@@ -162,6 +166,20 @@ public class HpackEncoder
         _validateEncoding = validateEncoding;
     }
 
+    public IndexingStrategy getIndexingStrategy()
+    {
+        return _indexingStrategy;
+    }
+
+    /**
+     * @param indexingStrategy the strategy to decide whether fields that could be indexed
+     * are added to the dynamic table
+     */
+    public void setIndexingStrategy(IndexingStrategy indexingStrategy)
+    {
+        _indexingStrategy = Objects.requireNonNull(indexingStrategy);
+    }
+
     public void encode(ByteBuffer buffer, MetaData metadata) throws HpackException
     {
         try
@@ -342,7 +360,7 @@ public class HpackEncoder
                     if (_debug)
                         encoding = indexed ? "PreEncodedIdx" : "PreEncoded";
                 }
-                else if (name == null && fieldSize < _context.getMaxDynamicTableSize())
+                else if (name == null && fieldSize < _context.getMaxDynamicTableSize() && _indexingStrategy.isIndexable(field))
                 {
                     // unknown name and value that will fit in dynamic table, so let's index
                     // this just in case it is the first time we have seen a custom name or a
@@ -394,9 +412,10 @@ public class HpackEncoder
                             (huffman ? "HuffV" : "LitV") +
                             (neverIndex ? "!!Idx" : "!Idx");
                 }
-                else if (fieldSize >= _context.getMaxDynamicTableSize() || header == HttpHeader.CONTENT_LENGTH && !"0".equals(field.getValue()))
+                else if (fieldSize >= _context.getMaxDynamicTableSize() || header == HttpHeader.CONTENT_LENGTH && !"0".equals(field.getValue()) ||
+                    !_indexingStrategy.isIndexable(field))
                 {
-                    // The field is too large or a non zero content length, so do not index.
+                    // The field is too large, a non zero content length or not worth indexing, so do not index.
                     indexed = false;
                     encodeName(buffer, (byte)0x00, 4, header.asString(), name);
                     encodeValue(buffer, true, field.getValue());
@@ -451,12 +470,16 @@ public class HpackEncoder
 
     static void encodeValue(ByteBuffer buffer, boolean huffman, String value)
     {
+        // Huffman coding may be larger than the literal, for example for random tokens.
+        int needed = huffman ? Huffman.octetsNeeded(value) : -1;
+        if (huffman && needed >= value.length())
+            huffman = false;
+
         if (huffman)
         {
             // huffman literal value
             buffer.put((byte)0x80);
 
-            int needed = Huffman.octetsNeeded(value);
             if (needed >= 0)
             {
                 NBitInteger.encode(buffer, 7, needed);
@@ -491,4 +514,89 @@ public class HpackEncoder
             }
         }
     }
+
+    /**
+     * <p>A strategy to decide whether a field that could be indexed is added to
+     * the dynamic table.</p>
+     * <p>Indexing a field costs the encoding of the literal field plus space in the
+     * dynamic table, that may evict other entries, and pays back only if the same
+     * field is encoded again on the same connection.</p>
+     * <p>Implementations are used by a single encoder, so they are not required to
+     * be thread safe, and may keep per connection state.</p>
+     */
+    public interface IndexingStrategy
+    {
+        /**
+         * <p>Indexes all the fields that could be indexed.</p>
+         */
+        IndexingStrategy ALWAYS = field -> true;
+
+        /**
+         * @param field the field not found in the dynamic table
+         * @return whether the field should be added to the dynamic table
+         */
+        boolean isIndexable(HttpField field);
+    }
+
+    /**
+     * <p>An {@link IndexingStrategy} that indexes only the fields that have been
+     * encoded more than a given number of times, so that fields that change at
+     * every request, such as request ids or tokens, do not evict from the dynamic
+     * table the fields that are repeated.</p>
+     * <p>The occurrences of at most {@code maxTrackedFields} fields are tracked,
+     * after which the tracking starts over.</p>
+     */
+    public static class FrequencyIndexingStrategy implements IndexingStrategy
+    {
+        private final Map<HttpField, int[]> _occurrences = new HashMap<>();
+        private final int _threshold;
+        private final int _maxTrackedFields;
+
+        public FrequencyIndexingStrategy(int threshold)
+        {
+            this(threshold, 256);
+        }
+
+        /**
+         * @param threshold the number of times a field must have been encoded before it is indexed
+         * @param maxTrackedFields the max number of fields whose occurrences are tracked
+         */
+        public FrequencyIndexingStrategy(int threshold, int maxTrackedFields)
+        {
+            _threshold = threshold;
+            _maxTrackedFields = maxTrackedFields;
+        }
+
+        public int getThreshold()
+        {
+            return _threshold;
+        }
+
+        @Override
+        public boolean isIndexable(HttpField field)
+        {
+            if (_threshold <= 0)
+                return true;
+            int[] occurrences = _occurrences.get(field);
+            if (occurrences == null)
+            {
+                if (_occurrences.size() >= _maxTrackedFields)
+                    _occurrences.clear();
+                _occurrences.put(field, new int[]{1});
+                return false;
+            }
+            if (++occurrences[0] > _threshold)
+            {
+                _occurrences.remove(field);
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%x[threshold=%d,tracked=%d]", getClass().getSimpleName(), hashCode(), _threshold, _occurrences.size());
+        }
+    }
 }
@@ -450,4 +450,34 @@ public class HpackContextTest
         assertEquals("Wibble", ctx.get("wibble").getHttpField().getName());
         assertEquals("Wibble", ctx.get("Wibble").getHttpField().getName());
     }
+
+    @Test
+    public void testDynamicIndexConsistentWithTable()
+    {
+        // Small table, so that entries are continuously evicted.
+        HpackContext ctx = new HpackContext(1024);
+        for (int i = 0; i < 10_000; i++)
+        {
+            // Repeated names and values, so that the index holds entries with the same key.
+            ctx.add(new HttpField("name" + (i % 37), "value" + (i % 11)));
+            if (i % 13 == 0)
+                ctx.add(new HttpField("Name" + (i % 37), "value" + (i % 11)));
+
+            int size = ctx.size();
+            for (int index = HpackContext.STATIC_SIZE + 1; index <= HpackContext.STATIC_SIZE + size; index++)
+            {
+                Entry entry = ctx.get(index);
+                HttpField field = entry.getHttpField();
+                Entry byField = ctx.get(field);
+                Entry byName = ctx.get(field.getName().toUpperCase());
+                assertNotNull(byField);
+                assertNotNull(byName);
+                // The most recent entry, with the lowest index, is found.
+                assertTrue(ctx.index(byField) <= index);
+                assertTrue(ctx.index(byName) <= index);
+            }
+        }
+        assertNull(ctx.get(new HttpField("name0", "unknown")));
+        assertNull(ctx.get("unknown"));
+    }
 }
@@ -311,4 +311,56 @@ public class HpackEncoderTest
         assertThat(context.getMaxDynamicTableSize(), Matchers.is(50));
         assertThat(context.size(), Matchers.is(1));
     }
+
+    @Test
+    public void testFrequencyIndexingStrategy()
+    {
+        HpackEncoder encoder = new HpackEncoder();
+        encoder.setIndexingStrategy(new HpackEncoder.FrequencyIndexingStrategy(2));
+        HpackContext ctx = encoder.getHpackContext();
+
+        ByteBuffer buffer = BufferUtil.allocate(4096);
+        for (int i = 0; i < 3; i++)
+        {
+            BufferUtil.clearToFill(buffer);
+            encoder.encode(buffer, new HttpField("X-Request-Id", "id" + i));
+            encoder.encode(buffer, new HttpField(HttpHeader.SERVER, "jetty"));
+            encoder.encode(buffer, new HttpField("X-Custom", "custom"));
+            BufferUtil.flipToFlush(buffer, 0);
+            // The repeated fields are indexed only the third time they are encoded.
+            assertEquals(i < 2 ? 0 : 2, ctx.size());
+        }
+        assertThat(ctx.get(new HttpField(HttpHeader.SERVER, "jetty")), Matchers.notNullValue());
+        assertThat(ctx.get(new HttpField("X-Custom", "custom")), Matchers.notNullValue());
+
+        // Indexed fields are encoded with their index.
+        BufferUtil.clearToFill(buffer);
+        encoder.encode(buffer, new HttpField(HttpHeader.SERVER, "jetty"));
+        BufferUtil.flipToFlush(buffer, 0);
+        assertEquals(1, buffer.remaining());
+    }
+
+    @Test
+    public void testHuffmanNotLargerThanLiteral() throws Exception
+    {
+        // A value whose huffman coding is larger than its literal.
+        String value = "{}|~^`\\<>[]{}|~^`\\<>[]";
+        assertThat(Huffman.octetsNeeded(value), Matchers.greaterThan(value.length()));
+
+        ByteBuffer buffer = BufferUtil.allocate(4096);
+        int pos = BufferUtil.flipToFill(buffer);
+        HpackEncoder.encodeValue(buffer, true, value);
+        BufferUtil.flipToFlush(buffer, pos);
+        // Literal value with a 1 octet length.
+        assertEquals(1 + value.length(), buffer.remaining());
+        assertEquals(0, buffer.get(0) & 0x80);
+
+        HttpFields fields = new HttpFields();
+        fields.add("X-Token", value);
+        BufferUtil.clearToFill(buffer);
+        new HpackEncoder().encode(buffer, new MetaData(HttpVersion.HTTP_2, fields));
+        BufferUtil.flipToFlush(buffer, 0);
+        MetaData decoded = new HpackDecoder(4096, 8192).decode(buffer);
+        assertEquals(value, decoded.getFields().get("X-Token"));
+    }
 }
@@ -28,5 +28,17 @@ etc/jetty-http2c.xml
 ## The max number of keys in all SETTINGS frames
 # jetty.http2.maxSettingsKeys=64
 
+## The size of the buffers small frames are coalesced into before writing (0 to not coalesce)
+# jetty.http2c.writeCoalesceSize=0
+
+## The max delay in microseconds of writes smaller than the write coalesce size (0 to not delay)
+# jetty.http2c.writeCoalesceDelay=0
+
+## Whether the DATA frames of the streams are sent in priority order
+# jetty.http2c.prioritizeStreams=false
+
+## The number of times a header must be sent on a connection before it is HPACK indexed
+# jetty.http2c.hpackIndexingThreshold=0
+
 ## Max number of bad frames and pings per second
 # jetty.http2.rateControl.maxEventsPerSecond=20
@@ -34,6 +34,7 @@ import org.eclipse.jetty.http2.api.server.ServerSessionListener;
 import org.eclipse.jetty.http2.frames.Frame;
 import org.eclipse.jetty.http2.frames.SettingsFrame;
 import org.eclipse.jetty.http2.generator.Generator;
+import org.eclipse.jetty.http2.hpack.HpackEncoder;
 import org.eclipse.jetty.http2.parser.RateControl;
 import org.eclipse.jetty.http2.parser.ServerParser;
 import org.eclipse.jetty.http2.parser.WindowRateControl;
@@ -63,6 +64,10 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
     private RateControl.Factory rateControlFactory = new WindowRateControl.Factory(20);
     private FlowControlStrategy.Factory flowControlStrategyFactory = () -> new BufferingFlowControlStrategy(0.5F);
     private long streamIdleTimeout;
+    private int writeCoalesceSize;
+    private long writeCoalesceDelay;
+    private boolean prioritizeStreams;
+    private int hpackIndexingThreshold;
 
     public AbstractHTTP2ServerConnectionFactory(@Name("config") HttpConfiguration httpConfiguration)
     {
@@ -181,6 +186,67 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
         this.maxSettingsKeys = maxSettingsKeys;
     }
 
+    @ManagedAttribute("The size of the buffers small frames are coalesced into before writing, or 0 to not coalesce")
+    public int getWriteCoalesceSize()
+    {
+        return writeCoalesceSize;
+    }
+
+    /**
+     * @param writeCoalesceSize the size of the buffers small frames are coalesced into before writing, or 0 to not coalesce
+     * @see org.eclipse.jetty.http2.HTTP2Session#setWriteCoalesceSize(int)
+     */
+    public void setWriteCoalesceSize(int writeCoalesceSize)
+    {
+        this.writeCoalesceSize = writeCoalesceSize;
+    }
+
+    @ManagedAttribute("The max delay in microseconds of writes smaller than the write coalesce size")
+    public long getWriteCoalesceDelay()
+    {
+        return writeCoalesceDelay;
+    }
+
+    /**
+     * @param writeCoalesceDelay the max delay in microseconds of writes smaller than the write coalesce size, or 0 to not delay writes
+     * @see org.eclipse.jetty.http2.HTTP2Session#setWriteCoalesceDelay(long)
+     */
+    public void setWriteCoalesceDelay(long writeCoalesceDelay)
+    {
+        this.writeCoalesceDelay = writeCoalesceDelay;
+    }
+
+    @ManagedAttribute("The number of times a header must be sent before it is HPACK indexed")
+    public int getHpackIndexingThreshold()
+    {
+        return hpackIndexingThreshold;
+    }
+
+    /**
+     * @param hpackIndexingThreshold the number of times a header must be sent on a connection
+     * before it is added to the HPACK dynamic table, or 0 to index headers the first time they are sent
+     * @see HpackEncoder.FrequencyIndexingStrategy
+     */
+    public void setHpackIndexingThreshold(int hpackIndexingThreshold)
+    {
+        this.hpackIndexingThreshold = hpackIndexingThreshold;
+    }
+
+    @ManagedAttribute("Whether the DATA frames of the streams are sent in priority order")
+    public boolean isPrioritizeStreams()
+    {
+        return prioritizeStreams;
+    }
+
+    /**
+     * @param prioritizeStreams whether the DATA frames of the streams are sent in priority order
+     * @see org.eclipse.jetty.http2.HTTP2Session#setPrioritizeStreams(boolean)
+     */
+    public void setPrioritizeStreams(boolean prioritizeStreams)
+    {
+        this.prioritizeStreams = prioritizeStreams;
+    }
+
     /**
      * @return null
      * @deprecated use {@link #getRateControlFactory()} instead
@@ -268,6 +334,9 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
         ServerSessionListener listener = newSessionListener(connector, endPoint);
 
         Generator generator = new Generator(connector.getByteBufferPool(), getMaxDynamicTableSize(), getMaxHeaderBlockFragment());
+        int hpackIndexingThreshold = getHpackIndexingThreshold();
+        if (hpackIndexingThreshold > 0)
+            generator.setHpackIndexingStrategy(new HpackEncoder.FrequencyIndexingStrategy(hpackIndexingThreshold));
         FlowControlStrategy flowControl = getFlowControlStrategyFactory().newFlowControlStrategy();
         HTTP2ServerSession session = new HTTP2ServerSession(connector.getScheduler(), endPoint, generator, listener, flowControl);
         session.setMaxLocalStreams(getMaxConcurrentStreams());
@@ -282,6 +351,9 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
         session.setStreamIdleTimeout(streamIdleTimeout);
         session.setInitialSessionRecvWindow(getInitialSessionRecvWindow());
         session.setWriteThreshold(getHttpConfiguration().getOutputBufferSize());
+        session.setWriteCoalesceSize(getWriteCoalesceSize());
+        session.setWriteCoalesceDelay(getWriteCoalesceDelay());
+        session.setPrioritizeStreams(isPrioritizeStreams());
 
         ServerParser parser = newServerParser(connector, session, getRateControlFactory().newRateControl(endPoint));
         parser.setMaxFrameLength(getMaxFrameLength());
@@ -107,6 +107,7 @@ public class HTTP2ServerSession extends HTTP2Session implements ServerParser.Lis
                     if (stream != null)
                     {
                         onStreamOpened(stream);
+                        updatePriority(stream, frame);
                         stream.process(frame, Callback.NOOP);
                         Stream.Listener listener = notifyNewStream(stream, frame);
                         stream.setListener(listener);
@@ -18,14 +18,12 @@
 
 package org.eclipse.jetty.session.infinispan;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
 import java.util.Map;
 
+import org.eclipse.jetty.server.session.JavaSessionDataCodec;
 import org.eclipse.jetty.server.session.SessionData;
-import org.eclipse.jetty.util.ClassLoadingObjectInputStream;
+import org.eclipse.jetty.server.session.SessionDataCodec;
 import org.infinispan.commons.marshall.SerializeWith;
 
 /**
@@ -42,6 +40,7 @@ import org.infinispan.commons.marshall.SerializeWith;
 public class InfinispanSessionData extends SessionData
 {
     protected byte[] _serializedAttributes;
+    protected transient SessionDataCodec _codec;
 
     public InfinispanSessionData(String id, String cpath, String vhost, long created, long accessed, long lastAccessed, long maxInactiveMs)
     {
@@ -64,26 +63,30 @@ public class InfinispanSessionData extends SessionData
         _serializedAttributes = serializedAttributes;
     }
 
+    public SessionDataCodec getSessionDataCodec()
+    {
+        return _codec == null ? new JavaSessionDataCodec() : _codec;
+    }
+
+    /**
+     * @param codec the codec of the serialized attributes, by default a {@link JavaSessionDataCodec}
+     */
+    public void setSessionDataCodec(SessionDataCodec codec)
+    {
+        _codec = codec;
+    }
+
     public void deserializeAttributes() throws ClassNotFoundException, IOException
     {
         if (_serializedAttributes == null)
             return;
 
-        try (ByteArrayInputStream bais = new ByteArrayInputStream(_serializedAttributes);
-             ClassLoadingObjectInputStream ois = new ClassLoadingObjectInputStream(bais))
-        {
-            SessionData.deserializeAttributes(this, ois);
-            _serializedAttributes = null;
-        }
+        getSessionDataCodec().decodeAttributes(this, _serializedAttributes);
+        _serializedAttributes = null;
     }
 
     public void serializeAttributes() throws IOException
     {
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-             ObjectOutputStream oos = new ObjectOutputStream(baos))
-        {
-            SessionData.serializeAttributes(this, oos);
-            _serializedAttributes = baos.toByteArray();
-        }
+        _serializedAttributes = getSessionDataCodec().encodeAttributes(this);
     }
 }
\ No newline at end of file
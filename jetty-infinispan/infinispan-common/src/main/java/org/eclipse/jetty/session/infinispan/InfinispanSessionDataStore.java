@@ -115,6 +115,8 @@ public class InfinispanSessionDataStore extends AbstractSessionDataStore
                 LOG.debug("Loading session {} from infinispan", id);
 
             InfinispanSessionData sd = (InfinispanSessionData)_cache.get(getCacheKey(id));
+            if (sd != null)
+                sd.setSessionDataCodec(_codec);
             if (isPassivating() && sd != null)
             {
                 if (LOG.isDebugEnabled())
@@ -306,7 +308,9 @@ public class InfinispanSessionDataStore extends AbstractSessionDataStore
     @Override
     public SessionData newSessionData(String id, long created, long accessed, long lastAccessed, long maxInactiveMs)
     {
-        return new InfinispanSessionData(id, _context.getCanonicalContextPath(), _context.getVhost(), created, accessed, lastAccessed, maxInactiveMs);
+        InfinispanSessionData data = new InfinispanSessionData(id, _context.getCanonicalContextPath(), _context.getVhost(), created, accessed, lastAccessed, maxInactiveMs);
+        data.setSessionDataCodec(_codec);
+        return data;
     }
 
     /**
@@ -60,6 +60,7 @@ public class InfinispanSessionDataStoreFactory extends AbstractSessionDataStoreF
         store.setInfinispanIdleTimeoutSec(getInfinispanIdleTimeoutSec());
         store.setCache(getCache());
         store.setSavePeriodSec(getSavePeriodSec());
+        store.setSessionDataCodec(getSessionDataCodec());
         store.setQueryManager(getQueryManager());
         return store;
     }
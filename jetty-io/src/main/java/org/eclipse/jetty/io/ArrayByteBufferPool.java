@@ -108,17 +108,60 @@ public class ArrayByteBufferPool extends AbstractByteBufferPool
     @Override
     public ByteBuffer acquire(int size, boolean direct)
     {
-        int capacity = size < _minCapacity ? size : (bucketFor(size) + 1) * getCapacityFactor();
+        ByteBuffer buffer = acquireFromBucket(size, direct);
+        if (buffer == null)
+            return newByteBuffer(capacityFor(size), direct);
+        return buffer;
+    }
+
+    /**
+     * <p>Acquires a ByteBuffer from the shared bucket for the given size.</p>
+     *
+     * @param size the size of the buffer
+     * @param direct whether the buffer must be direct or not
+     * @return a pooled buffer, or null if the bucket is empty or the size is not pooled
+     */
+    ByteBuffer acquireFromBucket(int size, boolean direct)
+    {
         ByteBufferPool.Bucket bucket = bucketFor(size, direct, null);
         if (bucket == null)
-            return newByteBuffer(capacity, direct);
+            return null;
         ByteBuffer buffer = bucket.acquire();
-        if (buffer == null)
-            return newByteBuffer(capacity, direct);
-        decrementMemory(buffer);
+        if (buffer != null)
+            decrementMemory(buffer);
         return buffer;
     }
 
+    /**
+     * @param size the size of the buffer
+     * @return the capacity of a buffer allocated by this pool for the given size
+     */
+    int capacityFor(int size)
+    {
+        return size < _minCapacity ? size : (bucketFor(size) + 1) * getCapacityFactor();
+    }
+
+    /**
+     * @param capacity the capacity of a buffer
+     * @return the index of the bucket that pools buffers of the given capacity,
+     * or -1 if buffers of the given capacity are not pooled
+     */
+    int bucketIndexFor(int capacity)
+    {
+        if (capacity <= 0 || capacity < _minCapacity || (capacity % getCapacityFactor()) != 0)
+            return -1;
+        int b = bucketFor(capacity);
+        return b < _direct.length ? b : -1;
+    }
+
+    /**
+     * @return the number of buckets for each of direct and heap buffers
+     */
+    int getBucketCount()
+    {
+        return _direct.length;
+    }
+
     @Override
     public void release(ByteBuffer buffer)
     {
@@ -229,6 +229,19 @@ public interface ByteBufferPool
             }
         }
 
+        /**
+         * <p>Removes the least recently released ByteBuffer from this bucket.</p>
+         *
+         * @return the removed ByteBuffer, or null if this bucket is empty
+         */
+        ByteBuffer evict()
+        {
+            ByteBuffer buffer = _queue.pollLast();
+            if (buffer != null && _size != null)
+                _size.decrementAndGet();
+            return buffer;
+        }
+
         private void queueOffer(ByteBuffer buffer)
         {
             _queue.offerFirst(buffer);
@@ -24,6 +24,7 @@ import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.nio.ByteBuffer;
 import java.nio.channels.CancelledKeyException;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
@@ -291,6 +292,41 @@ public abstract class ChannelEndPoint extends AbstractEndPoint implements Manage
         return true;
     }
 
+    /**
+     * <p>Transfers bytes from the given file directly to the channel of this
+     * endpoint, without copying them through user space buffers where the
+     * operating system supports it (for example, via {@code sendfile()}).</p>
+     * <p>As for {@link #flush(ByteBuffer...)}, this method does not block and
+     * may transfer fewer bytes than requested, possibly none when the network
+     * is congested. Callers should then fall back to {@link #write(org.eclipse.jetty.util.Callback, ByteBuffer...)}
+     * to be notified when the endpoint is writable again.</p>
+     *
+     * @param file the file to transfer bytes from
+     * @param position the position within the file of the first byte to transfer
+     * @param count the max number of bytes to transfer
+     * @return the number of bytes transferred, possibly zero
+     * @throws IOException if the transfer fails
+     */
+    public long transferFrom(FileChannel file, long position, long count) throws IOException
+    {
+        long transferred;
+        try
+        {
+            transferred = file.transferTo(position, count, _channel);
+            if (LOG.isDebugEnabled())
+                LOG.debug("transferred {}/{} {}", transferred, count, this);
+        }
+        catch (IOException e)
+        {
+            throw new EofException(e);
+        }
+
+        if (transferred > 0)
+            notIdle();
+
+        return transferred;
+    }
+
     public SocketChannel getChannel()
     {
         return _channel;
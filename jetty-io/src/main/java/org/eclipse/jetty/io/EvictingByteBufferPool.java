@@ -0,0 +1,544 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.eclipse.jetty.util.component.DumpableCollection;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
+import org.eclipse.jetty.util.thread.Scheduler;
+
+/**
+ * <p>A ByteBuffer pool that tracks the memory retained by each bucket and
+ * proactively evicts idle ByteBuffers.</p>
+ * <p>ByteBuffers are held in buckets whose capacities are multiples of a
+ * capacity {@code factor}, like {@link ArrayByteBufferPool}, but:</p>
+ * <ul>
+ * <li>{@code maxHeapMemory} and {@code maxDirectMemory} are hard ceilings:
+ * a released ByteBuffer that would make the pool exceed them is discarded,
+ * so that the retained memory never spikes above the configured values;</li>
+ * <li>every {@link #getEvictionPeriod() eviction period} the buffers that
+ * have not been needed during the whole period are evicted, starting
+ * from the least recently released;</li>
+ * <li>all retained buffers can be evicted at once via {@link #shrink()},
+ * for example when the server is low on resources.</li>
+ * </ul>
+ * <p>The retained, in-use and evicted bytes are reported as JMX attributes.</p>
+ */
+@ManagedObject
+public class EvictingByteBufferPool extends ContainerLifeCycle implements ByteBufferPool
+{
+    private static final Logger LOG = Log.getLogger(EvictingByteBufferPool.class);
+
+    private final int _factor;
+    private final int _minCapacity;
+    private final int _maxQueueLength;
+    private final long _maxHeapMemory;
+    private final long _maxDirectMemory;
+    private final AgingBucket[] _direct;
+    private final AgingBucket[] _indirect;
+    private final AtomicLong _heapMemory = new AtomicLong();
+    private final AtomicLong _directMemory = new AtomicLong();
+    private final LongAdder _heapInUse = new LongAdder();
+    private final LongAdder _directInUse = new LongAdder();
+    private final LongAdder _heapEvicted = new LongAdder();
+    private final LongAdder _directEvicted = new LongAdder();
+    private final Runnable _evictor = new Evictor();
+    private Scheduler _scheduler;
+    private long _evictionPeriod = 30000;
+
+    /**
+     * Creates a new EvictingByteBufferPool with a default configuration.
+     */
+    public EvictingByteBufferPool()
+    {
+        this(-1, -1, -1, -1, -1, -1);
+    }
+
+    /**
+     * Creates a new EvictingByteBufferPool with the given configuration.
+     *
+     * @param minCapacity the minimum ByteBuffer capacity
+     * @param factor the capacity factor
+     * @param maxCapacity the maximum ByteBuffer capacity
+     * @param maxQueueLength the maximum ByteBuffer queue length
+     * @param maxHeapMemory the max heap memory in bytes
+     * @param maxDirectMemory the max direct memory in bytes
+     */
+    public EvictingByteBufferPool(int minCapacity, int factor, int maxCapacity, int maxQueueLength, long maxHeapMemory, long maxDirectMemory)
+    {
+        _factor = factor <= 0 ? 1024 : factor;
+        if (minCapacity <= 0)
+            minCapacity = 0;
+        if (maxCapacity <= 0)
+            maxCapacity = 64 * 1024;
+        if ((maxCapacity % _factor) != 0 || _factor >= maxCapacity)
+            throw new IllegalArgumentException("The capacity factor must be a divisor of maxCapacity");
+        _minCapacity = minCapacity;
+        _maxQueueLength = maxQueueLength;
+        _maxHeapMemory = maxHeapMemory;
+        _maxDirectMemory = maxDirectMemory;
+
+        int length = maxCapacity / _factor;
+        _direct = new AgingBucket[length];
+        _indirect = new AgingBucket[length];
+        for (int i = 0; i < length; ++i)
+        {
+            _direct[i] = new AgingBucket((i + 1) * _factor);
+            _indirect[i] = new AgingBucket((i + 1) * _factor);
+        }
+    }
+
+    /**
+     * @return the Scheduler used to evict idle buffers
+     */
+    public Scheduler getScheduler()
+    {
+        return _scheduler;
+    }
+
+    /**
+     * @param scheduler the Scheduler used to evict idle buffers, or null to use a private one
+     */
+    public void setScheduler(Scheduler scheduler)
+    {
+        if (isRunning())
+            throw new IllegalStateException(getState());
+        updateBean(_scheduler, scheduler);
+        _scheduler = scheduler;
+    }
+
+    @ManagedAttribute("The period in ms after which buffers not needed during the period are evicted")
+    public long getEvictionPeriod()
+    {
+        return _evictionPeriod;
+    }
+
+    /**
+     * @param evictionPeriod the period in ms after which buffers not needed during the period
+     * are evicted, or a non-positive value to disable the periodic eviction
+     */
+    public void setEvictionPeriod(long evictionPeriod)
+    {
+        _evictionPeriod = evictionPeriod;
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        if (_scheduler == null)
+        {
+            _scheduler = new ScheduledExecutorScheduler(String.format("ByteBufferPool-Evictor@%x", hashCode()), true);
+            addBean(_scheduler, true);
+        }
+        super.doStart();
+        if (_evictionPeriod > 0)
+            _scheduler.schedule(_evictor, _evictionPeriod, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        super.doStop();
+        clear();
+    }
+
+    @Override
+    public ByteBuffer acquire(int size, boolean direct)
+    {
+        int capacity = size < _minCapacity ? size : (indexFor(size) + 1) * _factor;
+        AgingBucket bucket = bucketFor(size, direct);
+        if (bucket == null)
+            return newByteBuffer(capacity, direct);
+        inUseFor(direct).add(capacity);
+        ByteBuffer buffer = bucket.acquire();
+        if (buffer == null)
+            return newByteBuffer(capacity, direct);
+        memoryFor(direct).addAndGet(-capacity);
+        return buffer;
+    }
+
+    @Override
+    public void release(ByteBuffer buffer)
+    {
+        if (buffer == null)
+            return;
+
+        int capacity = buffer.capacity();
+        // Validate that this buffer is from this pool.
+        if ((capacity % _factor) != 0)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("ByteBuffer {} does not belong to this pool, discarding it", BufferUtil.toDetailString(buffer));
+            return;
+        }
+
+        boolean direct = buffer.isDirect();
+        AgingBucket bucket = bucketFor(capacity, direct);
+        if (bucket == null)
+            return;
+
+        inUseFor(direct).add(-capacity);
+        if (!reserve(direct, capacity))
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("ByteBuffer {} exceeds the max memory of this pool, discarding it", BufferUtil.toDetailString(buffer));
+            evictedFor(direct).add(capacity);
+            return;
+        }
+
+        if (!bucket.offer(buffer))
+            memoryFor(direct).addAndGet(-capacity);
+    }
+
+    private boolean reserve(boolean direct, int capacity)
+    {
+        long maxMemory = direct ? _maxDirectMemory : _maxHeapMemory;
+        AtomicLong memory = memoryFor(direct);
+        while (true)
+        {
+            long current = memory.get();
+            long update = current + capacity;
+            if (maxMemory > 0 && update > maxMemory)
+                return false;
+            if (memory.compareAndSet(current, update))
+                return true;
+        }
+    }
+
+    /**
+     * <p>Evicts the buffers that have not been needed since the previous call to this method.</p>
+     */
+    @ManagedOperation(value = "Evicts the buffers not needed during the last eviction period", impact = "ACTION")
+    public void evictIdle()
+    {
+        for (AgingBucket bucket : _direct)
+        {
+            evictIdle(bucket, true);
+        }
+        for (AgingBucket bucket : _indirect)
+        {
+            evictIdle(bucket, false);
+        }
+    }
+
+    /**
+     * <p>Evicts all the retained buffers, for example to react to low resources.</p>
+     */
+    @ManagedOperation(value = "Evicts all the retained buffers", impact = "ACTION")
+    public void shrink()
+    {
+        for (AgingBucket bucket : _direct)
+        {
+            evict(bucket, true, Integer.MAX_VALUE);
+        }
+        for (AgingBucket bucket : _indirect)
+        {
+            evict(bucket, false, Integer.MAX_VALUE);
+        }
+    }
+
+    private void evictIdle(AgingBucket bucket, boolean direct)
+    {
+        // Only reset the low watermark after the eviction, so that the
+        // next period starts from the buffers that were actually retained.
+        evict(bucket, direct, bucket.getLowWatermark());
+        bucket.resetLowWatermark();
+    }
+
+    private void evict(AgingBucket bucket, boolean direct, int count)
+    {
+        int evicted = bucket.evict(count);
+        if (evicted > 0)
+        {
+            long bytes = (long)evicted * bucket._capacity;
+            memoryFor(direct).addAndGet(-bytes);
+            evictedFor(direct).add(bytes);
+            if (LOG.isDebugEnabled())
+                LOG.debug("Evicted {} buffers from {}", evicted, bucket);
+        }
+    }
+
+    @ManagedOperation(value = "Clears this ByteBufferPool", impact = "ACTION")
+    public void clear()
+    {
+        for (int i = 0; i < _direct.length; ++i)
+        {
+            _direct[i].clear();
+            _indirect[i].clear();
+        }
+        _heapMemory.set(0);
+        _directMemory.set(0);
+    }
+
+    private int indexFor(int capacity)
+    {
+        return (capacity - 1) / _factor;
+    }
+
+    private AgingBucket bucketFor(int capacity, boolean direct)
+    {
+        if (capacity <= 0 || capacity < _minCapacity)
+            return null;
+        int b = indexFor(capacity);
+        if (b >= _direct.length)
+            return null;
+        return direct ? _direct[b] : _indirect[b];
+    }
+
+    private AtomicLong memoryFor(boolean direct)
+    {
+        return direct ? _directMemory : _heapMemory;
+    }
+
+    private LongAdder inUseFor(boolean direct)
+    {
+        return direct ? _directInUse : _heapInUse;
+    }
+
+    private LongAdder evictedFor(boolean direct)
+    {
+        return direct ? _directEvicted : _heapEvicted;
+    }
+
+    @ManagedAttribute("The max heap memory in bytes retained by the pool")
+    public long getMaxHeapMemory()
+    {
+        return _maxHeapMemory;
+    }
+
+    @ManagedAttribute("The max direct memory in bytes retained by the pool")
+    public long getMaxDirectMemory()
+    {
+        return _maxDirectMemory;
+    }
+
+    @ManagedAttribute("The bytes retained by heap ByteBuffers")
+    public long getHeapMemory()
+    {
+        return _heapMemory.get();
+    }
+
+    @ManagedAttribute("The bytes retained by direct ByteBuffers")
+    public long getDirectMemory()
+    {
+        return _directMemory.get();
+    }
+
+    @ManagedAttribute("The bytes of heap ByteBuffers acquired and not yet released")
+    public long getHeapMemoryInUse()
+    {
+        return _heapInUse.sum();
+    }
+
+    @ManagedAttribute("The bytes of direct ByteBuffers acquired and not yet released")
+    public long getDirectMemoryInUse()
+    {
+        return _directInUse.sum();
+    }
+
+    @ManagedAttribute("The bytes of heap ByteBuffers evicted or discarded by the pool")
+    public long getHeapMemoryEvicted()
+    {
+        return _heapEvicted.sum();
+    }
+
+    @ManagedAttribute("The bytes of direct ByteBuffers evicted or discarded by the pool")
+    public long getDirectMemoryEvicted()
+    {
+        return _directEvicted.sum();
+    }
+
+    @ManagedAttribute("The number of pooled heap ByteBuffers")
+    public long getHeapByteBufferCount()
+    {
+        return getByteBufferCount(false);
+    }
+
+    @ManagedAttribute("The number of pooled direct ByteBuffers")
+    public long getDirectByteBufferCount()
+    {
+        return getByteBufferCount(true);
+    }
+
+    private long getByteBufferCount(boolean direct)
+    {
+        return Arrays.stream(direct ? _direct : _indirect)
+            .mapToLong(AgingBucket::getCount)
+            .sum();
+    }
+
+    // Package local for testing
+    ByteBufferPool.Bucket[] bucketsFor(boolean direct)
+    {
+        return direct ? _direct : _indirect;
+    }
+
+    @Override
+    public void dump(Appendable out, String indent) throws IOException
+    {
+        dumpObjects(out, indent,
+            new DumpableCollection("direct", nonEmpty(_direct)),
+            new DumpableCollection("heap", nonEmpty(_indirect)));
+    }
+
+    private static List<AgingBucket> nonEmpty(AgingBucket[] buckets)
+    {
+        return Arrays.stream(buckets)
+            .filter(Objects::nonNull)
+            .filter(bucket -> bucket.getCount() > 0)
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{%s,heap=%d/%d,direct=%d/%d}",
+            getClass().getSimpleName(),
+            hashCode(),
+            getState(),
+            getHeapMemory(),
+            _maxHeapMemory,
+            getDirectMemory(),
+            _maxDirectMemory);
+    }
+
+    private class Evictor implements Runnable
+    {
+        @Override
+        public void run()
+        {
+            try
+            {
+                evictIdle();
+            }
+            finally
+            {
+                if (isRunning() && _evictionPeriod > 0)
+                    _scheduler.schedule(this, _evictionPeriod, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * <p>A bucket that counts its buffers and records the minimum
+     * number of buffers it held since the last eviction.</p>
+     */
+    private class AgingBucket extends ByteBufferPool.Bucket
+    {
+        private final AtomicInteger _count = new AtomicInteger();
+        private final AtomicInteger _lowWatermark = new AtomicInteger();
+        private final int _capacity;
+
+        private AgingBucket(int capacity)
+        {
+            super(EvictingByteBufferPool.this, capacity, 0);
+            _capacity = capacity;
+        }
+
+        @Override
+        public ByteBuffer acquire()
+        {
+            ByteBuffer buffer = super.acquire();
+            if (buffer != null)
+            {
+                int count = _count.decrementAndGet();
+                while (true)
+                {
+                    int lowWatermark = _lowWatermark.get();
+                    if (count >= lowWatermark || _lowWatermark.compareAndSet(lowWatermark, count))
+                        break;
+                }
+            }
+            return buffer;
+        }
+
+        private boolean offer(ByteBuffer buffer)
+        {
+            if (_count.incrementAndGet() > _maxQueueLength && _maxQueueLength > 0)
+            {
+                _count.decrementAndGet();
+                return false;
+            }
+            super.release(buffer);
+            return true;
+        }
+
+        /**
+         * @return the minimum number of buffers held since the low watermark was reset
+         */
+        private int getLowWatermark()
+        {
+            return Math.max(0, _lowWatermark.get());
+        }
+
+        private void resetLowWatermark()
+        {
+            _lowWatermark.set(_count.get());
+        }
+
+        private int evict(int count)
+        {
+            int evicted = 0;
+            while (evicted < count)
+            {
+                if (evict() == null)
+                    break;
+                _count.decrementAndGet();
+                ++evicted;
+            }
+            return evicted;
+        }
+
+        @Override
+        public void clear()
+        {
+            evict(Integer.MAX_VALUE);
+            _lowWatermark.set(0);
+        }
+
+        private int getCount()
+        {
+            return Math.max(0, _count.get());
+        }
+
+        @Override
+        public String toString()
+        {
+            int count = getCount();
+            return String.format("%s@%x{capacity=%d,count=%d,retained=%d}", getClass().getSimpleName(), hashCode(), _capacity, count, (long)count * _capacity);
+        }
+    }
+}
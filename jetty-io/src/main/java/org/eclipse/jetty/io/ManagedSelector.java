@@ -50,6 +50,7 @@ import org.eclipse.jetty.util.component.DumpableCollection;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
 import org.eclipse.jetty.util.thread.ExecutionStrategy;
+import org.eclipse.jetty.util.thread.Invocable;
 import org.eclipse.jetty.util.thread.Scheduler;
 import org.eclipse.jetty.util.thread.strategy.EatWhatYouKill;
 
@@ -86,6 +87,8 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
     private Selector _selector;
     private Deque<SelectorUpdate> _updates = new ArrayDeque<>();
     private Deque<SelectorUpdate> _updateable = new ArrayDeque<>();
+    private final SelectorStatistics _statistics = new SelectorStatistics();
+    private long _wakeupNanos;
 
     public ManagedSelector(SelectorManager selectorManager, int id)
     {
@@ -95,6 +98,8 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
         Executor executor = selectorManager.getExecutor();
         _strategy = new EatWhatYouKill(producer, executor);
         addBean(_strategy, true);
+        _statistics.setEnabled(selectorManager.isStatisticsEnabled());
+        addBean(_statistics);
         setStopTimeout(5000);
     }
 
@@ -103,6 +108,14 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
         return _selector;
     }
 
+    /**
+     * @return the statistics of the select loop, recorded only when enabled
+     */
+    public SelectorStatistics getStatistics()
+    {
+        return _statistics;
+    }
+
     @Override
     protected void doStart() throws Exception
     {
@@ -261,6 +274,7 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
                 selector = _selector;
                 // To avoid the extra select wakeup.
                 _selecting = false;
+                onWakeup();
             }
         }
 
@@ -284,6 +298,7 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
             {
                 selector = _selector;
                 _selecting = false;
+                onWakeup();
             }
         }
 
@@ -291,6 +306,13 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
             selector.wakeup();
     }
 
+    private void onWakeup()
+    {
+        // Called with the lock held, records only the first wakeup request.
+        if (_wakeupNanos == 0 && _statistics.isEnabled())
+            _wakeupNanos = System.nanoTime();
+    }
+
     private void execute(Runnable task)
     {
         try
@@ -492,6 +514,7 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
     {
         private Set<SelectionKey> _keys = Collections.emptySet();
         private Iterator<SelectionKey> _cursor = Collections.emptyIterator();
+        private long _selectedNanos;
 
         @Override
         public Runnable produce()
@@ -523,6 +546,8 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
             if (LOG.isDebugEnabled())
                 LOG.debug("updateable {}", _updateable.size());
 
+            boolean statistics = _statistics.isEnabled() && !_updateable.isEmpty();
+            long begin = statistics ? System.nanoTime() : 0;
             for (SelectorUpdate update : _updateable)
             {
                 if (_selector == null)
@@ -539,6 +564,8 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
                 }
             }
             _updateable.clear();
+            if (statistics)
+                _statistics.onUpdated(System.nanoTime() - begin);
 
             Selector selector;
             int updates;
@@ -547,6 +574,8 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
                 updates = _updates.size();
                 _selecting = updates == 0;
                 selector = _selecting ? null : _selector;
+                if (selector != null)
+                    onWakeup();
             }
 
             if (LOG.isDebugEnabled())
@@ -569,6 +598,8 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
                 {
                     if (LOG.isDebugEnabled())
                         LOG.debug("Selector {} waiting with {} keys", selector, selector.keys().size());
+                    boolean statistics = _statistics.isEnabled();
+                    long begin = statistics ? System.nanoTime() : 0;
                     int selected = ManagedSelector.this.select(selector);
                     // The selector may have been recreated.
                     selector = _selector;
@@ -578,14 +609,24 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
                             LOG.debug("Selector {} woken up from select, {}/{}/{} selected", selector, selected, selector.selectedKeys().size(), selector.keys().size());
 
                         int updates;
+                        long wakeupNanos;
                         synchronized (ManagedSelector.this)
                         {
                             // finished selecting
                             _selecting = false;
                             updates = _updates.size();
+                            wakeupNanos = _wakeupNanos;
+                            _wakeupNanos = 0;
                         }
 
                         _keys = selector.selectedKeys();
+                        _selectedNanos = statistics ? System.nanoTime() : 0;
+                        if (statistics)
+                        {
+                            _statistics.onSelected(_selectedNanos - begin, _keys.size());
+                            if (wakeupNanos != 0)
+                                _statistics.onWokenUp(_selectedNanos - wakeupNanos);
+                        }
                         _cursor = _keys.isEmpty() ? Collections.emptyIterator() : _keys.iterator();
                         if (LOG.isDebugEnabled())
                             LOG.debug("Selector {} processing {} keys, {} updates", selector, _keys.size(), updates);
@@ -632,7 +673,7 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
                             // Try to produce a task
                             Runnable task = ((Selectable)attachment).onSelected();
                             if (task != null)
-                                return task;
+                                return _selectedNanos == 0 ? task : new TimedTask(task, _selectedNanos);
                         }
                         else if (key.isConnectable())
                         {
@@ -1069,4 +1110,46 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
             run();
         }
     }
+
+    /**
+     * Wraps a task produced for a selected key to record
+     * the latency between the selection and the execution.
+     */
+    private class TimedTask implements Runnable, Invocable, Closeable
+    {
+        private final Runnable _task;
+        private final long _selectedNanos;
+
+        private TimedTask(Runnable task, long selectedNanos)
+        {
+            _task = task;
+            _selectedNanos = selectedNanos;
+        }
+
+        @Override
+        public void run()
+        {
+            _statistics.onTaskExecuted(System.nanoTime() - _selectedNanos);
+            _task.run();
+        }
+
+        @Override
+        public InvocationType getInvocationType()
+        {
+            return Invocable.getInvocationType(_task);
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            if (_task instanceof Closeable)
+                ((Closeable)_task).close();
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("TimedTask@%x{%s}", hashCode(), _task);
+        }
+    }
 }
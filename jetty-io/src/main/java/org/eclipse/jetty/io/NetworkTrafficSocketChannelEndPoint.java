@@ -21,6 +21,7 @@ package org.eclipse.jetty.io;
 import java.io.IOException;
 import java.net.Socket;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 import java.util.List;
@@ -74,6 +75,14 @@ public class NetworkTrafficSocketChannelEndPoint extends SocketChannelEndPoint
         return flushed;
     }
 
+    @Override
+    public long transferFrom(FileChannel file, long position, long count) throws IOException
+    {
+        // Bytes transferred by the kernel cannot be notified to the
+        // listeners, so force callers to fall back to flush().
+        return 0;
+    }
+
     @Override
     public void onOpen()
     {
@@ -66,6 +66,7 @@ public abstract class SelectorManager extends ContainerLifeCycle implements Dump
     private final IntUnaryOperator _selectorIndexUpdate;
     private final List<AcceptListener> _acceptListeners = new ArrayList<>();
     private long _connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+    private volatile boolean _statisticsEnabled;
     private ThreadPoolBudget.Lease _lease;
 
     private static int defaultSelectors(Executor executor)
@@ -133,6 +134,29 @@ public abstract class SelectorManager extends ContainerLifeCycle implements Dump
         _connectTimeout = milliseconds;
     }
 
+    /**
+     * @return whether the selectors record the statistics of their select loop
+     * @see ManagedSelector#getStatistics()
+     */
+    @ManagedAttribute("Whether the selectors record the statistics of their select loop")
+    public boolean isStatisticsEnabled()
+    {
+        return _statisticsEnabled;
+    }
+
+    /**
+     * @param enabled whether the selectors record the statistics of their select loop
+     */
+    public void setStatisticsEnabled(boolean enabled)
+    {
+        _statisticsEnabled = enabled;
+        for (ManagedSelector selector : _selectors)
+        {
+            if (selector != null)
+                selector.getStatistics().setEnabled(enabled);
+        }
+    }
+
     /**
      * @return -1
      * @deprecated
@@ -0,0 +1,269 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.io;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.component.Dumpable;
+import org.eclipse.jetty.util.statistic.HistogramStatistic;
+
+/**
+ * <p>Statistics of the select loop of a {@link ManagedSelector}, used
+ * to diagnose selector starvation.</p>
+ * <p>The statistics are recorded only when {@link #isEnabled() enabled},
+ * usually via {@link SelectorManager#setStatisticsEnabled(boolean)}.
+ * All the times are recorded in microseconds:</p>
+ * <ul>
+ * <li>the select time is the time the selector was blocked in {@code select()}</li>
+ * <li>the wakeup latency is the time between a wakeup request and the return from {@code select()}</li>
+ * <li>the update time is the time spent applying {@link ManagedSelector.SelectorUpdate}s</li>
+ * <li>the task latency is the time between the return from {@code select()} and the
+ * execution of the tasks produced for the selected keys</li>
+ * </ul>
+ */
+@ManagedObject("The statistics of a ManagedSelector")
+public class SelectorStatistics implements Dumpable
+{
+    private final LongAdder _selects = new LongAdder();
+    private final LongAdder _emptySelects = new LongAdder();
+    private final LongAdder _tasks = new LongAdder();
+    private final HistogramStatistic _selectTime = new HistogramStatistic();
+    private final HistogramStatistic _selectedKeys = new HistogramStatistic();
+    private final HistogramStatistic _wakeupLatency = new HistogramStatistic();
+    private final HistogramStatistic _updateTime = new HistogramStatistic();
+    private final HistogramStatistic _taskLatency = new HistogramStatistic();
+    private volatile boolean _enabled;
+
+    @ManagedAttribute("Whether the statistics are recorded")
+    public boolean isEnabled()
+    {
+        return _enabled;
+    }
+
+    public void setEnabled(boolean enabled)
+    {
+        _enabled = enabled;
+    }
+
+    void onSelected(long selectNanos, int selectedKeys)
+    {
+        _selects.increment();
+        if (selectedKeys == 0)
+            _emptySelects.increment();
+        _selectTime.record(toMicros(selectNanos));
+        _selectedKeys.record(selectedKeys);
+    }
+
+    void onWokenUp(long wakeupNanos)
+    {
+        _wakeupLatency.record(toMicros(wakeupNanos));
+    }
+
+    void onUpdated(long updateNanos)
+    {
+        _updateTime.record(toMicros(updateNanos));
+    }
+
+    void onTaskExecuted(long latencyNanos)
+    {
+        _tasks.increment();
+        _taskLatency.record(toMicros(latencyNanos));
+    }
+
+    private static long toMicros(long nanos)
+    {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    @ManagedAttribute("The number of returns from select()")
+    public long getSelectCount()
+    {
+        return _selects.sum();
+    }
+
+    @ManagedAttribute("The number of returns from select() with no selected keys")
+    public long getEmptySelectCount()
+    {
+        return _emptySelects.sum();
+    }
+
+    @ManagedAttribute("The number of tasks produced for selected keys and executed")
+    public long getTaskCount()
+    {
+        return _tasks.sum();
+    }
+
+    @ManagedAttribute("The estimated 99th percentile of the time in us the selector was blocked in select()")
+    public long getSelectTime99thPercentile()
+    {
+        return _selectTime.getPercentile(99);
+    }
+
+    @ManagedAttribute("The histogram of the time in us the selector was blocked in select()")
+    public String getSelectTimeHistogram()
+    {
+        return _selectTime.toHistogramString();
+    }
+
+    @ManagedAttribute("The max number of keys selected by a select()")
+    public long getSelectedKeysMax()
+    {
+        return _selectedKeys.getMax();
+    }
+
+    @ManagedAttribute("The histogram of the number of keys selected by a select()")
+    public String getSelectedKeysHistogram()
+    {
+        return _selectedKeys.toHistogramString();
+    }
+
+    @ManagedAttribute("The max time in us between a wakeup request and the return from select()")
+    public long getWakeupLatencyMax()
+    {
+        return _wakeupLatency.getMax();
+    }
+
+    @ManagedAttribute("The estimated 99th percentile of the time in us between a wakeup request and the return from select()")
+    public long getWakeupLatency99thPercentile()
+    {
+        return _wakeupLatency.getPercentile(99);
+    }
+
+    @ManagedAttribute("The histogram of the time in us between a wakeup request and the return from select()")
+    public String getWakeupLatencyHistogram()
+    {
+        return _wakeupLatency.toHistogramString();
+    }
+
+    @ManagedAttribute("The max time in us spent applying the selector updates")
+    public long getUpdateTimeMax()
+    {
+        return _updateTime.getMax();
+    }
+
+    @ManagedAttribute("The histogram of the time in us spent applying the selector updates")
+    public String getUpdateTimeHistogram()
+    {
+        return _updateTime.toHistogramString();
+    }
+
+    @ManagedAttribute("The max time in us between the selection of a key and the execution of its task")
+    public long getTaskLatencyMax()
+    {
+        return _taskLatency.getMax();
+    }
+
+    @ManagedAttribute("The estimated 99th percentile of the time in us between the selection of a key and the execution of its task")
+    public long getTaskLatency99thPercentile()
+    {
+        return _taskLatency.getPercentile(99);
+    }
+
+    @ManagedAttribute("The histogram of the time in us between the selection of a key and the execution of its task")
+    public String getTaskLatencyHistogram()
+    {
+        return _taskLatency.toHistogramString();
+    }
+
+    /**
+     * @return the statistics of the time in us the selector was blocked in {@code select()}
+     */
+    public HistogramStatistic getSelectTimeStatistic()
+    {
+        return _selectTime;
+    }
+
+    /**
+     * @return the statistics of the number of keys selected by a {@code select()}
+     */
+    public HistogramStatistic getSelectedKeysStatistic()
+    {
+        return _selectedKeys;
+    }
+
+    /**
+     * @return the statistics of the time in us between a wakeup request and the return from {@code select()}
+     */
+    public HistogramStatistic getWakeupLatencyStatistic()
+    {
+        return _wakeupLatency;
+    }
+
+    /**
+     * @return the statistics of the time in us spent applying the selector updates
+     */
+    public HistogramStatistic getUpdateTimeStatistic()
+    {
+        return _updateTime;
+    }
+
+    /**
+     * @return the statistics of the time in us between the selection of a key and the execution of its task
+     */
+    public HistogramStatistic getTaskLatencyStatistic()
+    {
+        return _taskLatency;
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void reset()
+    {
+        _selects.reset();
+        _emptySelects.reset();
+        _tasks.reset();
+        _selectTime.reset();
+        _selectedKeys.reset();
+        _wakeupLatency.reset();
+        _updateTime.reset();
+        _taskLatency.reset();
+    }
+
+    @Override
+    public void dump(Appendable out, String indent) throws IOException
+    {
+        if (!isEnabled())
+        {
+            Dumpable.dumpObjects(out, indent, this);
+            return;
+        }
+        Dumpable.dumpObjects(out, indent, this,
+            "selectTime=" + _selectTime,
+            "selectedKeys=" + _selectedKeys,
+            "wakeupLatency=" + _wakeupLatency,
+            "updateTime=" + _updateTime,
+            "taskLatency=" + _taskLatency);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{enabled=%b,selects=%d,empty=%d,tasks=%d}",
+            getClass().getSimpleName(),
+            hashCode(),
+            isEnabled(),
+            getSelectCount(),
+            getEmptySelectCount(),
+            getTaskCount());
+    }
+}
@@ -0,0 +1,251 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.io;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+
+/**
+ * <p>An {@link ArrayByteBufferPool} that keeps a small per-thread magazine
+ * of ByteBuffers in front of the shared buckets.</p>
+ * <p>Buffers are acquired from and released to the magazine of the calling
+ * thread without any contention; when the magazine is empty the buffer is
+ * taken from the shared buckets and, if these are empty too, it is allocated.
+ * When the magazine is full, or would retain more than {@link #getMaxThreadMemory()}
+ * bytes, released buffers go back to the shared buckets.</p>
+ * <p>Buffers held in the magazines are not accounted in {@link #getHeapMemory()}
+ * and {@link #getDirectMemory()}, since they are reserved by the owning thread.</p>
+ * <p>Acquisitions are counted as hits when served by the magazine, as steals
+ * when served by the shared buckets (typically with buffers released by other
+ * threads) and as misses when a new buffer had to be allocated.</p>
+ */
+@ManagedObject
+public class ThreadLocalByteBufferPool extends ArrayByteBufferPool
+{
+    private final ThreadLocal<Magazine> _magazines = ThreadLocal.withInitial(Magazine::new);
+    private final AtomicInteger _generation = new AtomicInteger();
+    private final LongAdder _hits = new LongAdder();
+    private final LongAdder _steals = new LongAdder();
+    private final LongAdder _misses = new LongAdder();
+    private final int _magazineSize;
+    private final long _maxThreadMemory;
+
+    /**
+     * Creates a new ThreadLocalByteBufferPool with a default configuration.
+     */
+    public ThreadLocalByteBufferPool()
+    {
+        this(-1, -1, -1);
+    }
+
+    /**
+     * Creates a new ThreadLocalByteBufferPool with the given configuration.
+     *
+     * @param minCapacity the minimum ByteBuffer capacity
+     * @param factor the capacity factor
+     * @param maxCapacity the maximum ByteBuffer capacity
+     */
+    public ThreadLocalByteBufferPool(int minCapacity, int factor, int maxCapacity)
+    {
+        this(minCapacity, factor, maxCapacity, -1, -1, -1, -1, -1);
+    }
+
+    /**
+     * Creates a new ThreadLocalByteBufferPool with the given configuration.
+     *
+     * @param minCapacity the minimum ByteBuffer capacity
+     * @param factor the capacity factor
+     * @param maxCapacity the maximum ByteBuffer capacity
+     * @param maxQueueLength the maximum ByteBuffer queue length of the shared buckets
+     * @param maxHeapMemory the max heap memory in bytes retained by the shared buckets
+     * @param maxDirectMemory the max direct memory in bytes retained by the shared buckets
+     * @param magazineSize the max number of ByteBuffers of each capacity held by each thread
+     * @param maxThreadMemory the max memory in bytes held by the magazine of each thread
+     */
+    public ThreadLocalByteBufferPool(int minCapacity, int factor, int maxCapacity, int maxQueueLength, long maxHeapMemory, long maxDirectMemory, int magazineSize, long maxThreadMemory)
+    {
+        super(minCapacity, factor, maxCapacity, maxQueueLength, maxHeapMemory, maxDirectMemory);
+        _magazineSize = magazineSize <= 0 ? 4 : magazineSize;
+        _maxThreadMemory = maxThreadMemory <= 0 ? 4L * getCapacityFactor() * getBucketCount() : maxThreadMemory;
+    }
+
+    @Override
+    public ByteBuffer acquire(int size, boolean direct)
+    {
+        int index = bucketIndexFor(capacityFor(size));
+        if (index >= 0)
+        {
+            ByteBuffer buffer = _magazines.get().acquire(index, direct);
+            if (buffer != null)
+            {
+                _hits.increment();
+                return buffer;
+            }
+        }
+
+        ByteBuffer buffer = acquireFromBucket(size, direct);
+        if (buffer != null)
+        {
+            _steals.increment();
+            return buffer;
+        }
+
+        _misses.increment();
+        return newByteBuffer(capacityFor(size), direct);
+    }
+
+    @Override
+    public void release(ByteBuffer buffer)
+    {
+        if (buffer == null)
+            return;
+        int index = bucketIndexFor(buffer.capacity());
+        if (index < 0 || !_magazines.get().release(index, buffer))
+            super.release(buffer);
+    }
+
+    @Override
+    public void clear()
+    {
+        // Magazines of other threads cannot be accessed,
+        // so they are lazily discarded by their owners.
+        _generation.incrementAndGet();
+        super.clear();
+    }
+
+    @ManagedAttribute("The max number of ByteBuffers of each capacity held by each thread")
+    public int getMagazineSize()
+    {
+        return _magazineSize;
+    }
+
+    @ManagedAttribute("The max memory in bytes held by the magazine of each thread")
+    public long getMaxThreadMemory()
+    {
+        return _maxThreadMemory;
+    }
+
+    @ManagedAttribute("The number of acquisitions served by the thread magazines")
+    public long getHitCount()
+    {
+        return _hits.sum();
+    }
+
+    @ManagedAttribute("The number of acquisitions served by the shared buckets")
+    public long getStealCount()
+    {
+        return _steals.sum();
+    }
+
+    @ManagedAttribute("The number of acquisitions that allocated a new ByteBuffer")
+    public long getMissCount()
+    {
+        return _misses.sum();
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void resetStats()
+    {
+        _hits.reset();
+        _steals.reset();
+        _misses.reset();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{hits=%d,steals=%d,misses=%d}",
+            getClass().getSimpleName(),
+            hashCode(),
+            getHitCount(),
+            getStealCount(),
+            getMissCount());
+    }
+
+    private class Magazine
+    {
+        private final ByteBuffer[][] _direct = new ByteBuffer[getBucketCount()][];
+        private final ByteBuffer[][] _indirect = new ByteBuffer[getBucketCount()][];
+        private final int[] _directSizes = new int[getBucketCount()];
+        private final int[] _indirectSizes = new int[getBucketCount()];
+        private int _generation = ThreadLocalByteBufferPool.this._generation.get();
+        private long _memory;
+
+        private ByteBuffer acquire(int index, boolean direct)
+        {
+            if (isStale())
+                return null;
+            int[] sizes = direct ? _directSizes : _indirectSizes;
+            int size = sizes[index];
+            if (size == 0)
+                return null;
+            ByteBuffer[] buffers = (direct ? _direct : _indirect)[index];
+            sizes[index] = --size;
+            ByteBuffer buffer = buffers[size];
+            buffers[size] = null;
+            _memory -= buffer.capacity();
+            return buffer;
+        }
+
+        private boolean release(int index, ByteBuffer buffer)
+        {
+            isStale();
+            int capacity = buffer.capacity();
+            if (_memory + capacity > _maxThreadMemory)
+                return false;
+            boolean direct = buffer.isDirect();
+            int[] sizes = direct ? _directSizes : _indirectSizes;
+            int size = sizes[index];
+            if (size == _magazineSize)
+                return false;
+            ByteBuffer[][] magazine = direct ? _direct : _indirect;
+            ByteBuffer[] buffers = magazine[index];
+            if (buffers == null)
+                magazine[index] = buffers = new ByteBuffer[_magazineSize];
+            BufferUtil.clear(buffer);
+            buffers[size] = buffer;
+            sizes[index] = size + 1;
+            _memory += capacity;
+            return true;
+        }
+
+        private boolean isStale()
+        {
+            int generation = ThreadLocalByteBufferPool.this._generation.get();
+            if (generation == _generation)
+                return false;
+            _generation = generation;
+            for (int i = 0; i < _direct.length; ++i)
+            {
+                _direct[i] = null;
+                _indirect[i] = null;
+                _directSizes[i] = 0;
+                _indirectSizes[i] = 0;
+            }
+            _memory = 0;
+            return true;
+        }
+    }
+}
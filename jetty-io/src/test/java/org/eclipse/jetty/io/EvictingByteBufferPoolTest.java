@@ -0,0 +1,194 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.io;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class EvictingByteBufferPoolTest
+{
+    @Test
+    public void testRetainedAndInUseMemory()
+    {
+        EvictingByteBufferPool bufferPool = new EvictingByteBufferPool(0, 100, 1000, -1, -1, -1);
+
+        ByteBuffer buffer1 = bufferPool.acquire(150, true);
+        ByteBuffer buffer2 = bufferPool.acquire(250, true);
+        assertEquals(500, bufferPool.getDirectMemoryInUse());
+        assertEquals(0, bufferPool.getDirectMemory());
+
+        bufferPool.release(buffer1);
+        assertEquals(300, bufferPool.getDirectMemoryInUse());
+        assertEquals(200, bufferPool.getDirectMemory());
+
+        bufferPool.release(buffer2);
+        assertEquals(0, bufferPool.getDirectMemoryInUse());
+        assertEquals(500, bufferPool.getDirectMemory());
+        assertEquals(2, bufferPool.getDirectByteBufferCount());
+
+        assertSame(buffer1, bufferPool.acquire(200, true));
+        assertEquals(300, bufferPool.getDirectMemory());
+        assertEquals(0, bufferPool.getHeapMemory());
+    }
+
+    @Test
+    public void testHardCeiling()
+    {
+        EvictingByteBufferPool bufferPool = new EvictingByteBufferPool(0, 100, 1000, -1, 300, -1);
+
+        ByteBuffer buffer1 = bufferPool.acquire(200, false);
+        ByteBuffer buffer2 = bufferPool.acquire(200, false);
+        ByteBuffer buffer3 = bufferPool.acquire(100, false);
+        bufferPool.release(buffer1);
+        bufferPool.release(buffer2);
+        bufferPool.release(buffer3);
+
+        // The second buffer would exceed the ceiling and is discarded.
+        assertEquals(300, bufferPool.getHeapMemory());
+        assertEquals(2, bufferPool.getHeapByteBufferCount());
+        assertEquals(200, bufferPool.getHeapMemoryEvicted());
+    }
+
+    @Test
+    public void testMaxQueueLength()
+    {
+        EvictingByteBufferPool bufferPool = new EvictingByteBufferPool(0, 100, 1000, 1, -1, -1);
+
+        ByteBuffer buffer1 = bufferPool.acquire(100, true);
+        ByteBuffer buffer2 = bufferPool.acquire(100, true);
+        bufferPool.release(buffer1);
+        bufferPool.release(buffer2);
+
+        assertEquals(1, bufferPool.getDirectByteBufferCount());
+        assertEquals(100, bufferPool.getDirectMemory());
+    }
+
+    @Test
+    public void testEvictIdle()
+    {
+        EvictingByteBufferPool bufferPool = new EvictingByteBufferPool(0, 100, 1000, -1, -1, -1);
+
+        ByteBuffer buffer1 = bufferPool.acquire(100, true);
+        ByteBuffer buffer2 = bufferPool.acquire(100, true);
+        ByteBuffer buffer3 = bufferPool.acquire(100, true);
+        bufferPool.release(buffer1);
+        bufferPool.release(buffer2);
+        bufferPool.release(buffer3);
+
+        // Start a new eviction period, nothing was idle before.
+        bufferPool.evictIdle();
+        assertEquals(3, bufferPool.getDirectByteBufferCount());
+
+        // Only one buffer is needed during this period.
+        bufferPool.release(bufferPool.acquire(100, true));
+        bufferPool.evictIdle();
+
+        assertEquals(1, bufferPool.getDirectByteBufferCount());
+        assertEquals(100, bufferPool.getDirectMemory());
+        assertEquals(200, bufferPool.getDirectMemoryEvicted());
+        // The most recently used buffer is retained.
+        assertSame(buffer3, bufferPool.acquire(100, true));
+    }
+
+    @Test
+    public void testEvictIdleOnlyAfterWholePeriod()
+    {
+        EvictingByteBufferPool bufferPool = new EvictingByteBufferPool(0, 100, 1000, -1, -1, -1);
+
+        ByteBuffer buffer1 = bufferPool.acquire(100, true);
+        ByteBuffer buffer2 = bufferPool.acquire(100, true);
+        ByteBuffer buffer3 = bufferPool.acquire(100, true);
+        ByteBuffer buffer4 = bufferPool.acquire(100, true);
+        bufferPool.release(buffer1);
+        bufferPool.release(buffer2);
+        bufferPool.evictIdle();
+
+        // Both buffers are idle during the whole period and evicted.
+        bufferPool.evictIdle();
+        assertEquals(0, bufferPool.getDirectByteBufferCount());
+
+        // Buffers released during the period have not been idle for a whole period.
+        bufferPool.release(buffer3);
+        bufferPool.release(buffer4);
+        bufferPool.evictIdle();
+        assertEquals(2, bufferPool.getDirectByteBufferCount());
+
+        bufferPool.evictIdle();
+        assertEquals(0, bufferPool.getDirectByteBufferCount());
+    }
+
+    @Test
+    public void testShrink()
+    {
+        EvictingByteBufferPool bufferPool = new EvictingByteBufferPool(0, 100, 1000, -1, -1, -1);
+
+        bufferPool.release(bufferPool.acquire(100, true));
+        bufferPool.release(bufferPool.acquire(500, false));
+        bufferPool.shrink();
+
+        assertEquals(0, bufferPool.getDirectMemory());
+        assertEquals(0, bufferPool.getHeapMemory());
+        assertEquals(100, bufferPool.getDirectMemoryEvicted());
+        assertEquals(500, bufferPool.getHeapMemoryEvicted());
+    }
+
+    @Test
+    public void testPeriodicEviction() throws Exception
+    {
+        EvictingByteBufferPool bufferPool = new EvictingByteBufferPool(0, 100, 1000, -1, -1, -1);
+        bufferPool.setEvictionPeriod(100);
+        bufferPool.start();
+        try
+        {
+            bufferPool.release(bufferPool.acquire(100, false));
+            assertEquals(100, bufferPool.getHeapMemory());
+
+            long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (bufferPool.getHeapMemory() > 0 && System.nanoTime() < end)
+            {
+                Thread.sleep(50);
+            }
+            assertEquals(0, bufferPool.getHeapMemory());
+            assertEquals(100, bufferPool.getHeapMemoryEvicted());
+        }
+        finally
+        {
+            bufferPool.stop();
+        }
+    }
+
+    @Test
+    public void testDump()
+    {
+        EvictingByteBufferPool bufferPool = new EvictingByteBufferPool(0, 100, 1000, -1, -1, -1);
+        bufferPool.release(bufferPool.acquire(100, true));
+
+        String dump = bufferPool.dump();
+        assertThat(dump, containsString("capacity=100,count=1,retained=100"));
+        assertTrue(bufferPool.toString().contains("direct=100/-1"));
+    }
+}
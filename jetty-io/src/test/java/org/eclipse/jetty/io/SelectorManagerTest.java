@@ -21,6 +21,7 @@ package org.eclipse.jetty.io;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.nio.ByteBuffer;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.ServerSocketChannel;
@@ -37,6 +38,9 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.condition.DisabledIfSystemProperty;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -163,4 +167,65 @@ public class SelectorManagerTest
             selectorManager.stop();
         }
     }
+
+    @Test
+    public void testSelectorStatistics() throws Exception
+    {
+        CountDownLatch fillableLatch = new CountDownLatch(1);
+        SelectorManager selectorManager = new SelectorManager(executor, scheduler, 1)
+        {
+            @Override
+            protected EndPoint newEndPoint(SelectableChannel channel, ManagedSelector selector, SelectionKey key)
+            {
+                return new SocketChannelEndPoint(channel, selector, key, getScheduler());
+            }
+
+            @Override
+            public Connection newConnection(SelectableChannel channel, EndPoint endpoint, Object attachment)
+            {
+                return new AbstractConnection(endpoint, executor)
+                {
+                    @Override
+                    public void onOpen()
+                    {
+                        super.onOpen();
+                        fillInterested();
+                    }
+
+                    @Override
+                    public void onFillable()
+                    {
+                        fillableLatch.countDown();
+                    }
+                };
+            }
+        };
+        selectorManager.setStatisticsEnabled(true);
+        selectorManager.start();
+
+        try (ServerSocketChannel server = ServerSocketChannel.open())
+        {
+            server.bind(new InetSocketAddress("localhost", 0));
+            try (SocketChannel client = SocketChannel.open(server.getLocalAddress()))
+            {
+                SocketChannel channel = server.accept();
+                channel.configureBlocking(false);
+                selectorManager.accept(channel);
+                client.write(ByteBuffer.wrap(new byte[]{'x'}));
+                assertTrue(fillableLatch.await(5, TimeUnit.SECONDS));
+            }
+
+            SelectorStatistics statistics = selectorManager.getBean(ManagedSelector.class).getStatistics();
+            assertThat(statistics.getSelectCount(), greaterThan(0L));
+            assertThat(statistics.getTaskCount(), greaterThan(0L));
+            assertThat(statistics.getWakeupLatencyStatistic().getCount(), greaterThan(0L));
+            assertThat(statistics.getUpdateTimeStatistic().getCount(), greaterThan(0L));
+            assertThat(statistics.getSelectedKeysMax(), greaterThan(0L));
+            assertThat(selectorManager.dump(), containsString("taskLatency="));
+        }
+        finally
+        {
+            selectorManager.stop();
+        }
+    }
 }
@@ -0,0 +1,151 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.io;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ThreadLocalByteBufferPoolTest
+{
+    @Test
+    public void testAcquireReleaseHitsMagazine()
+    {
+        ThreadLocalByteBufferPool bufferPool = new ThreadLocalByteBufferPool(10, 100, 1000);
+
+        ByteBuffer buffer1 = bufferPool.acquire(150, true);
+        assertTrue(buffer1.isDirect());
+        assertEquals(200, buffer1.capacity());
+        assertEquals(1, bufferPool.getMissCount());
+
+        bufferPool.release(buffer1);
+        // The buffer is held by the magazine, not by the shared buckets.
+        assertEquals(0, bufferPool.getDirectByteBufferCount());
+        assertEquals(0, bufferPool.getDirectMemory());
+
+        ByteBuffer buffer2 = bufferPool.acquire(160, true);
+        assertSame(buffer1, buffer2);
+        assertEquals(1, bufferPool.getHitCount());
+        assertEquals(0, bufferPool.getStealCount());
+
+        // Heap buffers are held separately.
+        ByteBuffer buffer3 = bufferPool.acquire(150, false);
+        assertNotSame(buffer1, buffer3);
+        assertEquals(2, bufferPool.getMissCount());
+    }
+
+    @Test
+    public void testMagazineOverflowsToSharedBuckets()
+    {
+        ThreadLocalByteBufferPool bufferPool = new ThreadLocalByteBufferPool(0, 100, 1000, -1, -1, -1, 2, -1);
+
+        ByteBuffer buffer1 = bufferPool.acquire(100, false);
+        ByteBuffer buffer2 = bufferPool.acquire(100, false);
+        ByteBuffer buffer3 = bufferPool.acquire(100, false);
+        bufferPool.release(buffer1);
+        bufferPool.release(buffer2);
+        bufferPool.release(buffer3);
+
+        assertEquals(1, bufferPool.getHeapByteBufferCount());
+        assertEquals(100, bufferPool.getHeapMemory());
+
+        bufferPool.acquire(100, false);
+        bufferPool.acquire(100, false);
+        bufferPool.acquire(100, false);
+        assertEquals(2, bufferPool.getHitCount());
+        assertEquals(1, bufferPool.getStealCount());
+        assertEquals(0, bufferPool.getHeapByteBufferCount());
+    }
+
+    @Test
+    public void testMaxThreadMemory()
+    {
+        ThreadLocalByteBufferPool bufferPool = new ThreadLocalByteBufferPool(0, 100, 1000, -1, -1, -1, 8, 250);
+
+        ByteBuffer buffer1 = bufferPool.acquire(200, true);
+        ByteBuffer buffer2 = bufferPool.acquire(100, true);
+        bufferPool.release(buffer1);
+        bufferPool.release(buffer2);
+
+        // Only the first buffer fits in the thread memory.
+        assertEquals(1, bufferPool.getDirectByteBufferCount());
+        assertEquals(100, bufferPool.getDirectMemory());
+    }
+
+    @Test
+    public void testStealFromOtherThread() throws Exception
+    {
+        ThreadLocalByteBufferPool bufferPool = new ThreadLocalByteBufferPool(0, 100, 1000, -1, -1, -1, 1, -1);
+
+        AtomicReference<ByteBuffer> released = new AtomicReference<>();
+        Thread thread = new Thread(() ->
+        {
+            ByteBuffer buffer1 = bufferPool.acquire(100, true);
+            ByteBuffer buffer2 = bufferPool.acquire(100, true);
+            bufferPool.release(buffer1);
+            bufferPool.release(buffer2);
+            released.set(buffer2);
+        });
+        thread.start();
+        thread.join();
+
+        ByteBuffer buffer = bufferPool.acquire(100, true);
+        assertSame(released.get(), buffer);
+        assertEquals(1, bufferPool.getStealCount());
+    }
+
+    @Test
+    public void testClearDiscardsMagazine()
+    {
+        ThreadLocalByteBufferPool bufferPool = new ThreadLocalByteBufferPool(0, 100, 1000);
+
+        ByteBuffer buffer1 = bufferPool.acquire(100, true);
+        bufferPool.release(buffer1);
+        bufferPool.clear();
+
+        ByteBuffer buffer2 = bufferPool.acquire(100, true);
+        assertNotSame(buffer1, buffer2);
+        assertEquals(0, bufferPool.getHitCount());
+        assertEquals(2, bufferPool.getMissCount());
+    }
+
+    @Test
+    public void testUnpooledCapacities()
+    {
+        ThreadLocalByteBufferPool bufferPool = new ThreadLocalByteBufferPool(10, 100, 1000);
+
+        ByteBuffer small = bufferPool.acquire(5, false);
+        assertEquals(5, small.capacity());
+        bufferPool.release(small);
+        assertNotSame(small, bufferPool.acquire(5, false));
+
+        ByteBuffer large = bufferPool.acquire(2000, false);
+        bufferPool.release(large);
+        assertNotSame(large, bufferPool.acquire(2000, false));
+
+        assertEquals(0, bufferPool.getHitCount());
+        assertEquals(4, bufferPool.getMissCount());
+    }
+}
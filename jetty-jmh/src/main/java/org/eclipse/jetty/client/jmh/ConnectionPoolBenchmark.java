@@ -0,0 +1,199 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.client.jmh;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.client.AbstractConnectionPool;
+import org.eclipse.jetty.client.ConnectionPool;
+import org.eclipse.jetty.client.DuplexConnectionPool;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.HttpConversation;
+import org.eclipse.jetty.client.HttpDestination;
+import org.eclipse.jetty.client.HttpExchange;
+import org.eclipse.jetty.client.HttpRequest;
+import org.eclipse.jetty.client.MultiplexConnectionPool;
+import org.eclipse.jetty.client.Origin;
+import org.eclipse.jetty.client.RoundRobinConnectionPool;
+import org.eclipse.jetty.client.SendFailure;
+import org.eclipse.jetty.client.SlottedConnectionPool;
+import org.eclipse.jetty.client.api.Connection;
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.client.api.Response;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.Promise;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Compares the cost of acquiring and releasing a connection with the
+ * {@link ConnectionPool} implementations, with a pool of pre-created connections
+ * and no network I/O, so that only the contention on the pool is measured.</p>
+ * <p>Run {@link #main(String[])} to measure with 8 to 64 threads.</p>
+ */
+@State(Scope.Benchmark)
+@Threads(8)
+@Warmup(iterations = 7, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 7, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+public class ConnectionPoolBenchmark
+{
+    @Param({"duplex", "multiplex", "round-robin", "slotted-first", "slotted-round-robin", "slotted-random", "slotted-least-loaded"})
+    public static String poolType;
+
+    @Param({"16", "64"})
+    public static int maxConnections;
+
+    private HttpClient _client;
+    private ConnectionPool _pool;
+
+    @Setup(Level.Trial)
+    public void setupTrial() throws Exception
+    {
+        _client = new HttpClient()
+        {
+            @Override
+            protected void newConnection(HttpDestination destination, Promise<Connection> promise)
+            {
+                promise.succeeded(new MockConnection());
+            }
+        };
+        HttpDestination destination = new HttpDestination(_client, new Origin("http", "localhost", 8080))
+        {
+            @Override
+            protected SendFailure send(Connection connection, HttpExchange exchange)
+            {
+                return null;
+            }
+        };
+        // A queued request, so that the pools open new connections.
+        HttpRequest request = new HttpRequest(_client, new HttpConversation(), URI.create("http://localhost:8080/"))
+        {
+        };
+        destination.getHttpExchanges().add(new HttpExchange(destination, request, new ArrayList<>()));
+
+        switch (poolType)
+        {
+            case "duplex":
+                _pool = new DuplexConnectionPool(destination, maxConnections, Callback.NOOP);
+                break;
+            case "multiplex":
+                _pool = new MultiplexConnectionPool(destination, maxConnections, Callback.NOOP, 1);
+                break;
+            case "round-robin":
+                _pool = new RoundRobinConnectionPool(destination, maxConnections, Callback.NOOP);
+                break;
+            case "slotted-first":
+                _pool = new SlottedConnectionPool(destination, maxConnections, Callback.NOOP, 1, SlottedConnectionPool.Strategy.FIRST);
+                break;
+            case "slotted-round-robin":
+                _pool = new SlottedConnectionPool(destination, maxConnections, Callback.NOOP, 1, SlottedConnectionPool.Strategy.ROUND_ROBIN);
+                break;
+            case "slotted-random":
+                _pool = new SlottedConnectionPool(destination, maxConnections, Callback.NOOP, 1, SlottedConnectionPool.Strategy.RANDOM);
+                break;
+            case "slotted-least-loaded":
+                _pool = new SlottedConnectionPool(destination, maxConnections, Callback.NOOP, 1, SlottedConnectionPool.Strategy.LEAST_LOADED);
+                break;
+            default:
+                throw new IllegalStateException("Unknown poolType Parameter");
+        }
+
+        // Open all the connections.
+        List<Connection> connections = new ArrayList<>();
+        for (int i = 0; i < maxConnections; ++i)
+        {
+            connections.add(_pool.acquire());
+        }
+        connections.forEach(_pool::release);
+        if (((AbstractConnectionPool)_pool).getConnectionCount() != maxConnections)
+            throw new IllegalStateException("Could not open connections " + _pool);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial()
+    {
+        _pool.close();
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public void testAcquireReleaseConnection(Blackhole blackhole)
+    {
+        Connection connection = _pool.acquire();
+        blackhole.consume(connection);
+        if (connection != null)
+            _pool.release(connection);
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        for (int threads : new int[]{8, 16, 32, 64})
+        {
+            Options opt = new OptionsBuilder()
+                .include(ConnectionPoolBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .threads(threads)
+                .forks(1)
+                .build();
+
+            new Runner(opt).run();
+        }
+    }
+
+    private static class MockConnection implements Connection
+    {
+        private volatile boolean closed;
+
+        @Override
+        public void send(Request request, Response.CompleteListener listener)
+        {
+        }
+
+        @Override
+        public void close()
+        {
+            closed = true;
+        }
+
+        @Override
+        public boolean isClosed()
+        {
+            return closed;
+        }
+    }
+}
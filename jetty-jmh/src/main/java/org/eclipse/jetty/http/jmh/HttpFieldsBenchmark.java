@@ -0,0 +1,144 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.http.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Compares the lookups of default and {@link HttpFields#setIndexed(boolean) indexed}
+ * {@link HttpFields} with increasing numbers of fields; by default the lookups are
+ * linear up to {@link HttpFields#INDEX_THRESHOLD} fields.</p>
+ * <p>The lookups are those typically performed by the server for each request,
+ * some of which are for fields that are not present.</p>
+ */
+@State(Scope.Thread)
+@Threads(4)
+@Warmup(iterations = 7, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 7, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+public class HttpFieldsBenchmark
+{
+    private static final HttpHeader[] HEADERS = {
+        HttpHeader.HOST,
+        HttpHeader.USER_AGENT,
+        HttpHeader.ACCEPT,
+        HttpHeader.ACCEPT_ENCODING,
+        HttpHeader.ACCEPT_LANGUAGE,
+        HttpHeader.CONNECTION,
+        HttpHeader.CACHE_CONTROL,
+        HttpHeader.COOKIE,
+        HttpHeader.REFERER,
+        HttpHeader.PRAGMA
+    };
+
+    @Param({"8", "32", "64"})
+    public static int size;
+
+    @Param({"false", "true"})
+    public static boolean indexed;
+
+    private HttpField[] _fields;
+    private HttpFields _httpFields;
+
+    @Setup(Level.Trial)
+    public void setupTrial()
+    {
+        // Well known headers first, then custom headers as added by proxies, CDNs, etc.
+        _fields = new HttpField[size];
+        for (int i = 0; i < size; i++)
+        {
+            if (i < HEADERS.length)
+                _fields[i] = new HttpField(HEADERS[i], "value" + i);
+            else
+                _fields[i] = new HttpField("X-Custom-Header-" + i, "value" + i);
+        }
+        _httpFields = newHttpFields();
+    }
+
+    private HttpFields newHttpFields()
+    {
+        HttpFields fields = new HttpFields();
+        fields.setIndexed(indexed);
+        for (HttpField field : _fields)
+        {
+            fields.add(field);
+        }
+        return fields;
+    }
+
+    private static void lookup(HttpFields fields, Blackhole blackhole)
+    {
+        blackhole.consume(fields.get(HttpHeader.HOST));
+        blackhole.consume(fields.get(HttpHeader.CONTENT_TYPE));
+        blackhole.consume(fields.getField(HttpHeader.CONTENT_LENGTH));
+        blackhole.consume(fields.contains(HttpHeader.EXPECT));
+        blackhole.consume(fields.contains(HttpHeader.CONNECTION, "close"));
+        blackhole.consume(fields.getField(HttpHeader.COOKIE));
+        blackhole.consume(fields.getField(HttpHeader.AUTHORIZATION));
+        blackhole.consume(fields.get("X-Forwarded-For"));
+        blackhole.consume(fields.get("x-custom-header-12"));
+        blackhole.consume(fields.containsKey("X-Request-Id"));
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public void testLookup(Blackhole blackhole)
+    {
+        lookup(_httpFields, blackhole);
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public void testBuildAndLookup(Blackhole blackhole)
+    {
+        // Also accounts for the cost of building the index.
+        lookup(newHttpFields(), blackhole);
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(HttpFieldsBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .forks(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,208 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.http.jmh;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.http.DateGenerator;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpGenerator;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpURI;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http.PreEncodedHttpField;
+import org.eclipse.jetty.util.BufferUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Generates typical messages with {@link HttpGenerator}.</p>
+ * <p>Run with the GC profiler (as {@link #main(String[])} does) to
+ * also report the allocation rate of the generator.</p>
+ */
+@State(Scope.Thread)
+@Threads(4)
+@Warmup(iterations = 7, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 7, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+public class HttpGeneratorBenchmark
+{
+    private static final PreEncodedHttpField SERVER = new PreEncodedHttpField(HttpHeader.SERVER, "Jetty(9.4.x)");
+
+    @Param({"STATIC_RESPONSE", "CHUNKED_RESPONSE", "COOKIES_RESPONSE", "API_POST_REQUEST"})
+    public static String messages;
+
+    private final HttpGenerator _generator = new HttpGenerator();
+    private final ByteBuffer _header = BufferUtil.allocate(8192);
+    private final ByteBuffer _chunk = BufferUtil.allocate(HttpGenerator.CHUNK_SIZE);
+    private final ByteBuffer _trailer = BufferUtil.allocate(8192);
+    private ByteBuffer[] _content;
+    private MetaData.Response _response;
+    private MetaData.Request _request;
+
+    @Setup(Level.Trial)
+    public void setupTrial()
+    {
+        HttpFields fields = new HttpFields();
+        switch (messages)
+        {
+            case "STATIC_RESPONSE":
+            {
+                _content = new ByteBuffer[]{content(4096)};
+                fields.put(SERVER);
+                fields.put(HttpHeader.CONTENT_TYPE, "text/css");
+                fields.put(HttpHeader.LAST_MODIFIED, "Thu, 30 Jul 2020 13:40:29 GMT");
+                fields.put(HttpHeader.ETAG, "W/\"1000-1596116429000\"");
+                fields.put(HttpHeader.ACCEPT_RANGES, "bytes");
+                _response = new MetaData.Response(HttpVersion.HTTP_1_1, 200, fields, 4096);
+                break;
+            }
+            case "CHUNKED_RESPONSE":
+            {
+                _content = new ByteBuffer[]{content(1024), content(8192), content(512)};
+                fields.put(SERVER);
+                fields.put(HttpHeader.CONTENT_TYPE, "application/json");
+                fields.put(HttpHeader.CACHE_CONTROL, "no-cache");
+                _response = new MetaData.Response(HttpVersion.HTTP_1_1, 200, fields);
+                break;
+            }
+            case "COOKIES_RESPONSE":
+            {
+                _content = new ByteBuffer[]{content(256)};
+                fields.put(SERVER);
+                fields.put(HttpHeader.CONTENT_TYPE, "text/html;charset=utf-8");
+                for (int i = 0; i < 10; ++i)
+                {
+                    fields.add(HttpHeader.SET_COOKIE, "tracking_" + i + "=" + Integer.toHexString(0x9E3779B9 * (i + 1)) + "; Path=/; Secure; HttpOnly; SameSite=Lax");
+                }
+                _response = new MetaData.Response(HttpVersion.HTTP_1_1, 200, fields, 256);
+                break;
+            }
+            case "API_POST_REQUEST":
+            {
+                _content = new ByteBuffer[]{content(42), content(31)};
+                fields.put(HttpHeader.HOST, "api.example.com");
+                fields.put(HttpHeader.USER_AGENT, "Jetty/9.4.x");
+                fields.put(HttpHeader.ACCEPT, "application/json");
+                fields.put(HttpHeader.CONTENT_TYPE, "application/json; charset=utf-8");
+                _request = new MetaData.Request("POST", new HttpURI("http://api.example.com/api/v2/orders"), HttpVersion.HTTP_1_1, fields);
+                break;
+            }
+            default:
+                throw new IllegalStateException("Unknown messages Parameter");
+        }
+    }
+
+    private static ByteBuffer content(int length)
+    {
+        ByteBuffer buffer = BufferUtil.allocate(length);
+        BufferUtil.clearToFill(buffer);
+        while (buffer.hasRemaining())
+        {
+            buffer.put((byte)'x');
+        }
+        BufferUtil.flipToFlush(buffer, 0);
+        return buffer;
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public long testGenerate() throws IOException
+    {
+        // The Date header is normally added by the server for each response.
+        if (_response != null)
+            _response.getFields().put(HttpHeader.DATE, DateGenerator.formatDate(System.currentTimeMillis()));
+
+        _generator.reset();
+        long bytes = 0;
+        for (int i = 0; i < _content.length; ++i)
+        {
+            bytes += generate(i == 0, _content[i].slice(), i == _content.length - 1);
+        }
+        return bytes;
+    }
+
+    private long generate(boolean first, ByteBuffer content, boolean last) throws IOException
+    {
+        long bytes = 0;
+        ByteBuffer chunk = _chunk;
+        while (true)
+        {
+            HttpGenerator.Result result = _request != null
+                ? _generator.generateRequest(first ? _request : null, _header, chunk, content, last)
+                : _generator.generateResponse(first ? _response : null, false, _header, chunk, content, last);
+            switch (result)
+            {
+                case NEED_INFO:
+                    first = true;
+                    break;
+                case NEED_HEADER:
+                case NEED_CHUNK:
+                    break;
+                case NEED_CHUNK_TRAILER:
+                    chunk = _trailer;
+                    break;
+                case HEADER_OVERFLOW:
+                    throw new IllegalStateException("Header overflow");
+                case FLUSH:
+                    // Simulate writing the buffers to the network.
+                    bytes += _header.remaining() + chunk.remaining() + content.remaining();
+                    BufferUtil.clear(_header);
+                    BufferUtil.clear(chunk);
+                    BufferUtil.clear(content);
+                    break;
+                case CONTINUE:
+                case SHUTDOWN_OUT:
+                    break;
+                case DONE:
+                    BufferUtil.clear(_trailer);
+                    return bytes;
+                default:
+                    throw new IllegalStateException(result.toString());
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(HttpGeneratorBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .forks(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
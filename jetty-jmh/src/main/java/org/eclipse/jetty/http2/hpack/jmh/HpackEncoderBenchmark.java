@@ -0,0 +1,140 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.http2.hpack.jmh;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.http.DateGenerator;
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http2.hpack.HpackEncoder;
+import org.eclipse.jetty.http2.hpack.HpackException;
+import org.eclipse.jetty.util.BufferUtil;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Measures the HPACK encoding of typical API response headers on a long lived
+ * connection, with the different {@link HpackEncoder.IndexingStrategy indexing strategies}.</p>
+ * <p>The score is the time to encode a header, while the {@code bytes} and {@code headers}
+ * counters give the average number of encoded bytes per header.</p>
+ * <p>Some headers are the same for all the responses, some change every few responses,
+ * like the date, and some change for every response, like request ids and entity tags.</p>
+ */
+@State(Scope.Thread)
+@Threads(1)
+@Warmup(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+public class HpackEncoderBenchmark
+{
+    private static final int RESPONSES = 1024;
+    private static final int HEADERS = 11;
+    private static final HttpField SERVER = new HttpField(HttpHeader.SERVER, "Jetty(9.4.x)");
+
+    @Param({"ALWAYS", "FREQUENCY_1", "FREQUENCY_4"})
+    public String strategy;
+
+    private final ByteBuffer _buffer = BufferUtil.allocate(16 * 1024);
+    private MetaData.Response[] _responses;
+    private HpackEncoder _encoder;
+    private int _index;
+
+    @Setup(Level.Trial)
+    public void setupTrial()
+    {
+        _responses = new MetaData.Response[RESPONSES];
+        long date = System.currentTimeMillis();
+        for (int i = 0; i < RESPONSES; i++)
+        {
+            HttpFields fields = new HttpFields();
+            fields.add(SERVER);
+            // The date changes every 64 responses.
+            fields.add(HttpHeader.DATE, DateGenerator.formatDate(date + 1000L * (i / 64)));
+            fields.add(HttpHeader.CONTENT_TYPE, "application/json;charset=utf-8");
+            fields.add(HttpHeader.CACHE_CONTROL, "no-cache, no-store, must-revalidate");
+            fields.add(HttpHeader.VARY, "Accept-Encoding, Origin");
+            fields.add(HttpHeader.STRICT_TRANSPORT_SECURITY, "max-age=31536000; includeSubDomains");
+            fields.add("X-Content-Type-Options", "nosniff");
+            fields.add("X-Request-Id", UUID.randomUUID().toString());
+            fields.add("X-RateLimit-Remaining", String.valueOf(1000 - i % 1000));
+            fields.add(HttpHeader.ETAG, "W/\"" + Long.toHexString(UUID.randomUUID().getMostSignificantBits()) + "\"");
+            _responses[i] = new MetaData.Response(HttpVersion.HTTP_2, 200, fields, 100 + i % 4096);
+        }
+
+        _encoder = new HpackEncoder();
+        if (strategy.startsWith("FREQUENCY_"))
+            _encoder.setIndexingStrategy(new HpackEncoder.FrequencyIndexingStrategy(Integer.parseInt(strategy.substring("FREQUENCY_".length()))));
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Counters
+    {
+        public long bytes;
+        public long headers;
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.AverageTime})
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @OperationsPerInvocation(HEADERS)
+    public ByteBuffer testEncode(Counters counters) throws HpackException
+    {
+        MetaData.Response response = _responses[_index++ % RESPONSES];
+        BufferUtil.clearToFill(_buffer);
+        _encoder.encode(_buffer, response);
+        counters.bytes += _buffer.position();
+        // The status, the content length and the other fields.
+        counters.headers += HEADERS;
+        return _buffer;
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(HpackEncoderBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .forks(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,210 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.server.jmh;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.http.CompressedContentFormat;
+import org.eclipse.jetty.http.HttpContent;
+import org.eclipse.jetty.http.MimeTypes;
+import org.eclipse.jetty.server.CachedContentFactory;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.HttpOutput;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.resource.Resource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Compares serving a static file by transferring it directly from the file
+ * to the network ({@code TRANSFER}) with serving the memory mapped buffer
+ * cached by {@link CachedContentFactory} ({@code MAPPED}).</p>
+ */
+@State(Scope.Benchmark)
+@Threads(4)
+@Warmup(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+public class FileTransferBenchmark
+{
+    @Param({"TRANSFER", "MAPPED"})
+    public static String mode;
+
+    @Param({"65536", "1048576", "16777216"})
+    public static int fileSize;
+
+    private Path directory;
+    private Server server;
+    private ServerConnector connector;
+
+    @Setup(Level.Trial)
+    public void setupTrial() throws Exception
+    {
+        directory = Files.createTempDirectory("jetty-jmh-");
+        byte[] bytes = new byte[fileSize];
+        for (int i = 0; i < bytes.length; ++i)
+        {
+            bytes[i] = (byte)('a' + i % 26);
+        }
+        Files.write(directory.resolve("file.bin"), bytes);
+
+        HttpConfiguration httpConfig = new HttpConfiguration();
+        httpConfig.setSendDateHeader(false);
+        httpConfig.setSendServerVersion(false);
+        switch (mode)
+        {
+            case "TRANSFER":
+                httpConfig.setFileTransferThreshold(0);
+                break;
+            case "MAPPED":
+                httpConfig.setFileTransferThreshold(-1);
+                break;
+            default:
+                throw new IllegalStateException("Unknown mode Parameter");
+        }
+
+        server = new Server();
+        connector = new ServerConnector(server, new HttpConnectionFactory(httpConfig));
+        server.addConnector(connector);
+
+        CachedContentFactory contentFactory = new CachedContentFactory(null, Resource.newResource(directory), new MimeTypes(), true, false, CompressedContentFormat.NONE);
+        contentFactory.setMaxCachedFileSize(Integer.MAX_VALUE);
+        contentFactory.setMaxCacheSize(Integer.MAX_VALUE);
+        server.setHandler(new AbstractHandler()
+        {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException
+            {
+                baseRequest.setHandled(true);
+                HttpContent content = contentFactory.getContent(target, httpConfig.getOutputBufferSize());
+                response.setContentLengthLong(content.getContentLengthValue());
+                ((HttpOutput)response.getOutputStream()).sendContent(content);
+            }
+        });
+        server.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void stopTrial() throws Exception
+    {
+        server.stop();
+        IO.delete(directory.toFile());
+    }
+
+    @State(Scope.Thread)
+    public static class Client
+    {
+        private static final ByteBuffer REQUEST = StandardCharsets.US_ASCII.encode("GET /file.bin HTTP/1.1\r\nHost: localhost\r\n\r\n");
+
+        private SocketChannel channel;
+        private ByteBuffer buffer;
+
+        @Setup(Level.Trial)
+        public void setupTrial(FileTransferBenchmark benchmark) throws Exception
+        {
+            channel = SocketChannel.open(new InetSocketAddress("localhost", benchmark.connector.getLocalPort()));
+            buffer = ByteBuffer.allocateDirect(64 * 1024);
+        }
+
+        @TearDown(Level.Trial)
+        public void stopTrial() throws Exception
+        {
+            channel.close();
+        }
+
+        private long get() throws IOException
+        {
+            ByteBuffer request = REQUEST.duplicate();
+            while (request.hasRemaining())
+            {
+                channel.write(request);
+            }
+
+            // Skip the response headers, then consume the content.
+            long remaining = fileSize;
+            int state = 0;
+            while (remaining > 0)
+            {
+                buffer.clear();
+                if (channel.read(buffer) < 0)
+                    throw new EOFException();
+                buffer.flip();
+                while (state < 4 && buffer.hasRemaining())
+                {
+                    byte b = buffer.get();
+                    if (b == (state % 2 == 0 ? '\r' : '\n'))
+                        ++state;
+                    else
+                        state = b == '\r' ? 1 : 0;
+                }
+                remaining -= buffer.remaining();
+            }
+            return remaining;
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public long testGet(Client client) throws Exception
+    {
+        return client.get();
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(FileTransferBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .forks(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
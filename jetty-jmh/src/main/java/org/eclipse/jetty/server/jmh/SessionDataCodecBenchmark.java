@@ -0,0 +1,142 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.server.jmh;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.server.session.CompactSessionDataCodec;
+import org.eclipse.jetty.server.session.JavaSessionDataCodec;
+import org.eclipse.jetty.server.session.SessionData;
+import org.eclipse.jetty.server.session.SessionDataCodec;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the throughput of the session attributes codecs, and the size of
+ * the encoded attributes, reported by the {@code bytes} auxiliary counter.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+public class SessionDataCodecBenchmark
+{
+    @Param({"JAVA", "COMPACT"})
+    public static String codecType;
+
+    @Param({"SMALL", "MIXED"})
+    public static String attributesType;
+
+    private SessionDataCodec _codec;
+    private SessionData _data;
+    private byte[] _encoded;
+
+    @Setup(Level.Trial)
+    public void setupTrial() throws Exception
+    {
+        switch (codecType)
+        {
+            case "JAVA":
+                _codec = new JavaSessionDataCodec();
+                break;
+
+            case "COMPACT":
+                _codec = new CompactSessionDataCodec();
+                break;
+
+            default:
+                throw new IllegalStateException("Unknown codecType Parameter");
+        }
+
+        long now = System.currentTimeMillis();
+        _data = new SessionData("node0abcdefghijklmnopqrstuvwx0", "/context", "0.0.0.0", now, now, now, TimeUnit.MINUTES.toMillis(30));
+        _data.setAttribute("user", "jetty@eclipse.org");
+        _data.setAttribute("locale", "en_US");
+        _data.setAttribute("visits", 42);
+        _data.setAttribute("cartItems", 3);
+        _data.setAttribute("lastVisit", now);
+        _data.setAttribute("authenticated", true);
+        switch (attributesType)
+        {
+            case "SMALL":
+                break;
+
+            case "MIXED":
+                _data.setAttribute("token", new byte[32]);
+                _data.setAttribute("roles", new ArrayList<>(Arrays.asList("user", "admin")));
+                break;
+
+            default:
+                throw new IllegalStateException("Unknown attributesType Parameter");
+        }
+
+        _encoded = _codec.encodeAttributes(_data);
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Size
+    {
+        public long bytes;
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public byte[] testEncode(Size size) throws Exception
+    {
+        byte[] bytes = _codec.encodeAttributes(_data);
+        size.bytes = bytes.length;
+        return bytes;
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public SessionData testDecode() throws Exception
+    {
+        SessionData data = new SessionData(_data.getId(), _data.getContextPath(), _data.getVhost(), 0, 0, 0, 0);
+        _codec.decodeAttributes(data, _encoded);
+        return data;
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(SessionDataCodecBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .forks(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,153 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util.thread.jmh;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
+import org.eclipse.jetty.util.thread.Scheduler;
+import org.eclipse.jetty.util.thread.TimingWheelScheduler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the schedulers when many timeouts are scheduled, as for the idle
+ * timeouts of connections and sessions, which are mostly cancelled and
+ * scheduled again before they expire.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+public class SchedulerBenchmark
+{
+    public enum Type
+    {
+        SCHEDULED_EXECUTOR, TIMING_WHEEL
+    }
+
+    @Param({"SCHEDULED_EXECUTOR", "TIMING_WHEEL"})
+    Type type;
+
+    @Param({"1000", "1000000"})
+    int timeouts;
+
+    Scheduler scheduler;
+    List<Scheduler.Task> tasks;
+
+    @Setup
+    public void buildScheduler()
+    {
+        switch (type)
+        {
+            case SCHEDULED_EXECUTOR:
+                scheduler = new ScheduledExecutorScheduler();
+                break;
+
+            case TIMING_WHEEL:
+                scheduler = new TimingWheelScheduler();
+                break;
+        }
+        LifeCycle.start(scheduler);
+
+        // The timeouts already scheduled, that expire long after the benchmark.
+        tasks = new ArrayList<>(timeouts);
+        for (int i = 0; i < timeouts; ++i)
+        {
+            tasks.add(scheduler.schedule(SchedulerBenchmark::noop, 30 + ThreadLocalRandom.current().nextInt(30), TimeUnit.MINUTES));
+        }
+    }
+
+    @TearDown
+    public void shutdownScheduler()
+    {
+        tasks.forEach(Scheduler.Task::cancel);
+        tasks = null;
+        LifeCycle.stop(scheduler);
+        scheduler = null;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @Threads(1)
+    public boolean testRescheduleFew()
+    {
+        return reschedule();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @Threads(8)
+    public boolean testRescheduleMany()
+    {
+        return reschedule();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @Threads(8)
+    public void testExpire() throws Exception
+    {
+        CountDownLatch latch = new CountDownLatch(1);
+        scheduler.schedule(latch::countDown, 0, TimeUnit.MILLISECONDS);
+        latch.await();
+    }
+
+    /**
+     * Schedules an idle timeout and cancels it, as when a request arrives before the timeout expires.
+     */
+    boolean reschedule()
+    {
+        Scheduler.Task task = scheduler.schedule(SchedulerBenchmark::noop, 30, TimeUnit.SECONDS);
+        return task.cancel();
+    }
+
+    static void noop()
+    {
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(SchedulerBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .forks(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
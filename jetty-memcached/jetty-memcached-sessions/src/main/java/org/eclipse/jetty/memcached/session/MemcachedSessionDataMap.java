@@ -19,6 +19,9 @@
 package org.eclipse.jetty.memcached.session;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.util.List;
@@ -26,8 +29,10 @@ import java.util.List;
 import net.rubyeye.xmemcached.MemcachedClient;
 import net.rubyeye.xmemcached.XMemcachedClientBuilder;
 import net.rubyeye.xmemcached.transcoders.SerializingTranscoder;
+import org.eclipse.jetty.server.session.JavaSessionDataCodec;
 import org.eclipse.jetty.server.session.SessionContext;
 import org.eclipse.jetty.server.session.SessionData;
+import org.eclipse.jetty.server.session.SessionDataCodec;
 import org.eclipse.jetty.server.session.SessionDataMap;
 import org.eclipse.jetty.util.ClassLoadingObjectInputStream;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
@@ -48,22 +53,110 @@ public class MemcachedSessionDataMap extends AbstractLifeCycle implements Sessio
     protected int _expirySec = 0;
     protected boolean _heartbeats = true;
     protected XMemcachedClientBuilder _builder;
+    protected SessionDataCodec _codec;
 
     /**
      * SessionDataTranscoder
      *
      * We override memcached deserialization to use our classloader-aware
      * ObjectInputStream.
+     *
+     * When a {@link SessionDataCodec} is set, SessionData are serialized with
+     * it rather than with Java serialization; both formats are deserialized.
      */
     public static class SessionDataTranscoder extends SerializingTranscoder
     {
+        private static final byte[] MAGIC = {'J', 'D'};
+
+        private final SessionDataCodec _codec;
+
+        public SessionDataTranscoder()
+        {
+            this(null);
+        }
+
+        /**
+         * @param codec the codec of the session attributes, or null to use Java serialization
+         */
+        public SessionDataTranscoder(SessionDataCodec codec)
+        {
+            _codec = codec;
+        }
+
+        @Override
+        protected byte[] serialize(Object o)
+        {
+            if (_codec == null || !(o instanceof SessionData))
+                return super.serialize(o);
+
+            SessionData data = (SessionData)o;
+            try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                 DataOutputStream out = new DataOutputStream(baos))
+            {
+                out.write(MAGIC);
+                out.writeUTF(data.getId()); //session id
+                out.writeUTF(data.getContextPath()); //context path
+                out.writeUTF(data.getVhost()); //first vhost
+                out.writeLong(data.getAccessed());//accessTime
+                out.writeLong(data.getLastAccessed()); //lastAccessTime
+                out.writeLong(data.getCreated()); //time created
+                out.writeLong(data.getCookieSet());//time cookie was set
+                out.writeUTF(data.getLastNode()); //name of last node managing
+                out.writeLong(data.getExpiry());
+                out.writeLong(data.getMaxInactiveMs());
+                _codec.encodeAttributes(data, out);
+                out.flush();
+                return baos.toByteArray();
+            }
+            catch (IOException e)
+            {
+                throw new IllegalArgumentException("Non-serializable session " + data.getId(), e);
+            }
+        }
+
+        private SessionData deserializeSessionData(byte[] in) throws IOException, ClassNotFoundException
+        {
+            DataInputStream input = new DataInputStream(new ByteArrayInputStream(in, MAGIC.length, in.length - MAGIC.length));
+            String id = input.readUTF();
+            String contextPath = input.readUTF();
+            String vhost = input.readUTF();
+            long accessed = input.readLong();
+            long lastAccessed = input.readLong();
+            long created = input.readLong();
+            long cookieSet = input.readLong();
+            String lastNode = input.readUTF();
+            long expiry = input.readLong();
+            long maxInactiveMs = input.readLong();
+
+            SessionData data = new SessionData(id, contextPath, vhost, created, accessed, lastAccessed, maxInactiveMs);
+            data.setCookieSet(cookieSet);
+            data.setLastNode(lastNode);
+            data.setExpiry(expiry);
+            (_codec == null ? new JavaSessionDataCodec() : _codec).decodeAttributes(data, input);
+            return data;
+        }
 
         @Override
         protected Object deserialize(byte[] in)
         {
             Object rv = null;
 
-            if (in != null)
+            if (in != null && in.length > MAGIC.length && in[0] == MAGIC[0] && in[1] == MAGIC[1])
+            {
+                try
+                {
+                    rv = deserializeSessionData(in);
+                }
+                catch (IOException e)
+                {
+                    log.error("Caught IOException decoding " + in.length + " bytes of session data", e);
+                }
+                catch (ClassNotFoundException e)
+                {
+                    log.error("Caught CNFE decoding " + in.length + " bytes of session data", e);
+                }
+            }
+            else if (in != null)
             {
                 try (ByteArrayInputStream bis = new ByteArrayInputStream(in);
                      ClassLoadingObjectInputStream is = new ClassLoadingObjectInputStream(bis))
@@ -142,12 +235,27 @@ public class MemcachedSessionDataMap extends AbstractLifeCycle implements Sessio
         _heartbeats = heartbeats;
     }
 
+    @ManagedAttribute(value = "codec of the serialized session attributes", readonly = true)
+    public SessionDataCodec getSessionDataCodec()
+    {
+        return _codec;
+    }
+
+    /**
+     * @param codec the codec of the session attributes, or null to serialize
+     * the sessions with Java serialization, as by default
+     */
+    public void setSessionDataCodec(SessionDataCodec codec)
+    {
+        _codec = codec;
+    }
+
     @Override
     public void initialize(SessionContext context)
     {
         try
         {
-            _builder.setTranscoder(new SessionDataTranscoder());
+            _builder.setTranscoder(new SessionDataTranscoder(_codec));
             _client = _builder.build();
             _client.setEnableHeartBeat(isHeartbeats());
         }
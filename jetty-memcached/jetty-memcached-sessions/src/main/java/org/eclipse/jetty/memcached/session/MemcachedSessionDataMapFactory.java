@@ -22,6 +22,7 @@ import java.net.InetSocketAddress;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.eclipse.jetty.server.session.SessionDataCodec;
 import org.eclipse.jetty.server.session.SessionDataMap;
 import org.eclipse.jetty.server.session.SessionDataMapFactory;
 
@@ -34,6 +35,7 @@ public class MemcachedSessionDataMapFactory implements SessionDataMapFactory
     protected boolean _heartbeats = true;
     protected int[] _weights;
     protected List<InetSocketAddress> _addresses;
+    protected SessionDataCodec _codec;
 
     /**
      * @param addresses host and port address of memcached servers
@@ -83,6 +85,19 @@ public class MemcachedSessionDataMapFactory implements SessionDataMapFactory
         _heartbeats = heartbeats;
     }
 
+    public SessionDataCodec getSessionDataCodec()
+    {
+        return _codec;
+    }
+
+    /**
+     * @param codec the codec of the session attributes, or null to use Java serialization
+     */
+    public void setSessionDataCodec(SessionDataCodec codec)
+    {
+        _codec = codec;
+    }
+
     /**
      * @see org.eclipse.jetty.server.session.SessionDataMapFactory#getSessionDataMap()
      */
@@ -92,6 +107,7 @@ public class MemcachedSessionDataMapFactory implements SessionDataMapFactory
         MemcachedSessionDataMap m = new MemcachedSessionDataMap(_addresses, _weights);
         m.setExpirySec(_expiry);
         m.setHeartbeats(isHeartbeats());
+        m.setSessionDataCodec(getSessionDataCodec());
         return m;
     }
 }
@@ -18,9 +18,6 @@
 
 package org.eclipse.jetty.nosql.mongodb;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.ObjectOutputStream;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -39,7 +36,6 @@ import org.eclipse.jetty.nosql.NoSqlSessionDataStore;
 import org.eclipse.jetty.server.session.SessionContext;
 import org.eclipse.jetty.server.session.SessionData;
 import org.eclipse.jetty.server.session.UnreadableSessionDataException;
-import org.eclipse.jetty.util.ClassLoadingObjectInputStream;
 import org.eclipse.jetty.util.StringUtil;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
@@ -244,11 +240,7 @@ public class MongoSessionDataStore extends NoSqlSessionDataStore
                 else
                 {
                     //attributes have special serialized format
-                    try (ByteArrayInputStream bais = new ByteArrayInputStream(attributes);
-                         ClassLoadingObjectInputStream ois = new ClassLoadingObjectInputStream(bais))
-                    {
-                        SessionData.deserializeAttributes(data, ois);
-                    }
+                    _codec.decodeAttributes(data, attributes);
                 }
             }
             else
@@ -501,12 +493,7 @@ public class MongoSessionDataStore extends NoSqlSessionDataStore
         sets.put(ACCESSED, data.getAccessed());
         sets.put(LAST_ACCESSED, data.getLastAccessed());
 
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-             ObjectOutputStream oos = new ObjectOutputStream(baos))
-        {
-            SessionData.serializeAttributes(data, oos);
-            sets.put(getContextSubfield(ATTRIBUTES), baos.toByteArray());
-        }
+        sets.put(getContextSubfield(ATTRIBUTES), _codec.encodeAttributes(data));
 
         // Do the upsert
         if (!sets.isEmpty())
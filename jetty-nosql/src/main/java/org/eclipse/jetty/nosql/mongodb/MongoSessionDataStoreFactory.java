@@ -128,6 +128,7 @@ public class MongoSessionDataStoreFactory extends AbstractSessionDataStoreFactor
         MongoSessionDataStore store = new MongoSessionDataStore();
         store.setGracePeriodSec(getGracePeriodSec());
         store.setSavePeriodSec(getSavePeriodSec());
+        store.setSessionDataCodec(getSessionDataCodec());
         Mongo mongo;
 
         if (!StringUtil.isBlank(getConnectionString()))
@@ -25,18 +25,56 @@ import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
 import javax.servlet.UnavailableException;
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
+import org.eclipse.jetty.client.api.Request;
 import org.eclipse.jetty.client.api.Response;
+import org.eclipse.jetty.client.api.Result;
 import org.eclipse.jetty.util.URIUtil;
-
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+
+/**
+ * <p>A reverse proxy servlet that balances the requests across the configured {@link BalancerMember}s.</p>
+ * <p>The following init parameters may be used to configure the servlet, in addition to those of
+ * {@link AbstractProxyServlet}:</p>
+ * <ul>
+ * <li>balancerMember.&lt;name&gt;.proxyTo - the URI of the balancer member with the given name</li>
+ * <li>stickySessions - whether requests are sent to the member that created their session</li>
+ * <li>proxyPassReverse - whether redirects of the members are rewritten to the proxy</li>
+ * <li>balancerStrategy - how the member is selected: {@code roundRobin} (the default),
+ * {@code leastRequests} to select the member with the least outstanding requests, or
+ * {@code peakEwma} to select the member with the least peak EWMA of the response times,
+ * weighted by its outstanding requests</li>
+ * <li>ewmaDecayTime - the time in milliseconds over which the response times measured
+ * for the {@code peakEwma} strategy decay (defaults to 10000)</li>
+ * <li>ejectionFailures - the number of consecutive failed responses after which a member
+ * is ejected, or 0 to never eject members because of failures (the default)</li>
+ * <li>ejectionLatency - the peak EWMA of the response times in milliseconds above which a
+ * member is ejected, or 0 to never eject members because of their response times (the default)</li>
+ * <li>ejectionTime - the time in milliseconds during which an ejected member is not selected
+ * (defaults to 30000); if all the members are ejected, they are all selected again</li>
+ * </ul>
+ * <p>A response is failed if the proxy request fails, for example because the member cannot
+ * be connected, or if the member responds with a 5xx status code.</p>
+ * <p>Each member is exposed as a ServletContext attribute named after this servlet's name,
+ * followed by {@code .balancerMember.} and the member's name, so that their statistics can
+ * be exported to JMX with the mechanism provided by
+ * {@link javax.servlet.ServletContext#setAttribute(String, Object)}.</p>
+ */
 public class BalancerServlet extends ProxyServlet
 {
     private static final String BALANCER_MEMBER_PREFIX = "balancerMember.";
+    private static final String BALANCER_MEMBER_ATTRIBUTE = BalancerServlet.class.getName() + ".balancerMember";
     private static final List<String> FORBIDDEN_CONFIG_PARAMETERS;
 
     static
@@ -66,6 +104,11 @@ public class BalancerServlet extends ProxyServlet
     private final AtomicLong counter = new AtomicLong();
     private boolean _stickySessions;
     private boolean _proxyPassReverse;
+    private String _balancerStrategy;
+    private long _ewmaDecayTime;
+    private int _ejectionFailures;
+    private long _ejectionLatency;
+    private long _ejectionTime;
 
     @Override
     public void init() throws ServletException
@@ -73,8 +116,10 @@ public class BalancerServlet extends ProxyServlet
         validateConfig();
         super.init();
         initStickySessions();
+        initBalancerStrategy();
         initBalancers();
         initProxyPassReverse();
+        initEjection();
     }
 
     private void validateConfig() throws ServletException
@@ -102,9 +147,16 @@ public class BalancerServlet extends ProxyServlet
             String proxyTo = getServletConfig().getInitParameter(memberProxyToParam);
             if (proxyTo == null || proxyTo.trim().length() == 0)
                 throw new UnavailableException(memberProxyToParam + " parameter is empty.");
-            members.add(new BalancerMember(balancerName, proxyTo));
+            members.add(new BalancerMember(balancerName, proxyTo, _ewmaDecayTime));
         }
         _balancerMembers.addAll(members);
+
+        ServletConfig config = getServletConfig();
+        for (BalancerMember member : _balancerMembers)
+        {
+            // Put the members in the context to leverage ContextHandler.MANAGED_ATTRIBUTES
+            getServletContext().setAttribute(config.getServletName() + "." + BALANCER_MEMBER_PREFIX + member.getName(), member);
+        }
     }
 
     private void initProxyPassReverse()
@@ -112,6 +164,39 @@ public class BalancerServlet extends ProxyServlet
         _proxyPassReverse = Boolean.parseBoolean(getServletConfig().getInitParameter("proxyPassReverse"));
     }
 
+    private void initBalancerStrategy() throws ServletException
+    {
+        String strategy = getServletConfig().getInitParameter("balancerStrategy");
+        if (strategy == null)
+            strategy = "roundRobin";
+        switch (strategy)
+        {
+            case "roundRobin":
+            case "leastRequests":
+            case "peakEwma":
+                _balancerStrategy = strategy;
+                break;
+            default:
+                throw new UnavailableException("Unknown balancerStrategy " + strategy);
+        }
+        _ewmaDecayTime = TimeUnit.MILLISECONDS.toNanos(getLongInitParameter("ewmaDecayTime", 10000));
+        if (_ewmaDecayTime <= 0)
+            throw new UnavailableException("Invalid ewmaDecayTime " + _ewmaDecayTime);
+    }
+
+    private void initEjection()
+    {
+        _ejectionFailures = (int)getLongInitParameter("ejectionFailures", 0);
+        _ejectionLatency = TimeUnit.MILLISECONDS.toNanos(getLongInitParameter("ejectionLatency", 0));
+        _ejectionTime = TimeUnit.MILLISECONDS.toNanos(getLongInitParameter("ejectionTime", 30000));
+    }
+
+    private long getLongInitParameter(String name, long defaultValue)
+    {
+        String value = getServletConfig().getInitParameter(name);
+        return value == null ? defaultValue : Long.parseLong(value.trim());
+    }
+
     private Set<String> getBalancerNames() throws ServletException
     {
         Set<String> names = new HashSet<>();
@@ -135,6 +220,7 @@ public class BalancerServlet extends ProxyServlet
         BalancerMember balancerMember = selectBalancerMember(request);
         if (_log.isDebugEnabled())
             _log.debug("Selected {}", balancerMember);
+        request.setAttribute(BALANCER_MEMBER_ATTRIBUTE, balancerMember);
         String path = request.getRequestURI();
         String query = request.getQueryString();
         if (query != null)
@@ -144,18 +230,79 @@ public class BalancerServlet extends ProxyServlet
 
     private BalancerMember selectBalancerMember(HttpServletRequest request)
     {
+        long now = System.nanoTime();
         if (_stickySessions)
         {
             String name = getBalancerMemberNameFromSessionId(request);
             if (name != null)
             {
                 BalancerMember balancerMember = findBalancerMemberByName(name);
-                if (balancerMember != null)
+                if (balancerMember != null && !balancerMember.isEjected(now))
                     return balancerMember;
             }
         }
-        int index = (int)(counter.getAndIncrement() % _balancerMembers.size());
-        return _balancerMembers.get(index);
+
+        int size = _balancerMembers.size();
+        int start = (int)(counter.getAndIncrement() % size);
+        BalancerMember selected = null;
+        double selectedCost = Double.MAX_VALUE;
+        for (int i = 0; i < size; ++i)
+        {
+            BalancerMember balancerMember = _balancerMembers.get((start + i) % size);
+            if (balancerMember.isEjected(now))
+                continue;
+            double cost;
+            switch (_balancerStrategy)
+            {
+                case "leastRequests":
+                    cost = balancerMember.getOutstandingRequests();
+                    break;
+                case "peakEwma":
+                    cost = balancerMember.getCost(now);
+                    break;
+                default:
+                    return balancerMember;
+            }
+            // Ties are broken by the round robin order.
+            if (cost < selectedCost)
+            {
+                selected = balancerMember;
+                selectedCost = cost;
+            }
+        }
+
+        // All the members are ejected, better to try one than to fail.
+        if (selected == null)
+            selected = _balancerMembers.get(start);
+        return selected;
+    }
+
+    @Override
+    protected void sendProxyRequest(HttpServletRequest clientRequest, HttpServletResponse proxyResponse, Request proxyRequest)
+    {
+        BalancerMember balancerMember = (BalancerMember)clientRequest.getAttribute(BALANCER_MEMBER_ATTRIBUTE);
+        if (balancerMember != null)
+        {
+            long begin = balancerMember.onRequestBegin();
+            proxyRequest.onComplete(result -> onBalancerMemberComplete(balancerMember, begin, result));
+        }
+        super.sendProxyRequest(clientRequest, proxyResponse, proxyRequest);
+    }
+
+    private void onBalancerMemberComplete(BalancerMember balancerMember, long begin, Result result)
+    {
+        long now = System.nanoTime();
+        Response response = result.getResponse();
+        boolean failed = result.isFailed() || response == null || response.getStatus() >= 500;
+        balancerMember.onRequestComplete(begin, now, failed);
+
+        boolean eject = false;
+        if (_ejectionFailures > 0 && balancerMember.getConsecutiveFailures() >= _ejectionFailures)
+            eject = true;
+        else if (_ejectionLatency > 0 && balancerMember.getLatency(now) > _ejectionLatency)
+            eject = true;
+        if (eject && balancerMember.eject(now, _ejectionTime))
+            _log.info("Ejected {}", balancerMember);
     }
 
     private BalancerMember findBalancerMemberByName(String name)
@@ -259,29 +406,177 @@ public class BalancerServlet extends ProxyServlet
         return true;
     }
 
-    private static class BalancerMember
+    /**
+     * <p>A backend of a {@link BalancerServlet}, with the statistics used to select it.</p>
+     */
+    @ManagedObject("A balancer member")
+    public static class BalancerMember
     {
+        private final AtomicInteger _outstanding = new AtomicInteger();
+        private final AtomicInteger _consecutiveFailures = new AtomicInteger();
+        private final LongAdder _requests = new LongAdder();
+        private final LongAdder _failures = new LongAdder();
+        private final LongAdder _ejections = new LongAdder();
         private final String _name;
         private final String _proxyTo;
         private final URI _backendURI;
+        private final long _decayTime;
+        private volatile long _ejectedUntil;
+        private volatile boolean _ejected;
+        // Guarded by this.
+        private double _latency;
+        private long _latencyTime = System.nanoTime();
 
         public BalancerMember(String name, String proxyTo)
         {
+            this(name, proxyTo, TimeUnit.SECONDS.toNanos(10));
+        }
+
+        private BalancerMember(String name, String proxyTo, long decayTime)
+        {
+            _decayTime = decayTime;
             _name = name;
             _proxyTo = proxyTo;
             _backendURI = URI.create(_proxyTo).normalize();
         }
 
+        @ManagedAttribute(value = "The name", readonly = true)
         public String getName()
         {
             return _name;
         }
 
+        @ManagedAttribute(value = "The URI requests are proxied to", readonly = true)
         public String getProxyTo()
         {
             return _proxyTo;
         }
 
+        @ManagedAttribute(value = "The number of requests sent and not yet completed", readonly = true)
+        public int getOutstandingRequests()
+        {
+            return _outstanding.get();
+        }
+
+        @ManagedAttribute(value = "The number of requests", readonly = true)
+        public long getRequests()
+        {
+            return _requests.sum();
+        }
+
+        @ManagedAttribute(value = "The number of failed requests", readonly = true)
+        public long getFailures()
+        {
+            return _failures.sum();
+        }
+
+        @ManagedAttribute(value = "The number of consecutive failed requests", readonly = true)
+        public int getConsecutiveFailures()
+        {
+            return _consecutiveFailures.get();
+        }
+
+        @ManagedAttribute(value = "The number of times this member was ejected", readonly = true)
+        public long getEjections()
+        {
+            return _ejections.sum();
+        }
+
+        @ManagedAttribute(value = "Whether this member is ejected", readonly = true)
+        public boolean isEjected()
+        {
+            return isEjected(System.nanoTime());
+        }
+
+        @ManagedAttribute(value = "The peak EWMA of the response times in ms", readonly = true)
+        public double getLatencyMs()
+        {
+            return getLatency(System.nanoTime()) / TimeUnit.MILLISECONDS.toNanos(1);
+        }
+
+        private boolean isEjected(long now)
+        {
+            if (!_ejected)
+                return false;
+            if (now - _ejectedUntil < 0)
+                return true;
+            _ejected = false;
+            return false;
+        }
+
+        private boolean eject(long now, long ejectionTime)
+        {
+            if (isEjected(now))
+                return false;
+            _ejectedUntil = now + ejectionTime;
+            _ejected = true;
+            _ejections.increment();
+            return true;
+        }
+
+        private long onRequestBegin()
+        {
+            _outstanding.incrementAndGet();
+            _requests.increment();
+            return System.nanoTime();
+        }
+
+        private void onRequestComplete(long begin, long now, boolean failed)
+        {
+            _outstanding.decrementAndGet();
+            if (failed)
+            {
+                _failures.increment();
+                _consecutiveFailures.incrementAndGet();
+            }
+            else
+            {
+                _consecutiveFailures.set(0);
+            }
+
+            double sample = now - begin;
+            synchronized (this)
+            {
+                // A slower response is accounted immediately,
+                // while faster responses are averaged in.
+                double latency = decay(now);
+                if (sample > latency)
+                {
+                    _latency = sample;
+                }
+                else
+                {
+                    double weight = Math.exp(-(double)(now - _latencyTime) / _decayTime);
+                    _latency = _latency * weight + sample * (1 - weight);
+                }
+                _latencyTime = now;
+            }
+        }
+
+        private double getLatency(long now)
+        {
+            synchronized (this)
+            {
+                return decay(now);
+            }
+        }
+
+        private double decay(long now)
+        {
+            // The latency decays in the absence of responses, so that
+            // a member that was slow is eventually selected again.
+            long elapsed = Math.max(0, now - _latencyTime);
+            return _latency * Math.exp(-(double)elapsed / _decayTime);
+        }
+
+        private double getCost(long now)
+        {
+            // Members without responses yet have a minimal cost, rather than zero,
+            // so that their outstanding requests are still accounted.
+            double latency = Math.max(getLatency(now), TimeUnit.MICROSECONDS.toNanos(1));
+            return latency * (getOutstandingRequests() + 1);
+        }
+
         public URI getBackendURI()
         {
             return _backendURI;
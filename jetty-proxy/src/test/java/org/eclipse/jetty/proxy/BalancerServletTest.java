@@ -22,6 +22,9 @@ import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import javax.servlet.ServletException;
@@ -31,6 +34,7 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.eclipse.jetty.client.HttpClient;
 import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.http.HttpStatus;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.server.session.DefaultSessionIdManager;
@@ -40,13 +44,19 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class BalancerServletTest
 {
     private static final String CONTEXT_PATH = "/context";
     private static final String SERVLET_PATH = "/mapping";
 
+    private final Map<String, String> initParams = new HashMap<>();
     private boolean stickySessions;
     private Server server1;
     private Server server2;
@@ -77,7 +87,8 @@ public class BalancerServletTest
         server2 = createServer(new ServletHolder(servletClass), "node2");
         server2.start();
 
-        ServletHolder balancerServletHolder = new ServletHolder(BalancerServlet.class);
+        ServletHolder balancerServletHolder = new ServletHolder("balancer", BalancerServlet.class);
+        balancerServletHolder.setInitParameters(initParams);
         balancerServletHolder.setInitParameter("stickySessions", String.valueOf(stickySessions));
         balancerServletHolder.setInitParameter("proxyPassReverse", "true");
         balancerServletHolder.setInitParameter("balancerMember." + "node1" + ".proxyTo", "http://localhost:" + getServerPort(server1));
@@ -113,11 +124,21 @@ public class BalancerServletTest
 
     protected byte[] sendRequestToBalancer(String path) throws Exception
     {
-        ContentResponse response = client.newRequest("localhost", getServerPort(balancer))
+        return sendToBalancer(path).getContent();
+    }
+
+    private ContentResponse sendToBalancer(String path) throws Exception
+    {
+        return client.newRequest("localhost", getServerPort(balancer))
             .path(CONTEXT_PATH + SERVLET_PATH + path)
             .timeout(5, TimeUnit.SECONDS)
             .send();
-        return response.getContent();
+    }
+
+    private BalancerServlet.BalancerMember getBalancerMember(String name)
+    {
+        ServletContextHandler context = balancer.getChildHandlerByClass(ServletContextHandler.class);
+        return (BalancerServlet.BalancerMember)context.getServletContext().getAttribute("balancer.balancerMember." + name);
     }
 
     @Test
@@ -160,6 +181,101 @@ public class BalancerServletTest
         assertEquals("success", msg);
     }
 
+    @Test
+    public void testLeastRequestsBalancer() throws Exception
+    {
+        initParams.put("balancerStrategy", "leastRequests");
+        startBalancer(PortServlet.class);
+
+        PortServlet.blocker = new CountDownLatch(1);
+        try
+        {
+            CountDownLatch blockedLatch = new CountDownLatch(1);
+            client.newRequest("localhost", getServerPort(balancer))
+                .path(CONTEXT_PATH + SERVLET_PATH + "/block")
+                .send(result -> blockedLatch.countDown());
+            long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (getOutstandingRequests() == 0 && System.nanoTime() < end)
+            {
+                Thread.sleep(10);
+            }
+            assertEquals(1, getOutstandingRequests());
+
+            // All the requests go to the member without outstanding requests.
+            String port = readFirstLine(sendRequestToBalancer("/other"));
+            for (int i = 0; i < 5; i++)
+            {
+                assertEquals(port, readFirstLine(sendRequestToBalancer("/other")));
+            }
+
+            PortServlet.blocker.countDown();
+            assertTrue(blockedLatch.await(5, TimeUnit.SECONDS));
+        }
+        finally
+        {
+            PortServlet.blocker.countDown();
+            PortServlet.blocker = null;
+        }
+    }
+
+    @Test
+    public void testPeakEwmaBalancer() throws Exception
+    {
+        initParams.put("balancerStrategy", "peakEwma");
+        startBalancer(PortServlet.class);
+
+        PortServlet.slowPort = getServerPort(server2);
+        try
+        {
+            int fast = 0;
+            for (int i = 0; i < 20; i++)
+            {
+                if (readFirstLine(sendRequestToBalancer("/ewma")).equals(String.valueOf(getServerPort(server1))))
+                    ++fast;
+            }
+            // Once the response times are known, the slow member is avoided.
+            assertThat(fast, greaterThanOrEqualTo(18));
+            assertThat(getBalancerMember("node2").getLatencyMs(), greaterThanOrEqualTo(getBalancerMember("node1").getLatencyMs()));
+        }
+        finally
+        {
+            PortServlet.slowPort = -1;
+        }
+    }
+
+    @Test
+    public void testFailingMemberEjected() throws Exception
+    {
+        initParams.put("ejectionFailures", "1");
+        startBalancer(PortServlet.class);
+        server2.stop();
+
+        int failed = 0;
+        for (int i = 0; i < 10; i++)
+        {
+            if (sendToBalancer("/eject").getStatus() != HttpStatus.OK_200)
+                ++failed;
+        }
+
+        assertThat(failed, lessThanOrEqualTo(1));
+        BalancerServlet.BalancerMember member2 = getBalancerMember("node2");
+        assertTrue(member2.isEjected());
+        assertEquals(1, member2.getEjections());
+        assertEquals(failed, member2.getFailures());
+        assertFalse(getBalancerMember("node1").isEjected());
+        assertEquals(10 - failed, getBalancerMember("node1").getRequests());
+    }
+
+    private int getOutstandingRequests()
+    {
+        // The members are created when the servlet is initialized by the first request.
+        BalancerServlet.BalancerMember member1 = getBalancerMember("node1");
+        BalancerServlet.BalancerMember member2 = getBalancerMember("node2");
+        if (member1 == null || member2 == null)
+            return 0;
+        return member1.getOutstandingRequests() + member2.getOutstandingRequests();
+    }
+
     private String readFirstLine(byte[] responseBytes) throws IOException
     {
         BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(responseBytes)));
@@ -180,6 +296,30 @@ public class BalancerServletTest
         }
     }
 
+    public static final class PortServlet extends HttpServlet
+    {
+        private static volatile CountDownLatch blocker;
+        private static volatile int slowPort = -1;
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException
+        {
+            try
+            {
+                if (req.getRequestURI().endsWith("/block"))
+                    blocker.await(5, TimeUnit.SECONDS);
+                if (req.getLocalPort() == slowPort)
+                    Thread.sleep(50);
+            }
+            catch (InterruptedException x)
+            {
+                throw new ServletException(x);
+            }
+            resp.setContentType("text/plain");
+            resp.getWriter().println(req.getLocalPort());
+        }
+    }
+
     public static final class RelocationServlet extends HttpServlet
     {
         @Override
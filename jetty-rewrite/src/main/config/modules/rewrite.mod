@@ -25,3 +25,6 @@ etc/jetty-rewrite.xml
 
 ## Request attribute key under with the original path is stored
 # jetty.rewrite.originalPathAttribute=requestedPath
+
+## Whether to select the rules through an index of their patterns
+# jetty.rewrite.compiled=false
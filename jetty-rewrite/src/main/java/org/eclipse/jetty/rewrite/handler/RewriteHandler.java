@@ -235,6 +235,24 @@ public class RewriteHandler extends HandlerWrapper
         _rules.addRule(rule);
     }
 
+    /**
+     * @return true if the rules are selected through an index of their patterns
+     * @see RuleContainer#setCompiled(boolean)
+     */
+    public boolean isCompiled()
+    {
+        return _rules.isCompiled();
+    }
+
+    /**
+     * @param compiled true to select the rules through an index of their patterns
+     * @see RuleContainer#setCompiled(boolean)
+     */
+    public void setCompiled(boolean compiled)
+    {
+        _rules.setCompiled(compiled);
+    }
+
     /**
      * @return the rewriteRequestURI If true, this handler will rewrite the value
      * returned by {@link HttpServletRequest#getRequestURI()}.
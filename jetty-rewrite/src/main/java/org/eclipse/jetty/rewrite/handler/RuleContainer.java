@@ -19,6 +19,7 @@
 package org.eclipse.jetty.rewrite.handler;
 
 import java.io.IOException;
+import java.util.BitSet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -46,6 +47,8 @@ public class RuleContainer extends Rule implements Dumpable
     protected String _originalQueryStringAttribute;
     protected boolean _rewriteRequestURI = true;
     protected boolean _rewritePathInfo = true;
+    private boolean _compiled;
+    private volatile RuleIndex _index;
 
     /**
      * Returns the list of rules.
@@ -77,6 +80,32 @@ public class RuleContainer extends Rule implements Dumpable
         _rules = ArrayUtil.addToArray(_rules, rule, Rule.class);
     }
 
+    /**
+     * @return true if the rules are selected through an index of their patterns
+     * @see #setCompiled(boolean)
+     */
+    public boolean isCompiled()
+    {
+        return _compiled;
+    }
+
+    /**
+     * <p>Sets whether the rules are selected through an index of their patterns,
+     * rather than by trying each rule in turn.</p>
+     * <p>When compiled, {@link PatternRule}s are indexed by exact path, path prefix
+     * and suffix, and {@link RegexRule}s by the literal prefix of their regular
+     * expression, so that only the rules that may match the target are tried.
+     * The rules are still applied in order, and the index is rebuilt when the rules
+     * are changed with {@link #setRules(Rule[])} or {@link #addRule(Rule)}; the patterns
+     * of the rules must not be changed once the container is in use.</p>
+     *
+     * @param compiled true to select the rules through an index of their patterns
+     */
+    public void setCompiled(boolean compiled)
+    {
+        _compiled = compiled;
+    }
+
     /**
      * @return the rewriteRequestURI If true, this handler will rewrite the value
      * returned by {@link HttpServletRequest#getRequestURI()}.
@@ -158,11 +187,23 @@ public class RuleContainer extends Rule implements Dumpable
     {
         boolean originalSet = _originalPathAttribute == null;
 
-        if (_rules == null)
+        Rule[] rules = _rules;
+        if (rules == null)
             return target;
 
-        for (Rule rule : _rules)
+        RuleIndex index = _compiled ? getRuleIndex(rules) : null;
+        BitSet selected = index == null ? null : index.select(target);
+
+        for (int i = 0; i < rules.length; i++)
         {
+            if (selected != null)
+            {
+                i = selected.nextSetBit(i);
+                if (i < 0)
+                    break;
+            }
+
+            Rule rule = rules[i];
             String applied = rule.matchAndApply(target, request, response);
             if (applied != null)
             {
@@ -204,6 +245,10 @@ public class RuleContainer extends Rule implements Dumpable
                 if (_rewritePathInfo)
                     baseRequest.setPathInfo(applied);
 
+                // The following rules are matched against the rewritten target.
+                if (selected != null && !applied.equals(target))
+                    selected = index.select(applied);
+
                 target = applied;
 
                 if (rule.isHandling())
@@ -223,6 +268,19 @@ public class RuleContainer extends Rule implements Dumpable
         return target;
     }
 
+    private RuleIndex getRuleIndex(Rule[] rules)
+    {
+        RuleIndex index = _index;
+        if (index == null || index.getRules() != rules)
+        {
+            index = new RuleIndex(rules);
+            if (LOG.isDebugEnabled())
+                LOG.debug("compiled {}/{} indexed rules", index.getIndexedCount(), rules.length);
+            _index = index;
+        }
+        return index;
+    }
+
     @Override
     public void dump(Appendable out, String indent) throws IOException
     {
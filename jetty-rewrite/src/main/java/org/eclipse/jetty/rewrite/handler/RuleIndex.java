@@ -0,0 +1,299 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.rewrite.handler;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * <p>An index of the rules of a {@link RuleContainer} that, given a target,
+ * quickly selects the rules that may match it.</p>
+ * <p>{@link PatternRule}s are indexed by exact path, by path prefix and by
+ * suffix, with the same semantic of {@link org.eclipse.jetty.http.PathMap#match(String, String)}.
+ * {@link RegexRule}s are indexed by the literal prefix of their regular expression,
+ * which any matching target must start with.
+ * All the other rules, including the rules whose pattern is not indexable and the
+ * rules that override {@code matchAndApply(...)}, are always selected.</p>
+ * <p>The selected rules are returned as a set of indexes in the rules array, so that
+ * they can be applied in their original order.</p>
+ */
+class RuleIndex
+{
+    private final Rule[] _rules;
+    private final BitSet _always = new BitSet();
+    private final Map<String, int[]> _exact = new HashMap<>();
+    private final Node _prefixes = new Node();
+    private final int[] _suffixLengths;
+    private final Map<String, int[]>[] _suffixes;
+    private final int _indexed;
+
+    @SuppressWarnings("unchecked")
+    RuleIndex(Rule[] rules)
+    {
+        _rules = rules;
+        int indexed = 0;
+        Map<Integer, Map<String, int[]>> suffixes = new TreeMap<>();
+        for (int i = 0; i < rules.length; i++)
+        {
+            Rule rule = rules[i];
+            if (rule instanceof PatternRule && isMatchAndApplyOf(rule, PatternRule.class))
+            {
+                String pattern = ((PatternRule)rule).getPattern();
+                if (pattern == null)
+                {
+                    _always.set(i);
+                }
+                else if (pattern.isEmpty())
+                {
+                    add(_exact, "/", i);
+                    ++indexed;
+                }
+                else if ("/".equals(pattern))
+                {
+                    _always.set(i);
+                }
+                else if (pattern.charAt(0) == '/')
+                {
+                    if (pattern.endsWith("/*"))
+                    {
+                        Node node = _prefixes.insert(pattern, pattern.length() - 2);
+                        node.pathRules = add(node.pathRules, i);
+                    }
+                    else
+                    {
+                        add(_exact, pattern, i);
+                    }
+                    ++indexed;
+                }
+                else if (pattern.charAt(0) == '*')
+                {
+                    String suffix = pattern.substring(1);
+                    add(suffixes.computeIfAbsent(suffix.length(), k -> new HashMap<>()), suffix, i);
+                    ++indexed;
+                }
+                else
+                {
+                    // Such a pattern never matches, the rule is never selected.
+                    ++indexed;
+                }
+            }
+            else if (rule instanceof RegexRule && isMatchAndApplyOf(rule, RegexRule.class) && ((RegexRule)rule)._regex != null)
+            {
+                String prefix = literalPrefix(((RegexRule)rule)._regex);
+                if (prefix == null || prefix.isEmpty())
+                {
+                    _always.set(i);
+                }
+                else
+                {
+                    Node node = _prefixes.insert(prefix, prefix.length());
+                    node.regexRules = add(node.regexRules, i);
+                    ++indexed;
+                }
+            }
+            else
+            {
+                _always.set(i);
+            }
+        }
+        _indexed = indexed;
+
+        _suffixLengths = new int[suffixes.size()];
+        _suffixes = new Map[suffixes.size()];
+        int s = 0;
+        for (Map.Entry<Integer, Map<String, int[]>> entry : suffixes.entrySet())
+        {
+            _suffixLengths[s] = entry.getKey();
+            _suffixes[s] = entry.getValue();
+            ++s;
+        }
+    }
+
+    /**
+     * @return the rules this index was built from
+     */
+    Rule[] getRules()
+    {
+        return _rules;
+    }
+
+    /**
+     * @return the number of rules that are selected only when their pattern may match
+     */
+    int getIndexedCount()
+    {
+        return _indexed;
+    }
+
+    /**
+     * @param target the target to select the rules for
+     * @return the indexes of the rules that may match the target
+     */
+    BitSet select(String target)
+    {
+        BitSet selected = (BitSet)_always.clone();
+
+        set(selected, _exact.get(target));
+
+        int length = target.length();
+        for (int s = 0; s < _suffixLengths.length; s++)
+        {
+            int suffixLength = _suffixLengths[s];
+            if (suffixLength > length)
+                break;
+            set(selected, _suffixes[s].get(target.substring(length - suffixLength)));
+        }
+
+        Node node = _prefixes;
+        int depth = 0;
+        while (node != null)
+        {
+            set(selected, node.regexRules);
+            // A "/foo/*" pattern matches "/foo" and "/foo/..." but not "/foobar".
+            if (node.pathRules != null && (depth == length || target.charAt(depth) == '/'))
+                set(selected, node.pathRules);
+            if (depth == length)
+                break;
+            node = node.next(target.charAt(depth++));
+        }
+
+        return selected;
+    }
+
+    private static void set(BitSet selected, int[] indexes)
+    {
+        if (indexes != null)
+        {
+            for (int index : indexes)
+            {
+                selected.set(index);
+            }
+        }
+    }
+
+    private static void add(Map<String, int[]> map, String key, int index)
+    {
+        map.put(key, add(map.get(key), index));
+    }
+
+    private static int[] add(int[] indexes, int index)
+    {
+        if (indexes == null)
+            return new int[]{index};
+        int[] result = Arrays.copyOf(indexes, indexes.length + 1);
+        result[indexes.length] = index;
+        return result;
+    }
+
+    private static boolean isMatchAndApplyOf(Rule rule, Class<?> type)
+    {
+        try
+        {
+            return rule.getClass().getMethod("matchAndApply", String.class, HttpServletRequest.class, HttpServletResponse.class).getDeclaringClass() == type;
+        }
+        catch (NoSuchMethodException x)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * @param regex the regular expression
+     * @return the literal string that all the strings matching the regular expression
+     * start with, or null if it cannot be determined
+     */
+    static String literalPrefix(Pattern regex)
+    {
+        if (regex.flags() != 0)
+            return null;
+
+        String pattern = regex.pattern();
+        // Alternatives may have different prefixes.
+        if (pattern.indexOf('|') >= 0)
+            return null;
+
+        StringBuilder prefix = new StringBuilder();
+        int i = pattern.startsWith("^") ? 1 : 0;
+        while (i < pattern.length())
+        {
+            char c = pattern.charAt(i);
+            int next;
+            char literal;
+            if (c == '\\')
+            {
+                if (i + 1 == pattern.length())
+                    break;
+                char escaped = pattern.charAt(i + 1);
+                // Escaped letters and digits are character classes,
+                // back references or quotations, not literals.
+                if (Character.isLetterOrDigit(escaped))
+                    break;
+                literal = escaped;
+                next = i + 2;
+            }
+            else if (".^$?*+()[]{}".indexOf(c) >= 0)
+            {
+                break;
+            }
+            else
+            {
+                literal = c;
+                next = i + 1;
+            }
+
+            // A quantified literal is optional or repeated.
+            if (next < pattern.length() && "?*+{".indexOf(pattern.charAt(next)) >= 0)
+                break;
+            prefix.append(literal);
+            i = next;
+        }
+        return prefix.toString();
+    }
+
+    private static class Node
+    {
+        private Map<Character, Node> children;
+        private int[] pathRules;
+        private int[] regexRules;
+
+        private Node insert(String key, int length)
+        {
+            Node node = this;
+            for (int i = 0; i < length; i++)
+            {
+                Node parent = node;
+                if (parent.children == null)
+                    parent.children = new HashMap<>();
+                node = parent.children.computeIfAbsent(key.charAt(i), k -> new Node());
+            }
+            return node;
+        }
+
+        private Node next(char c)
+        {
+            return children == null ? null : children.get(c);
+        }
+    }
+}
@@ -163,6 +163,45 @@ public class RewriteHandlerTest extends AbstractRuleTestCase
         assertTrue(_request.isHandled());
     }
 
+    @Test
+    public void testCompiled() throws Exception
+    {
+        _handler.setCompiled(true);
+        _handler.setOriginalPathAttribute("before");
+        _handler.setRewriteRequestURI(true);
+        _handler.setRewritePathInfo(true);
+
+        // Each rule matches the target rewritten by the previous one.
+        _response.setStatus(200);
+        _request.setHandled(false);
+        _request.setURIPathQuery("/aaa/bar");
+        _request.setPathInfo("/aaa/bar");
+        _handler.handle("/aaa/bar", _request, _request, _response);
+        assertEquals(201, _response.getStatus());
+        assertEquals("/ddd/bar", _request.getAttribute("target"));
+        assertEquals("/ddd/bar", _request.getAttribute("URI"));
+        assertEquals("/aaa/bar", _request.getAttribute("before"));
+
+        // A rule added later is indexed too, and rules are applied in order.
+        _handler.addRule(new RewriteRegexRule("/bar/(.*)", "/yyy/$1"));
+        _response.setStatus(200);
+        _request.setHandled(false);
+        _request.setURIPathQuery("/xxx/bar");
+        _request.setPathInfo("/xxx/bar");
+        _handler.handle("/xxx/bar", _request, _request, _response);
+        assertEquals(201, _response.getStatus());
+        assertEquals("/yyy/zzz", _request.getAttribute("target"));
+
+        _response.setStatus(200);
+        _request.setHandled(false);
+        _rule2.setTerminating(true);
+        _request.setURIPathQuery("/aaa/bar");
+        _request.setPathInfo("/aaa/bar");
+        _handler.handle("/aaa/bar", _request, _request, _response);
+        assertEquals(201, _response.getStatus());
+        assertEquals("/ccc/bar", _request.getAttribute("target"));
+    }
+
     @Test
     public void testEncodedPattern() throws Exception
     {
@@ -0,0 +1,116 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.rewrite.handler;
+
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.http.PathMap;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RuleIndexTest
+{
+    private static final String[] PATTERNS = {
+        "", "/", "/*", "/foo", "/foo/*", "/foo/bar/*", "/foobar", "/foo/bar", "*.jsp", "*.do", "*", "*/bar", "foo", "/foo*"
+    };
+
+    private static final String[] REGEXES = {
+        "/foo/(.*)", "^/foo/bar", "/foo.*", "/fo+/.*", "/x\\.y/.*", "/a|/foo", "(?i)/FOO/.*", ".*\\.jsp", "/foo/b?ar", "/foo/\\d+"
+    };
+
+    private static final String[] TARGETS = {
+        "", "/", "/foo", "/foo/", "/foobar", "/foo/bar", "/foo/bar/baz", "/foo/index.jsp", "/index.do",
+        "/bar", "/x.y/z", "/xxy/z", "/fooo/x", "/foo/123", "/FOO/x", "/a", "/foo*", "/foo/*"
+    };
+
+    @Test
+    public void testLiteralPrefix()
+    {
+        assertEquals("/foo/", RuleIndex.literalPrefix(Pattern.compile("/foo/(.*)")));
+        assertEquals("/foo/bar", RuleIndex.literalPrefix(Pattern.compile("^/foo/bar")));
+        assertEquals("/f", RuleIndex.literalPrefix(Pattern.compile("/fo+/.*")));
+        assertEquals("/x.y/", RuleIndex.literalPrefix(Pattern.compile("/x\\.y/.*")));
+        assertEquals("/foo/", RuleIndex.literalPrefix(Pattern.compile("/foo/\\d+")));
+        assertEquals("", RuleIndex.literalPrefix(Pattern.compile(".*\\.jsp")));
+        assertNull(RuleIndex.literalPrefix(Pattern.compile("/a|/foo")));
+        assertNull(RuleIndex.literalPrefix(Pattern.compile("/foo", Pattern.CASE_INSENSITIVE)));
+    }
+
+    @Test
+    public void testSelectedRulesIncludeMatchingRules()
+    {
+        Rule[] rules = new Rule[PATTERNS.length + REGEXES.length];
+        for (int i = 0; i < PATTERNS.length; i++)
+        {
+            rules[i] = new RewritePatternRule(PATTERNS[i], "/x");
+        }
+        for (int i = 0; i < REGEXES.length; i++)
+        {
+            rules[PATTERNS.length + i] = new RewriteRegexRule(REGEXES[i], "/x");
+        }
+
+        RuleIndex index = new RuleIndex(rules);
+        for (String target : TARGETS)
+        {
+            BitSet selected = index.select(target);
+            for (int i = 0; i < PATTERNS.length; i++)
+            {
+                boolean matches = PathMap.match(PATTERNS[i], target);
+                // Indexed pattern rules are selected if and only if they match.
+                assertEquals(matches, selected.get(i), PATTERNS[i] + " " + target);
+            }
+            for (int i = 0; i < REGEXES.length; i++)
+            {
+                if (Pattern.compile(REGEXES[i]).matcher(target).matches())
+                    assertTrue(selected.get(PATTERNS.length + i), REGEXES[i] + " " + target);
+            }
+        }
+    }
+
+    @Test
+    public void testOverriddenMatchAndApplyAlwaysSelected()
+    {
+        Rule rule = new RegexRule("/foo/.*")
+        {
+            @Override
+            public String matchAndApply(String target, HttpServletRequest request, HttpServletResponse response)
+            {
+                return "/matched";
+            }
+
+            @Override
+            protected String apply(String target, HttpServletRequest request, HttpServletResponse response, Matcher matcher) throws IOException
+            {
+                return target;
+            }
+        };
+
+        RuleIndex index = new RuleIndex(new Rule[]{rule});
+        assertEquals(0, index.getIndexedCount());
+        assertTrue(index.select("/bar").get(0));
+    }
+}
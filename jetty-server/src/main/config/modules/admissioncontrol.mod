@@ -0,0 +1,26 @@
+#
+# Admission Control module
+# Applies AdmissionControlHandler to entire server
+#
+
+[tags]
+handler
+
+[depend]
+server
+
+[xml]
+etc/jetty-admissioncontrol.xml
+
+[ini-template]
+## Enabled by default?
+#jetty.admissioncontrol.enabled=true
+
+## Max number of requests handled concurrently
+#jetty.admissioncontrol.maxActiveRequests=200
+
+## Max number of queued requests, beyond which requests are rejected with 503
+#jetty.admissioncontrol.maxQueuedRequests=1024
+
+## Max time in ms a request is queued before being rejected with 503
+#jetty.admissioncontrol.maxQueueMs=30000
@@ -0,0 +1,34 @@
+# DO NOT EDIT - See: https://www.eclipse.org/jetty/documentation/current/startup-modules.html
+
+[description]
+Configures a ByteBufferPool used by ServerConnectors that
+evicts idle buffers and enforces hard memory ceilings.
+
+[provides]
+bytebufferpool
+
+[xml]
+etc/jetty-bytebufferpool-evicting.xml
+
+[ini-template]
+### Server ByteBufferPool Configuration
+## Minimum capacity to pool ByteBuffers
+#jetty.byteBufferPool.minCapacity=0
+
+## Maximum capacity to pool ByteBuffers
+#jetty.byteBufferPool.maxCapacity=65536
+
+## Capacity factor
+#jetty.byteBufferPool.factor=1024
+
+## Maximum queue length for each bucket (-1 for unbounded)
+#jetty.byteBufferPool.maxQueueLength=-1
+
+## Maximum heap memory retainable by the pool (-1 for unlimited)
+#jetty.byteBufferPool.maxHeapMemory=-1
+
+## Maximum direct memory retainable by the pool (-1 for unlimited)
+#jetty.byteBufferPool.maxDirectMemory=-1
+
+## Period in ms after which buffers not needed during the period are evicted
+#jetty.byteBufferPool.evictionPeriod=30000
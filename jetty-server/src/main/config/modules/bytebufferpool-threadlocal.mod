@@ -0,0 +1,36 @@
+# DO NOT EDIT - See: https://www.eclipse.org/jetty/documentation/current/startup-modules.html
+
+[description]
+Configures a ByteBufferPool with per-thread magazines used by ServerConnectors.
+
+[provides]
+bytebufferpool
+
+[xml]
+etc/jetty-bytebufferpool-threadlocal.xml
+
+[ini-template]
+### Server ByteBufferPool Configuration
+## Minimum capacity to pool ByteBuffers
+#jetty.byteBufferPool.minCapacity=0
+
+## Maximum capacity to pool ByteBuffers
+#jetty.byteBufferPool.maxCapacity=65536
+
+## Capacity factor
+#jetty.byteBufferPool.factor=1024
+
+## Maximum queue length for each shared bucket (-1 for unbounded)
+#jetty.byteBufferPool.maxQueueLength=-1
+
+## Maximum heap memory retainable by the shared buckets (-1 for unlimited)
+#jetty.byteBufferPool.maxHeapMemory=-1
+
+## Maximum direct memory retainable by the shared buckets (-1 for unlimited)
+#jetty.byteBufferPool.maxDirectMemory=-1
+
+## Maximum number of ByteBuffers of each capacity held by each thread
+#jetty.byteBufferPool.magazineSize=4
+
+## Maximum memory held by the magazine of each thread (-1 for 4 times maxCapacity)
+#jetty.byteBufferPool.maxThreadMemory=-1
@@ -75,6 +75,9 @@ patch-module: servlet.api=lib/jetty-schemas-3.1.jar
 ## Relative Redirect Locations allowed
 # jetty.httpConfig.relativeRedirectAllowed=false
 
+## Min length of static file content transferred directly to cleartext connections (-1 to disable)
+# jetty.httpConfig.fileTransferThreshold=-1
+
 ### Server configuration
 ## Whether ctrl+c on the console gracefully stops the Jetty server
 # jetty.server.stopAtShutdown=true
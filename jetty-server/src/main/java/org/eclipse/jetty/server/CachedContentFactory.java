@@ -26,12 +26,12 @@ import java.nio.channels.ReadableByteChannel;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.eclipse.jetty.http.CompressedContentFormat;
 import org.eclipse.jetty.http.DateGenerator;
@@ -49,6 +49,12 @@ import org.eclipse.jetty.util.log.Logger;
 import org.eclipse.jetty.util.resource.Resource;
 import org.eclipse.jetty.util.resource.ResourceFactory;
 
+/**
+ * <p>A {@link HttpContent.ContentFactory} that caches the content of static resources.</p>
+ * <p>The cache is bounded by the number of cached files and by the total size of the
+ * cached buffers; when either bound is exceeded, entries are evicted in the order
+ * chosen by the {@link EvictionPolicy}, by default the least recently used first.</p>
+ */
 public class CachedContentFactory implements HttpContent.ContentFactory
 {
     private static final Logger LOG = Log.getLogger(CachedContentFactory.class);
@@ -63,6 +69,10 @@ public class CachedContentFactory implements HttpContent.ContentFactory
     private final boolean _etags;
     private final CompressedContentFormat[] _precompressedFormats;
     private final boolean _useFileMappedBuffer;
+    private final LongAdder _hits = new LongAdder();
+    private final LongAdder _misses = new LongAdder();
+    private final LongAdder _evictions = new LongAdder();
+    private EvictionPolicy _evictionPolicy = new SegmentedLRUEvictionPolicy(0, false);
 
     private int _maxCachedFileSize = 128 * 1024 * 1024;
     private int _maxCachedFiles = 2048;
@@ -145,6 +155,61 @@ public class CachedContentFactory implements HttpContent.ContentFactory
         return _useFileMappedBuffer;
     }
 
+    /**
+     * @return the policy that chooses the entries to evict
+     */
+    public EvictionPolicy getEvictionPolicy()
+    {
+        return _evictionPolicy;
+    }
+
+    /**
+     * <p>Sets the policy that chooses the entries to evict.</p>
+     * <p>The cache is flushed when the policy is changed.</p>
+     *
+     * @param evictionPolicy the policy that chooses the entries to evict
+     */
+    public void setEvictionPolicy(EvictionPolicy evictionPolicy)
+    {
+        Objects.requireNonNull(evictionPolicy);
+        flushCache();
+        _evictionPolicy = evictionPolicy;
+    }
+
+    /**
+     * @return the number of lookups that found a valid entry in this cache
+     */
+    public long getHits()
+    {
+        return _hits.sum();
+    }
+
+    /**
+     * @return the number of lookups that did not find a valid entry in this cache
+     */
+    public long getMisses()
+    {
+        return _misses.sum();
+    }
+
+    /**
+     * @return the number of entries evicted to respect the cache bounds
+     */
+    public long getEvictions()
+    {
+        return _evictions.sum();
+    }
+
+    /**
+     * Resets the hit, miss and eviction counters.
+     */
+    public void resetStats()
+    {
+        _hits.reset();
+        _misses.reset();
+        _evictions.reset();
+    }
+
     public void flushCache()
     {
         while (_cache.size() > 0)
@@ -180,9 +245,15 @@ public class CachedContentFactory implements HttpContent.ContentFactory
     public HttpContent getContent(String pathInContext, int maxBufferSize) throws IOException
     {
         // Is the content in this cache?
+        _evictionPolicy.onLookup(pathInContext);
         CachedHttpContent content = _cache.get(pathInContext);
         if (content != null && (content).isValid())
+        {
+            _hits.increment();
+            _evictionPolicy.onAccessed(content);
             return content;
+        }
+        _misses.increment();
 
         // try loading the content from our factory.
         Resource resource = _factory.getResource(pathInContext);
@@ -225,7 +296,7 @@ public class CachedContentFactory implements HttpContent.ContentFactory
             return new ResourceHttpContent(resource, _mimeTypes.getMimeByExtension(resource.toString()), getMaxCachedFileSize());
 
         // Will it fit in the cache?
-        if (isCacheable(resource))
+        if (isCacheable(resource) && (!isFull() || _evictionPolicy.isAdmitted(pathInContext)))
         {
             CachedHttpContent content;
 
@@ -251,6 +322,10 @@ public class CachedContentFactory implements HttpContent.ContentFactory
                                 compressedContent.invalidate();
                                 compressedContent = added;
                             }
+                            else
+                            {
+                                _evictionPolicy.onAdded(compressedContent);
+                            }
                         }
                     }
                     if (compressedContent != null)
@@ -268,6 +343,10 @@ public class CachedContentFactory implements HttpContent.ContentFactory
                 content.invalidate();
                 content = added;
             }
+            else
+            {
+                _evictionPolicy.onAdded(content);
+            }
 
             return content;
         }
@@ -299,34 +378,23 @@ public class CachedContentFactory implements HttpContent.ContentFactory
         return new ResourceHttpContent(resource, mt, maxBufferSize);
     }
 
+    private boolean isFull()
+    {
+        return _cachedFiles.get() >= _maxCachedFiles || _cachedSize.get() >= _maxCacheSize;
+    }
+
     private void shrinkCache()
     {
         // While we need to shrink
         while (_cache.size() > 0 && (_cachedFiles.get() > _maxCachedFiles || _cachedSize.get() > _maxCacheSize))
         {
-            // Scan the entire cache and generate an ordered list by last accessed time.
-            SortedSet<CachedHttpContent> sorted = new TreeSet<>((c1, c2) ->
-            {
-                if (c1._lastAccessed < c2._lastAccessed)
-                    return -1;
-
-                if (c1._lastAccessed > c2._lastAccessed)
-                    return 1;
-
-                if (c1._contentLengthValue < c2._contentLengthValue)
-                    return -1;
-
-                return c1._key.compareTo(c2._key);
-            });
-            sorted.addAll(_cache.values());
-
-            // Invalidate least recently used first
-            for (CachedHttpContent content : sorted)
+            CachedHttpContent content = _evictionPolicy.evict();
+            if (content == null)
+                break;
+            if (content == _cache.remove(content.getKey()))
             {
-                if (_cachedFiles.get() <= _maxCachedFiles && _cachedSize.get() <= _maxCacheSize)
-                    break;
-                if (content == _cache.remove(content.getKey()))
-                    content.invalidate();
+                _evictions.increment();
+                content.invalidate();
             }
         }
     }
@@ -401,7 +469,6 @@ public class CachedContentFactory implements HttpContent.ContentFactory
         private final AtomicReference<ByteBuffer> _indirectBuffer = new AtomicReference<>();
         private final AtomicReference<ByteBuffer> _directBuffer = new AtomicReference<>();
         private final AtomicReference<ByteBuffer> _mappedBuffer = new AtomicReference<>();
-        private volatile long _lastAccessed;
 
         CachedHttpContent(String pathInContext, Resource resource, Map<CompressedContentFormat, CachedHttpContent> precompressedResources)
         {
@@ -424,8 +491,6 @@ public class CachedContentFactory implements HttpContent.ContentFactory
             if (_cachedFiles.incrementAndGet() > _maxCachedFiles)
                 shrinkCache();
 
-            _lastAccessed = System.currentTimeMillis();
-
             _etag = CachedContentFactory.this._etags ? new PreEncodedHttpField(HttpHeader.ETAG, resource.getWeakETag()) : null;
 
             if (precompressedResources != null)
@@ -473,10 +538,7 @@ public class CachedContentFactory implements HttpContent.ContentFactory
         boolean isValid()
         {
             if (_lastModifiedValue == _resource.lastModified() && _contentLengthValue == _resource.length())
-            {
-                _lastAccessed = System.currentTimeMillis();
                 return true;
-            }
 
             if (this == _cache.remove(_key))
                 invalidate();
@@ -485,6 +547,8 @@ public class CachedContentFactory implements HttpContent.ContentFactory
 
         protected void invalidate()
         {
+            _evictionPolicy.onRemoved(this);
+
             ByteBuffer indirect = _indirectBuffer.getAndSet(null);
             if (indirect != null)
                 _cachedSize.addAndGet(-BufferUtil.length(indirect));
@@ -723,4 +787,60 @@ public class CachedContentFactory implements HttpContent.ContentFactory
             return "Cached" + super.toString();
         }
     }
+
+    /**
+     * <p>A policy that chooses which {@link CachedHttpContent} to evict
+     * when the cache exceeds its bounds.</p>
+     * <p>Implementations are notified of the entries added to, accessed in
+     * and removed from the cache, and must be thread safe.</p>
+     */
+    public interface EvictionPolicy
+    {
+        /**
+         * <p>Notifies that the given key has been looked up, whether it is cached or not.</p>
+         *
+         * @param pathInContext the key looked up
+         */
+        default void onLookup(String pathInContext)
+        {
+        }
+
+        /**
+         * <p>Decides whether a new entry should be added to a full cache,
+         * at the price of evicting an existing entry.</p>
+         *
+         * @param pathInContext the key of the new entry
+         * @return whether the new entry should be cached
+         */
+        default boolean isAdmitted(String pathInContext)
+        {
+            return true;
+        }
+
+        /**
+         * @param content the entry added to the cache
+         */
+        void onAdded(CachedHttpContent content);
+
+        /**
+         * @param content the cached entry that has been accessed
+         */
+        void onAccessed(CachedHttpContent content);
+
+        /**
+         * <p>Notifies that the given entry has been removed from the cache.</p>
+         * <p>This method may be called for entries that were never added
+         * or that have already been removed, and must ignore them.</p>
+         *
+         * @param content the entry removed from the cache
+         */
+        void onRemoved(CachedHttpContent content);
+
+        /**
+         * <p>Removes from this policy the next entry to evict.</p>
+         *
+         * @return the next entry to evict, or null if there are no entries
+         */
+        CachedHttpContent evict();
+    }
 }
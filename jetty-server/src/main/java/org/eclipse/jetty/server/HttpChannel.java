@@ -21,6 +21,7 @@ package org.eclipse.jetty.server;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.EventListener;
 import java.util.List;
@@ -910,6 +911,35 @@ public class HttpChannel implements Runnable, HttpOutput.Interceptor
         sendResponse(null, content, complete, callback);
     }
 
+    /**
+     * <p>Non-Blocking transfer of file content directly to the transport.</p>
+     * <p>The response must have been committed with a content length, and the
+     * transferred bytes are not notified to {@link Listener#onResponseContent(Request, ByteBuffer)}.</p>
+     *
+     * @param file the file to transfer the content from
+     * @param position the position within the file of the first byte to transfer
+     * @param length the number of bytes to transfer
+     * @param callback Callback when complete or failed
+     * @see HttpTransport#transferFile(FileChannel, long, long, Callback)
+     */
+    public void transferFile(FileChannel file, long position, long length, Callback callback)
+    {
+        if (!isCommitted())
+        {
+            callback.failed(new IllegalStateException("not committed"));
+            return;
+        }
+        _transport.transferFile(file, position, length, new Callback.Nested(callback)
+        {
+            @Override
+            public void succeeded()
+            {
+                _written += length;
+                super.succeeded();
+            }
+        });
+    }
+
     @Override
     public void resetBuffer()
     {
@@ -77,6 +77,7 @@ public class HttpConfiguration implements Dumpable
     private MultiPartFormDataCompliance _multiPartCompliance = MultiPartFormDataCompliance.LEGACY; // TODO change default in jetty-10
     private boolean _notifyRemoteAsyncErrors = true;
     private boolean _relativeRedirectAllowed;
+    private long _fileTransferThreshold = -1;
 
     /**
      * <p>An interface that allows a request object to be customized
@@ -144,6 +145,7 @@ public class HttpConfiguration implements Dumpable
         _multiPartCompliance = config._multiPartCompliance;
         _notifyRemoteAsyncErrors = config._notifyRemoteAsyncErrors;
         _relativeRedirectAllowed = config._relativeRedirectAllowed;
+        _fileTransferThreshold = config._fileTransferThreshold;
     }
 
     /**
@@ -557,6 +559,31 @@ public class HttpConfiguration implements Dumpable
         _minResponseDataRate = bytesPerSecond;
     }
 
+    /**
+     * @return The minimum length of file content that is transferred directly to the network; or &lt;0 for never
+     * @see #setFileTransferThreshold(long)
+     */
+    @ManagedAttribute("The minimum length of file content transferred directly to the network")
+    public long getFileTransferThreshold()
+    {
+        return _fileTransferThreshold;
+    }
+
+    /**
+     * <p>Sets the minimum length of static file content that is transferred directly
+     * from the file to the network, for example with {@code sendfile()}, rather than
+     * being copied through buffers.</p>
+     * <p>Direct transfers are only possible for cleartext connections whose transport
+     * supports them; for other connections (for example, TLS) the content is sent
+     * through buffers as usual.</p>
+     *
+     * @param fileTransferThreshold The minimum file content length in bytes; or &lt;0 for never
+     */
+    public void setFileTransferThreshold(long fileTransferThreshold)
+    {
+        _fileTransferThreshold = fileTransferThreshold;
+    }
+
     /**
      * @return The CookieCompliance used for parsing request <code>Cookie</code> headers.
      * @see #getResponseCookieCompliance()
@@ -693,7 +720,8 @@ public class HttpConfiguration implements Dumpable
             "cookieCompliance=" + _requestCookieCompliance,
             "setRequestCookieCompliance=" + _responseCookieCompliance,
             "notifyRemoteAsyncErrors=" + _notifyRemoteAsyncErrors,
-            "relativeRedirectAllowed=" + _relativeRedirectAllowed
+            "relativeRedirectAllowed=" + _relativeRedirectAllowed,
+            "fileTransferThreshold=" + _fileTransferThreshold
         );
     }
 
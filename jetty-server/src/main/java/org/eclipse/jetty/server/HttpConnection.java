@@ -20,6 +20,7 @@ package org.eclipse.jetty.server;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.WritePendingException;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -38,6 +39,7 @@ import org.eclipse.jetty.http.MetaData;
 import org.eclipse.jetty.http.PreEncodedHttpField;
 import org.eclipse.jetty.io.AbstractConnection;
 import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.io.ChannelEndPoint;
 import org.eclipse.jetty.io.Connection;
 import org.eclipse.jetty.io.EndPoint;
 import org.eclipse.jetty.io.EofException;
@@ -560,6 +562,25 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
         getEndPoint().close();
     }
 
+    @Override
+    public boolean isFileTransferSupported()
+    {
+        // Encrypted connections have a decrypted endpoint, so the bytes
+        // must be sent through it rather than directly to the channel.
+        return getEndPoint() instanceof ChannelEndPoint;
+    }
+
+    @Override
+    public void transferFile(FileChannel file, long position, long length, Callback callback)
+    {
+        if (!isFileTransferSupported())
+        {
+            callback.failed(new UnsupportedOperationException());
+            return;
+        }
+        new FileTransferCallback(file, position, length, callback).iterate();
+    }
+
     @Override
     public boolean isPushSupported()
     {
@@ -680,6 +701,86 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
         }
     }
 
+    /**
+     * <p>Transfers file content directly to the channel of the endpoint.</p>
+     * <p>When the network is congested and no bytes can be transferred, a
+     * memory mapped region of the file is written to the endpoint instead,
+     * so that the transfer resumes when the endpoint is writable again.</p>
+     */
+    private class FileTransferCallback extends IteratingCallback
+    {
+        private final FileChannel _file;
+        private final long _end;
+        private final Callback _callback;
+        private long _position;
+        private ByteBuffer _mapped;
+        private long _mappedPosition;
+
+        private FileTransferCallback(FileChannel file, long position, long length, Callback callback)
+        {
+            _file = file;
+            _position = position;
+            _end = position + length;
+            _callback = callback;
+        }
+
+        @Override
+        public InvocationType getInvocationType()
+        {
+            return _callback.getInvocationType();
+        }
+
+        @Override
+        protected Action process() throws Exception
+        {
+            ChannelEndPoint endPoint = (ChannelEndPoint)getEndPoint();
+            while (_position < _end)
+            {
+                long transferred = endPoint.transferFrom(_file, _position, _end - _position);
+                if (LOG.isDebugEnabled())
+                    LOG.debug("transferred {} at {}/{} for {}", transferred, _position, _end, HttpConnection.this);
+                if (transferred <= 0)
+                {
+                    // Map the rest of the file only once, as unmapping is left to the GC.
+                    if (_mapped == null)
+                    {
+                        _mappedPosition = _position;
+                        _mapped = _file.map(FileChannel.MapMode.READ_ONLY, _position, Math.min(_end - _position, Integer.MAX_VALUE));
+                    }
+                    int offset = (int)(_position - _mappedPosition);
+                    int length = (int)Math.min(Math.min(_end - _position, _mapped.capacity() - offset), _config.getOutputBufferSize());
+                    if (length > 0)
+                    {
+                        ByteBuffer region = _mapped.duplicate();
+                        region.limit(offset + length).position(offset);
+                        _position += length;
+                        bytesOut.add(length);
+                        endPoint.write(this, region);
+                        return Action.SCHEDULED;
+                    }
+                    _mapped = null;
+                    continue;
+                }
+                _position += transferred;
+                bytesOut.add(transferred);
+                onFlushed(transferred);
+            }
+            return Action.SUCCEEDED;
+        }
+
+        @Override
+        protected void onCompleteSuccess()
+        {
+            _callback.succeeded();
+        }
+
+        @Override
+        protected void onCompleteFailure(Throwable cause)
+        {
+            _callback.failed(cause);
+        }
+    }
+
     private class SendCallback extends IteratingCallback
     {
         private MetaData.Response _info;
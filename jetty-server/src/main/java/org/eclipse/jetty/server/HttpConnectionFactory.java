@@ -20,8 +20,11 @@ package org.eclipse.jetty.server;
 
 import org.eclipse.jetty.http.HttpCompliance;
 import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.SharedHttpFieldCache;
 import org.eclipse.jetty.io.Connection;
 import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
 import org.eclipse.jetty.util.annotation.Name;
 
 /**
@@ -29,12 +32,16 @@ import org.eclipse.jetty.util.annotation.Name;
  * <p>Accepts connections either directly or via SSL and/or ALPN chained connection factories.  The accepted
  * {@link HttpConnection}s are configured by a {@link HttpConfiguration} instance that is either created by
  * default or passed in to the constructor.
+ * <p>The parsers of the connections may share a {@link SharedHttpFieldCache}, which learns
+ * the request fields that are common to many connections; it is disabled by default.
  */
+@ManagedObject("HTTP Connection Factory")
 public class HttpConnectionFactory extends AbstractConnectionFactory implements HttpConfiguration.ConnectionFactory
 {
     private final HttpConfiguration _config;
     private HttpCompliance _httpCompliance;
     private boolean _recordHttpComplianceViolations = false;
+    private SharedHttpFieldCache _sharedFieldCache;
 
     public HttpConnectionFactory()
     {
@@ -80,10 +87,39 @@ public class HttpConnectionFactory extends AbstractConnectionFactory implements
         _httpCompliance = httpCompliance;
     }
 
+    public SharedHttpFieldCache getSharedFieldCache()
+    {
+        return _sharedFieldCache;
+    }
+
+    /**
+     * @param sharedFieldCache the field cache shared by the parsers of the connections, or null for none
+     */
+    public void setSharedFieldCache(SharedHttpFieldCache sharedFieldCache)
+    {
+        updateBean(_sharedFieldCache, sharedFieldCache);
+        _sharedFieldCache = sharedFieldCache;
+    }
+
+    @ManagedAttribute("The number of request fields resolved by the shared field cache")
+    public long getSharedFieldCacheHits()
+    {
+        SharedHttpFieldCache cache = _sharedFieldCache;
+        return cache == null ? 0 : cache.getSharedHits();
+    }
+
+    @ManagedAttribute("The ratio of request fields resolved by any field cache")
+    public double getFieldCacheHitRatio()
+    {
+        SharedHttpFieldCache cache = _sharedFieldCache;
+        return cache == null ? 0.0D : cache.getHitRatio();
+    }
+
     @Override
     public Connection newConnection(Connector connector, EndPoint endPoint)
     {
         HttpConnection conn = new HttpConnection(_config, connector, endPoint, _httpCompliance, isRecordHttpComplianceViolations());
+        conn.getParser().setSharedFieldCache(_sharedFieldCache);
         return configure(conn, connector, endPoint);
     }
 
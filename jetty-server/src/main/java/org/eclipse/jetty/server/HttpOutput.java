@@ -18,16 +18,19 @@
 
 package org.eclipse.jetty.server;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritePendingException;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetEncoder;
 import java.nio.charset.CoderResult;
 import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
 import java.util.ResourceBundle;
 import java.util.concurrent.TimeUnit;
 import javax.servlet.RequestDispatcher;
@@ -1308,6 +1311,17 @@ public class HttpOutput extends ServletOutputStream implements Runnable
         if (LOG.isDebugEnabled())
             LOG.debug("sendContent(http={},{})", httpContent, callback);
 
+        FileChannel file = getTransferableFile(httpContent);
+        if (file != null)
+        {
+            // Close of the file is done by the async transfer
+            if (prepareSendContent(0, callback))
+                new FileTransferCB(file, httpContent.getContentLengthValue(), callback).iterate();
+            else
+                IO.close(file);
+            return;
+        }
+
         ByteBuffer buffer = _channel.useDirectBuffers() ? httpContent.getDirectBuffer() : null;
         if (buffer == null)
             buffer = httpContent.getIndirectBuffer();
@@ -1354,6 +1368,41 @@ public class HttpOutput extends ServletOutputStream implements Runnable
         callback.failed(cause);
     }
 
+    /**
+     * @param httpContent the content to send
+     * @return the file of the content opened for a direct transfer to the transport,
+     * or null if the content cannot or should not be transferred directly
+     * @see HttpConfiguration#setFileTransferThreshold(long)
+     */
+    private FileChannel getTransferableFile(HttpContent httpContent)
+    {
+        long threshold = _channel.getHttpConfiguration().getFileTransferThreshold();
+        long length = httpContent.getContentLengthValue();
+        if (threshold < 0 || length <= 0 || length < threshold)
+            return null;
+
+        // The bytes are transferred as they are, so they must not be
+        // intercepted, and the response must be delimited by its length.
+        if (_interceptor != _channel ||
+            _channel.getRequest().isHead() ||
+            _channel.getResponse().getLongContentLength() != length ||
+            !_channel.getHttpTransport().isFileTransferSupported())
+            return null;
+
+        try
+        {
+            File file = httpContent.getResource().getFile();
+            if (file == null || file.length() != length)
+                return null;
+            return FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        }
+        catch (Throwable x)
+        {
+            LOG.debug(x);
+            return null;
+        }
+    }
+
     public int getBufferSize()
     {
         return _bufferSize;
@@ -1861,6 +1910,64 @@ public class HttpOutput extends ServletOutputStream implements Runnable
         }
     }
 
+    /**
+     * <p>Commits the response, transfers the file content directly to the
+     * transport, and then completes the response.</p>
+     */
+    private class FileTransferCB extends NestedChannelWriteCB
+    {
+        private final FileChannel _file;
+        private final long _length;
+        private boolean _committed;
+        private boolean _transferred;
+        private boolean _closed;
+
+        FileTransferCB(FileChannel file, long length, Callback callback)
+        {
+            super(callback, true);
+            _file = file;
+            _length = length;
+        }
+
+        @Override
+        protected Action process() throws Exception
+        {
+            if (!_committed)
+            {
+                _committed = true;
+                channelWrite(BufferUtil.EMPTY_BUFFER, false, this);
+                return Action.SCHEDULED;
+            }
+
+            if (!_transferred)
+            {
+                _transferred = true;
+                _written += _length;
+                _channel.transferFile(_file, 0, _length, this);
+                return Action.SCHEDULED;
+            }
+
+            if (!_closed)
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("EOF of {}", this);
+                _closed = true;
+                IO.close(_file);
+                channelWrite(BufferUtil.EMPTY_BUFFER, true, this);
+                return Action.SCHEDULED;
+            }
+
+            return Action.SUCCEEDED;
+        }
+
+        @Override
+        public void onCompleteFailure(Throwable x)
+        {
+            IO.close(_file);
+            super.onCompleteFailure(x);
+        }
+    }
+
     private static class WriteBlocker extends SharedBlockingCallback
     {
         private final HttpChannel _channel;
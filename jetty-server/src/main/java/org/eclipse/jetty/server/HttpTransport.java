@@ -19,6 +19,7 @@
 package org.eclipse.jetty.server;
 
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 import org.eclipse.jetty.http.MetaData;
 import org.eclipse.jetty.util.Callback;
@@ -78,4 +79,30 @@ public interface HttpTransport
      * @return True if direct buffers can be used optimally.
      */
     boolean isOptimizedForDirectBuffers();
+
+    /**
+     * @return true if file content can be transferred directly to the network
+     * with {@link #transferFile(FileChannel, long, long, Callback)}
+     */
+    default boolean isFileTransferSupported()
+    {
+        return false;
+    }
+
+    /**
+     * <p>Asynchronously transfers file content of an already committed response
+     * directly to the network, bypassing any content encoding or framing.</p>
+     * <p>This method may only be called when the response has a known content length
+     * and there is no other content to send, and only if {@link #isFileTransferSupported()}
+     * returns true. The file channel is not closed by this method.</p>
+     *
+     * @param file the file to transfer the content from
+     * @param position the position within the file of the first byte to transfer
+     * @param length the number of bytes to transfer
+     * @param callback The Callback instance that success or failure of the transfer is notified on
+     */
+    default void transferFile(FileChannel file, long position, long length, Callback callback)
+    {
+        callback.failed(new UnsupportedOperationException());
+    }
 }
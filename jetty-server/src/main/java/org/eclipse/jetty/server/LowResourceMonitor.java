@@ -27,7 +27,9 @@ import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.io.EvictingByteBufferPool;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
 import org.eclipse.jetty.util.annotation.Name;
@@ -50,6 +52,9 @@ import org.eclipse.jetty.util.thread.ThreadPool;
  * of connections exceeds {@link #getMaxConnections()}.  This feature is deprecated and replaced by
  * {@link ConnectionLimit}</li>
  * </ul>
+ * <p>When low resources are detected, the idle timeout of the connections is reduced and,
+ * if the {@link Connector#getByteBufferPool()} is an {@link EvictingByteBufferPool},
+ * its retained buffers are evicted.</p>
  */
 @ManagedObject("Monitor for low resource conditions and activate a low resource mode if detected")
 public class LowResourceMonitor extends ContainerLifeCycle
@@ -411,6 +416,10 @@ public class LowResourceMonitor extends ContainerLifeCycle
             {
                 endPoint.setIdleTimeout(_lowResourcesIdleTimeout);
             }
+
+            ByteBufferPool byteBufferPool = connector.getByteBufferPool();
+            if (byteBufferPool instanceof EvictingByteBufferPool)
+                ((EvictingByteBufferPool)byteBufferPool).shrink();
         }
     }
 
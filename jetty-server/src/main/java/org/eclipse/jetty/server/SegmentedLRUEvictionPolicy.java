@@ -0,0 +1,347 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.server;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.eclipse.jetty.server.CachedContentFactory.CachedHttpContent;
+
+/**
+ * <p>A segmented LRU {@link CachedContentFactory.EvictionPolicy}.</p>
+ * <p>New entries are added to a <em>probationary</em> segment; entries that are
+ * accessed again are promoted to a <em>protected</em> segment, whose size is at
+ * most {@code protectedRatio} of the entries. Entries overflowing the protected
+ * segment are demoted back to the probationary segment, and entries are evicted
+ * from the least recently used end of the probationary segment first.
+ * This makes the cache resistant to scans of rarely used resources.
+ * With a {@code protectedRatio} of {@code 0} the policy is a plain LRU.</p>
+ * <p>Optionally, new entries may be admitted into a full cache only if they
+ * have been looked up more frequently than the entry that would be evicted,
+ * as estimated by a small count-min sketch with periodic aging (TinyLFU).</p>
+ * <p>All the operations are O(1). Accesses only reorder the entries when the
+ * policy lock is not contended, so that hot entries do not serialize requests.</p>
+ */
+public class SegmentedLRUEvictionPolicy implements CachedContentFactory.EvictionPolicy
+{
+    private final ReentrantLock _lock = new ReentrantLock();
+    private final Map<CachedHttpContent, Node> _nodes = new IdentityHashMap<>();
+    private final Node _probation = new Node(null);
+    private final Node _protected = new Node(null);
+    private final double _protectedRatio;
+    private final FrequencySketch _sketch;
+    private int _protectedSize;
+
+    /**
+     * Creates a segmented LRU policy with 80% of the entries protected and no frequency admission.
+     */
+    public SegmentedLRUEvictionPolicy()
+    {
+        this(0.8D, false);
+    }
+
+    /**
+     * @param protectedRatio the max ratio of entries in the protected segment, between 0 and 1
+     * @param frequencyAdmission whether new entries are admitted into a full cache based on their frequency
+     */
+    public SegmentedLRUEvictionPolicy(double protectedRatio, boolean frequencyAdmission)
+    {
+        if (protectedRatio < 0 || protectedRatio > 1)
+            throw new IllegalArgumentException("Invalid protected ratio " + protectedRatio);
+        _protectedRatio = protectedRatio;
+        _sketch = frequencyAdmission ? new FrequencySketch(4096) : null;
+        _probation.prev = _probation.next = _probation;
+        _protected.prev = _protected.next = _protected;
+    }
+
+    public double getProtectedRatio()
+    {
+        return _protectedRatio;
+    }
+
+    public boolean isFrequencyAdmission()
+    {
+        return _sketch != null;
+    }
+
+    @Override
+    public void onLookup(String pathInContext)
+    {
+        if (_sketch != null && _lock.tryLock())
+        {
+            try
+            {
+                _sketch.increment(pathInContext);
+            }
+            finally
+            {
+                _lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public boolean isAdmitted(String pathInContext)
+    {
+        if (_sketch == null)
+            return true;
+        _lock.lock();
+        try
+        {
+            Node victim = victim();
+            if (victim == null)
+                return true;
+            return _sketch.frequency(pathInContext) > _sketch.frequency(victim.content.getKey());
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    @Override
+    public void onAdded(CachedHttpContent content)
+    {
+        _lock.lock();
+        try
+        {
+            Node node = new Node(content);
+            if (_nodes.putIfAbsent(content, node) == null)
+                link(_probation, node);
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    @Override
+    public void onAccessed(CachedHttpContent content)
+    {
+        // Reordering is best effort, skip it under contention.
+        if (!_lock.tryLock())
+            return;
+        try
+        {
+            Node node = _nodes.get(content);
+            if (node == null)
+                return;
+            unlink(node);
+            if (node.isProtected || _protectedRatio > 0)
+            {
+                if (!node.isProtected)
+                {
+                    node.isProtected = true;
+                    ++_protectedSize;
+                }
+                link(_protected, node);
+                int maxProtectedSize = (int)(_protectedRatio * _nodes.size());
+                while (_protectedSize > maxProtectedSize)
+                {
+                    Node demoted = _protected.prev;
+                    unlink(demoted);
+                    demoted.isProtected = false;
+                    --_protectedSize;
+                    link(_probation, demoted);
+                }
+            }
+            else
+            {
+                link(_probation, node);
+            }
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    @Override
+    public void onRemoved(CachedHttpContent content)
+    {
+        _lock.lock();
+        try
+        {
+            Node node = _nodes.remove(content);
+            if (node != null)
+                remove(node);
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    @Override
+    public CachedHttpContent evict()
+    {
+        _lock.lock();
+        try
+        {
+            Node node = victim();
+            if (node == null)
+                return null;
+            _nodes.remove(node.content);
+            remove(node);
+            return node.content;
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    private Node victim()
+    {
+        if (_probation.prev != _probation)
+            return _probation.prev;
+        if (_protected.prev != _protected)
+            return _protected.prev;
+        return null;
+    }
+
+    private void remove(Node node)
+    {
+        unlink(node);
+        if (node.isProtected)
+            --_protectedSize;
+    }
+
+    private static void link(Node head, Node node)
+    {
+        node.prev = head;
+        node.next = head.next;
+        head.next.prev = node;
+        head.next = node;
+    }
+
+    private static void unlink(Node node)
+    {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        node.prev = node.next = null;
+    }
+
+    @Override
+    public String toString()
+    {
+        _lock.lock();
+        try
+        {
+            return String.format("%s@%x{size=%d,protected=%d,ratio=%.2f,admission=%b}",
+                getClass().getSimpleName(),
+                hashCode(),
+                _nodes.size(),
+                _protectedSize,
+                _protectedRatio,
+                _sketch != null);
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    private static class Node
+    {
+        private final CachedHttpContent content;
+        private Node prev;
+        private Node next;
+        private boolean isProtected;
+
+        private Node(CachedHttpContent content)
+        {
+            this.content = content;
+        }
+    }
+
+    /**
+     * <p>A count-min sketch of 4 bit counters, halved every {@code 10 * width}
+     * increments so that the frequencies reflect recent lookups.</p>
+     */
+    static class FrequencySketch
+    {
+        private static final int[] SEEDS = {0x97CB3127, 0xB3A8C5F1, 0x5A4E9D33, 0x2C1B3C6D};
+
+        private final byte[] _counters;
+        private final int _mask;
+        private final int _sampleSize;
+        private int _additions;
+
+        FrequencySketch(int width)
+        {
+            int size = Integer.highestOneBit(Math.max(16, width) - 1) << 1;
+            _counters = new byte[size * SEEDS.length];
+            _mask = size - 1;
+            _sampleSize = 10 * size;
+        }
+
+        void increment(String key)
+        {
+            int hash = spread(key.hashCode());
+            boolean added = false;
+            for (int i = 0; i < SEEDS.length; ++i)
+            {
+                int index = indexOf(hash, i);
+                if (_counters[index] < 15)
+                {
+                    ++_counters[index];
+                    added = true;
+                }
+            }
+            if (added && ++_additions == _sampleSize)
+                reset();
+        }
+
+        int frequency(String key)
+        {
+            int hash = spread(key.hashCode());
+            int frequency = Integer.MAX_VALUE;
+            for (int i = 0; i < SEEDS.length; ++i)
+            {
+                frequency = Math.min(frequency, _counters[indexOf(hash, i)]);
+            }
+            return frequency;
+        }
+
+        private int indexOf(int hash, int row)
+        {
+            int h = (hash + SEEDS[row]) * SEEDS[row];
+            h ^= h >>> 17;
+            return row * (_mask + 1) + (h & _mask);
+        }
+
+        private void reset()
+        {
+            for (int i = 0; i < _counters.length; ++i)
+            {
+                _counters[i] >>= 1;
+            }
+            _additions /= 2;
+        }
+
+        private static int spread(int hash)
+        {
+            hash ^= hash >>> 16;
+            hash *= 0x45D9F3B;
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
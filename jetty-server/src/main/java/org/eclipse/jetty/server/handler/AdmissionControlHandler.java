@@ -0,0 +1,639 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.server.handler;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+import org.eclipse.jetty.util.statistic.HistogramStatistic;
+import org.eclipse.jetty.util.thread.Locker;
+
+/**
+ * <p>Handler that limits the number of requests handled concurrently,
+ * queuing the requests in excess without blocking threads.</p>
+ * <p>Requests in excess of {@link #getMaxActiveRequests()} are asynchronously
+ * suspended in a queue, and are resumed in order as the active requests
+ * complete. Queued requests are grouped in priority classes, given by
+ * {@link #getPriority(Request)}, which are served by weighted round robin
+ * according to the {@link #setPriorityWeights(int...) priority weights},
+ * so that lower priority classes are not starved. Within a priority class,
+ * requests are grouped by tenant, given by {@link #getTenant(Request)},
+ * which are served in round robin so that a single tenant cannot
+ * monopolize the server.</p>
+ * <p>Load is shed gracefully by responding with {@code 503 Service Unavailable}
+ * to the requests that arrive when the queue already has
+ * {@link #getMaxQueuedRequests()} requests, and to the requests that
+ * have been queued for longer than {@link #getMaxQueueMs()}.</p>
+ * <p>Unlike {@code QoSFilter}, this handler applies to the whole server, and
+ * threads never wait for a request to be admitted. The limit applies to the
+ * requests being handled by threads: a request that is suspended by the
+ * application does not count towards the limit, and must be admitted again
+ * when it is dispatched.</p>
+ */
+@ManagedObject("Admission control handler")
+public class AdmissionControlHandler extends HandlerWrapper
+{
+    private static final Logger LOG = Log.getLogger(AdmissionControlHandler.class);
+    private static final String ADMITTED = AdmissionControlHandler.class.getName() + ".admitted";
+
+    private final Locker _locker = new Locker();
+    private final LongAdder _admitted = new LongAdder();
+    private final LongAdder _queued = new LongAdder();
+    private final LongAdder _rejected = new LongAdder();
+    private final LongAdder _expired = new LongAdder();
+    private final HistogramStatistic _queueDepth = new HistogramStatistic();
+    private final HistogramStatistic _queueTime = new HistogramStatistic();
+    private volatile boolean _enabled = true;
+    private volatile int _maxActiveRequests = 200;
+    private volatile int _maxQueuedRequests = 1024;
+    private volatile long _maxQueueMs = 30000;
+    private int[] _weights = {1};
+    private PriorityClass[] _classes = {new PriorityClass(1)};
+    private int _activeRequests;
+    private int _queuedRequests;
+
+    @ManagedAttribute("Whether this handler is enabled")
+    public boolean isEnabled()
+    {
+        return _enabled;
+    }
+
+    public void setEnabled(boolean enabled)
+    {
+        _enabled = enabled;
+    }
+
+    @ManagedAttribute("The max number of requests handled concurrently")
+    public int getMaxActiveRequests()
+    {
+        return _maxActiveRequests;
+    }
+
+    public void setMaxActiveRequests(int maxActiveRequests)
+    {
+        if (maxActiveRequests <= 0)
+            throw new IllegalArgumentException("Invalid max active requests " + maxActiveRequests);
+        _maxActiveRequests = maxActiveRequests;
+    }
+
+    @ManagedAttribute("The max number of queued requests, beyond which requests are rejected")
+    public int getMaxQueuedRequests()
+    {
+        return _maxQueuedRequests;
+    }
+
+    public void setMaxQueuedRequests(int maxQueuedRequests)
+    {
+        _maxQueuedRequests = maxQueuedRequests;
+    }
+
+    @ManagedAttribute("The max time in ms a request is queued before being rejected, or 0 to wait forever")
+    public long getMaxQueueMs()
+    {
+        return _maxQueueMs;
+    }
+
+    public void setMaxQueueMs(long maxQueueMs)
+    {
+        _maxQueueMs = maxQueueMs;
+    }
+
+    @ManagedAttribute("The weights of the priority classes, from the lowest priority to the highest")
+    public int[] getPriorityWeights()
+    {
+        try (Locker.Lock lock = _locker.lock())
+        {
+            return _weights.clone();
+        }
+    }
+
+    /**
+     * <p>Sets the weights of the priority classes, which also sets the
+     * number of priority classes.</p>
+     * <p>For example, with weights {@code 1, 4} requests of priority
+     * {@code 1} are admitted 4 times more often than requests of
+     * priority {@code 0}, when both are queued.</p>
+     *
+     * @param weights the weights of the priority classes, from the lowest priority to the highest
+     */
+    public void setPriorityWeights(int... weights)
+    {
+        if (weights.length == 0)
+            throw new IllegalArgumentException("No priority weights");
+        for (int weight : weights)
+        {
+            if (weight <= 0)
+                throw new IllegalArgumentException("Invalid priority weight " + weight);
+        }
+        if (isStarted())
+            throw new IllegalStateException(getState());
+        try (Locker.Lock lock = _locker.lock())
+        {
+            _weights = weights.clone();
+            _classes = new PriorityClass[weights.length];
+            for (int i = 0; i < weights.length; i++)
+            {
+                _classes[i] = new PriorityClass(weights[i]);
+            }
+        }
+    }
+
+    @ManagedAttribute("The number of requests currently handled")
+    public int getActiveRequests()
+    {
+        try (Locker.Lock lock = _locker.lock())
+        {
+            return _activeRequests;
+        }
+    }
+
+    @ManagedAttribute("The number of requests currently queued")
+    public int getQueuedRequests()
+    {
+        try (Locker.Lock lock = _locker.lock())
+        {
+            return _queuedRequests;
+        }
+    }
+
+    @ManagedAttribute("The total number of admitted requests")
+    public long getAdmittedCount()
+    {
+        return _admitted.sum();
+    }
+
+    @ManagedAttribute("The total number of queued requests")
+    public long getQueuedCount()
+    {
+        return _queued.sum();
+    }
+
+    @ManagedAttribute("The total number of requests rejected because the queue was full")
+    public long getRejectedCount()
+    {
+        return _rejected.sum();
+    }
+
+    @ManagedAttribute("The total number of requests rejected because they were queued for too long")
+    public long getExpiredCount()
+    {
+        return _expired.sum();
+    }
+
+    @ManagedAttribute("The max time in ms a request was queued")
+    public long getQueueTimeMax()
+    {
+        return _queueTime.getMax();
+    }
+
+    @ManagedAttribute("The mean time in ms requests were queued")
+    public double getQueueTimeMean()
+    {
+        return _queueTime.getMean();
+    }
+
+    @ManagedAttribute("The estimated 99th percentile of the time in ms requests were queued")
+    public long getQueueTime99thPercentile()
+    {
+        return _queueTime.getPercentile(99);
+    }
+
+    @ManagedAttribute("The histogram of the time in ms requests were queued")
+    public String getQueueTimeHistogram()
+    {
+        return _queueTime.toHistogramString();
+    }
+
+    @ManagedAttribute("The max depth of the queue")
+    public long getQueueDepthMax()
+    {
+        return _queueDepth.getMax();
+    }
+
+    @ManagedAttribute("The histogram of the depth of the queue when requests were queued")
+    public String getQueueDepthHistogram()
+    {
+        return _queueDepth.toHistogramString();
+    }
+
+    /**
+     * @return the statistics of the time in ms requests were queued
+     */
+    public HistogramStatistic getQueueTimeStatistic()
+    {
+        return _queueTime;
+    }
+
+    /**
+     * @return the statistics of the depth of the queue when requests were queued
+     */
+    public HistogramStatistic getQueueDepthStatistic()
+    {
+        return _queueDepth;
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void statsReset()
+    {
+        _admitted.reset();
+        _queued.reset();
+        _rejected.reset();
+        _expired.reset();
+        _queueDepth.reset();
+        _queueTime.reset();
+    }
+
+    /**
+     * @param request the request to admit
+     * @return the priority class of the request, between 0 and the number
+     * of {@link #setPriorityWeights(int...) priority weights} minus one
+     */
+    protected int getPriority(Request request)
+    {
+        return 0;
+    }
+
+    /**
+     * @param request the request to admit
+     * @return the key of the tenant of the request, by default the remote IP address
+     */
+    protected Object getTenant(Request request)
+    {
+        InetSocketAddress address = request.getHttpChannel().getRemoteAddress();
+        return address == null || address.getAddress() == null ? null : address.getAddress();
+    }
+
+    @Override
+    public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException
+    {
+        if (!_enabled)
+        {
+            super.handle(target, baseRequest, request, response);
+            return;
+        }
+
+        // Has the request been admitted when it was dispatched from the queue?
+        if (baseRequest.getAttribute(ADMITTED) != null)
+        {
+            baseRequest.removeAttribute(ADMITTED);
+            handleAdmitted(target, baseRequest, request, response);
+            return;
+        }
+
+        boolean admitted = false;
+        boolean rejected = false;
+        try (Locker.Lock lock = _locker.lock())
+        {
+            if (_activeRequests < _maxActiveRequests)
+            {
+                ++_activeRequests;
+                admitted = true;
+            }
+            else if (_queuedRequests >= _maxQueuedRequests)
+            {
+                rejected = true;
+            }
+        }
+
+        if (admitted)
+        {
+            _admitted.increment();
+            handleAdmitted(target, baseRequest, request, response);
+        }
+        else if (rejected)
+        {
+            reject(baseRequest, response);
+        }
+        else
+        {
+            enqueue(baseRequest, response);
+        }
+    }
+
+    private void handleAdmitted(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException
+    {
+        try
+        {
+            super.handle(target, baseRequest, request, response);
+        }
+        finally
+        {
+            release();
+        }
+    }
+
+    private void reject(Request baseRequest, HttpServletResponse response) throws IOException
+    {
+        _rejected.increment();
+        if (LOG.isDebugEnabled())
+            LOG.debug("Rejected {}", baseRequest);
+        baseRequest.setHandled(true);
+        response.sendError(HttpStatus.SERVICE_UNAVAILABLE_503);
+    }
+
+    private void enqueue(Request baseRequest, HttpServletResponse response) throws IOException
+    {
+        int priority = Math.max(0, Math.min(_classes.length - 1, getPriority(baseRequest)));
+        Object tenant = getTenant(baseRequest);
+
+        // Suspend before queuing, as the request may be dispatched as soon as it is queued.
+        baseRequest.setHandled(true);
+        AsyncContext asyncContext = baseRequest.startAsync();
+        asyncContext.setTimeout(getMaxQueueMs());
+        Entry entry = new Entry(baseRequest, asyncContext, priority, tenant);
+        asyncContext.addListener(entry);
+
+        boolean admitted = false;
+        boolean rejected = false;
+        int depth = 0;
+        try (Locker.Lock lock = _locker.lock())
+        {
+            if (_activeRequests < _maxActiveRequests)
+            {
+                // The active requests completed in the meantime.
+                ++_activeRequests;
+                admitted = true;
+            }
+            else if (_queuedRequests >= _maxQueuedRequests)
+            {
+                rejected = true;
+            }
+            else
+            {
+                _classes[priority].offer(entry);
+                depth = ++_queuedRequests;
+            }
+        }
+
+        if (admitted)
+        {
+            _admitted.increment();
+            entry.dispatch();
+        }
+        else if (rejected)
+        {
+            _rejected.increment();
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE_503);
+            asyncContext.complete();
+        }
+        else
+        {
+            _queued.increment();
+            _queueDepth.record(depth);
+            if (LOG.isDebugEnabled())
+                LOG.debug("Queued {} priority={} tenant={} depth={}", baseRequest, priority, tenant, depth);
+        }
+    }
+
+    private void release()
+    {
+        Entry next;
+        try (Locker.Lock lock = _locker.lock())
+        {
+            next = poll();
+            if (next == null)
+                --_activeRequests;
+            else
+                --_queuedRequests;
+        }
+
+        // The permit of the released request is transferred to the next request.
+        if (next != null)
+        {
+            _admitted.increment();
+            _queueTime.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - next._queuedNanos));
+            next.dispatch();
+        }
+    }
+
+    /**
+     * <p>Selects the next entry with smooth weighted round robin across the priority classes:
+     * every non empty class earns its weight, the class with the most earnings is selected
+     * and pays back the total weight of the non empty classes.</p>
+     *
+     * @return the next entry to admit, or null if there are no queued entries
+     */
+    private Entry poll()
+    {
+        PriorityClass selected = null;
+        int total = 0;
+        for (int i = _classes.length; i-- > 0; )
+        {
+            PriorityClass priorityClass = _classes[i];
+            if (priorityClass._size == 0)
+                continue;
+            priorityClass._current += priorityClass._weight;
+            total += priorityClass._weight;
+            if (selected == null || priorityClass._current > selected._current)
+                selected = priorityClass;
+        }
+        if (selected == null)
+            return null;
+        selected._current -= total;
+        return selected.poll();
+    }
+
+    private boolean expire(Entry entry)
+    {
+        try (Locker.Lock lock = _locker.lock())
+        {
+            if (!_classes[entry._priority].remove(entry))
+                return false;
+            --_queuedRequests;
+            return true;
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        try (Locker.Lock lock = _locker.lock())
+        {
+            return String.format("%s@%x{active=%d/%d,queued=%d/%d,weights=%s}",
+                getClass().getSimpleName(),
+                hashCode(),
+                _activeRequests,
+                _maxActiveRequests,
+                _queuedRequests,
+                _maxQueuedRequests,
+                Arrays.toString(_weights));
+        }
+    }
+
+    /**
+     * <p>The queue of a priority class, made of a queue per tenant,
+     * with the tenants that have queued entries served in round robin.</p>
+     */
+    private static class PriorityClass
+    {
+        private final Map<Object, Tenant> _tenants = new HashMap<>();
+        private final Deque<Tenant> _rotation = new ArrayDeque<>();
+        private final int _weight;
+        private int _current;
+        private int _size;
+
+        private PriorityClass(int weight)
+        {
+            _weight = weight;
+        }
+
+        private void offer(Entry entry)
+        {
+            Tenant tenant = _tenants.computeIfAbsent(entry._tenant, Tenant::new);
+            tenant._entries.offer(entry);
+            if (!tenant._scheduled)
+            {
+                tenant._scheduled = true;
+                _rotation.offer(tenant);
+            }
+            ++_size;
+        }
+
+        private Entry poll()
+        {
+            while (true)
+            {
+                Tenant tenant = _rotation.poll();
+                if (tenant == null)
+                    return null;
+                // Tenants whose entries have all expired are lazily dropped.
+                Entry entry = tenant._entries.poll();
+                if (!tenant._entries.isEmpty())
+                {
+                    _rotation.offer(tenant);
+                }
+                else
+                {
+                    tenant._scheduled = false;
+                    _tenants.remove(tenant._key);
+                }
+                if (entry != null)
+                {
+                    --_size;
+                    return entry;
+                }
+            }
+        }
+
+        private boolean remove(Entry entry)
+        {
+            Tenant tenant = _tenants.get(entry._tenant);
+            if (tenant == null || !tenant._entries.remove(entry))
+                return false;
+            --_size;
+            return true;
+        }
+    }
+
+    private static class Tenant
+    {
+        private final Deque<Entry> _entries = new ArrayDeque<>();
+        private final Object _key;
+        private boolean _scheduled;
+
+        private Tenant(Object key)
+        {
+            _key = key;
+        }
+    }
+
+    private class Entry implements AsyncListener
+    {
+        private final long _queuedNanos = System.nanoTime();
+        private final Request _request;
+        private final AsyncContext _asyncContext;
+        private final int _priority;
+        private final Object _tenant;
+
+        private Entry(Request request, AsyncContext asyncContext, int priority, Object tenant)
+        {
+            _request = request;
+            _asyncContext = asyncContext;
+            _priority = priority;
+            _tenant = tenant;
+        }
+
+        private void dispatch()
+        {
+            _request.setAttribute(ADMITTED, Boolean.TRUE);
+            try
+            {
+                _asyncContext.dispatch();
+            }
+            catch (IllegalStateException x)
+            {
+                // The request expired concurrently, give the permit back.
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Could not dispatch {}", _request, x);
+                _request.removeAttribute(ADMITTED);
+                release();
+            }
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) throws IOException
+        {
+            if (expire(this))
+            {
+                _expired.increment();
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Expired {}", _request);
+                ((HttpServletResponse)event.getSuppliedResponse()).sendError(HttpStatus.SERVICE_UNAVAILABLE_503);
+                _asyncContext.complete();
+            }
+        }
+
+        @Override
+        public void onError(AsyncEvent event)
+        {
+            expire(this);
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event)
+        {
+            expire(this);
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event)
+        {
+        }
+    }
+}
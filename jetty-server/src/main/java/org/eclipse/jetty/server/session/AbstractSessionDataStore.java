@@ -18,6 +18,7 @@
 
 package org.eclipse.jetty.server.session;
 
+import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
@@ -40,6 +41,8 @@ public abstract class AbstractSessionDataStore extends ContainerLifeCycle implem
     protected int _gracePeriodSec = 60 * 60; //default of 1hr 
     protected long _lastExpiryCheckTime = 0; //last time in ms that getExpired was called
     protected int _savePeriodSec = 0; //time in sec between saves
+    protected SessionDataCodec _codec = new JavaSessionDataCodec(); //format of the serialized attributes
+    protected boolean _storeDeltas = false; //store only the changes of sessions already stored
 
     /**
      * Store the session data persistently.
@@ -51,6 +54,24 @@ public abstract class AbstractSessionDataStore extends ContainerLifeCycle implem
      */
     public abstract void doStore(String id, SessionData data, long lastSaveTime) throws Exception;
 
+    /**
+     * Store only the changes of a session that was stored before: its metadata
+     * and the attributes set or removed since it was last saved. Called instead
+     * of {@link #doStore(String, SessionData, long)} if deltas are enabled.
+     * The default implementation does not store deltas.
+     *
+     * @param id identity of session to store
+     * @param data info of the session
+     * @param dirtyAttributes the names of the attributes set or removed since the last save, possibly none
+     * @param lastSaveTime time of previous save
+     * @return true if the changes were stored, false if the whole session must be stored instead
+     * @throws Exception if unable to store the changes
+     */
+    public boolean doStoreDelta(String id, SessionData data, Set<String> dirtyAttributes, long lastSaveTime) throws Exception
+    {
+        return false;
+    }
+
     /**
      * Load the session from persistent store.
      *
@@ -138,8 +159,11 @@ public abstract class AbstractSessionDataStore extends ContainerLifeCycle implem
                     data.setLastSaved(System.currentTimeMillis());
                     try
                     {
-                        //call the specific store method, passing in previous save time
-                        doStore(id, data, lastSave);
+                        //call the specific store method, passing in previous save time,
+                        //storing only what changed if the session was stored before
+                        Set<String> dirtyAttributes = (_storeDeltas && lastSave > 0) ? data.getDirtyAttributes() : null;
+                        if (dirtyAttributes == null || !doStoreDelta(id, data, dirtyAttributes, lastSave))
+                            doStore(id, data, lastSave);
                         data.clean(); //unset all dirty flags
                     }
                     catch (Exception e)
@@ -235,6 +259,51 @@ public abstract class AbstractSessionDataStore extends ContainerLifeCycle implem
         _savePeriodSec = savePeriodSec;
     }
 
+    /**
+     * @return the codec of the session attributes, for the stores that serialize them
+     */
+    @ManagedAttribute(value = "codec of the serialized session attributes", readonly = true)
+    public SessionDataCodec getSessionDataCodec()
+    {
+        return _codec;
+    }
+
+    /**
+     * The codec used to serialize the session attributes, by default
+     * a {@link JavaSessionDataCodec}. Sessions serialized with any of
+     * the codecs provided can be read whatever the codec of the store.
+     *
+     * @param codec the codec of the session attributes
+     */
+    public void setSessionDataCodec(SessionDataCodec codec)
+    {
+        checkStarted();
+        _codec = Objects.requireNonNull(codec);
+    }
+
+    /**
+     * @return true if only the changes of the sessions already stored are stored
+     */
+    @ManagedAttribute(value = "only changed attributes are stored", readonly = true)
+    public boolean isStoreDeltas()
+    {
+        return _storeDeltas;
+    }
+
+    /**
+     * Store only the metadata and the attributes set or removed since a session
+     * was last saved, rather than the whole session, for the stores that
+     * support it. Sessions are stored whole when it is not known which
+     * of their attributes changed. By default the value is false.
+     *
+     * @param storeDeltas true to store only the changes of the sessions
+     */
+    public void setStoreDeltas(boolean storeDeltas)
+    {
+        checkStarted();
+        _storeDeltas = storeDeltas;
+    }
+
     @Override
     public String toString()
     {
@@ -26,6 +26,8 @@ public abstract class AbstractSessionDataStoreFactory implements SessionDataStor
 
     int _gracePeriodSec;
     int _savePeriodSec;
+    SessionDataCodec _codec = new JavaSessionDataCodec();
+    boolean _storeDeltas;
 
     /**
      * @return the gracePeriodSec
@@ -58,4 +60,38 @@ public abstract class AbstractSessionDataStoreFactory implements SessionDataStor
     {
         _savePeriodSec = savePeriodSec;
     }
+
+    /**
+     * @return the codec of the session attributes
+     */
+    public SessionDataCodec getSessionDataCodec()
+    {
+        return _codec;
+    }
+
+    /**
+     * @param codec the codec of the session attributes of the stores created
+     */
+    public void setSessionDataCodec(SessionDataCodec codec)
+    {
+        _codec = codec;
+    }
+
+    /**
+     * @return true if the stores created store only the changes of the sessions
+     */
+    public boolean isStoreDeltas()
+    {
+        return _storeDeltas;
+    }
+
+    /**
+     * @param storeDeltas true if the stores created, for those that support it,
+     * store only the changes of the sessions
+     * @see AbstractSessionDataStore#setStoreDeltas(boolean)
+     */
+    public void setStoreDeltas(boolean storeDeltas)
+    {
+        _storeDeltas = storeDeltas;
+    }
 }
@@ -0,0 +1,519 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.server.session;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.jetty.util.ClassLoadingObjectInputStream;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+
+/**
+ * CompactSessionDataCodec
+ *
+ * Encodes the attributes of a session in a compact, versioned, binary format.
+ * Values of type String, Integer, Long, Boolean, Short, Byte, Character, Float,
+ * Double and byte[] are written directly, with variable length integers, while
+ * values of other types fall back to Java serialization, one value at a time,
+ * recording which classloader should load them as
+ * {@link SessionData#serializeAttributes(SessionData, ObjectOutputStream)} does.
+ *
+ * The format is:
+ * <pre>
+ * 'J' 'S' version:byte length:int count:int (name:string type:byte value)*
+ * </pre>
+ * where length is the number of bytes after it, strings are a variable length
+ * byte count followed by the UTF-8 bytes, and the values of the types written
+ * directly do not depend on the classloaders. The leading bytes differ from
+ * those of a Java serialization stream, so attributes encoded by the
+ * {@link JavaSessionDataCodec} are also decoded.
+ *
+ * Nodes sharing a store must all be able to decode this format before
+ * any of them uses it to encode sessions.
+ */
+public class CompactSessionDataCodec implements SessionDataCodec
+{
+    private static final Logger LOG = Log.getLogger("org.eclipse.jetty.server.session");
+
+    static final byte[] MAGIC = {'J', 'S'};
+    static final int VERSION = 1;
+    private static final int HEADER_LENGTH = MAGIC.length + 1 + 4;
+
+    private static final byte STRING = 1;
+    private static final byte INTEGER = 2;
+    private static final byte LONG = 3;
+    private static final byte TRUE = 4;
+    private static final byte FALSE = 5;
+    private static final byte SHORT = 6;
+    private static final byte BYTE = 7;
+    private static final byte CHARACTER = 8;
+    private static final byte FLOAT = 9;
+    private static final byte DOUBLE = 10;
+    private static final byte BYTES = 11;
+    private static final byte SERVER_SERIALIZED = 12;
+    private static final byte CONTEXT_SERIALIZED = 13;
+
+    @Override
+    public void encodeAttributes(SessionData data, OutputStream out) throws IOException
+    {
+        Encoder encoder = encode(data);
+        out.write(encoder.bytes, 0, encoder.length);
+    }
+
+    @Override
+    public byte[] encodeAttributes(SessionData data) throws IOException
+    {
+        Encoder encoder = encode(data);
+        return Arrays.copyOf(encoder.bytes, encoder.length);
+    }
+
+    @Override
+    public void decodeAttributes(SessionData data, InputStream in) throws IOException, ClassNotFoundException
+    {
+        PushbackInputStream input = new PushbackInputStream(in, MAGIC.length);
+        if (readMagic(input))
+            decodeCompact(data, input);
+        else
+            JavaSessionDataCodec.decodeJava(data, input);
+    }
+
+    @Override
+    public void decodeAttributes(SessionData data, byte[] bytes) throws IOException, ClassNotFoundException
+    {
+        if (bytes.length >= HEADER_LENGTH && bytes[0] == MAGIC[0] && bytes[1] == MAGIC[1])
+        {
+            Decoder decoder = new Decoder(bytes, MAGIC.length, bytes.length);
+            int version = decoder.readByte() & 0xFF;
+            if (version != VERSION)
+                throw new IOException("Unknown session attributes version " + version);
+            int length = decoder.readInt();
+            if (length != bytes.length - HEADER_LENGTH)
+                throw new IOException("Invalid session attributes length " + length);
+            decodeBody(data, decoder);
+        }
+        else
+        {
+            JavaSessionDataCodec.decodeJava(data, new ByteArrayInputStream(bytes));
+        }
+    }
+
+    private static Encoder encode(SessionData data) throws IOException
+    {
+        Encoder encoder = new Encoder();
+        int count = 0;
+        for (Map.Entry<String, Object> entry : data._attributes.entrySet())
+        {
+            encoder.writeString(entry.getKey());
+            encodeValue(encoder, entry.getKey(), entry.getValue());
+            ++count;
+        }
+        encoder.complete(count);
+        return encoder;
+    }
+
+    private static void encodeValue(Encoder encoder, String name, Object value) throws IOException
+    {
+        if (value instanceof String)
+        {
+            encoder.writeByte(STRING);
+            encoder.writeString((String)value);
+        }
+        else if (value instanceof Integer)
+        {
+            encoder.writeByte(INTEGER);
+            encoder.writeVarLong(zigzag((Integer)value));
+        }
+        else if (value instanceof Long)
+        {
+            encoder.writeByte(LONG);
+            encoder.writeVarLong(zigzag((Long)value));
+        }
+        else if (value instanceof Boolean)
+        {
+            encoder.writeByte((Boolean)value ? TRUE : FALSE);
+        }
+        else if (value instanceof Short)
+        {
+            encoder.writeByte(SHORT);
+            encoder.writeVarLong(zigzag((Short)value));
+        }
+        else if (value instanceof Byte)
+        {
+            encoder.writeByte(BYTE);
+            encoder.writeByte((Byte)value);
+        }
+        else if (value instanceof Character)
+        {
+            encoder.writeByte(CHARACTER);
+            encoder.writeVarLong((Character)value);
+        }
+        else if (value instanceof Float)
+        {
+            encoder.writeByte(FLOAT);
+            encoder.writeInt(Float.floatToIntBits((Float)value));
+        }
+        else if (value instanceof Double)
+        {
+            encoder.writeByte(DOUBLE);
+            encoder.writeLong(Double.doubleToLongBits((Double)value));
+        }
+        else if (value instanceof byte[])
+        {
+            encoder.writeByte(BYTES);
+            encoder.writeBytes((byte[])value);
+        }
+        else
+        {
+            boolean isContextLoader = SessionData.isContextLoaded(value.getClass());
+            if (LOG.isDebugEnabled())
+                LOG.debug("Attribute {} class={} isServerLoader={}", name, value.getClass().getName(), !isContextLoader);
+            encoder.writeByte(isContextLoader ? CONTEXT_SERIALIZED : SERVER_SERIALIZED);
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            try (ObjectOutputStream oos = new ObjectOutputStream(baos))
+            {
+                oos.writeObject(value);
+            }
+            encoder.writeBytes(baos.toByteArray());
+        }
+    }
+
+    /**
+     * Read the magic bytes of the compact format, if they are present;
+     * otherwise leave the stream unchanged.
+     *
+     * @param in the stream to read from
+     * @return true if the magic bytes have been read
+     * @throws IOException if the stream cannot be read
+     */
+    static boolean readMagic(PushbackInputStream in) throws IOException
+    {
+        byte[] magic = new byte[MAGIC.length];
+        int read = 0;
+        while (read < magic.length)
+        {
+            int r = in.read(magic, read, magic.length - read);
+            if (r < 0)
+                break;
+            read += r;
+        }
+        if (read == magic.length && Arrays.equals(magic, MAGIC))
+            return true;
+        if (read > 0)
+            in.unread(magic, 0, read);
+        return false;
+    }
+
+    /**
+     * Decode attributes in the compact format, after its magic bytes.
+     *
+     * @param data the session whose attributes to set
+     * @param in the stream to read from, positioned after the magic bytes
+     * @throws IOException if the attributes cannot be decoded
+     * @throws ClassNotFoundException if the class of an attribute value cannot be loaded
+     */
+    static void decodeCompact(SessionData data, InputStream in) throws IOException, ClassNotFoundException
+    {
+        DataInputStream input = new DataInputStream(in);
+        int version = input.readUnsignedByte();
+        if (version != VERSION)
+            throw new IOException("Unknown session attributes version " + version);
+        int length = input.readInt();
+        if (length < 4)
+            throw new IOException("Invalid session attributes length " + length);
+        byte[] body = new byte[length];
+        input.readFully(body);
+        decodeBody(data, new Decoder(body, 0, length));
+    }
+
+    private static void decodeBody(SessionData data, Decoder decoder) throws IOException, ClassNotFoundException
+    {
+        int count = decoder.readInt();
+        ClassLoader contextLoader = Thread.currentThread().getContextClassLoader();
+        ClassLoader serverLoader = SessionData.class.getClassLoader();
+        Map<String, Object> attributes = new ConcurrentHashMap<>();
+        for (int i = 0; i < count; i++)
+        {
+            String name = decoder.readString();
+            byte type = decoder.readByte();
+            Object value;
+            switch (type)
+            {
+                case STRING:
+                    value = decoder.readString();
+                    break;
+                case INTEGER:
+                    value = (int)unzigzag(decoder.readVarLong());
+                    break;
+                case LONG:
+                    value = unzigzag(decoder.readVarLong());
+                    break;
+                case TRUE:
+                    value = Boolean.TRUE;
+                    break;
+                case FALSE:
+                    value = Boolean.FALSE;
+                    break;
+                case SHORT:
+                    value = (short)unzigzag(decoder.readVarLong());
+                    break;
+                case BYTE:
+                    value = decoder.readByte();
+                    break;
+                case CHARACTER:
+                    value = (char)decoder.readVarLong();
+                    break;
+                case FLOAT:
+                    value = Float.intBitsToFloat(decoder.readInt());
+                    break;
+                case DOUBLE:
+                    value = Double.longBitsToDouble(decoder.readLong());
+                    break;
+                case BYTES:
+                    value = decoder.readBytes();
+                    break;
+                case SERVER_SERIALIZED:
+                case CONTEXT_SERIALIZED:
+                {
+                    boolean isServerClassLoader = type == SERVER_SERIALIZED;
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("Deserialize {} isServerLoader={} serverLoader={} tccl={}", name, isServerClassLoader, serverLoader, contextLoader);
+                    int length = decoder.readLength();
+                    try (ClassLoadingObjectInputStream ois = new ClassLoadingObjectInputStream(new ByteArrayInputStream(decoder.bytes, decoder.position, length)))
+                    {
+                        value = ois.readObject(isServerClassLoader ? serverLoader : contextLoader);
+                    }
+                    decoder.position += length;
+                    break;
+                }
+                default:
+                    throw new IOException("Unknown type " + type + " of session attribute " + name);
+            }
+            attributes.put(name, value);
+        }
+        if (decoder.position != decoder.limit)
+            throw new IOException("Invalid session attributes, " + (decoder.limit - decoder.position) + " bytes left");
+        data._attributes = attributes;
+    }
+
+    private static long zigzag(long value)
+    {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value)
+    {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[version=%d]", getClass().getSimpleName(), hashCode(), VERSION);
+    }
+
+    /**
+     * Writes the header, then the body, to a growable array.
+     */
+    private static class Encoder
+    {
+        private byte[] bytes = new byte[256];
+        private int length;
+
+        private Encoder()
+        {
+            System.arraycopy(MAGIC, 0, bytes, 0, MAGIC.length);
+            bytes[MAGIC.length] = VERSION;
+            // The body length and attribute count are set by complete().
+            length = HEADER_LENGTH + 4;
+        }
+
+        private void ensure(int space)
+        {
+            if (length + space > bytes.length)
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + space));
+        }
+
+        private void writeByte(int value)
+        {
+            ensure(1);
+            bytes[length++] = (byte)value;
+        }
+
+        private void writeInt(int value)
+        {
+            ensure(4);
+            putInt(length, value);
+            length += 4;
+        }
+
+        private void putInt(int index, int value)
+        {
+            bytes[index] = (byte)(value >>> 24);
+            bytes[index + 1] = (byte)(value >>> 16);
+            bytes[index + 2] = (byte)(value >>> 8);
+            bytes[index + 3] = (byte)value;
+        }
+
+        private void writeLong(long value)
+        {
+            writeInt((int)(value >>> 32));
+            writeInt((int)value);
+        }
+
+        private void writeVarLong(long value)
+        {
+            ensure(10);
+            while ((value & ~0x7FL) != 0)
+            {
+                bytes[length++] = (byte)((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[length++] = (byte)value;
+        }
+
+        private void writeBytes(byte[] value)
+        {
+            writeVarLong(value.length);
+            ensure(value.length);
+            System.arraycopy(value, 0, bytes, length, value.length);
+            length += value.length;
+        }
+
+        private void writeString(String value)
+        {
+            int chars = value.length();
+            ensure(5 + chars);
+            int start = length;
+            writeVarLong(chars);
+            for (int i = 0; i < chars; i++)
+            {
+                char c = value.charAt(i);
+                if (c >= 0x80)
+                {
+                    // Not ASCII, use the JDK encoder.
+                    length = start;
+                    writeBytes(value.getBytes(StandardCharsets.UTF_8));
+                    return;
+                }
+                bytes[length++] = (byte)c;
+            }
+        }
+
+        private void complete(int count)
+        {
+            putInt(MAGIC.length + 1, length - HEADER_LENGTH);
+            putInt(HEADER_LENGTH, count);
+        }
+    }
+
+    /**
+     * Reads the body from an array, checking its bounds.
+     */
+    private static class Decoder
+    {
+        private final byte[] bytes;
+        private final int limit;
+        private int position;
+
+        private Decoder(byte[] bytes, int position, int limit)
+        {
+            this.bytes = bytes;
+            this.position = position;
+            this.limit = limit;
+        }
+
+        private void check(int length) throws IOException
+        {
+            if (length < 0 || length > limit - position)
+                throw new IOException("Truncated session attributes");
+        }
+
+        private byte readByte() throws IOException
+        {
+            check(1);
+            return bytes[position++];
+        }
+
+        private int readInt() throws IOException
+        {
+            check(4);
+            int value = ((bytes[position] & 0xFF) << 24) |
+                ((bytes[position + 1] & 0xFF) << 16) |
+                ((bytes[position + 2] & 0xFF) << 8) |
+                (bytes[position + 3] & 0xFF);
+            position += 4;
+            return value;
+        }
+
+        private long readLong() throws IOException
+        {
+            long high = readInt();
+            return (high << 32) | (readInt() & 0xFFFFFFFFL);
+        }
+
+        private long readVarLong() throws IOException
+        {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7)
+            {
+                byte b = readByte();
+                value |= (long)(b & 0x7F) << shift;
+                if ((b & 0x80) == 0)
+                    return value;
+            }
+            throw new IOException("Invalid variable length integer in session attributes");
+        }
+
+        private int readLength() throws IOException
+        {
+            long length = readVarLong();
+            if (length > Integer.MAX_VALUE)
+                throw new IOException("Invalid length in session attributes");
+            check((int)length);
+            return (int)length;
+        }
+
+        private byte[] readBytes() throws IOException
+        {
+            int length = readLength();
+            byte[] value = Arrays.copyOfRange(bytes, position, position + length);
+            position += length;
+            return value;
+        }
+
+        private String readString() throws IOException
+        {
+            int length = readLength();
+            String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
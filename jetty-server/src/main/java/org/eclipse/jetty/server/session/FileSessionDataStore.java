@@ -18,6 +18,7 @@
 
 package org.eclipse.jetty.server.session;
 
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
@@ -25,18 +26,18 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.nio.file.FileVisitOption;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
 
-import org.eclipse.jetty.util.ClassLoadingObjectInputStream;
 import org.eclipse.jetty.util.MultiException;
 import org.eclipse.jetty.util.StringUtil;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
@@ -48,16 +49,25 @@ import org.eclipse.jetty.util.log.Logger;
  * FileSessionDataStore
  *
  * A file-based store of session data.
+ *
+ * When deltas are enabled, the changes of a session already stored are appended to
+ * its file as delta records, and applied in order when the session is loaded. The
+ * file is rewritten with the whole session after {@link #getMaxDeltas()} deltas.
  */
 @ManagedObject
 public class FileSessionDataStore extends AbstractSessionDataStore
 {
     private static final Logger LOG = Log.getLogger("org.eclipse.jetty.server.session");
+    private static final int DELTA_RECORD = 'D';
+    public static final int DEFAULT_MAX_DELTAS = 32;
+
     protected File _storeDir;
     protected boolean _deleteUnrestorableFiles = false;
     protected Map<String, String> _sessionFileMap = new ConcurrentHashMap<>();
     protected String _contextString;
     protected long _lastSweepTime = 0L;
+    protected int _maxDeltas = DEFAULT_MAX_DELTAS;
+    protected Map<String, Integer> _deltaCounts = new ConcurrentHashMap<>(); //number of delta records in the file of each session
 
     @Override
     public void initialize(SessionContext context) throws Exception
@@ -77,6 +87,7 @@ public class FileSessionDataStore extends AbstractSessionDataStore
     protected void doStop() throws Exception
     {
         _sessionFileMap.clear();
+        _deltaCounts.clear();
         _lastSweepTime = 0;
         super.doStop();
     }
@@ -104,6 +115,24 @@ public class FileSessionDataStore extends AbstractSessionDataStore
         _deleteUnrestorableFiles = deleteUnrestorableFiles;
     }
 
+    @ManagedAttribute(value = "max delta records in a session file", readonly = true)
+    public int getMaxDeltas()
+    {
+        return _maxDeltas;
+    }
+
+    /**
+     * The maximum number of delta records appended to the file of a session,
+     * when deltas are enabled, before the file is rewritten with the whole session.
+     *
+     * @param maxDeltas the max number of delta records in a session file
+     */
+    public void setMaxDeltas(int maxDeltas)
+    {
+        checkStarted();
+        _maxDeltas = maxDeltas;
+    }
+
     /**
      * Delete a session
      *
@@ -115,6 +144,7 @@ public class FileSessionDataStore extends AbstractSessionDataStore
         if (_storeDir != null)
         {
             //remove from our map
+            _deltaCounts.remove(getIdWithContext(id));
             String filename = _sessionFileMap.remove(getIdWithContext(id));
             if (filename == null)
                 return false;
@@ -285,7 +315,7 @@ public class FileSessionDataStore extends AbstractSessionDataStore
 
         try (FileInputStream in = new FileInputStream(file))
         {
-            SessionData data = load(in, id);
+            SessionData data = load(in, id, deltas -> _deltaCounts.put(idWithContext, deltas));
             data.setLastSaved(file.lastModified());
             return data;
         }
@@ -335,6 +365,61 @@ public class FileSessionDataStore extends AbstractSessionDataStore
         }
     }
 
+    @Override
+    public boolean doStoreDelta(String id, SessionData data, Set<String> dirtyAttributes, long lastSaveTime) throws Exception
+    {
+        if (_storeDir == null)
+            return false;
+
+        String idWithContext = getIdWithContext(id);
+        String oldFilename = _sessionFileMap.get(idWithContext);
+        int deltas = _deltaCounts.getOrDefault(idWithContext, 0);
+        if (oldFilename == null || deltas >= _maxDeltas)
+            return false;
+        File file = new File(_storeDir, oldFilename);
+        if (!file.exists())
+            return false;
+
+        //encode the delta first, so that the file is untouched if it cannot be
+        ByteArrayOutputStream delta = new ByteArrayOutputStream();
+        try
+        {
+            saveDelta(delta, data, dirtyAttributes);
+        }
+        catch (Exception e)
+        {
+            throw new UnwriteableSessionDataException(id, _context, e);
+        }
+
+        try
+        {
+            //rename the file after the latest session expiry
+            String filename = getIdWithContextAndExpiry(data);
+            if (!filename.equals(oldFilename))
+            {
+                File newFile = new File(_storeDir, filename);
+                Files.move(file.toPath(), newFile.toPath());
+                _sessionFileMap.put(idWithContext, filename);
+                file = newFile;
+            }
+
+            try (FileOutputStream fos = new FileOutputStream(file, true))
+            {
+                delta.writeTo(fos);
+            }
+            _deltaCounts.put(idWithContext, deltas + 1);
+            return true;
+        }
+        catch (Exception e)
+        {
+            // No point keeping the file if we didn't save the whole delta
+            _sessionFileMap.remove(idWithContext);
+            _deltaCounts.remove(idWithContext);
+            file.delete();
+            throw new UnwriteableSessionDataException(id, _context, e);
+        }
+    }
+
     /**
      * Read the names of the existing session files and build a map of
      * fully qualified session ids (ie with context) to filename.  If there
@@ -477,8 +562,47 @@ public class FileSessionDataStore extends AbstractSessionDataStore
         out.writeLong(data.getExpiry());
         out.writeLong(data.getMaxInactiveMs());
 
-        ObjectOutputStream oos = new ObjectOutputStream(out);
-        SessionData.serializeAttributes(data, oos);
+        _codec.encodeAttributes(data, out);
+    }
+
+    /**
+     * Save the changes of the session data since it was last saved,
+     * as a delta record to append to its file.
+     *
+     * @param os the output stream to save to
+     * @param data the info of the session
+     * @param dirtyAttributes the names of the attributes set or removed since the last save
+     */
+    protected void saveDelta(OutputStream os, SessionData data, Set<String> dirtyAttributes) throws IOException
+    {
+        SessionData changed = new SessionData(data.getId(), data.getContextPath(), data.getVhost(), 0, 0, 0, 0);
+        Set<String> removed = new HashSet<>();
+        for (String name : dirtyAttributes)
+        {
+            Object value = data.getAttribute(name);
+            if (value == null)
+                removed.add(name);
+            else
+                changed._attributes.put(name, value);
+        }
+        byte[] attributes = _codec.encodeAttributes(changed);
+
+        DataOutputStream out = new DataOutputStream(os);
+        out.writeByte(DELTA_RECORD);
+        out.writeUTF(data.getLastNode());
+        out.writeLong(data.getAccessed());
+        out.writeLong(data.getLastAccessed());
+        out.writeLong(data.getCookieSet());
+        out.writeLong(data.getExpiry());
+        out.writeLong(data.getMaxInactiveMs());
+        out.writeInt(removed.size());
+        for (String name : removed)
+        {
+            out.writeUTF(name);
+        }
+        out.writeInt(attributes.length);
+        out.write(attributes);
+        out.flush();
     }
 
     /**
@@ -591,6 +715,20 @@ public class FileSessionDataStore extends AbstractSessionDataStore
      */
     protected SessionData load(InputStream is, String expectedId)
         throws Exception
+    {
+        return load(is, expectedId, null);
+    }
+
+    /**
+     * Load the session data from a file, applying its delta records.
+     *
+     * @param is file input stream containing session data
+     * @param expectedId the id we've been told to load
+     * @param deltasLoaded notified of the number of delta records applied, or null
+     * @return the session data
+     */
+    protected SessionData load(InputStream is, String expectedId, IntConsumer deltasLoaded)
+        throws Exception
     {
         String id = null; //the actual id from inside the file
 
@@ -619,8 +757,42 @@ public class FileSessionDataStore extends AbstractSessionDataStore
             data.setMaxInactiveMs(maxIdle);
 
             // Attributes
-            ClassLoadingObjectInputStream ois = new ClassLoadingObjectInputStream(is);
-            SessionData.deserializeAttributes(data, ois);
+            _codec.decodeAttributes(data, is);
+
+            // Deltas
+            int deltas = 0;
+            int record = di.read();
+            if (record >= 0)
+            {
+                Map<String, Object> attributes = new HashMap<>(data.getAllAttributes());
+                while (record >= 0)
+                {
+                    if (record != DELTA_RECORD)
+                        throw new IOException("Invalid delta record " + record);
+                    data.setLastNode(di.readUTF());
+                    data.setAccessed(di.readLong());
+                    data.setLastAccessed(di.readLong());
+                    data.setCookieSet(di.readLong());
+                    data.setExpiry(di.readLong());
+                    data.setMaxInactiveMs(di.readLong());
+                    int removed = di.readInt();
+                    for (int i = 0; i < removed; ++i)
+                    {
+                        attributes.remove(di.readUTF());
+                    }
+                    byte[] bytes = new byte[di.readInt()];
+                    di.readFully(bytes);
+                    SessionData changed = new SessionData(id, contextPath, vhost, 0, 0, 0, 0);
+                    _codec.decodeAttributes(changed, bytes);
+                    attributes.putAll(changed.getAllAttributes());
+                    ++deltas;
+                    record = di.read();
+                }
+                data.clearAllAttributes();
+                data.putAllAttributes(attributes);
+            }
+            if (deltasLoaded != null)
+                deltasLoaded.accept(deltas);
             return data;
         }
         catch (Exception e)
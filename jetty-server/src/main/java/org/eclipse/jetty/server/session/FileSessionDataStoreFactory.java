@@ -27,6 +27,7 @@ public class FileSessionDataStoreFactory extends AbstractSessionDataStoreFactory
 {
     boolean _deleteUnrestorableFiles;
     File _storeDir;
+    int _maxDeltas = FileSessionDataStore.DEFAULT_MAX_DELTAS;
 
     /**
      * @return the deleteUnrestorableFiles
@@ -60,6 +61,23 @@ public class FileSessionDataStoreFactory extends AbstractSessionDataStoreFactory
         _storeDir = storeDir;
     }
 
+    /**
+     * @return the max number of delta records in a session file
+     */
+    public int getMaxDeltas()
+    {
+        return _maxDeltas;
+    }
+
+    /**
+     * @param maxDeltas the max number of delta records in a session file
+     * @see FileSessionDataStore#setMaxDeltas(int)
+     */
+    public void setMaxDeltas(int maxDeltas)
+    {
+        _maxDeltas = maxDeltas;
+    }
+
     /**
      * @see org.eclipse.jetty.server.session.SessionDataStoreFactory#getSessionDataStore(org.eclipse.jetty.server.session.SessionHandler)
      */
@@ -71,6 +89,9 @@ public class FileSessionDataStoreFactory extends AbstractSessionDataStoreFactory
         fsds.setStoreDir(getStoreDir());
         fsds.setGracePeriodSec(getGracePeriodSec());
         fsds.setSavePeriodSec(getSavePeriodSec());
+        fsds.setSessionDataCodec(getSessionDataCodec());
+        fsds.setStoreDeltas(isStoreDeltas());
+        fsds.setMaxDeltas(getMaxDeltas());
         return fsds;
     }
 }
@@ -19,19 +19,26 @@
 package org.eclipse.jetty.server.session;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.ObjectOutputStream;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
-import org.eclipse.jetty.util.ClassLoadingObjectInputStream;
 import org.eclipse.jetty.util.StringUtil;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
@@ -42,6 +49,11 @@ import org.eclipse.jetty.util.log.Logger;
  * JDBCSessionDataStore
  *
  * Session data stored in database
+ * <p>
+ * Many sessions can be written with {@link #storeAll(Map)} using fewer
+ * database round-trips, and the expired sessions are found with a single
+ * query plus one query per batchSize candidate sessions to check. The number
+ * of round-trips made and saved by batching are reported as statistics.
  */
 @ManagedObject
 public class JDBCSessionDataStore extends AbstractSessionDataStore
@@ -53,10 +65,25 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
      */
     public static final String NULL_CONTEXT_PATH = "/";
 
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
     protected boolean _initialized = false;
     protected DatabaseAdaptor _dbAdaptor;
     protected SessionTableSchema _sessionTableSchema;
     protected boolean _schemaProvided;
+    protected int _batchSize = DEFAULT_BATCH_SIZE;
+
+    private final LongAdder _roundTrips = new LongAdder();
+    private final LongAdder _roundTripsSaved = new LongAdder();
+    private String _insertSessionSql;
+    private String _updateSessionSql;
+    private String _expiredSessionsSql;
+    private String _checkSessionsExistSql;
+    private String _updateSessionMetaDataSql;
+    private String _selectAttributesSql;
+    private String _insertAttributeSql;
+    private String _deleteAttributeSql;
+    private String _deleteSessionsAttributesSql;
 
     private static final ByteArrayInputStream EMPTY = new ByteArrayInputStream(new byte[0]);
 
@@ -84,6 +111,9 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
         protected String _expiryTimeColumn = "expiryTime";
         protected String _maxIntervalColumn = "maxInterval";
         protected String _mapColumn = "map";
+        protected String _attributeTableName = "JettySessionAttributes";
+        protected String _attributeNameColumn = "attributeName";
+        protected String _attributeValueColumn = "attributeValue";
 
         protected void setDatabaseAdaptor(DatabaseAdaptor dbadaptor)
         {
@@ -264,6 +294,44 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
             _mapColumn = mapColumn;
         }
 
+        public String getAttributeTableName()
+        {
+            return _attributeTableName;
+        }
+
+        public void setAttributeTableName(String attributeTableName)
+        {
+            checkNotNull(attributeTableName);
+            _attributeTableName = attributeTableName;
+        }
+
+        private String getSchemaAttributeTableName()
+        {
+            return (getSchemaName() != null ? getSchemaName() + "." : "") + getAttributeTableName();
+        }
+
+        public String getAttributeNameColumn()
+        {
+            return _attributeNameColumn;
+        }
+
+        public void setAttributeNameColumn(String attributeNameColumn)
+        {
+            checkNotNull(attributeNameColumn);
+            _attributeNameColumn = attributeNameColumn;
+        }
+
+        public String getAttributeValueColumn()
+        {
+            return _attributeValueColumn;
+        }
+
+        public void setAttributeValueColumn(String attributeValueColumn)
+        {
+            checkNotNull(attributeValueColumn);
+            _attributeValueColumn = attributeValueColumn;
+        }
+
         public String getCreateStatementAsString()
         {
             if (_dbAdaptor == null)
@@ -280,6 +348,28 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
                 _mapColumn + " " + blobType + ", primary key(" + _idColumn + ", " + _contextPathColumn + "," + _virtualHostColumn + "))";
         }
 
+        /**
+         * The attribute table holds the attributes of the sessions set or removed since
+         * the sessions were stored whole, which override those in the map column.
+         * The value of an attribute is encoded as the attributes of a session holding
+         * only that attribute, or none if it was removed.
+         *
+         * @return the statement creating the attribute table
+         */
+        public String getCreateAttributeTableStatementAsString()
+        {
+            if (_dbAdaptor == null)
+                throw new IllegalStateException("No DBAdaptor");
+
+            String blobType = _dbAdaptor.getBlobType();
+            String stringType = _dbAdaptor.getStringType();
+
+            return "create table " + _attributeTableName + " (" + _idColumn + " " + stringType + "(120), " +
+                _contextPathColumn + " " + stringType + "(60), " + _virtualHostColumn + " " + stringType + "(60), " +
+                _attributeNameColumn + " " + stringType + "(250), " + _attributeValueColumn + " " + blobType + ", " +
+                "primary key(" + _idColumn + ", " + _contextPathColumn + "," + _virtualHostColumn + "," + _attributeNameColumn + "))";
+        }
+
         public String getCreateIndexOverExpiryStatementAsString(String indexName)
         {
             return "create index " + indexName + " on " + getSchemaTableName() + " (" + getExpiryTimeColumn() + ")";
@@ -317,14 +407,125 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
                 " values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
         }
 
-        public PreparedStatement getUpdateSessionStatement(Connection connection, String id, SessionContext context)
-            throws SQLException
+        public String getUpdateSessionStatementAsString()
         {
-            String s = "update " + getSchemaTableName() +
+            return "update " + getSchemaTableName() +
                 " set " + getLastNodeColumn() + " = ?, " + getAccessTimeColumn() + " = ?, " +
                 getLastAccessTimeColumn() + " = ?, " + getLastSavedTimeColumn() + " = ?, " + getExpiryTimeColumn() + " = ?, " +
                 getMaxIntervalColumn() + " = ?, " + getMapColumn() + " = ? where " + getIdColumn() + " = ? and " + getContextPathColumn() +
                 " = ? and " + getVirtualHostColumn() + " = ?";
+        }
+
+        /**
+         * The statement updating the metadata of a session but not its attributes.
+         * Its parameters are the same as those of {@link #getUpdateSessionStatementAsString()}
+         * without the map: the last node, access time, last access time, last saved time,
+         * expiry time, max interval, session id, context path and virtual host.
+         *
+         * @return the statement updating the metadata of a session
+         */
+        public String getUpdateSessionMetaDataStatementAsString()
+        {
+            return "update " + getSchemaTableName() +
+                " set " + getLastNodeColumn() + " = ?, " + getAccessTimeColumn() + " = ?, " +
+                getLastAccessTimeColumn() + " = ?, " + getLastSavedTimeColumn() + " = ?, " + getExpiryTimeColumn() + " = ?, " +
+                getMaxIntervalColumn() + " = ? where " + getIdColumn() + " = ? and " + getContextPathColumn() +
+                " = ? and " + getVirtualHostColumn() + " = ?";
+        }
+
+        /**
+         * @return the statement selecting the attributes of a session in the attribute table,
+         * whose parameters are the session id, context path and virtual host
+         */
+        public String getSelectAttributesStatementAsString()
+        {
+            return "select " + getAttributeNameColumn() + ", " + getAttributeValueColumn() + " from " + getSchemaAttributeTableName() +
+                " where " + getIdColumn() + " = ? and " + getContextPathColumn() + " = ? and " + getVirtualHostColumn() + " = ?";
+        }
+
+        /**
+         * @return the statement inserting an attribute of a session in the attribute table, whose
+         * parameters are the session id, context path, virtual host, attribute name and value
+         */
+        public String getInsertAttributeStatementAsString()
+        {
+            return "insert into " + getSchemaAttributeTableName() +
+                " (" + getIdColumn() + ", " + getContextPathColumn() + ", " + getVirtualHostColumn() + ", " +
+                getAttributeNameColumn() + ", " + getAttributeValueColumn() + ") values (?, ?, ?, ?, ?)";
+        }
+
+        /**
+         * @return the statement deleting an attribute of a session from the attribute table, whose
+         * parameters are the session id, context path, virtual host and attribute name
+         */
+        public String getDeleteAttributeStatementAsString()
+        {
+            return "delete from " + getSchemaAttributeTableName() +
+                " where " + getIdColumn() + " = ? and " + getContextPathColumn() + " = ? and " + getVirtualHostColumn() + " = ? and " +
+                getAttributeNameColumn() + " = ?";
+        }
+
+        /**
+         * The statement deleting the attributes of a list of sessions of a context from the
+         * attribute table. Its parameters are the context path, the virtual host and the session ids.
+         *
+         * @param count the number of session ids
+         * @return the statement deleting the attributes of the sessions
+         */
+        public String getDeleteSessionsAttributesStatementAsString(int count)
+        {
+            return "delete from " + getSchemaAttributeTableName() +
+                " where " + getContextPathColumn() + " = ? and " + getVirtualHostColumn() + " = ? and " +
+                getIdColumn() + " in (" + getParametersAsString(count) + ")";
+        }
+
+        /**
+         * The statement selecting in a single query both the expired sessions of a context
+         * and the sessions of any context that expired long ago. Its parameters are the
+         * current time, the context path, the virtual host and the upper bound of the expiry
+         * time of the sessions of other contexts.
+         *
+         * @return the statement selecting the expired sessions
+         */
+        public String getExpiredSessionsStatementAsString()
+        {
+            return "select " + getIdColumn() + ", " + getContextPathColumn() + ", " + getVirtualHostColumn() + ", " + getExpiryTimeColumn() +
+                " from " + getSchemaTableName() +
+                " where " + getExpiryTimeColumn() + " >0 and " + getExpiryTimeColumn() + " <= ? and ((" +
+                getContextPathColumn() + " = ? and " + getVirtualHostColumn() + " = ?) or " +
+                getExpiryTimeColumn() + " <= ?)";
+        }
+
+        /**
+         * The statement selecting which of a list of sessions of a context exist.
+         * Its parameters are the context path, the virtual host and the session ids.
+         *
+         * @param count the number of session ids
+         * @return the statement selecting the sessions that exist
+         */
+        public String getCheckSessionsExistStatementAsString(int count)
+        {
+            return "select " + getIdColumn() + " from " + getSchemaTableName() +
+                " where " + getContextPathColumn() + " = ? and " + getVirtualHostColumn() + " = ? and " +
+                getIdColumn() + " in (" + getParametersAsString(count) + ")";
+        }
+
+        private String getParametersAsString(int count)
+        {
+            StringBuilder builder = new StringBuilder(2 * count);
+            for (int i = 0; i < count; ++i)
+            {
+                if (i > 0)
+                    builder.append(',');
+                builder.append('?');
+            }
+            return builder.toString();
+        }
+
+        public PreparedStatement getUpdateSessionStatement(Connection connection, String id, SessionContext context)
+            throws SQLException
+        {
+            String s = getUpdateSessionStatementAsString();
 
             String cp = context.getCanonicalContextPath();
             if (_dbAdaptor.isEmptyStringNull() && StringUtil.isBlank(cp))
@@ -591,12 +792,44 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
             }
         }
 
+        /**
+         * Set up the attribute table in the database, used when storing the
+         * changes of the sessions rather than the whole sessions.
+         *
+         * @throws SQLException if unable to prepare the table
+         */
+        public void prepareAttributeTable()
+            throws SQLException
+        {
+            try (Connection connection = _dbAdaptor.getConnection();
+                 Statement statement = connection.createStatement())
+            {
+                connection.setAutoCommit(true);
+                DatabaseMetaData metaData = connection.getMetaData();
+                _dbAdaptor.adaptTo(metaData);
+
+                String tableName = _dbAdaptor.convertIdentifier(getAttributeTableName());
+                String schemaName = _dbAdaptor.convertIdentifier(getSchemaName());
+                String catalogName = _dbAdaptor.convertIdentifier(getCatalogName());
+                try (ResultSet result = metaData.getTables(catalogName, schemaName, tableName, null))
+                {
+                    if (!result.next())
+                    {
+                        if (LOG.isDebugEnabled())
+                            LOG.debug("Creating table {} schema={} catalog={}", tableName, schemaName, catalogName);
+                        statement.executeUpdate(getCreateAttributeTableStatementAsString());
+                    }
+                }
+            }
+        }
+
         @Override
         public String toString()
         {
-            return String.format("%s[%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s]", super.toString(),
+            return String.format("%s[%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s]", super.toString(),
                 _catalogName, _schemaName, _tableName, _idColumn, _contextPathColumn, _virtualHostColumn, _cookieTimeColumn, _createTimeColumn,
-                _expiryTimeColumn, _accessTimeColumn, _lastAccessTimeColumn, _lastNodeColumn, _lastSavedTimeColumn, _maxIntervalColumn);
+                _expiryTimeColumn, _accessTimeColumn, _lastAccessTimeColumn, _lastNodeColumn, _lastSavedTimeColumn, _maxIntervalColumn,
+                _attributeTableName, _attributeNameColumn, _attributeValueColumn);
         }
     }
 
@@ -640,6 +873,22 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
             _dbAdaptor.initialize();
             _sessionTableSchema.setDatabaseAdaptor(_dbAdaptor);
             _sessionTableSchema.prepareTables();
+
+            //the schema is fixed from now on, so build the statements once
+            _insertSessionSql = _sessionTableSchema.getInsertSessionStatementAsString();
+            _updateSessionSql = _sessionTableSchema.getUpdateSessionStatementAsString();
+            _expiredSessionsSql = _sessionTableSchema.getExpiredSessionsStatementAsString();
+            _checkSessionsExistSql = _sessionTableSchema.getCheckSessionsExistStatementAsString(_batchSize);
+
+            if (_storeDeltas)
+            {
+                _sessionTableSchema.prepareAttributeTable();
+                _updateSessionMetaDataSql = _sessionTableSchema.getUpdateSessionMetaDataStatementAsString();
+                _selectAttributesSql = _sessionTableSchema.getSelectAttributesStatementAsString();
+                _insertAttributeSql = _sessionTableSchema.getInsertAttributeStatementAsString();
+                _deleteAttributeSql = _sessionTableSchema.getDeleteAttributeStatementAsString();
+                _deleteSessionsAttributesSql = _sessionTableSchema.getDeleteSessionsAttributesStatementAsString(_batchSize);
+            }
         }
     }
 
@@ -650,6 +899,7 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
              PreparedStatement statement = _sessionTableSchema.getLoadStatement(connection, id, _context);
              ResultSet result = statement.executeQuery())
         {
+            _roundTrips.increment();
             SessionData data = null;
             if (result.next())
             {
@@ -665,10 +915,11 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
                 data.setContextPath(_context.getCanonicalContextPath());
                 data.setVhost(_context.getVhost());
 
-                try (InputStream is = _dbAdaptor.getBlobInputStream(result, _sessionTableSchema.getMapColumn());
-                     ClassLoadingObjectInputStream ois = new ClassLoadingObjectInputStream(is))
+                try (InputStream is = _dbAdaptor.getBlobInputStream(result, _sessionTableSchema.getMapColumn()))
                 {
-                    SessionData.deserializeAttributes(data, ois);
+                    _codec.decodeAttributes(data, is);
+                    if (_storeDeltas)
+                        loadAttributes(connection, id, data);
                 }
                 catch (Exception e)
                 {
@@ -685,6 +936,46 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
         }
     }
 
+    /**
+     * Applies to the attributes of a session loaded those set or removed
+     * since it was stored whole, from the attribute table.
+     */
+    private void loadAttributes(Connection connection, String id, SessionData data) throws Exception
+    {
+        try (PreparedStatement statement = connection.prepareStatement(_selectAttributesSql))
+        {
+            statement.setString(1, id);
+            statement.setString(2, getContextPath());
+            statement.setString(3, _context.getVhost());
+            try (ResultSet result = statement.executeQuery())
+            {
+                _roundTrips.increment();
+                Map<String, Object> attributes = null;
+                while (result.next())
+                {
+                    if (attributes == null)
+                        attributes = new HashMap<>(data.getAllAttributes());
+                    String name = result.getString(_sessionTableSchema.getAttributeNameColumn());
+                    SessionData attribute = new SessionData(id, data.getContextPath(), data.getVhost(), 0, 0, 0, 0);
+                    try (InputStream is = _dbAdaptor.getBlobInputStream(result, _sessionTableSchema.getAttributeValueColumn()))
+                    {
+                        _codec.decodeAttributes(attribute, is);
+                    }
+                    Object value = attribute.getAttribute(name);
+                    if (value == null)
+                        attributes.remove(name);
+                    else
+                        attributes.put(name, value);
+                }
+                if (attributes != null)
+                {
+                    data.clearAllAttributes();
+                    data.putAllAttributes(attributes);
+                }
+            }
+        }
+    }
+
     @Override
     public boolean delete(String id) throws Exception
     {
@@ -693,6 +984,9 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
         {
             connection.setAutoCommit(true);
             int rows = statement.executeUpdate();
+            _roundTrips.increment();
+            if (_storeDeltas)
+                _roundTrips.add(deleteAttributes(connection, Collections.singleton(id)));
             if (LOG.isDebugEnabled())
                 LOG.debug("Deleted Session {}:{}", id, (rows > 0));
 
@@ -719,79 +1013,527 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
     protected void doInsert(String id, SessionData data)
         throws Exception
     {
-        String s = _sessionTableSchema.getInsertSessionStatementAsString();
-
         try (Connection connection = _dbAdaptor.getConnection())
         {
             connection.setAutoCommit(true);
-            try (PreparedStatement statement = connection.prepareStatement(s))
+            try (PreparedStatement statement = connection.prepareStatement(_insertSessionSql))
+            {
+                bindInsert(statement, id, data);
+                statement.executeUpdate();
+                _roundTrips.increment();
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Inserted session " + data);
+            }
+        }
+    }
+
+    protected void doUpdate(String id, SessionData data)
+        throws Exception
+    {
+        try (Connection connection = _dbAdaptor.getConnection())
+        {
+            if (_storeDeltas)
+            {
+                //the attributes changed since the session was last stored whole are obsolete
+                inTransaction(connection, () ->
+                {
+                    try (PreparedStatement statement = _sessionTableSchema.getUpdateSessionStatement(connection, data.getId(), _context))
+                    {
+                        bindUpdate(statement, data);
+                        statement.executeUpdate();
+                    }
+                    return 1 + deleteAttributes(connection, Collections.singleton(id));
+                });
+            }
+            else
             {
-                statement.setString(1, id); //session id
+                connection.setAutoCommit(true);
+                try (PreparedStatement statement = _sessionTableSchema.getUpdateSessionStatement(connection, data.getId(), _context))
+                {
+                    bindUpdate(statement, data);
+                    statement.executeUpdate();
+                    _roundTrips.increment();
+                }
+            }
 
-                String cp = _context.getCanonicalContextPath();
-                if (_dbAdaptor.isEmptyStringNull() && StringUtil.isBlank(cp))
-                    cp = NULL_CONTEXT_PATH;
+            if (LOG.isDebugEnabled())
+                LOG.debug("Updated session " + data);
+        }
+    }
 
-                statement.setString(2, cp); //context path
+    /**
+     * Stores the metadata of a session, and in the attribute table
+     * its attributes set or removed since it was last saved.
+     */
+    @Override
+    public boolean doStoreDelta(String id, SessionData data, Set<String> dirtyAttributes, long lastSaveTime) throws Exception
+    {
+        if (id == null)
+            return false;
 
-                statement.setString(3, _context.getVhost()); //first vhost
-                statement.setString(4, data.getLastNode());//my node id
-                statement.setLong(5, data.getAccessed());//accessTime
-                statement.setLong(6, data.getLastAccessed()); //lastAccessTime
-                statement.setLong(7, data.getCreated()); //time created
-                statement.setLong(8, data.getCookieSet());//time cookie was set
-                statement.setLong(9, data.getLastSaved()); //last saved time
-                statement.setLong(10, data.getExpiry());
-                statement.setLong(11, data.getMaxInactiveMs());
+        //encode the attributes first, so that nothing is written if they cannot be
+        Map<String, byte[]> attributes = new HashMap<>();
+        for (String name : dirtyAttributes)
+        {
+            attributes.put(name, encodeAttribute(data, name));
+        }
 
-                try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                    ObjectOutputStream oos = new ObjectOutputStream(baos))
+        try (Connection connection = _dbAdaptor.getConnection())
+        {
+            return inTransaction(connection, () ->
+            {
+                try (PreparedStatement statement = connection.prepareStatement(_updateSessionMetaDataSql))
                 {
-                    SessionData.serializeAttributes(data, oos);
-                    byte[] bytes = baos.toByteArray();
-                    ByteArrayInputStream bais = new ByteArrayInputStream(bytes);
-                    statement.setBinaryStream(12, bais, bytes.length);//attribute map as blob
+                    bindMetaData(statement, data);
+                    statement.setString(7, id);
+                    statement.setString(8, getContextPath());
+                    statement.setString(9, _context.getVhost());
+                    //no such session, so it must be stored whole
+                    if (statement.executeUpdate() == 0)
+                        return -1;
                 }
+                if (attributes.isEmpty())
+                    return 1;
 
-                statement.executeUpdate();
+                try (PreparedStatement delete = connection.prepareStatement(_deleteAttributeSql);
+                     PreparedStatement insert = connection.prepareStatement(_insertAttributeSql))
+                {
+                    for (Map.Entry<String, byte[]> entry : attributes.entrySet())
+                    {
+                        delete.setString(1, id);
+                        delete.setString(2, getContextPath());
+                        delete.setString(3, _context.getVhost());
+                        delete.setString(4, entry.getKey());
+                        delete.addBatch();
+
+                        insert.setString(1, id);
+                        insert.setString(2, getContextPath());
+                        insert.setString(3, _context.getVhost());
+                        insert.setString(4, entry.getKey());
+                        insert.setBinaryStream(5, new ByteArrayInputStream(entry.getValue()), entry.getValue().length);
+                        insert.addBatch();
+                    }
+                    delete.executeBatch();
+                    insert.executeBatch();
+                }
                 if (LOG.isDebugEnabled())
-                    LOG.debug("Inserted session " + data);
+                    LOG.debug("Updated {} attributes of session {}", attributes.size(), data);
+                return 3;
+            }) >= 0;
+        }
+    }
+
+    /**
+     * Runs statements in a transaction, which is rolled back if they fail.
+     *
+     * @param connection the connection to the database
+     * @param work the statements to run, returning the number of round-trips made,
+     * or a negative number if the transaction must be rolled back
+     * @return the number returned by the statements
+     */
+    private int inTransaction(Connection connection, Transaction work) throws Exception
+    {
+        connection.setAutoCommit(false);
+        try
+        {
+            int roundTrips = work.run();
+            if (roundTrips < 0)
+            {
+                connection.rollback();
+            }
+            else
+            {
+                connection.commit();
+                _roundTrips.add(roundTrips + 1);
             }
+            return roundTrips;
+        }
+        catch (Exception e)
+        {
+            try
+            {
+                connection.rollback();
+            }
+            catch (SQLException x)
+            {
+                e.addSuppressed(x);
+            }
+            throw e;
+        }
+        finally
+        {
+            connection.setAutoCommit(true);
         }
     }
 
-    protected void doUpdate(String id, SessionData data)
-        throws Exception
+    /**
+     * Deletes from the attribute table the attributes of sessions
+     * of this context, with one statement for each batchSize sessions.
+     *
+     * @return the number of round-trips made
+     */
+    private int deleteAttributes(Connection connection, Set<String> ids) throws SQLException
+    {
+        int roundTrips = 0;
+        try (PreparedStatement statement = connection.prepareStatement(_deleteSessionsAttributesSql))
+        {
+            Iterator<String> iterator = ids.iterator();
+            while (iterator.hasNext())
+            {
+                bindIds(statement, iterator);
+                statement.executeUpdate();
+                ++roundTrips;
+            }
+        }
+        return roundTrips;
+    }
+
+    /**
+     * Stores many sessions with JDBC batches of at most batchSize statements,
+     * in a single transaction. As for {@link #store(String, SessionData)}, only
+     * the sessions that have never been saved, or whose attributes or metadata
+     * have changed, are written, and only their changes if deltas are enabled.
+     *
+     * @param sessions the sessions to store, by id
+     * @throws Exception if unable to store the sessions, in which case none of them is stored
+     */
+    public void storeAll(Map<String, SessionData> sessions) throws Exception
+    {
+        if (!isStarted())
+            throw new IllegalStateException("Not started");
+
+        if (sessions.size() == 1)
+        {
+            Map.Entry<String, SessionData> entry = sessions.entrySet().iterator().next();
+            store(entry.getKey(), entry.getValue());
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        long savePeriodMs = (_savePeriodSec <= 0 ? 0 : TimeUnit.SECONDS.toMillis(_savePeriodSec));
+        List<PendingWrite> writes = new ArrayList<>(sessions.size());
+        for (Map.Entry<String, SessionData> entry : sessions.entrySet())
+        {
+            SessionData data = entry.getValue();
+            if (data == null || entry.getKey() == null)
+                continue;
+            long lastSave = data.getLastSaved();
+            //same rules as AbstractSessionDataStore.store()
+            if (data.isDirty() || (lastSave <= 0) ||
+                (data.isMetaDataDirty() && ((now - lastSave) >= savePeriodMs)))
+            {
+                Set<String> dirtyAttributes = (_storeDeltas && lastSave > 0) ? data.getDirtyAttributes() : null;
+                writes.add(new PendingWrite(entry.getKey(), data, lastSave, dirtyAttributes));
+                data.setLastSaved(now);
+            }
+        }
+
+        final AtomicReference<Exception> exception = new AtomicReference<>();
+        _context.run(() ->
+        {
+            try
+            {
+                doStoreAll(writes);
+            }
+            catch (Exception e)
+            {
+                exception.set(e);
+            }
+        });
+
+        //reset last save times if the save failed, otherwise unset all dirty flags
+        for (PendingWrite write : writes)
+        {
+            if (exception.get() == null)
+                write.data.clean();
+            else
+                write.data.setLastSaved(write.lastSave);
+        }
+        if (exception.get() != null)
+            throw exception.get();
+    }
+
+    protected void doStoreAll(List<PendingWrite> writes) throws Exception
     {
+        if (writes.isEmpty())
+            return;
+
         try (Connection connection = _dbAdaptor.getConnection())
         {
-            connection.setAutoCommit(true);
-            try (PreparedStatement statement = _sessionTableSchema.getUpdateSessionStatement(connection, data.getId(), _context))
+            connection.setAutoCommit(false);
+            try
+            {
+                int roundTrips = executeBatches(connection, _insertSessionSql, writes, true);
+                roundTrips += executeBatches(connection, _updateSessionSql, writes, false);
+                if (_storeDeltas)
+                {
+                    //the attributes changed since the sessions were last stored whole are obsolete
+                    Set<String> updated = new HashSet<>();
+                    for (PendingWrite write : writes)
+                    {
+                        if (!write.isInsert() && !write.isDelta())
+                            updated.add(write.id);
+                    }
+                    roundTrips += deleteAttributes(connection, updated);
+                    roundTrips += executeDeltaBatches(connection, writes);
+                }
+                connection.commit();
+                ++roundTrips;
+
+                _roundTrips.add(roundTrips);
+                _roundTripsSaved.add(Math.max(0, writes.size() - roundTrips));
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Stored {} sessions in {} round-trips", writes.size(), roundTrips);
+            }
+            catch (Exception e)
+            {
+                try
+                {
+                    connection.rollback();
+                }
+                catch (SQLException x)
+                {
+                    e.addSuppressed(x);
+                }
+                throw e;
+            }
+            finally
+            {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    private int executeBatches(Connection connection, String sql, List<PendingWrite> writes, boolean insert) throws Exception
+    {
+        if (writes.stream().noneMatch(write -> write.isInsert() == insert && !write.isDelta()))
+            return 0;
+
+        int batches = 0;
+        try (PreparedStatement statement = connection.prepareStatement(sql))
+        {
+            int count = 0;
+            for (PendingWrite write : writes)
+            {
+                if (write.isInsert() != insert || write.isDelta())
+                    continue;
+                if (insert)
+                {
+                    bindInsert(statement, write.id, write.data);
+                }
+                else
+                {
+                    bindUpdate(statement, write.data);
+                    statement.setString(8, write.id);
+                    statement.setString(9, getContextPath());
+                    statement.setString(10, _context.getVhost());
+                }
+                statement.addBatch();
+                if (++count == _batchSize)
+                {
+                    statement.executeBatch();
+                    ++batches;
+                    count = 0;
+                }
+            }
+            if (count > 0)
+            {
+                statement.executeBatch();
+                ++batches;
+            }
+        }
+        return batches;
+    }
+
+    private int executeDeltaBatches(Connection connection, List<PendingWrite> writes) throws Exception
+    {
+        List<PendingWrite> deltas = new ArrayList<>();
+        for (PendingWrite write : writes)
+        {
+            if (write.isDelta())
+                deltas.add(write);
+        }
+        if (deltas.isEmpty())
+            return 0;
+
+        int batches = 0;
+        //sessions whose metadata matched no row must be stored whole, as in doStoreDelta()
+        Set<PendingWrite> missing = new HashSet<>();
+        try (PreparedStatement update = connection.prepareStatement(_updateSessionMetaDataSql))
+        {
+            for (int from = 0; from < deltas.size(); from += _batchSize)
             {
-                statement.setString(1, data.getLastNode());//should be my node id
-                statement.setLong(2, data.getAccessed());//accessTime
-                statement.setLong(3, data.getLastAccessed()); //lastAccessTime
-                statement.setLong(4, data.getLastSaved()); //last saved time
-                statement.setLong(5, data.getExpiry());
-                statement.setLong(6, data.getMaxInactiveMs());
+                List<PendingWrite> batch = deltas.subList(from, Math.min(deltas.size(), from + _batchSize));
+                for (PendingWrite write : batch)
+                {
+                    bindMetaData(update, write.data);
+                    update.setString(7, write.id);
+                    update.setString(8, getContextPath());
+                    update.setString(9, _context.getVhost());
+                    update.addBatch();
+                }
+                int[] counts = update.executeBatch();
+                ++batches;
+                for (int i = 0; i < counts.length && i < batch.size(); i++)
+                {
+                    if (counts[i] == 0)
+                        missing.add(batch.get(i));
+                }
+            }
+        }
 
-                try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                    ObjectOutputStream oos = new ObjectOutputStream(baos))
+        if (!missing.isEmpty())
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Storing whole {} sessions with no row to update", missing.size());
+            try (PreparedStatement insert = connection.prepareStatement(_insertSessionSql))
+            {
+                int count = 0;
+                for (PendingWrite write : missing)
                 {
-                    SessionData.serializeAttributes(data, oos);
-                    byte[] bytes = baos.toByteArray();
-                    try (ByteArrayInputStream bais = new ByteArrayInputStream(bytes))
+                    bindInsert(insert, write.id, write.data);
+                    insert.addBatch();
+                    if (++count == _batchSize)
                     {
-                        statement.setBinaryStream(7, bais, bytes.length);//attribute map as blob
+                        insert.executeBatch();
+                        ++batches;
+                        count = 0;
                     }
                 }
+                if (count > 0)
+                {
+                    insert.executeBatch();
+                    ++batches;
+                }
+            }
+        }
 
-                statement.executeUpdate();
+        try (PreparedStatement delete = connection.prepareStatement(_deleteAttributeSql);
+             PreparedStatement insert = connection.prepareStatement(_insertAttributeSql))
+        {
+            int attributes = 0;
+            for (PendingWrite write : deltas)
+            {
+                //the attributes of a session stored whole are in its row
+                if (missing.contains(write))
+                    continue;
 
-                if (LOG.isDebugEnabled())
-                    LOG.debug("Updated session " + data);
+                for (String name : write.dirtyAttributes)
+                {
+                    delete.setString(1, write.id);
+                    delete.setString(2, getContextPath());
+                    delete.setString(3, _context.getVhost());
+                    delete.setString(4, name);
+                    delete.addBatch();
+
+                    byte[] bytes = encodeAttribute(write.data, name);
+                    insert.setString(1, write.id);
+                    insert.setString(2, getContextPath());
+                    insert.setString(3, _context.getVhost());
+                    insert.setString(4, name);
+                    insert.setBinaryStream(5, new ByteArrayInputStream(bytes), bytes.length);
+                    insert.addBatch();
+                    if (++attributes == _batchSize)
+                    {
+                        delete.executeBatch();
+                        insert.executeBatch();
+                        batches += 2;
+                        attributes = 0;
+                    }
+                }
+            }
+            if (attributes > 0)
+            {
+                delete.executeBatch();
+                insert.executeBatch();
+                batches += 2;
+            }
+        }
+        return batches;
+    }
+
+    /**
+     * Encodes an attribute of a session for the attribute table, as the attributes
+     * of a session holding only that attribute, or none if it was removed.
+     */
+    private byte[] encodeAttribute(SessionData data, String name) throws IOException
+    {
+        SessionData attribute = new SessionData(data.getId(), data.getContextPath(), data.getVhost(), 0, 0, 0, 0);
+        Object value = data.getAttribute(name);
+        if (value != null)
+            attribute._attributes.put(name, value);
+        return _codec.encodeAttributes(attribute);
+    }
+
+    private void bindInsert(PreparedStatement statement, String id, SessionData data) throws Exception
+    {
+        statement.setString(1, id); //session id
+        statement.setString(2, getContextPath()); //context path
+        statement.setString(3, _context.getVhost()); //first vhost
+        statement.setString(4, data.getLastNode());//my node id
+        statement.setLong(5, data.getAccessed());//accessTime
+        statement.setLong(6, data.getLastAccessed()); //lastAccessTime
+        statement.setLong(7, data.getCreated()); //time created
+        statement.setLong(8, data.getCookieSet());//time cookie was set
+        statement.setLong(9, data.getLastSaved()); //last saved time
+        statement.setLong(10, data.getExpiry());
+        statement.setLong(11, data.getMaxInactiveMs());
+
+        byte[] bytes = _codec.encodeAttributes(data);
+        statement.setBinaryStream(12, new ByteArrayInputStream(bytes), bytes.length);//attribute map as blob
+    }
+
+    private void bindUpdate(PreparedStatement statement, SessionData data) throws Exception
+    {
+        bindMetaData(statement, data);
+
+        byte[] bytes = _codec.encodeAttributes(data);
+        statement.setBinaryStream(7, new ByteArrayInputStream(bytes), bytes.length);//attribute map as blob
+    }
+
+    private void bindMetaData(PreparedStatement statement, SessionData data) throws SQLException
+    {
+        statement.setString(1, data.getLastNode());//should be my node id
+        statement.setLong(2, data.getAccessed());//accessTime
+        statement.setLong(3, data.getLastAccessed()); //lastAccessTime
+        statement.setLong(4, data.getLastSaved()); //last saved time
+        statement.setLong(5, data.getExpiry());
+        statement.setLong(6, data.getMaxInactiveMs());
+    }
+
+    /**
+     * Binds the context and the next batchSize ids to a statement with an {@code IN} list
+     * of batchSize parameters. The last id is repeated to fill the list when there are
+     * fewer ids left, so that the same statement is used for all the batches.
+     *
+     * @param statement the statement to bind
+     * @param ids the ids to bind, consumed
+     * @return the ids bound
+     */
+    private List<String> bindIds(PreparedStatement statement, Iterator<String> ids) throws SQLException
+    {
+        statement.setString(1, getContextPath());
+        statement.setString(2, _context.getVhost());
+        List<String> bound = new ArrayList<>(_batchSize);
+        String id = null;
+        for (int i = 0; i < _batchSize; ++i)
+        {
+            if (ids.hasNext())
+            {
+                id = ids.next();
+                bound.add(id);
             }
+            statement.setString(3 + i, id);
         }
+        return bound;
+    }
+
+    private String getContextPath()
+    {
+        String cp = _context.getCanonicalContextPath();
+        if (_dbAdaptor.isEmptyStringNull() && StringUtil.isBlank(cp))
+            cp = NULL_CONTEXT_PATH;
+        return cp;
     }
 
     @Override
@@ -808,53 +1550,36 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
             connection.setAutoCommit(true);
 
             /*
-             * 1. Select sessions managed by this node for our context that have expired
+             * Select in a single query:
+             * 1. the sessions for our context that have expired
+             * 2. the sessions for any node or context that have expired
+             * at least 1 graceperiod since the last expiry check. If we haven't done previous expiry checks, then check
+             * those that have expired at least 3 graceperiod ago.
              */
-            long upperBound = now;
+            long upperBound;
+            if (_lastExpiryCheckTime <= 0)
+                upperBound = (now - (3 * (1000L * _gracePeriodSec)));
+            else
+                upperBound = _lastExpiryCheckTime - (1000L * _gracePeriodSec);
+
             if (LOG.isDebugEnabled())
-                LOG.debug("{}- Pass 1: Searching for sessions for context {} managed by me and expired before {}", _context.getWorkerName(), _context.getCanonicalContextPath(), upperBound);
+                LOG.debug("{}- Searching for sessions for context {} expired before {} and sessions expired before {}", _context.getWorkerName(), _context.getCanonicalContextPath(), now, upperBound);
 
-            try (PreparedStatement statement = _sessionTableSchema.getExpiredSessionsStatement(connection, _context.getCanonicalContextPath(), _context.getVhost(), upperBound))
+            int roundTrips = 1;
+            try (PreparedStatement statement = connection.prepareStatement(_expiredSessionsSql))
             {
+                statement.setLong(1, now);
+                statement.setString(2, getContextPath());
+                statement.setString(3, _context.getVhost());
+                statement.setLong(4, upperBound);
                 try (ResultSet result = statement.executeQuery())
                 {
                     while (result.next())
                     {
                         String sessionId = result.getString(_sessionTableSchema.getIdColumn());
-                        long exp = result.getLong(_sessionTableSchema.getExpiryTimeColumn());
                         expiredSessionKeys.add(sessionId);
                         if (LOG.isDebugEnabled())
-                            LOG.debug(_context.getCanonicalContextPath() + "- Found expired sessionId=" + sessionId);
-                    }
-                }
-            }
-
-            /*
-             *  2. Select sessions for any node or context that have expired
-             *  at least 1 graceperiod since the last expiry check. If we haven't done previous expiry checks, then check
-             *  those that have expired at least 3 graceperiod ago.
-             */
-            try (PreparedStatement selectExpiredSessions = _sessionTableSchema.getAllAncientExpiredSessionsStatement(connection))
-            {
-                if (_lastExpiryCheckTime <= 0)
-                    upperBound = (now - (3 * (1000L * _gracePeriodSec)));
-                else
-                    upperBound = _lastExpiryCheckTime - (1000L * _gracePeriodSec);
-
-                if (LOG.isDebugEnabled())
-                    LOG.debug("{}- Pass 2: Searching for sessions expired before {}", _context.getWorkerName(), upperBound);
-
-                selectExpiredSessions.setLong(1, upperBound);
-                try (ResultSet result = selectExpiredSessions.executeQuery())
-                {
-                    while (result.next())
-                    {
-                        String sessionId = result.getString(_sessionTableSchema.getIdColumn());
-                        String ctxtpth = result.getString(_sessionTableSchema.getContextPathColumn());
-                        String vh = result.getString(_sessionTableSchema.getVirtualHostColumn());
-                        expiredSessionKeys.add(sessionId);
-                        if (LOG.isDebugEnabled())
-                            LOG.debug("{}- Found expired sessionId=", _context.getWorkerName(), sessionId);
+                            LOG.debug("{}- Found expired sessionId={} for context {}", _context.getWorkerName(), sessionId, result.getString(_sessionTableSchema.getContextPathColumn()));
                     }
                 }
             }
@@ -871,30 +1596,42 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
 
             if (!notExpiredInDB.isEmpty())
             {
-                //we have some sessions to check
-                try (PreparedStatement checkSessionExists = _sessionTableSchema.getCheckSessionExistsStatement(connection, _context))
+                //we have some sessions to check, batchSize at a time
+                try (PreparedStatement checkSessionsExist = connection.prepareStatement(_checkSessionsExistSql))
                 {
-                    for (String k : notExpiredInDB)
+                    Iterator<String> iterator = notExpiredInDB.iterator();
+                    while (iterator.hasNext())
                     {
-                        checkSessionExists.setString(1, k);
-                        try (ResultSet result = checkSessionExists.executeQuery())
+                        List<String> ids = bindIds(checkSessionsExist, iterator);
+                        ++roundTrips;
+                        try (ResultSet result = checkSessionsExist.executeQuery())
                         {
-                            if (!result.next())
+                            Set<String> existing = new HashSet<>();
+                            while (result.next())
                             {
-                                //session doesn't exist any more, can be expired
-                                expiredSessionKeys.add(k);
+                                existing.add(result.getString(_sessionTableSchema.getIdColumn()));
+                            }
+                            for (String k : ids)
+                            {
+                                //session doesn't exist any more, can be expired,
+                                //else its expiry time has not been reached
+                                if (!existing.contains(k))
+                                    expiredSessionKeys.add(k);
                             }
-                            //else its expiry time has not been reached
-                        }
-                        catch (Exception e)
-                        {
-                            LOG.warn("{} Problem checking if potentially expired session {} exists in db", _context.getWorkerName(), k);
-                            LOG.warn(e);
                         }
                     }
                 }
+                catch (Exception e)
+                {
+                    LOG.warn("{} Problem checking if potentially expired sessions exist in db", _context.getWorkerName());
+                    LOG.warn(e);
+                }
             }
 
+            //the previous implementation made 2 queries plus 1 query per candidate to check
+            _roundTrips.add(roundTrips);
+            _roundTripsSaved.add(2 + notExpiredInDB.size() - roundTrips);
+
             return expiredSessionKeys;
         }
         catch (Exception e)
@@ -919,6 +1656,38 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
         _schemaProvided = true;
     }
 
+    /**
+     * @return the max number of statements in a JDBC batch, and of session ids in a statement
+     */
+    @ManagedAttribute(value = "max number of statements in a batch or of session ids in a statement", readonly = true)
+    public int getBatchSize()
+    {
+        return _batchSize;
+    }
+
+    /**
+     * @param batchSize the max number of statements in a JDBC batch, and of session ids in a statement
+     */
+    public void setBatchSize(int batchSize)
+    {
+        checkStarted();
+        if (batchSize <= 0)
+            throw new IllegalArgumentException("Invalid batch size " + batchSize);
+        _batchSize = batchSize;
+    }
+
+    @ManagedAttribute(value = "number of round-trips to the database", readonly = true)
+    public long getRoundTrips()
+    {
+        return _roundTrips.sum();
+    }
+
+    @ManagedAttribute(value = "number of round-trips to the database saved by batching", readonly = true)
+    public long getRoundTripsSaved()
+    {
+        return _roundTripsSaved.sum();
+    }
+
     @Override
     @ManagedAttribute(value = "does this store serialize sessions", readonly = true)
     public boolean isPassivating()
@@ -940,6 +1709,7 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
                 checkSessionExists.setString(1, id);
                 try (ResultSet result = checkSessionExists.executeQuery())
                 {
+                    _roundTrips.increment();
                     if (!result.next())
                     {
                         return false; //no such session
@@ -956,4 +1726,53 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
             }
         }
     }
+
+    /**
+     * Statements run in a transaction.
+     */
+    @FunctionalInterface
+    private interface Transaction
+    {
+        int run() throws Exception;
+    }
+
+    /**
+     * A session to write in a batch, with its previous save time.
+     */
+    protected static class PendingWrite
+    {
+        protected final String id;
+        protected final SessionData data;
+        protected final long lastSave;
+        protected final Set<String> dirtyAttributes;
+
+        protected PendingWrite(String id, SessionData data, long lastSave)
+        {
+            this(id, data, lastSave, null);
+        }
+
+        protected PendingWrite(String id, SessionData data, long lastSave, Set<String> dirtyAttributes)
+        {
+            this.id = id;
+            this.data = data;
+            this.lastSave = lastSave;
+            this.dirtyAttributes = dirtyAttributes;
+        }
+
+        /**
+         * @return whether the session has never been saved, so it must be inserted rather than updated
+         */
+        protected boolean isInsert()
+        {
+            return lastSave <= 0;
+        }
+
+        /**
+         * @return whether only the metadata and the dirty attributes of the session are written
+         */
+        protected boolean isDelta()
+        {
+            return dirtyAttributes != null;
+        }
+    }
 }
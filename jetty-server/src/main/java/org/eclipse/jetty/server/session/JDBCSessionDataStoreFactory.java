@@ -34,6 +34,11 @@ public class JDBCSessionDataStoreFactory extends AbstractSessionDataStoreFactory
      */
     JDBCSessionDataStore.SessionTableSchema _schema;
 
+    /**
+     *
+     */
+    int _batchSize = JDBCSessionDataStore.DEFAULT_BATCH_SIZE;
+
     /**
      * @see org.eclipse.jetty.server.session.SessionDataStoreFactory#getSessionDataStore(org.eclipse.jetty.server.session.SessionHandler)
      */
@@ -45,6 +50,9 @@ public class JDBCSessionDataStoreFactory extends AbstractSessionDataStoreFactory
         ds.setSessionTableSchema(_schema);
         ds.setGracePeriodSec(getGracePeriodSec());
         ds.setSavePeriodSec(getSavePeriodSec());
+        ds.setBatchSize(_batchSize);
+        ds.setSessionDataCodec(getSessionDataCodec());
+        ds.setStoreDeltas(isStoreDeltas());
         return ds;
     }
 
@@ -63,4 +71,12 @@ public class JDBCSessionDataStoreFactory extends AbstractSessionDataStoreFactory
     {
         _schema = schema;
     }
+
+    /**
+     * @param batchSize the max number of statements in a JDBC batch, and of session ids in a statement
+     */
+    public void setBatchSize(int batchSize)
+    {
+        _batchSize = batchSize;
+    }
 }
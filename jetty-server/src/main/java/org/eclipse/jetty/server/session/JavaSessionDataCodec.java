@@ -0,0 +1,70 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.server.session;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+
+import org.eclipse.jetty.util.ClassLoadingObjectInputStream;
+
+/**
+ * JavaSessionDataCodec
+ *
+ * Encodes the attributes of a session with Java serialization, using
+ * {@link SessionData#serializeAttributes(SessionData, ObjectOutputStream)}.
+ * This is the format that the SessionDataStores have always used, which is
+ * readable by all versions of jetty.
+ *
+ * Attributes encoded by the {@link CompactSessionDataCodec} are also decoded.
+ */
+public class JavaSessionDataCodec implements SessionDataCodec
+{
+    @Override
+    public void encodeAttributes(SessionData data, OutputStream out) throws IOException
+    {
+        ObjectOutputStream oos = new ObjectOutputStream(out);
+        SessionData.serializeAttributes(data, oos);
+        oos.flush();
+    }
+
+    @Override
+    public void decodeAttributes(SessionData data, InputStream in) throws IOException, ClassNotFoundException
+    {
+        PushbackInputStream input = new PushbackInputStream(in, CompactSessionDataCodec.MAGIC.length);
+        if (CompactSessionDataCodec.readMagic(input))
+            CompactSessionDataCodec.decodeCompact(data, input);
+        else
+            decodeJava(data, input);
+    }
+
+    static void decodeJava(SessionData data, InputStream in) throws IOException, ClassNotFoundException
+    {
+        ClassLoadingObjectInputStream ois = new ClassLoadingObjectInputStream(in);
+        SessionData.deserializeAttributes(data, ois);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x", getClass().getSimpleName(), hashCode());
+    }
+}
@@ -21,6 +21,7 @@ package org.eclipse.jetty.server.session;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -57,6 +58,8 @@ public class SessionData implements Serializable
     protected long _maxInactiveMs;
     protected Map<String, Object> _attributes;
     protected boolean _dirty;
+    protected transient Set<String> _dirtyAttributes = ConcurrentHashMap.newKeySet(); //names of the attributes changed since the last save
+    protected boolean _allAttributesDirty; //dirty without knowing which attributes changed
     protected long _lastSaved; //time in msec since last save
     protected boolean _metaDataDirty; //non-attribute data has changed
 
@@ -80,35 +83,7 @@ public class SessionData implements Serializable
             out.writeUTF(entry.getKey());
 
             Class<?> clazz = entry.getValue().getClass();
-            ClassLoader loader = clazz.getClassLoader();
-            ClassLoader contextLoader = Thread.currentThread().getContextClassLoader();
-            boolean isContextLoader;
-
-            if (loader == contextLoader) //is it the context classloader?
-                isContextLoader = true;
-            else if (contextLoader == null) //not context classloader
-                isContextLoader = false;
-            else if (contextLoader instanceof ClassVisibilityChecker)
-            {
-                //Clazz not loaded by context classloader, but ask if loadable by context classloader,
-                //because preferable to use context classloader if possible (eg for deep structures).
-                ClassVisibilityChecker checker = (ClassVisibilityChecker)(contextLoader);
-                isContextLoader = (checker.isSystemClass(clazz) && !(checker.isServerClass(clazz)));
-            }
-            else
-            {
-                //Class wasn't loaded by context classloader, but try loading from context loader,
-                //because preferable to use context classloader if possible (eg for deep structures).
-                try
-                {
-                    Class<?> result = contextLoader.loadClass(clazz.getName());
-                    isContextLoader = (result == clazz); //only if TTCL loaded this instance of the class
-                }
-                catch (Throwable e)
-                {
-                    isContextLoader = false; //TCCL can't see the class
-                }
-            }
+            boolean isContextLoader = isContextLoaded(clazz);
 
             if (LOG.isDebugEnabled())
                 LOG.debug("Attribute {} class={} isServerLoader={}", entry.getKey(), clazz.getName(), (!isContextLoader));
@@ -117,6 +92,48 @@ public class SessionData implements Serializable
         }
     }
 
+    /**
+     * Determine which classloader should be used to load the class of an attribute value
+     * when it is deserialized: the thread context classloader, normally the webapp's
+     * classloader, is preferred when it can load the class.
+     *
+     * @param clazz the class of an attribute value
+     * @return true if the class should be loaded by the context classloader, false if by the container classloader
+     */
+    static boolean isContextLoaded(Class<?> clazz)
+    {
+        ClassLoader loader = clazz.getClassLoader();
+        ClassLoader contextLoader = Thread.currentThread().getContextClassLoader();
+        boolean isContextLoader;
+
+        if (loader == contextLoader) //is it the context classloader?
+            isContextLoader = true;
+        else if (contextLoader == null) //not context classloader
+            isContextLoader = false;
+        else if (contextLoader instanceof ClassVisibilityChecker)
+        {
+            //Clazz not loaded by context classloader, but ask if loadable by context classloader,
+            //because preferable to use context classloader if possible (eg for deep structures).
+            ClassVisibilityChecker checker = (ClassVisibilityChecker)(contextLoader);
+            isContextLoader = (checker.isSystemClass(clazz) && !(checker.isServerClass(clazz)));
+        }
+        else
+        {
+            //Class wasn't loaded by context classloader, but try loading from context loader,
+            //because preferable to use context classloader if possible (eg for deep structures).
+            try
+            {
+                Class<?> result = contextLoader.loadClass(clazz.getName());
+                isContextLoader = (result == clazz); //only if TTCL loaded this instance of the class
+            }
+            catch (Throwable e)
+            {
+                isContextLoader = false; //TCCL can't see the class
+            }
+        }
+        return isContextLoader;
+    }
+
     /**
      * De-serialize the attribute map of a session.
      *
@@ -231,9 +248,44 @@ public class SessionData implements Serializable
         return _dirty;
     }
 
+    /**
+     * Mark the data as dirty, without knowing which attributes changed,
+     * so that all of them are saved, or as clean.
+     *
+     * @param dirty true if the data must be saved
+     */
     public void setDirty(boolean dirty)
     {
         _dirty = dirty;
+        _allAttributesDirty = dirty;
+        if (!dirty)
+            _dirtyAttributes.clear();
+    }
+
+    /**
+     * Mark the data as dirty with the dirty attributes of another
+     * SessionData, eg the data of the same session that was copied.
+     *
+     * @param data the data whose dirty attributes to add to ours
+     */
+    public void mergeDirty(SessionData data)
+    {
+        _dirty = true;
+        if (data._allAttributesDirty)
+            _allAttributesDirty = true;
+        _dirtyAttributes.addAll(data._dirtyAttributes);
+    }
+
+    /**
+     * @return the names of the attributes set or removed since the data was last saved,
+     * or null if the data was marked dirty without knowing which attributes changed, in
+     * which case all the attributes must be saved
+     */
+    public Set<String> getDirtyAttributes()
+    {
+        if (_allAttributesDirty)
+            return null;
+        return new HashSet<>(_dirtyAttributes);
     }
 
     /**
@@ -281,7 +333,8 @@ public class SessionData implements Serializable
 
     public void setDirty(String name)
     {
-        setDirty(true);
+        _dirtyAttributes.add(name);
+        _dirty = true;
     }
 
     /**
@@ -487,6 +540,7 @@ public class SessionData implements Serializable
         _lastNode = in.readUTF(); //last managing node
         _expiry = in.readLong();
         _maxInactiveMs = in.readLong();
+        _dirtyAttributes = ConcurrentHashMap.newKeySet();
         deserializeAttributes(this, in);
     }
 
@@ -0,0 +1,87 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.server.session;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * SessionDataCodec
+ *
+ * Encodes and decodes the attributes of a {@link SessionData}, for the
+ * SessionDataStores that persist or distribute sessions.
+ *
+ * As for {@link SessionData#serializeAttributes(SessionData, java.io.ObjectOutputStream)},
+ * the thread context classloader must be the classloader of the context of the session,
+ * so that the codec can record which classloader should load the attribute values.
+ *
+ * The codecs provided decode the formats of all the codecs provided, so that the
+ * codec of a store can be changed without making the stored sessions unreadable.
+ *
+ * @see JavaSessionDataCodec
+ * @see CompactSessionDataCodec
+ */
+public interface SessionDataCodec
+{
+    /**
+     * Encode the attributes of a session to a stream, which is not closed.
+     *
+     * @param data the session whose attributes to encode
+     * @param out the stream to write to
+     * @throws IOException if the attributes cannot be encoded
+     */
+    void encodeAttributes(SessionData data, OutputStream out) throws IOException;
+
+    /**
+     * Decode attributes from a stream, replacing the attributes of a session.
+     * The stream must contain the encoded attributes, and nothing after them.
+     *
+     * @param data the session whose attributes to set
+     * @param in the stream to read from
+     * @throws IOException if the attributes cannot be decoded
+     * @throws ClassNotFoundException if the class of an attribute value cannot be loaded
+     */
+    void decodeAttributes(SessionData data, InputStream in) throws IOException, ClassNotFoundException;
+
+    /**
+     * @param data the session whose attributes to encode
+     * @return the encoded attributes
+     * @throws IOException if the attributes cannot be encoded
+     */
+    default byte[] encodeAttributes(SessionData data) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encodeAttributes(data, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * @param data the session whose attributes to set
+     * @param bytes the encoded attributes
+     * @throws IOException if the attributes cannot be decoded
+     * @throws ClassNotFoundException if the class of an attribute value cannot be loaded
+     */
+    default void decodeAttributes(SessionData data, byte[] bytes) throws IOException, ClassNotFoundException
+    {
+        decodeAttributes(data, new ByteArrayInputStream(bytes));
+    }
+}
@@ -0,0 +1,513 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.server.session;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+import org.eclipse.jetty.util.thread.Locker;
+import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
+import org.eclipse.jetty.util.thread.Scheduler;
+
+/**
+ * WriteBehindSessionDataStore
+ *
+ * A SessionDataStore that takes the writes to a delegate SessionDataStore out of
+ * the request thread. Stored session data is copied and queued, and the queue is
+ * flushed to the delegate in batches by a background thread, at the latest
+ * flushIntervalMs after a session was queued, or as soon as maxBatchSize sessions
+ * are queued. Multiple writes for the same session id that are queued before the
+ * flush are coalesced into a single write of the most recent data. When the delegate
+ * is a {@link JDBCSessionDataStore}, each batch is written with JDBC batches in a
+ * single transaction.
+ *
+ * Reads, existence checks and deletes see the queued writes, so that on this node
+ * the sessions are read back as they were last stored. Other nodes sharing the
+ * delegate store may see data that is at most flushIntervalMs old, plus the time
+ * it takes to write it. The queue is flushed synchronously before checking for
+ * expired sessions and when this store is stopped, for example on shutdown.
+ *
+ * The attribute values are not copied, so changes made to mutable values after the
+ * session has been released may be written by the flush of the queued data.
+ */
+@ManagedObject("Write-behind session data store")
+public class WriteBehindSessionDataStore extends ContainerLifeCycle implements SessionDataStore
+{
+    private static final Logger LOG = Log.getLogger("org.eclipse.jetty.server.session");
+
+    /**
+     * The actual store for the session data
+     */
+    protected SessionDataStore _store;
+
+    private final Locker _locker = new Locker();
+    private final Object _flushLock = new Object();
+    private final LinkedHashMap<String, SessionData> _pending = new LinkedHashMap<>();
+    private final Map<String, SessionData> _flushing = new HashMap<>();
+    private final LongAdder _queued = new LongAdder();
+    private final LongAdder _coalesced = new LongAdder();
+    private final LongAdder _written = new LongAdder();
+    private final LongAdder _failed = new LongAdder();
+    private long _flushIntervalMs = 1000;
+    private int _maxBatchSize = 100;
+    private Scheduler _scheduler;
+    private boolean _ownScheduler;
+    private Scheduler.Task _task;
+    private boolean _flushScheduled;
+    private boolean _flushImmediate;
+    private final Runnable _flusher = this::backgroundFlush;
+
+    /**
+     * @param store the actual store for the the session data
+     */
+    public WriteBehindSessionDataStore(SessionDataStore store)
+    {
+        _store = store;
+        addBean(_store, true);
+    }
+
+    /**
+     * @return the delegate session store
+     */
+    public SessionDataStore getSessionStore()
+    {
+        return _store;
+    }
+
+    /**
+     * @return the max time in ms a stored session is queued before being written to the delegate store
+     */
+    @ManagedAttribute("The max time in ms a stored session is queued before being written")
+    public long getFlushIntervalMs()
+    {
+        return _flushIntervalMs;
+    }
+
+    /**
+     * @param flushIntervalMs the max time in ms a stored session is queued before being written to the delegate store
+     */
+    public void setFlushIntervalMs(long flushIntervalMs)
+    {
+        if (flushIntervalMs <= 0)
+            throw new IllegalArgumentException("Invalid flush interval " + flushIntervalMs);
+        _flushIntervalMs = flushIntervalMs;
+    }
+
+    /**
+     * @return the number of queued sessions that triggers a flush, and the max number of sessions written in a batch
+     */
+    @ManagedAttribute("The number of queued sessions that triggers a flush")
+    public int getMaxBatchSize()
+    {
+        return _maxBatchSize;
+    }
+
+    /**
+     * @param maxBatchSize the number of queued sessions that triggers a flush, and the max number of sessions written in a batch
+     */
+    public void setMaxBatchSize(int maxBatchSize)
+    {
+        if (maxBatchSize <= 0)
+            throw new IllegalArgumentException("Invalid max batch size " + maxBatchSize);
+        _maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * @param scheduler the scheduler running the flushes, which must not be shared
+     * with tasks sensitive to the latency of the delegate store, or null to use a
+     * scheduler owned by this store
+     */
+    public void setScheduler(Scheduler scheduler)
+    {
+        if (isStarted())
+            throw new IllegalStateException("Started");
+        _scheduler = scheduler;
+    }
+
+    @ManagedAttribute("The number of sessions currently queued")
+    public int getPendingCount()
+    {
+        try (Locker.Lock lock = _locker.lock())
+        {
+            return _pending.size();
+        }
+    }
+
+    @ManagedAttribute("The total number of sessions queued")
+    public long getQueuedCount()
+    {
+        return _queued.sum();
+    }
+
+    @ManagedAttribute("The total number of queued sessions replaced by a more recent store")
+    public long getCoalescedCount()
+    {
+        return _coalesced.sum();
+    }
+
+    @ManagedAttribute("The total number of sessions written to the delegate store")
+    public long getWrittenCount()
+    {
+        return _written.sum();
+    }
+
+    @ManagedAttribute("The total number of failed writes to the delegate store")
+    public long getFailedCount()
+    {
+        return _failed.sum();
+    }
+
+    /**
+     * @see org.eclipse.jetty.server.session.SessionDataStore#load(java.lang.String)
+     */
+    @Override
+    public SessionData load(String id) throws Exception
+    {
+        SessionData queued;
+        try (Locker.Lock lock = _locker.lock())
+        {
+            queued = _pending.get(id);
+            if (queued == null)
+                queued = _flushing.get(id);
+        }
+
+        if (queued != null)
+        {
+            // Return a copy, as the caller will modify it.
+            return newCopy(queued);
+        }
+
+        return _store.load(id);
+    }
+
+    /**
+     * @see org.eclipse.jetty.server.session.SessionDataStore#store(java.lang.String, org.eclipse.jetty.server.session.SessionData)
+     */
+    @Override
+    public void store(String id, SessionData data) throws Exception
+    {
+        if (!isStarted())
+            throw new IllegalStateException("Not started");
+
+        if (data == null)
+            return;
+
+        long lastSave = data.getLastSaved();
+        long now = System.currentTimeMillis();
+        //save session if attribute changed, never been saved or metadata changed (eg expiry time) and save interval exceeded
+        if (!data.isDirty() && lastSave > 0 &&
+            (!data.isMetaDataDirty() || now - lastSave < getSavePeriodMs()))
+            return;
+
+        SessionData copy = newCopy(data);
+        // Force the delegate store to write the copy,
+        // with the attributes that changed since the last write.
+        copy.mergeDirty(data);
+
+        try (Locker.Lock lock = _locker.lock())
+        {
+            SessionData previous = _pending.put(id, copy);
+            if (previous != null)
+            {
+                // Keep the last save time of the first queued write,
+                // so that the delegate inserts rather than updates
+                // a session that was never written.
+                copy.setLastSaved(previous.getLastSaved());
+                copy.mergeDirty(previous);
+                _coalesced.increment();
+            }
+            boolean flushNow = _pending.size() >= _maxBatchSize;
+            if (!_flushScheduled || (flushNow && !_flushImmediate))
+                scheduleFlush(flushNow);
+        }
+        _queued.increment();
+
+        //the data is considered saved, as far as the request is concerned
+        data.setLastSaved(now);
+        data.clean();
+    }
+
+    private long getSavePeriodMs()
+    {
+        if (_store instanceof AbstractSessionDataStore)
+        {
+            int savePeriodSec = ((AbstractSessionDataStore)_store).getSavePeriodSec();
+            return savePeriodSec <= 0 ? 0 : TimeUnit.SECONDS.toMillis(savePeriodSec);
+        }
+        return 0;
+    }
+
+    private SessionData newCopy(SessionData data)
+    {
+        SessionData copy = _store.newSessionData(data.getId(), data.getCreated(), data.getAccessed(), data.getLastAccessed(), data.getMaxInactiveMs());
+        copy.copy(data);
+        return copy;
+    }
+
+    private void scheduleFlush(boolean now)
+    {
+        // Called with the lock held.
+        if (_task != null)
+            _task.cancel();
+        _flushScheduled = true;
+        _flushImmediate = now;
+        _task = _scheduler.schedule(_flusher, now ? 0 : _flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void backgroundFlush()
+    {
+        try (Locker.Lock lock = _locker.lock())
+        {
+            _flushScheduled = false;
+            _flushImmediate = false;
+            _task = null;
+        }
+        flush();
+    }
+
+    /**
+     * Writes all the queued sessions to the delegate store,
+     * in batches of at most maxBatchSize sessions. Each queued
+     * session is tried once, and the failed writes are queued
+     * again to be retried at the next flush.
+     */
+    @ManagedOperation(value = "Writes all the queued sessions", impact = "ACTION")
+    public void flush()
+    {
+        synchronized (_flushLock)
+        {
+            Set<String> failed = new HashSet<>();
+            while (true)
+            {
+                try (Locker.Lock lock = _locker.lock())
+                {
+                    Iterator<Map.Entry<String, SessionData>> iterator = _pending.entrySet().iterator();
+                    while (iterator.hasNext() && _flushing.size() < _maxBatchSize)
+                    {
+                        Map.Entry<String, SessionData> entry = iterator.next();
+                        // The failed writes are not retried by this flush.
+                        if (failed.contains(entry.getKey()))
+                            continue;
+                        _flushing.put(entry.getKey(), entry.getValue());
+                        iterator.remove();
+                    }
+                    if (_flushing.isEmpty())
+                    {
+                        if (!failed.isEmpty() && !_flushScheduled && _scheduler != null && isRunning())
+                            scheduleFlush(false);
+                        return;
+                    }
+                }
+
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Flushing {} sessions", _flushing.size());
+
+                Map<String, SessionData> failures = new HashMap<>();
+                boolean batched = false;
+                if (_store instanceof JDBCSessionDataStore && _flushing.size() > 1)
+                {
+                    // The whole batch is written, or not, in a single transaction.
+                    try
+                    {
+                        ((JDBCSessionDataStore)_store).storeAll(_flushing);
+                        _written.add(_flushing.size());
+                        batched = true;
+                    }
+                    catch (Throwable x)
+                    {
+                        // A single session may fail the whole batch, so write them one by one.
+                        if (LOG.isDebugEnabled())
+                            LOG.debug("Could not write {} sessions in a batch", _flushing.size(), x);
+                    }
+                }
+
+                if (!batched)
+                {
+                    for (Map.Entry<String, SessionData> entry : _flushing.entrySet())
+                    {
+                        try
+                        {
+                            _store.store(entry.getKey(), entry.getValue());
+                            _written.increment();
+                        }
+                        catch (Throwable x)
+                        {
+                            _failed.increment();
+                            LOG.warn("Could not write session {}", entry.getKey(), x);
+                            failures.put(entry.getKey(), entry.getValue());
+                        }
+                    }
+                }
+
+                try (Locker.Lock lock = _locker.lock())
+                {
+                    _flushing.clear();
+                    // Failed writes are queued again, so that they are still
+                    // read back, unless a more recent write has been queued.
+                    failures.forEach((id, data) ->
+                    {
+                        SessionData newer = _pending.putIfAbsent(id, data);
+                        if (newer != null)
+                        {
+                            // The more recent write must also write the attributes changed by the failed one.
+                            newer.mergeDirty(data);
+                            // The session was never written, so the more recent write must insert it.
+                            if (data.getLastSaved() <= 0)
+                                newer.setLastSaved(0);
+                        }
+                    });
+                    failed.addAll(failures.keySet());
+                }
+            }
+        }
+    }
+
+    /**
+     * @see org.eclipse.jetty.server.session.SessionDataStore#delete(java.lang.String)
+     */
+    @Override
+    public boolean delete(String id) throws Exception
+    {
+        // Wait for a flush writing the session, so that it does not rewrite it after the delete.
+        synchronized (_flushLock)
+        {
+            boolean queued;
+            try (Locker.Lock lock = _locker.lock())
+            {
+                queued = _pending.remove(id) != null;
+            }
+            return _store.delete(id) || queued;
+        }
+    }
+
+    /**
+     * @see org.eclipse.jetty.server.session.SessionDataStore#getExpired(Set)
+     */
+    @Override
+    public Set<String> getExpired(Set<String> candidates)
+    {
+        //the delegate store must know about the queued sessions to find the expired ones
+        flush();
+        return _store.getExpired(candidates);
+    }
+
+    /**
+     * @see org.eclipse.jetty.server.session.SessionDataStore#isPassivating()
+     */
+    @Override
+    public boolean isPassivating()
+    {
+        return _store.isPassivating();
+    }
+
+    /**
+     * @see org.eclipse.jetty.server.session.SessionDataStore#exists(java.lang.String)
+     */
+    @Override
+    public boolean exists(String id) throws Exception
+    {
+        try (Locker.Lock lock = _locker.lock())
+        {
+            SessionData queued = _pending.get(id);
+            if (queued == null)
+                queued = _flushing.get(id);
+            if (queued != null)
+                return !queued.isExpiredAt(System.currentTimeMillis());
+        }
+        return _store.exists(id);
+    }
+
+    /**
+     * @see org.eclipse.jetty.server.session.SessionDataStore#initialize(org.eclipse.jetty.server.session.SessionContext)
+     */
+    @Override
+    public void initialize(SessionContext context) throws Exception
+    {
+        //pass through
+        _store.initialize(context);
+    }
+
+    /**
+     * @see org.eclipse.jetty.server.session.SessionDataStore#newSessionData(java.lang.String, long, long, long, long)
+     */
+    @Override
+    public SessionData newSessionData(String id, long created, long accessed, long lastAccessed, long maxInactiveMs)
+    {
+        return _store.newSessionData(id, created, accessed, lastAccessed, maxInactiveMs);
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        if (_scheduler == null)
+        {
+            _scheduler = new ScheduledExecutorScheduler(String.format("Session-WriteBehind-%x", hashCode()), false);
+            _ownScheduler = true;
+            _scheduler.start();
+        }
+        super.doStart();
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        try (Locker.Lock lock = _locker.lock())
+        {
+            if (_task != null)
+                _task.cancel();
+            _task = null;
+            _flushScheduled = false;
+            _flushImmediate = false;
+        }
+
+        //write the queued sessions before the delegate store is stopped
+        flush();
+        try (Locker.Lock lock = _locker.lock())
+        {
+            if (!_pending.isEmpty())
+                LOG.warn("Could not write sessions {} before stopping", _pending.keySet());
+        }
+
+        if (_ownScheduler)
+        {
+            _scheduler.stop();
+            _scheduler = null;
+            _ownScheduler = false;
+        }
+        super.doStop();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[store=%s,pending=%d]", getClass().getSimpleName(), hashCode(), _store, getPendingCount());
+    }
+}
@@ -0,0 +1,189 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.server;
+
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jetty.http.HttpTester;
+import org.eclipse.jetty.server.handler.ResourceHandler;
+import org.eclipse.jetty.toolchain.test.jupiter.WorkDir;
+import org.eclipse.jetty.toolchain.test.jupiter.WorkDirExtension;
+import org.eclipse.jetty.util.IO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+@ExtendWith(WorkDirExtension.class)
+public class FileTransferTest
+{
+    public WorkDir workDir;
+    private Server server;
+    private ServerConnector connector;
+    private LocalConnector localConnector;
+    private HttpConfiguration httpConfig;
+    private final AtomicLong bytesWritten = new AtomicLong();
+
+    @BeforeEach
+    public void prepare() throws Exception
+    {
+        Path dir = workDir.getEmptyPathDir();
+
+        server = new Server();
+        httpConfig = new HttpConfiguration();
+        httpConfig.setFileTransferThreshold(1024);
+        httpConfig.setOutputBufferSize(4096);
+        connector = new ServerConnector(server, new HttpConnectionFactory(httpConfig));
+        server.addConnector(connector);
+        // Like encrypted connectors, does not support direct transfers.
+        localConnector = new LocalConnector(server, new HttpConnectionFactory(httpConfig));
+        server.addConnector(localConnector);
+
+        ResourceHandler resourceHandler = new ResourceHandler();
+        resourceHandler.setResourceBase(dir.toString());
+        server.setHandler(resourceHandler);
+        server.setRequestLog((request, response) -> bytesWritten.set(response.getHttpChannel().getBytesWritten()));
+        server.start();
+    }
+
+    @AfterEach
+    public void dispose() throws Exception
+    {
+        server.stop();
+    }
+
+    private byte[] createFile(String name, int length) throws Exception
+    {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; ++i)
+        {
+            bytes[i] = (byte)('a' + i % 26);
+        }
+        Files.write(workDir.getPath().resolve(name), bytes);
+        return bytes;
+    }
+
+    @Test
+    public void testPersistentConnection() throws Exception
+    {
+        byte[] large = createFile("large.txt", 256 * 1024);
+        byte[] small = createFile("small.txt", 100);
+
+        try (Socket socket = new Socket("localhost", connector.getLocalPort()))
+        {
+            OutputStream output = socket.getOutputStream();
+            HttpTester.Input input = HttpTester.from(socket.getInputStream());
+
+            for (int i = 0; i < 2; ++i)
+            {
+                output.write("GET /large.txt HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(UTF_8));
+                output.flush();
+                HttpTester.Response response = HttpTester.parseResponse(input);
+                assertNotNull(response);
+                assertEquals(200, response.getStatus());
+                assertEquals(large.length, response.getLongField("Content-Length"));
+                assertArrayEquals(large, response.getContentBytes());
+            }
+
+            // Below the threshold, content is sent through buffers.
+            output.write("GET /small.txt HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(UTF_8));
+            output.flush();
+            HttpTester.Response response = HttpTester.parseResponse(input);
+            assertNotNull(response);
+            assertEquals(200, response.getStatus());
+            assertArrayEquals(small, response.getContentBytes());
+        }
+    }
+
+    @Test
+    public void testUnsupportedTransport() throws Exception
+    {
+        byte[] large = createFile("large.txt", 64 * 1024);
+
+        HttpTester.Response response = HttpTester.parseResponse(localConnector.getResponse("GET /large.txt HTTP/1.0\r\n\r\n"));
+        assertNotNull(response);
+        assertEquals(200, response.getStatus());
+        assertArrayEquals(large, response.getContentBytes());
+    }
+
+    @Test
+    public void testHead() throws Exception
+    {
+        createFile("large.txt", 64 * 1024);
+
+        try (Socket socket = new Socket("localhost", connector.getLocalPort()))
+        {
+            OutputStream output = socket.getOutputStream();
+            output.write("HEAD /large.txt HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n".getBytes(UTF_8));
+            output.flush();
+
+            String response = IO.toString(socket.getInputStream());
+            assertThat(response, startsWith("HTTP/1.1 200 OK"));
+            assertThat(response, containsString("Content-Length: 65536"));
+            // No content is transferred.
+            assertThat(response, endsWith("\r\n\r\n"));
+        }
+    }
+
+    @Test
+    public void testSlowReader() throws Exception
+    {
+        // Large enough to congest the network, so that
+        // the transfer falls back to writing mapped regions.
+        byte[] large = createFile("large.txt", 16 * 1024 * 1024);
+
+        try (Socket socket = new Socket("localhost", connector.getLocalPort()))
+        {
+            OutputStream output = socket.getOutputStream();
+            output.write("GET /large.txt HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n".getBytes(UTF_8));
+            output.flush();
+
+            Thread.sleep(500);
+
+            byte[] response = IO.readBytes(socket.getInputStream());
+            String head = new String(response, 0, 1024, UTF_8);
+            assertThat(head, startsWith("HTTP/1.1 200 OK"));
+            int headerLength = head.indexOf("\r\n\r\n") + 4;
+            assertEquals(large.length, response.length - headerLength);
+            assertArrayEquals(large, Arrays.copyOfRange(response, headerLength, response.length));
+        }
+
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (bytesWritten.get() != large.length && System.nanoTime() < end)
+        {
+            Thread.sleep(10);
+        }
+        assertEquals(large.length, bytesWritten.get());
+    }
+}
@@ -47,6 +47,7 @@ import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpParser;
 import org.eclipse.jetty.http.HttpTester;
 import org.eclipse.jetty.http.MimeTypes;
+import org.eclipse.jetty.http.SharedHttpFieldCache;
 import org.eclipse.jetty.server.LocalConnector.LocalEndPoint;
 import org.eclipse.jetty.server.handler.AbstractHandler;
 import org.eclipse.jetty.server.handler.ErrorHandler;
@@ -68,6 +69,7 @@ import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class HttpConnectionTest
@@ -1376,6 +1378,29 @@ public class HttpConnectionTest
         }
     }
 
+    @Test
+    public void testSharedFieldCache() throws Exception
+    {
+        HttpConnectionFactory http = connector.getConnectionFactory(HttpConnectionFactory.class);
+        SharedHttpFieldCache cache = new SharedHttpFieldCache(16, 1024, 2);
+        http.setSharedFieldCache(cache);
+
+        for (int i = 0; i < 3; ++i)
+        {
+            String response = connector.getResponse("GET /R1 HTTP/1.1\r\n" +
+                "Host: localhost\r\n" +
+                "User-Agent: Test/1.0\r\n" +
+                "Connection: close\r\n" +
+                "\r\n");
+            checkContains(response, 0, "HTTP/1.1 200");
+            checkContains(response, 0, "User-Agent: Test/1.0");
+        }
+
+        assertEquals(2, cache.getSize());
+        assertEquals(2, http.getSharedFieldCacheHits());
+        assertThat(http.getFieldCacheHitRatio(), Matchers.greaterThan(0.0D));
+    }
+
     private int checkContains(String s, int offset, String c)
     {
         assertThat(s.substring(offset), Matchers.containsString(c));
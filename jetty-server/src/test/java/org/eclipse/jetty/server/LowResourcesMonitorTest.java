@@ -26,6 +26,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.concurrent.CountDownLatch;
 
+import org.eclipse.jetty.io.EvictingByteBufferPool;
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.eclipse.jetty.util.thread.TimerScheduler;
 import org.hamcrest.Matchers;
@@ -273,4 +274,22 @@ public class LowResourcesMonitorTest
             }
         }
     }
+
+    @Test
+    public void testLowResourcesShrinksByteBufferPool() throws Exception
+    {
+        Server server = new Server();
+        EvictingByteBufferPool byteBufferPool = new EvictingByteBufferPool();
+        ServerConnector connector = new ServerConnector(server, null, null, byteBufferPool, 1, 1, new HttpConnectionFactory());
+        server.addConnector(connector);
+
+        byteBufferPool.release(byteBufferPool.acquire(1024, true));
+        assertEquals(1024, byteBufferPool.getDirectMemory());
+
+        LowResourceMonitor monitor = new LowResourceMonitor(server);
+        monitor.setLowResources();
+
+        assertEquals(0, byteBufferPool.getDirectMemory());
+        assertEquals(1024, byteBufferPool.getDirectMemoryEvicted());
+    }
 }
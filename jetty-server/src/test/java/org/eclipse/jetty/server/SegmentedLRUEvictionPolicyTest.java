@@ -0,0 +1,171 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.server;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.eclipse.jetty.http.CompressedContentFormat;
+import org.eclipse.jetty.http.HttpContent;
+import org.eclipse.jetty.http.MimeTypes;
+import org.eclipse.jetty.http.ResourceHttpContent;
+import org.eclipse.jetty.server.CachedContentFactory.CachedHttpContent;
+import org.eclipse.jetty.toolchain.test.jupiter.WorkDir;
+import org.eclipse.jetty.toolchain.test.jupiter.WorkDirExtension;
+import org.eclipse.jetty.util.resource.Resource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(WorkDirExtension.class)
+public class SegmentedLRUEvictionPolicyTest
+{
+    public WorkDir workDir;
+    private Resource directory;
+
+    @BeforeEach
+    public void prepare() throws Exception
+    {
+        Path basePath = workDir.getEmptyPathDir();
+        for (int i = 0; i < 10; i++)
+        {
+            Files.write(basePath.resolve(i + ".txt"), ("content " + i).getBytes(UTF_8));
+        }
+        directory = Resource.newResource(basePath);
+    }
+
+    private CachedContentFactory newCache(CachedContentFactory.EvictionPolicy policy, int maxCachedFiles)
+    {
+        CachedContentFactory cache = new CachedContentFactory(null, directory, new MimeTypes(), false, false, CompressedContentFormat.NONE);
+        cache.setEvictionPolicy(policy);
+        cache.setMaxCachedFiles(maxCachedFiles);
+        return cache;
+    }
+
+    private boolean isCached(CachedContentFactory cache, int file) throws Exception
+    {
+        long hits = cache.getHits();
+        cache.getContent(file + ".txt", 4096);
+        return cache.getHits() > hits;
+    }
+
+    @Test
+    public void testInvalidProtectedRatio()
+    {
+        assertThrows(IllegalArgumentException.class, () -> new SegmentedLRUEvictionPolicy(1.5D, false));
+    }
+
+    @Test
+    public void testLRU() throws Exception
+    {
+        CachedContentFactory cache = newCache(new SegmentedLRUEvictionPolicy(0, false), 3);
+
+        cache.getContent("0.txt", 4096);
+        cache.getContent("1.txt", 4096);
+        cache.getContent("2.txt", 4096);
+        // Touch 0 so that 1 is the least recently used.
+        cache.getContent("0.txt", 4096);
+        cache.getContent("3.txt", 4096);
+
+        assertEquals(3, cache.getCachedFiles());
+        assertEquals(1, cache.getEvictions());
+        assertEquals(1, cache.getHits());
+        assertEquals(4, cache.getMisses());
+
+        assertTrue(isCached(cache, 0));
+        assertTrue(isCached(cache, 3));
+        assertFalse(isCached(cache, 1));
+    }
+
+    @Test
+    public void testSegmentedLRUResistsScans() throws Exception
+    {
+        CachedContentFactory cache = newCache(new SegmentedLRUEvictionPolicy(0.5D, false), 4);
+
+        for (int i = 0; i < 4; ++i)
+        {
+            cache.getContent(i + ".txt", 4096);
+        }
+        // Access 0 and 1 again, so they are protected.
+        cache.getContent("0.txt", 4096);
+        cache.getContent("1.txt", 4096);
+
+        // Scan through the other files once.
+        for (int i = 4; i < 10; ++i)
+        {
+            cache.getContent(i + ".txt", 4096);
+        }
+
+        assertEquals(4, cache.getCachedFiles());
+        assertEquals(6, cache.getEvictions());
+        assertTrue(isCached(cache, 0));
+        assertTrue(isCached(cache, 1));
+    }
+
+    @Test
+    public void testFrequencyAdmission() throws Exception
+    {
+        CachedContentFactory cache = newCache(new SegmentedLRUEvictionPolicy(0.8D, true), 2);
+
+        for (int i = 0; i < 5; ++i)
+        {
+            cache.getContent("0.txt", 4096);
+            cache.getContent("1.txt", 4096);
+        }
+        assertEquals(2, cache.getCachedFiles());
+
+        // A file requested once is not admitted into the full cache.
+        HttpContent content = cache.getContent("2.txt", 4096);
+        assertThat(content, instanceOf(ResourceHttpContent.class));
+        assertFalse(content instanceof CachedHttpContent);
+        assertEquals(0, cache.getEvictions());
+
+        // Once it is more frequent than the victim, it is admitted.
+        for (int i = 0; i < 10; ++i)
+        {
+            cache.getContent("2.txt", 4096);
+        }
+        assertThat(cache.getContent("2.txt", 4096), instanceOf(CachedHttpContent.class));
+        assertEquals(1, cache.getEvictions());
+        assertEquals(2, cache.getCachedFiles());
+    }
+
+    @Test
+    public void testFlushCache() throws Exception
+    {
+        SegmentedLRUEvictionPolicy policy = new SegmentedLRUEvictionPolicy();
+        CachedContentFactory cache = newCache(policy, 4);
+        for (int i = 0; i < 4; ++i)
+        {
+            cache.getContent(i + ".txt", 4096);
+        }
+        cache.flushCache();
+
+        assertEquals(0, cache.getCachedFiles());
+        assertEquals(null, policy.evict());
+    }
+}
@@ -0,0 +1,218 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.server.handler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.LocalConnector;
+import org.eclipse.jetty.server.LocalConnector.LocalEndPoint;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AdmissionControlHandlerTest
+{
+    private final CountDownLatch _block = new CountDownLatch(1);
+    private final List<String> _handled = new CopyOnWriteArrayList<>();
+    private Server _server;
+    private LocalConnector _connector;
+    private AdmissionControlHandler _admission;
+
+    @BeforeEach
+    public void before() throws Exception
+    {
+        _server = new Server();
+        _connector = new LocalConnector(_server);
+        _server.addConnector(_connector);
+        _admission = new AdmissionControlHandler()
+        {
+            @Override
+            protected int getPriority(Request request)
+            {
+                String priority = request.getHeader("Priority");
+                return priority == null ? 0 : Integer.parseInt(priority);
+            }
+
+            @Override
+            protected Object getTenant(Request request)
+            {
+                return request.getHeader("Tenant");
+            }
+        };
+        _admission.setMaxActiveRequests(1);
+        _admission.setHandler(new AbstractHandler()
+        {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws ServletException
+            {
+                baseRequest.setHandled(true);
+                _handled.add(target);
+                try
+                {
+                    if (target.startsWith("/block"))
+                        _block.await(10, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException x)
+                {
+                    throw new ServletException(x);
+                }
+            }
+        });
+        _server.setHandler(_admission);
+    }
+
+    @AfterEach
+    public void after() throws Exception
+    {
+        _block.countDown();
+        _server.stop();
+    }
+
+    private static String request(String target, String... headers)
+    {
+        StringBuilder request = new StringBuilder("GET ").append(target).append(" HTTP/1.1\r\nHost: localhost\r\n");
+        for (String header : headers)
+        {
+            request.append(header).append("\r\n");
+        }
+        return request.append("Connection: close\r\n\r\n").toString();
+    }
+
+    private static void await(IntSupplier supplier, int expected) throws InterruptedException
+    {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (supplier.getAsInt() != expected && System.nanoTime() < end)
+        {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, supplier.getAsInt());
+    }
+
+    @Test
+    public void testQueued() throws Exception
+    {
+        _server.start();
+
+        LocalEndPoint blocked = _connector.executeRequest(request("/block"));
+        await(_admission::getActiveRequests, 1);
+        LocalEndPoint queued = _connector.executeRequest(request("/queued"));
+        await(_admission::getQueuedRequests, 1);
+        assertEquals(1, _handled.size());
+
+        _block.countDown();
+        assertThat(blocked.getResponse(), containsString(" 200 "));
+        assertThat(queued.getResponse(), containsString(" 200 "));
+        assertThat(_handled.toString(), is("[/block, /queued]"));
+        await(_admission::getActiveRequests, 0);
+        assertEquals(2, _admission.getAdmittedCount());
+        assertEquals(1, _admission.getQueuedCount());
+        assertEquals(1, _admission.getQueueTimeStatistic().getCount());
+        assertEquals(1, _admission.getQueueDepthMax());
+    }
+
+    @Test
+    public void testRejectedWhenQueueFull() throws Exception
+    {
+        _admission.setMaxQueuedRequests(0);
+        _server.start();
+
+        LocalEndPoint blocked = _connector.executeRequest(request("/block"));
+        await(_admission::getActiveRequests, 1);
+        String response = _connector.getResponse(request("/rejected"));
+        assertThat(response, containsString(" 503 "));
+        assertEquals(1, _admission.getRejectedCount());
+
+        _block.countDown();
+        assertThat(blocked.getResponse(), containsString(" 200 "));
+    }
+
+    @Test
+    public void testExpired() throws Exception
+    {
+        _admission.setMaxQueueMs(250);
+        _server.start();
+
+        LocalEndPoint blocked = _connector.executeRequest(request("/block"));
+        await(_admission::getActiveRequests, 1);
+        long start = System.nanoTime();
+        String response = _connector.getResponse(request("/expired"));
+        assertThat(response, containsString(" 503 "));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 200);
+        assertEquals(1, _admission.getExpiredCount());
+        assertEquals(0, _admission.getQueuedRequests());
+
+        _block.countDown();
+        assertThat(blocked.getResponse(), containsString(" 200 "));
+        assertThat(_handled.toString(), is("[/block]"));
+    }
+
+    @Test
+    public void testWeightedFairQueuing() throws Exception
+    {
+        _admission.setPriorityWeights(1, 3);
+        _server.start();
+
+        LocalEndPoint blocked = _connector.executeRequest(request("/block"));
+        await(_admission::getActiveRequests, 1);
+
+        List<LocalEndPoint> endPoints = new ArrayList<>();
+        int queued = 0;
+        // Tenant A floods the high priority class, tenant B sends one request.
+        for (int i = 0; i < 4; i++)
+        {
+            endPoints.add(_connector.executeRequest(request("/low" + i, "Priority: 0")));
+            await(_admission::getQueuedRequests, ++queued);
+        }
+        for (int i = 0; i < 4; i++)
+        {
+            endPoints.add(_connector.executeRequest(request("/highA" + i, "Priority: 1", "Tenant: A")));
+            await(_admission::getQueuedRequests, ++queued);
+        }
+        endPoints.add(_connector.executeRequest(request("/highB", "Priority: 1", "Tenant: B")));
+        await(_admission::getQueuedRequests, ++queued);
+
+        _block.countDown();
+        assertThat(blocked.getResponse(), containsString(" 200 "));
+        for (LocalEndPoint endPoint : endPoints)
+        {
+            assertThat(endPoint.getResponse(), containsString(" 200 "));
+        }
+
+        // High priority requests are admitted 3 times more often,
+        // and tenant B does not wait for all the requests of tenant A.
+        assertThat(_handled.subList(1, 5).toString(), is("[/highA0, /highB, /low0, /highA1]"));
+        assertEquals(10, _handled.size());
+    }
+}
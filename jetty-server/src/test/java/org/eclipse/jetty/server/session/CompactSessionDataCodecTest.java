@@ -0,0 +1,179 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.server.session;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class CompactSessionDataCodecTest
+{
+    private static SessionData newSessionData()
+    {
+        long now = System.currentTimeMillis();
+        SessionData data = new SessionData("1234", "/test", "0.0.0.0", now, now, now, 60000);
+        data.setAttribute("string", "hello");
+        data.setAttribute("unicode", "héllo € 😀");
+        data.setAttribute("empty", "");
+        data.setAttribute("integer", -42);
+        data.setAttribute("maxInteger", Integer.MAX_VALUE);
+        data.setAttribute("long", now);
+        data.setAttribute("minLong", Long.MIN_VALUE);
+        data.setAttribute("true", true);
+        data.setAttribute("false", false);
+        data.setAttribute("short", (short)-1234);
+        data.setAttribute("byte", (byte)0x80);
+        data.setAttribute("char", '€');
+        data.setAttribute("float", 3.14F);
+        data.setAttribute("double", Double.NaN);
+        data.setAttribute("bytes", new byte[]{0, 1, 2, (byte)0xFF});
+        data.setAttribute("date", new Date(now));
+        data.setAttribute("list", new ArrayList<>(Arrays.asList("a", "b")));
+        return data;
+    }
+
+    private static void assertSameAttributes(SessionData expected, SessionData actual)
+    {
+        assertEquals(expected.getKeys(), actual.getKeys());
+        for (String name : expected.getKeys())
+        {
+            Object value = expected.getAttribute(name);
+            if (value instanceof byte[])
+                assertArrayEquals((byte[])value, (byte[])actual.getAttribute(name));
+            else
+                assertEquals(value, actual.getAttribute(name), name);
+        }
+    }
+
+    @Test
+    public void testEncodeDecode() throws Exception
+    {
+        SessionData data = newSessionData();
+        CompactSessionDataCodec codec = new CompactSessionDataCodec();
+
+        byte[] bytes = codec.encodeAttributes(data);
+        SessionData decoded = new SessionData("1234", "/test", "0.0.0.0", 0, 0, 0, 0);
+        codec.decodeAttributes(decoded, bytes);
+        assertSameAttributes(data, decoded);
+        assertThat(decoded.getAttribute("list"), is(new ArrayList<>(Arrays.asList("a", "b"))));
+
+        decoded = new SessionData("1234", "/test", "0.0.0.0", 0, 0, 0, 0);
+        codec.decodeAttributes(decoded, new ByteArrayInputStream(bytes));
+        assertSameAttributes(data, decoded);
+    }
+
+    @Test
+    public void testSmallerThanJavaSerialization() throws Exception
+    {
+        long now = System.currentTimeMillis();
+        SessionData data = new SessionData("1234", "/test", "0.0.0.0", now, now, now, 60000);
+        data.setAttribute("user", "jetty");
+        data.setAttribute("visits", 12);
+        data.setAttribute("lastVisit", now);
+
+        byte[] compact = new CompactSessionDataCodec().encodeAttributes(data);
+        byte[] java = new JavaSessionDataCodec().encodeAttributes(data);
+        assertThat(compact.length * 2, lessThan(java.length));
+    }
+
+    @Test
+    public void testDecodeEachOtherFormat() throws Exception
+    {
+        SessionData data = newSessionData();
+        SessionDataCodec compact = new CompactSessionDataCodec();
+        SessionDataCodec java = new JavaSessionDataCodec();
+
+        SessionData decoded = new SessionData("1234", "/test", "0.0.0.0", 0, 0, 0, 0);
+        compact.decodeAttributes(decoded, java.encodeAttributes(data));
+        assertSameAttributes(data, decoded);
+
+        decoded = new SessionData("1234", "/test", "0.0.0.0", 0, 0, 0, 0);
+        java.decodeAttributes(decoded, compact.encodeAttributes(data));
+        assertSameAttributes(data, decoded);
+    }
+
+    @Test
+    public void testDecodeAfterOtherData() throws Exception
+    {
+        // As the FileSessionDataStore does, write the attributes after other data.
+        SessionData data = newSessionData();
+        for (SessionDataCodec codec : Arrays.asList(new CompactSessionDataCodec(), new JavaSessionDataCodec()))
+        {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(baos);
+            out.writeUTF(data.getId());
+            out.writeLong(data.getExpiry());
+            codec.encodeAttributes(data, out);
+            out.flush();
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(baos.toByteArray()));
+            assertEquals(data.getId(), in.readUTF());
+            assertEquals(data.getExpiry(), in.readLong());
+            SessionData decoded = new SessionData("1234", "/test", "0.0.0.0", 0, 0, 0, 0);
+            new CompactSessionDataCodec().decodeAttributes(decoded, in);
+            assertSameAttributes(data, decoded);
+        }
+    }
+
+    @Test
+    public void testInvalidData() throws Exception
+    {
+        SessionData data = newSessionData();
+        CompactSessionDataCodec codec = new CompactSessionDataCodec();
+        byte[] bytes = codec.encodeAttributes(data);
+
+        SessionData decoded = new SessionData("1234", "/test", "0.0.0.0", 0, 0, 0, 0);
+        assertThrows(IOException.class, () -> codec.decodeAttributes(decoded, Arrays.copyOf(bytes, bytes.length - 1)));
+        assertThrows(IOException.class, () -> codec.decodeAttributes(decoded, new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 1))));
+
+        byte[] unknownVersion = bytes.clone();
+        unknownVersion[2] = 99;
+        assertThrows(IOException.class, () -> codec.decodeAttributes(decoded, unknownVersion));
+    }
+
+    @Test
+    public void testEmpty() throws Exception
+    {
+        SessionData data = new SessionData("1234", "/test", "0.0.0.0", 0, 0, 0, 0);
+        CompactSessionDataCodec codec = new CompactSessionDataCodec();
+        byte[] bytes = codec.encodeAttributes(data);
+        assertEquals(11, bytes.length);
+
+        SessionData decoded = new SessionData("1234", "/test", "0.0.0.0", 0, 0, 0, 0);
+        decoded.setAttribute("old", "value");
+        codec.decodeAttributes(decoded, bytes);
+        List<String> names = new ArrayList<>(decoded.getKeys());
+        assertThat(names.size(), is(0));
+    }
+}
@@ -40,7 +40,9 @@ import org.eclipse.jetty.server.CachedContentFactory;
 import org.eclipse.jetty.server.ResourceContentFactory;
 import org.eclipse.jetty.server.ResourceService;
 import org.eclipse.jetty.server.ResourceService.WelcomeFactory;
+import org.eclipse.jetty.server.SegmentedLRUEvictionPolicy;
 import org.eclipse.jetty.server.handler.ContextHandler;
+import org.eclipse.jetty.util.StringUtil;
 import org.eclipse.jetty.util.URIUtil;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
@@ -108,6 +110,12 @@ import org.eclipse.jetty.util.resource.ResourceFactory;
  *  maxCachedFileSize The maximum size of a file to cache
  *  maxCachedFiles    The maximum number of files to cache
  *
+ *  cacheEvictionPolicy
+ *                    The policy used to evict files from the cache: "lru" (the default)
+ *                    evicts the least recently used files, "slru" uses a segmented LRU that
+ *                    is resistant to scans, and "tinylfu" additionally only caches new files
+ *                    when they are more frequently requested than the files they would evict.
+ *
  *  useFileMappedBuffer
  *                    If set to true, it will use mapped file buffer to serve static content
  *                    when using NIO connector. Setting this value to false means that
@@ -264,6 +272,9 @@ public class DefaultServlet extends HttpServlet implements ResourceFactory, Welc
                     _cache.setMaxCachedFileSize(maxCachedFileSize);
                 if (maxCachedFiles >= -1)
                     _cache.setMaxCachedFiles(maxCachedFiles);
+                String evictionPolicy = getInitParameter("cacheEvictionPolicy");
+                if (evictionPolicy != null)
+                    _cache.setEvictionPolicy(newEvictionPolicy(evictionPolicy));
                 _servletContext.setAttribute(resourceCache == null ? "resourceCache" : resourceCache, _cache);
             }
         }
@@ -399,6 +410,21 @@ public class DefaultServlet extends HttpServlet implements ResourceFactory, Welc
         return dft;
     }
 
+    private CachedContentFactory.EvictionPolicy newEvictionPolicy(String name)
+    {
+        switch (StringUtil.asciiToLowerCase(name.trim()))
+        {
+            case "lru":
+                return new SegmentedLRUEvictionPolicy(0, false);
+            case "slru":
+                return new SegmentedLRUEvictionPolicy();
+            case "tinylfu":
+                return new SegmentedLRUEvictionPolicy(0.8D, true);
+            default:
+                throw new IllegalArgumentException("Unknown cacheEvictionPolicy " + name);
+        }
+    }
+
     /**
      * get Resource to serve.
      * Map a path to a resource. The default implementation calls
@@ -29,6 +29,10 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.servlet.AsyncContext;
@@ -73,6 +77,11 @@ import org.eclipse.jetty.util.thread.Scheduler;
  * second. If a limit is exceeded, the request is either rejected, delayed, or
  * throttled.
  * <p>
+ * Request rates are counted without locks in a sliding window of one second,
+ * made of buckets of a tenth of a second each, so that the memory used for each
+ * connection does not depend on the maximum number of requests per second.
+ * Trackers of connections that have gone away are discarded by a single periodic task.
+ * <p>
  * When a request is throttled, it is placed in a priority queue. Priority is
  * given first to authenticated users and users with an HttpSession, then
  * connections which can be identified by their IP addresses. Connections with
@@ -103,6 +112,14 @@ import org.eclipse.jetty.util.thread.Scheduler;
  * <dt>maxIdleTrackerMs</dt>
  * <dd>how long to keep track of request rates for a connection,
  * before deciding that the user has gone away, and discarding it</dd>
+ * <dt>maxTrackers</dt>
+ * <dd>the maximum number of connections identified by IP address to keep track of
+ * individually, so that the memory used by the filter stays bounded regardless
+ * of the number of clients. At this limit, the tracker of a connection that was
+ * recently idle, or else of the oldest connection, is discarded to make room for
+ * the tracker of a new connection, so that new connections are still rate limited;
+ * such evictions are counted and a warning is logged.
+ * -1 (the default) means no limit.</dd>
  * <dt>insertHeaders</dt>
  * <dd>if true , insert the DoSFilter headers into the response. Defaults to true.</dd>
  * <dt>trackSessions</dt>
@@ -145,6 +162,9 @@ public class DoSFilter implements Filter
     private static final long __DEFAULT_THROTTLE_MS = 30000L;
     private static final long __DEFAULT_MAX_REQUEST_MS_INIT_PARAM = 30000L;
     private static final long __DEFAULT_MAX_IDLE_TRACKER_MS_INIT_PARAM = 30000L;
+    private static final int __DEFAULT_MAX_TRACKERS = -1;
+    private static final int __EVICTION_ATTEMPTS = 16;
+    private static final long __EVICTION_IDLE_MS = 1000L;
 
     static final String MANAGED_ATTR_INIT_PARAM = "managedAttr";
     static final String MAX_REQUESTS_PER_S_INIT_PARAM = "maxRequestsPerSec";
@@ -154,6 +174,7 @@ public class DoSFilter implements Filter
     static final String THROTTLE_MS_INIT_PARAM = "throttleMs";
     static final String MAX_REQUEST_MS_INIT_PARAM = "maxRequestMs";
     static final String MAX_IDLE_TRACKER_MS_INIT_PARAM = "maxIdleTrackerMs";
+    static final String MAX_TRACKERS_INIT_PARAM = "maxTrackers";
     static final String INSERT_HEADERS_INIT_PARAM = "insertHeaders";
     static final String TRACK_SESSIONS_INIT_PARAM = "trackSessions";
     static final String REMOTE_PORT_INIT_PARAM = "remotePort";
@@ -169,6 +190,10 @@ public class DoSFilter implements Filter
     private final String _suspended = "DoSFilter@" + Integer.toHexString(hashCode()) + ".SUSPENDED";
     private final String _resumed = "DoSFilter@" + Integer.toHexString(hashCode()) + ".RESUMED";
     private final ConcurrentHashMap<String, RateTracker> _rateTrackers = new ConcurrentHashMap<>();
+    private final Queue<RateTracker> _ipTrackers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger _trackerCount = new AtomicInteger();
+    private final AtomicBoolean _overCapacity = new AtomicBoolean();
+    private final LongAdder _evictedTrackers = new LongAdder();
     private final List<String> _whitelist = new CopyOnWriteArrayList<>();
     private int _tooManyCode;
     private volatile long _delayMs;
@@ -176,6 +201,7 @@ public class DoSFilter implements Filter
     private volatile long _maxWaitMs;
     private volatile long _maxRequestMs;
     private volatile long _maxIdleTrackerMs;
+    private volatile int _maxTrackers;
     private volatile boolean _insertHeaders;
     private volatile boolean _trackSessions;
     private volatile boolean _remotePort;
@@ -200,7 +226,8 @@ public class DoSFilter implements Filter
             _listeners[p] = new DoSAsyncListener(p);
         }
 
-        _rateTrackers.clear();
+        clearRateTrackers();
+        _evictedTrackers.reset();
 
         int maxRequests = __DEFAULT_MAX_REQUESTS_PER_SEC;
         String parameter = filterConfig.getInitParameter(MAX_REQUESTS_PER_S_INIT_PARAM);
@@ -244,6 +271,12 @@ public class DoSFilter implements Filter
             maxIdleTrackerMs = Long.parseLong(parameter);
         setMaxIdleTrackerMs(maxIdleTrackerMs);
 
+        int maxTrackers = __DEFAULT_MAX_TRACKERS;
+        parameter = filterConfig.getInitParameter(MAX_TRACKERS_INIT_PARAM);
+        if (parameter != null)
+            maxTrackers = Integer.parseInt(parameter);
+        setMaxTrackers(maxTrackers);
+
         String whiteList = "";
         parameter = filterConfig.getInitParameter(IP_WHITELIST_INIT_PARAM);
         if (parameter != null)
@@ -273,6 +306,7 @@ public class DoSFilter implements Filter
         }
 
         _scheduler = startScheduler();
+        scheduleSweep();
     }
 
     protected Scheduler startScheduler() throws ServletException
@@ -547,9 +581,47 @@ public class DoSFilter implements Filter
         return USER_AUTH;
     }
 
-    private void schedule(RateTracker tracker)
+    private void scheduleSweep()
+    {
+        // Trackers live between maxIdleTrackerMs and 1.5 times that.
+        long period = Math.max(1000L, getMaxIdleTrackerMs() / 2);
+        _scheduler.schedule(this::sweep, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * <p>Discards the rate trackers of the connections identified
+     * by IP address that have been idle for longer than
+     * {@link #getMaxIdleTrackerMs()}.</p>
+     * <p>Trackers of other connections are discarded when their
+     * session is invalidated or passivated.</p>
+     */
+    private void sweep()
     {
-        _scheduler.schedule(tracker, getMaxIdleTrackerMs(), TimeUnit.MILLISECONDS);
+        try
+        {
+            long now = System.currentTimeMillis();
+            long maxIdle = getMaxIdleTrackerMs();
+            int removed = 0;
+            for (RateTracker tracker : _rateTrackers.values())
+            {
+                if (tracker.getType() == USER_IP && tracker.isIdle(now, maxIdle) && _rateTrackers.remove(tracker.getId(), tracker))
+                {
+                    _trackerCount.decrementAndGet();
+                    ++removed;
+                }
+            }
+            if (removed > 0)
+                _ipTrackers.removeIf(tracker -> !isTracked(tracker));
+            int maxTrackers = getMaxTrackers();
+            if (maxTrackers < 0 || _trackerCount.get() < maxTrackers)
+                _overCapacity.set(false);
+            if (LOG.isDebugEnabled())
+                LOG.debug("Swept {} idle trackers, {} remaining", removed, _trackerCount.get());
+        }
+        finally
+        {
+            scheduleSweep();
+        }
     }
 
     /**
@@ -598,19 +670,33 @@ public class DoSFilter implements Filter
         {
             boolean allowed = checkWhitelist(request.getRemoteAddr());
             int maxRequestsPerSec = getMaxRequestsPerSec();
+
             tracker = allowed ? new FixedRateTracker(_context, _name, loadId, type, maxRequestsPerSec)
                 : new RateTracker(_context, _name, loadId, type, maxRequestsPerSec);
             tracker.setContext(_context);
+            if (type == USER_IP)
+            {
+                // Make room for the tracker, so that this connection is rate limited too.
+                int maxTrackers = getMaxTrackers();
+                while (maxTrackers >= 0 && _trackerCount.get() >= maxTrackers && evictTracker())
+                {
+                    if (_overCapacity.compareAndSet(false, true))
+                        LOG.warn("{} tracks {} connections, evicting the trackers of idle or old connections", this, maxTrackers);
+                }
+            }
             RateTracker existing = _rateTrackers.putIfAbsent(loadId, tracker);
             if (existing != null)
+            {
                 tracker = existing;
-
-            if (type == USER_IP)
+            }
+            else if (type == USER_IP)
             {
-                // USER_IP expiration from _rateTrackers is handled by the _scheduler
-                _scheduler.schedule(tracker, getMaxIdleTrackerMs(), TimeUnit.MILLISECONDS);
+                _trackerCount.incrementAndGet();
+                _ipTrackers.offer(tracker);
             }
-            else if (session != null)
+
+            // USER_IP expiration from _rateTrackers is handled by the sweeper.
+            if (type != USER_IP && session != null)
             {
                 // USER_SESSION expiration from _rateTrackers are handled by the HttpSessionBindingListener
                 session.setAttribute(__TRACKER, tracker);
@@ -620,14 +706,72 @@ public class DoSFilter implements Filter
         return tracker;
     }
 
+    /**
+     * <p>Discards the tracker of a connection identified by IP address, approximating
+     * the least recently used one: the trackers are examined in creation order, and
+     * those of the connections active within the last second are given a second
+     * chance, unless none of the examined trackers was idle, in which case the
+     * oldest one is discarded.</p>
+     *
+     * @return whether a tracker was discarded
+     */
+    private boolean evictTracker()
+    {
+        long now = System.currentTimeMillis();
+        RateTracker oldest = null;
+        RateTracker evicted = null;
+        for (int i = 0; i < __EVICTION_ATTEMPTS && evicted == null; ++i)
+        {
+            RateTracker tracker = _ipTrackers.poll();
+            if (tracker == null)
+                break;
+            if (!isTracked(tracker))
+                continue;
+            if (tracker.isIdle(now, __EVICTION_IDLE_MS))
+                evicted = tracker;
+            else if (oldest == null)
+                oldest = tracker;
+            else
+                _ipTrackers.offer(tracker);
+        }
+        if (evicted == null)
+            evicted = oldest;
+        else if (oldest != null)
+            _ipTrackers.offer(oldest);
+        if (evicted == null || !_rateTrackers.remove(evicted.getId(), evicted))
+            return false;
+        _trackerCount.decrementAndGet();
+        _evictedTrackers.increment();
+        if (LOG.isDebugEnabled())
+            LOG.debug("Evicted {}", evicted);
+        return true;
+    }
+
+    private boolean isTracked(RateTracker tracker)
+    {
+        return _rateTrackers.get(tracker.getId()) == tracker;
+    }
+
     private void addToRateTracker(RateTracker tracker)
     {
-        _rateTrackers.put(tracker.getId(), tracker);
+        RateTracker previous = _rateTrackers.put(tracker.getId(), tracker);
+        if (previous != null && previous.getType() == USER_IP)
+            _trackerCount.decrementAndGet();
     }
 
     public void removeFromRateTracker(String id)
     {
-        _rateTrackers.remove(id);
+        RateTracker tracker = _rateTrackers.remove(id);
+        if (tracker != null && tracker.getType() == USER_IP)
+            _trackerCount.decrementAndGet();
+    }
+
+    private void clearRateTrackers()
+    {
+        _rateTrackers.clear();
+        _ipTrackers.clear();
+        _trackerCount.set(0);
+        _overCapacity.set(false);
     }
 
     protected boolean checkWhitelist(String candidate)
@@ -768,7 +912,7 @@ public class DoSFilter implements Filter
     {
         LOG.debug("Destroy {}", this);
         stopScheduler();
-        _rateTrackers.clear();
+        clearRateTrackers();
         _whitelist.clear();
     }
 
@@ -961,6 +1105,48 @@ public class DoSFilter implements Filter
         _maxIdleTrackerMs = value;
     }
 
+    /**
+     * Get the maximum number of connections identified by IP address
+     * that are tracked individually, or -1 if there is no limit.
+     *
+     * @return the maximum number of tracked connections
+     */
+    @ManagedAttribute("maximum number of connections identified by IP address tracked individually, or -1 for no limit")
+    public int getMaxTrackers()
+    {
+        return _maxTrackers;
+    }
+
+    /**
+     * Set the maximum number of connections identified by IP address
+     * that are tracked individually, or -1 if there is no limit.
+     *
+     * @param value the maximum number of tracked connections
+     */
+    public void setMaxTrackers(int value)
+    {
+        _maxTrackers = value;
+    }
+
+    /**
+     * @return the number of connections identified by IP address tracked individually
+     */
+    @ManagedAttribute("number of connections identified by IP address tracked individually")
+    public int getTrackerCount()
+    {
+        return _trackerCount.get();
+    }
+
+    /**
+     * @return the number of trackers discarded because
+     * {@link #getMaxTrackers() the max number of trackers} was reached
+     */
+    @ManagedAttribute("number of trackers discarded because the max number of trackers was reached")
+    public long getEvictedTrackers()
+    {
+        return _evictedTrackers.sum();
+    }
+
     /**
      * The unique name of the filter when there is more than
      * one DosFilter instance.
@@ -1153,18 +1339,26 @@ public class DoSFilter implements Filter
     /**
      * A RateTracker is associated with a connection, and stores request rate
      * data.
+     * <p>
+     * Requests are counted in a ring of buckets covering the last second,
+     * each bucket holding the tick (a tenth of a second) it counts requests for
+     * in its high bits, and the count in its low bits, so that both are updated
+     * atomically without locks.
      */
-    static class RateTracker implements Runnable, HttpSessionBindingListener, HttpSessionActivationListener, Serializable
+    static class RateTracker implements HttpSessionBindingListener, HttpSessionActivationListener, Serializable
     {
-        private static final long serialVersionUID = 3534663738034577872L;
+        private static final long serialVersionUID = 3534663738034577873L;
+        private static final int BUCKETS = 10;
+        private static final long TICK_MS = 1000L / BUCKETS;
+        private static final int COUNT_BITS = 20;
+        private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
 
         protected final String _filterName;
         protected transient ServletContext _context;
         protected final String _id;
         protected final int _type;
-        protected final long[] _timestamps;
-
-        protected int _next;
+        protected final int _maxRequestsPerSecond;
+        protected final AtomicLongArray _buckets = new AtomicLongArray(BUCKETS);
 
         public RateTracker(ServletContext context, String filterName, String id, int type, int maxRequestsPerSecond)
         {
@@ -1172,8 +1366,7 @@ public class DoSFilter implements Filter
             _filterName = filterName;
             _id = id;
             _type = type;
-            _timestamps = new long[maxRequestsPerSecond];
-            _next = 0;
+            _maxRequestsPerSecond = maxRequestsPerSecond;
         }
 
         /**
@@ -1182,15 +1375,59 @@ public class DoSFilter implements Filter
          */
         public boolean isRateExceeded(long now)
         {
-            final long last;
-            synchronized (this)
+            return hit(now) > _maxRequestsPerSecond;
+        }
+
+        /**
+         * Records a request.
+         *
+         * @param now the time now (in milliseconds)
+         * @return the number of requests over the last second, including this one
+         */
+        protected int hit(long now)
+        {
+            long tick = Math.floorDiv(now, TICK_MS);
+            int index = (int)Math.floorMod(tick, BUCKETS);
+            while (true)
             {
-                last = _timestamps[_next];
-                _timestamps[_next] = now;
-                _next = (_next + 1) % _timestamps.length;
+                long bucket = _buckets.get(index);
+                long update;
+                if ((bucket >> COUNT_BITS) != tick)
+                    update = (tick << COUNT_BITS) | 1;
+                else if ((bucket & COUNT_MASK) == COUNT_MASK)
+                    break;
+                else
+                    update = bucket + 1;
+                if (_buckets.compareAndSet(index, bucket, update))
+                    break;
             }
 
-            return last != 0 && (now - last) < 1000L;
+            int count = 0;
+            for (int i = 0; i < BUCKETS; i++)
+            {
+                long bucket = _buckets.get(i);
+                long age = tick - (bucket >> COUNT_BITS);
+                if (age >= 0 && age < BUCKETS)
+                    count += (int)(bucket & COUNT_MASK);
+            }
+            return count;
+        }
+
+        /**
+         * @param now the time now (in milliseconds)
+         * @param idleMs the idle time (in milliseconds)
+         * @return whether there were no requests in the given idle time
+         */
+        public boolean isIdle(long now, long idleMs)
+        {
+            long last = Long.MIN_VALUE;
+            for (int i = 0; i < BUCKETS; i++)
+            {
+                long bucket = _buckets.get(i);
+                if ((bucket & COUNT_MASK) != 0)
+                    last = Math.max(last, bucket >> COUNT_BITS);
+            }
+            return last == Long.MIN_VALUE || (Math.floorDiv(now, TICK_MS) - last) * TICK_MS >= idleMs;
         }
 
         public String getId()
@@ -1266,32 +1503,6 @@ public class DoSFilter implements Filter
             filter.addToRateTracker(tracker);
         }
 
-        @Override
-        public void run()
-        {
-            if (_context == null)
-            {
-                LOG.warn("Unknkown context for rate tracker {}", this);
-                return;
-            }
-
-            int latestIndex = _next == 0 ? (_timestamps.length - 1) : (_next - 1);
-            long last = _timestamps[latestIndex];
-            boolean hasRecentRequest = last != 0 && (System.currentTimeMillis() - last) < 1000L;
-
-            DoSFilter filter = (DoSFilter)_context.getAttribute(_filterName);
-
-            if (hasRecentRequest)
-            {
-                if (filter != null)
-                    filter.schedule(this);
-                else
-                    LOG.warn("No filter {}", _filterName);
-            }
-            else
-                removeFromRateTrackers(filter, _id);
-        }
-
         @Override
         public String toString()
         {
@@ -1309,15 +1520,10 @@ public class DoSFilter implements Filter
         @Override
         public boolean isRateExceeded(long now)
         {
-            // rate limit is never exceeded, but we keep track of the request timestamps
+            // rate limit is never exceeded, but we keep track of the requests
             // so that we know whether there was recent activity on this tracker
             // and whether it should be expired
-            synchronized (this)
-            {
-                _timestamps[_next] = now;
-                _next = (_next + 1) % _timestamps.length;
-            }
-
+            hit(now);
             return false;
         }
 
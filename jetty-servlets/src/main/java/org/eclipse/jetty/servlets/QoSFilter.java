@@ -74,6 +74,9 @@ import org.eclipse.jetty.util.log.Logger;
  * If the "managedAttr" init parameter is set to true, then this servlet is set as a {@link ServletContext} attribute with the
  * filter name as the attribute name.  This allows context external mechanism (eg JMX via {@link ContextHandler#MANAGED_ATTRIBUTES}) to
  * manage the configuration of the filter.
+ * <p>
+ * To limit the active requests of the whole server without ever blocking threads, with weighted fair
+ * queuing of the priorities and load shedding, see {@link org.eclipse.jetty.server.handler.AdmissionControlHandler}.
  */
 @ManagedObject("Quality of Service Filter")
 public class QoSFilter implements Filter
@@ -145,6 +145,76 @@ public class DoSFilterTest extends AbstractDoSFilterTest
         assertFalse(exceeded, "Should not exceed as we sleep 300s for each hit and thus do less than 4 hits/s");
     }
 
+    @Test
+    public void testRateTrackerIdle()
+    {
+        RateTracker rateTracker = new RateTracker(new ContextHandler.StaticContext(), "foo", "test3", 0, 4);
+        assertTrue(rateTracker.isIdle(1000, 500));
+
+        rateTracker.isRateExceeded(10_000);
+        assertFalse(rateTracker.isIdle(10_100, 500));
+        assertTrue(rateTracker.isIdle(10_600, 500));
+
+        // The window slides, so older requests are not counted.
+        for (int i = 0; i < 4; i++)
+        {
+            assertFalse(rateTracker.isRateExceeded(20_000));
+        }
+        assertTrue(rateTracker.isRateExceeded(20_500));
+        assertFalse(rateTracker.isRateExceeded(21_100));
+    }
+
+    @Test
+    public void testMaxTrackers() throws ServletException
+    {
+        DoSFilter doSFilter = new DoSFilter();
+        doSFilter.init(new NoOpFilterConfig());
+        doSFilter.setMaxTrackers(2);
+
+        try
+        {
+            RateTracker tracker1 = doSFilter.getRateTracker(new RemoteAddressRequest("10.0.0.1", 12345));
+            RateTracker tracker2 = doSFilter.getRateTracker(new RemoteAddressRequest("10.0.0.2", 12345));
+            assertThat(tracker1.getId(), is("10.0.0.1"));
+            assertThat(tracker2.getId(), is("10.0.0.2"));
+            assertThat(doSFilter.getTrackerCount(), is(2));
+
+            // At the limit, the tracker of an idle connection makes room for the new one.
+            long now = System.currentTimeMillis();
+            assertFalse(tracker1.isRateExceeded(now));
+            RateTracker tracker3 = doSFilter.getRateTracker(new RemoteAddressRequest("10.0.0.3", 12345));
+            assertThat(tracker3.getId(), is("10.0.0.3"));
+            assertThat(doSFilter.getTrackerCount(), is(2));
+            assertThat(doSFilter.getEvictedTrackers(), is(1L));
+            assertThat(doSFilter.getRateTracker(new RemoteAddressRequest("10.0.0.1", 12345)), Matchers.sameInstance(tracker1));
+
+            // The new connection is rate limited.
+            for (int i = 0; i < doSFilter.getMaxRequestsPerSec(); i++)
+            {
+                assertFalse(tracker3.isRateExceeded(now));
+            }
+            assertTrue(tracker3.isRateExceeded(now));
+
+            // When no connection is idle, the oldest tracker makes room.
+            RateTracker tracker4 = doSFilter.getRateTracker(new RemoteAddressRequest("10.0.0.4", 12345));
+            assertThat(tracker4.getId(), is("10.0.0.4"));
+            assertThat(doSFilter.getTrackerCount(), is(2));
+            assertThat(doSFilter.getEvictedTrackers(), is(2L));
+            assertThat(doSFilter.getRateTracker(new RemoteAddressRequest("10.0.0.3", 12345)), Matchers.sameInstance(tracker3));
+
+            // Trackers can be created without eviction below the limit.
+            doSFilter.removeFromRateTracker("10.0.0.4");
+            assertThat(doSFilter.getTrackerCount(), is(1));
+            assertThat(doSFilter.getRateTracker(new RemoteAddressRequest("10.0.0.1", 12345)).getId(), is("10.0.0.1"));
+            assertThat(doSFilter.getTrackerCount(), is(2));
+            assertThat(doSFilter.getEvictedTrackers(), is(2L));
+        }
+        finally
+        {
+            doSFilter.stopScheduler();
+        }
+    }
+
     @Test
     public void testWhitelist() throws Exception
     {
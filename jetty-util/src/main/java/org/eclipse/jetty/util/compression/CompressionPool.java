@@ -21,15 +21,23 @@ package org.eclipse.jetty.util.compression;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
 import org.eclipse.jetty.util.component.AbstractLifeCycle;
 
+@ManagedObject
 public abstract class CompressionPool<T> extends AbstractLifeCycle
 {
     public static final int INFINITE_CAPACITY = -1;
+    public static final int DEFAULT_CAPACITY = 1024;
 
     private final Queue<T> _pool;
     private final AtomicInteger _numObjects = new AtomicInteger(0);
+    private final LongAdder _created = new LongAdder();
+    private final LongAdder _acquired = new LongAdder();
+    private final LongAdder _released = new LongAdder();
     private final int _capacity;
 
     /**
@@ -53,6 +61,46 @@ public abstract class CompressionPool<T> extends AbstractLifeCycle
 
     protected abstract void reset(T object);
 
+    /**
+     * @return an estimate of the native memory, in bytes, retained by each Object
+     */
+    protected long getObjectMemory()
+    {
+        return 0;
+    }
+
+    @ManagedAttribute(value = "The max number of Objects held in the pool, or -1 if unbounded", readonly = true)
+    public int getCapacity()
+    {
+        return _capacity;
+    }
+
+    @ManagedAttribute(value = "The number of Objects held in the pool", readonly = true)
+    public int getPooledCount()
+    {
+        return _numObjects.get();
+    }
+
+    @ManagedAttribute(value = "The number of Objects acquired and not yet released", readonly = true)
+    public long getBorrowedCount()
+    {
+        // Read the releases first, so that the result is never negative.
+        long released = _released.sum();
+        return _acquired.sum() - released;
+    }
+
+    @ManagedAttribute(value = "The number of Objects created", readonly = true)
+    public long getCreatedCount()
+    {
+        return _created.sum();
+    }
+
+    @ManagedAttribute(value = "The estimated native memory in bytes retained by the pooled and borrowed Objects", readonly = true)
+    public long getNativeMemoryEstimate()
+    {
+        return (getPooledCount() + getBorrowedCount()) * getObjectMemory();
+    }
+
     /**
      * @return Object taken from the pool if it is not empty or a newly created Object
      */
@@ -61,19 +109,26 @@ public abstract class CompressionPool<T> extends AbstractLifeCycle
         T object;
 
         if (_capacity == 0)
-            object = newObject();
+            object = create();
         else
         {
             object = _pool.poll();
             if (object == null)
-                object = newObject();
-            else if (_capacity > 0)
+                object = create();
+            else
                 _numObjects.decrementAndGet();
         }
 
+        _acquired.increment();
         return object;
     }
 
+    private T create()
+    {
+        _created.increment();
+        return newObject();
+    }
+
     /**
      * @param object returns this Object to the pool or calls {@link #end(Object)} if the pool is full.
      */
@@ -82,6 +137,7 @@ public abstract class CompressionPool<T> extends AbstractLifeCycle
         if (object == null)
             return;
 
+        _released.increment();
         if (_capacity == 0 || !isRunning())
         {
             end(object);
@@ -90,6 +146,7 @@ public abstract class CompressionPool<T> extends AbstractLifeCycle
         else if (_capacity < 0)
         {
             reset(object);
+            _numObjects.incrementAndGet();
             _pool.add(object);
         }
         else
@@ -117,6 +174,8 @@ public abstract class CompressionPool<T> extends AbstractLifeCycle
     @Override
     public void doStop()
     {
+        if (_pool == null)
+            return;
         T t = _pool.poll();
         while (t != null)
         {
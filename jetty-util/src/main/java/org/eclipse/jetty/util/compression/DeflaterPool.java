@@ -22,6 +22,12 @@ import java.util.zip.Deflater;
 
 public class DeflaterPool extends CompressionPool<Deflater>
 {
+    /**
+     * The native memory of a zlib deflater with the default window bits (15) and memory level (8),
+     * that is {@code (1 << (windowBits + 2)) + (1 << (memLevel + 9))} plus the deflater state.
+     */
+    private static final long DEFLATER_MEMORY = (1 << 17) + (1 << 17) + 6 * 1024;
+
     private final int compressionLevel;
     private final boolean nowrap;
 
@@ -49,6 +55,12 @@ public class DeflaterPool extends CompressionPool<Deflater>
         return new Deflater(compressionLevel, nowrap);
     }
 
+    @Override
+    protected long getObjectMemory()
+    {
+        return DEFLATER_MEMORY;
+    }
+
     @Override
     protected void end(Deflater deflater)
     {
@@ -22,6 +22,12 @@ import java.util.zip.Inflater;
 
 public class InflaterPool extends CompressionPool<Inflater>
 {
+    /**
+     * The native memory of a zlib inflater with the default window bits (15),
+     * that is {@code 1 << windowBits} plus the inflater state.
+     */
+    private static final long INFLATER_MEMORY = (1 << 15) + 7 * 1024;
+
     private final boolean nowrap;
 
     /**
@@ -46,6 +52,12 @@ public class InflaterPool extends CompressionPool<Inflater>
         return new Inflater(nowrap);
     }
 
+    @Override
+    protected long getObjectMemory()
+    {
+        return INFLATER_MEMORY;
+    }
+
     @Override
     protected void end(Inflater inflater)
     {
@@ -0,0 +1,188 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util.statistic;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Statistics on the distribution of a sampled value.</p>
+ * <p>Samples are counted in buckets whose bounds are powers of two:
+ * bucket {@code 0} counts the samples less than or equal to zero,
+ * and bucket {@code n} counts the samples in the range
+ * {@code [2^(n-1), 2^n - 1]}, so that the memory used is constant and
+ * recording a sample is lock free. Percentiles are therefore estimated
+ * with the upper bound of the bucket they fall in.</p>
+ */
+public class HistogramStatistic
+{
+    private static final int BUCKETS = Long.SIZE;
+
+    private final AtomicLongArray _buckets = new AtomicLongArray(BUCKETS);
+    private final LongAccumulator _max = new LongAccumulator(Math::max, 0L);
+    private final LongAdder _total = new LongAdder();
+    private final LongAdder _count = new LongAdder();
+
+    /**
+     * Resets the statistics.
+     */
+    public void reset()
+    {
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            _buckets.set(i, 0);
+        }
+        _max.reset();
+        _total.reset();
+        _count.reset();
+    }
+
+    /**
+     * Records a sample value.
+     *
+     * @param sample the value to record.
+     */
+    public void record(long sample)
+    {
+        _buckets.incrementAndGet(bucketOf(sample));
+        _max.accumulate(sample);
+        _total.add(sample);
+        _count.increment();
+    }
+
+    private static int bucketOf(long sample)
+    {
+        return sample <= 0 ? 0 : Long.SIZE - Long.numberOfLeadingZeros(sample);
+    }
+
+    private static long upperBoundOf(int bucket)
+    {
+        // For the last bucket, this overflows to Long.MAX_VALUE.
+        return bucket == 0 ? 0 : (1L << bucket) - 1;
+    }
+
+    /**
+     * @return the max value of the recorded samples
+     */
+    public long getMax()
+    {
+        return _max.get();
+    }
+
+    /**
+     * @return the sum of all the recorded samples
+     */
+    public long getTotal()
+    {
+        return _total.sum();
+    }
+
+    /**
+     * @return the number of samples recorded
+     */
+    public long getCount()
+    {
+        return _count.sum();
+    }
+
+    /**
+     * @return the average value of the samples recorded, or zero if there are no samples
+     */
+    public double getMean()
+    {
+        long count = getCount();
+        return count > 0 ? (double)getTotal() / count : 0.0D;
+    }
+
+    /**
+     * @param percentile the percentile, between 0 and 100
+     * @return an estimate of the value below which the given percentile of
+     * the samples fall, never greater than the max, or zero if there are no samples
+     */
+    public long getPercentile(double percentile)
+    {
+        if (percentile < 0 || percentile > 100)
+            throw new IllegalArgumentException("Invalid percentile " + percentile);
+
+        long[] counts = getBucketCounts();
+        long count = 0;
+        for (long c : counts)
+        {
+            count += c;
+        }
+        if (count == 0)
+            return 0;
+
+        long rank = Math.max(1, (long)Math.ceil(count * percentile / 100.0D));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++)
+        {
+            seen += counts[i];
+            if (seen >= rank)
+                return Math.min(upperBoundOf(i), getMax());
+        }
+        return getMax();
+    }
+
+    /**
+     * @return a copy of the counts of the buckets, where the count at index {@code n > 0}
+     * is the number of samples in the range {@code [2^(n-1), 2^n - 1]}
+     */
+    public long[] getBucketCounts()
+    {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            counts[i] = _buckets.get(i);
+        }
+        return counts;
+    }
+
+    /**
+     * @return the non empty buckets as a string of {@code <=upperBound:count} pairs
+     */
+    public String toHistogramString()
+    {
+        StringBuilder builder = new StringBuilder("{");
+        long[] counts = getBucketCounts();
+        for (int i = 0; i < counts.length; i++)
+        {
+            if (counts[i] == 0)
+                continue;
+            if (builder.length() > 1)
+                builder.append(',');
+            builder.append("<=").append(upperBoundOf(i)).append(':').append(counts[i]);
+        }
+        return builder.append('}').toString();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{count=%d,mean=%f,max=%d,p50=%d,p99=%d}",
+            getClass().getSimpleName(),
+            hashCode(),
+            getCount(),
+            getMean(),
+            getMax(),
+            getPercentile(50),
+            getPercentile(99));
+    }
+}
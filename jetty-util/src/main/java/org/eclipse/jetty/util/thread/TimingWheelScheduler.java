@@ -0,0 +1,432 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util.thread;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import org.eclipse.jetty.util.StringUtil;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.Name;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.component.Dumpable;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+
+/**
+ * <p>Implementation of {@link Scheduler} based on a hierarchical timing wheel.</p>
+ * <p>Tasks are kept in the buckets of {@value #LEVELS} wheels of {@value #SLOTS} slots,
+ * the slots of the first wheel lasting one tick and those of each other wheel lasting
+ * a whole turn of the previous wheel. Scheduling and cancelling a task is done in
+ * constant time and without locking, while the tasks are moved down the wheels
+ * as their expiry gets closer by a single thread, that also runs the expired tasks.
+ * A task expires within one tick after its delay.</p>
+ * <p>Unlike a {@link ScheduledExecutorScheduler}, whose queue of tasks is a heap,
+ * the cost of scheduling does not grow with the number of tasks scheduled, which suits
+ * large numbers of timeouts that are mostly cancelled before they expire, such as the
+ * idle timeouts of connections and sessions. It can be used wherever a {@link Scheduler}
+ * is, for example as the shared scheduler of the {@code Server}, added as a bean.</p>
+ * <p>As for the other schedulers, the tasks must be quick, and dispatch to an
+ * executor any work that may block.</p>
+ */
+@ManagedObject
+public class TimingWheelScheduler extends AbstractLifeCycle implements Scheduler, Dumpable
+{
+    private static final Logger LOG = Log.getLogger(TimingWheelScheduler.class);
+    private static final int BITS = 8;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final long MAX_TICKS = (1L << (BITS * LEVELS)) - 1;
+    private static final AtomicIntegerFieldUpdater<WheelTask> STATE = AtomicIntegerFieldUpdater.newUpdater(WheelTask.class, "_state");
+
+    private final AtomicReference<WheelTask> _pending = new AtomicReference<>();
+    private final AtomicReference<WheelTask> _cancelled = new AtomicReference<>();
+    private final String _name;
+    private final boolean _daemon;
+    private final ClassLoader _classLoader;
+    private final ThreadGroup _threadGroup;
+    private final long _tickNanos;
+    private Bucket[][] _wheels;
+    private long _startNanos;
+    private long _tick; //the last tick processed, only accessed by the wheel thread
+    private int _size; //the number of tasks in the wheels, only accessed by the wheel thread
+    private volatile boolean _idle;
+    private volatile boolean _running;
+    private volatile Thread _thread;
+
+    public TimingWheelScheduler()
+    {
+        this(null, false);
+    }
+
+    public TimingWheelScheduler(String name, boolean daemon)
+    {
+        this(name, daemon, 10);
+    }
+
+    public TimingWheelScheduler(@Name("name") String name, @Name("daemon") boolean daemon, @Name("tickMs") long tickMs)
+    {
+        this(name, daemon, null, null, tickMs);
+    }
+
+    /**
+     * @param name The name of the scheduler thread or null for automatic name
+     * @param daemon True if the scheduler thread should be daemon
+     * @param classLoader The classloader to run the thread with or null to use the current thread context classloader
+     * @param threadGroup The threadgroup to use or null for no thread group
+     * @param tickMs The duration in ms of a tick, which is the precision of the expiry of the tasks
+     */
+    public TimingWheelScheduler(@Name("name") String name, @Name("daemon") boolean daemon, @Name("classLoader") ClassLoader classLoader, @Name("threadGroup") ThreadGroup threadGroup, @Name("tickMs") long tickMs)
+    {
+        if (tickMs <= 0)
+            throw new IllegalArgumentException("Invalid tick " + tickMs);
+        _name = StringUtil.isBlank(name) ? "Scheduler-" + hashCode() : name;
+        _daemon = daemon;
+        _classLoader = classLoader == null ? Thread.currentThread().getContextClassLoader() : classLoader;
+        _threadGroup = threadGroup;
+        _tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMs);
+    }
+
+    @ManagedAttribute("The duration in ms of a tick")
+    public long getTickMs()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(_tickNanos);
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        _wheels = new Bucket[LEVELS][SLOTS];
+        for (Bucket[] wheel : _wheels)
+        {
+            for (int i = 0; i < SLOTS; ++i)
+            {
+                wheel[i] = new Bucket();
+            }
+        }
+        _startNanos = System.nanoTime();
+        _tick = 0;
+        _size = 0;
+        _running = true;
+        Thread thread = new Thread(_threadGroup, this::tick, _name + "-1");
+        thread.setDaemon(_daemon);
+        thread.setContextClassLoader(_classLoader);
+        _thread = thread;
+        thread.start();
+        super.doStart();
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        _running = false;
+        Thread thread = _thread;
+        if (thread != null)
+        {
+            LockSupport.unpark(thread);
+            if (thread != Thread.currentThread())
+                thread.join();
+        }
+        _thread = null;
+        _pending.set(null);
+        _cancelled.set(null);
+        super.doStop();
+    }
+
+    @Override
+    public Task schedule(Runnable task, long delay, TimeUnit unit)
+    {
+        Thread thread = _thread;
+        if (thread == null)
+            return () -> false;
+
+        //the tick at which the task expires, rounded up so that it never expires early
+        long delayNanos = Math.min(unit.toNanos(Math.max(0, delay)), Long.MAX_VALUE / 4);
+        long expiry = (System.nanoTime() - _startNanos + delayNanos + _tickNanos - 1) / _tickNanos;
+        WheelTask wheelTask = new WheelTask(task, expiry);
+        push(_pending, wheelTask, false);
+        if (_idle)
+            LockSupport.unpark(thread);
+        return wheelTask;
+    }
+
+    private void push(AtomicReference<WheelTask> stack, WheelTask task, boolean cancelled)
+    {
+        while (true)
+        {
+            WheelTask head = stack.get();
+            if (cancelled)
+                task._nextCancelled = head;
+            else
+                task._nextPending = head;
+            if (stack.compareAndSet(head, task))
+                return;
+        }
+    }
+
+    private void tick()
+    {
+        while (_running)
+        {
+            addPending();
+            removeCancelled();
+
+            long now = System.nanoTime();
+            long tick = (now - _startNanos) / _tickNanos;
+            if (_size == 0)
+            {
+                //nothing to expire, catch up with the time at once
+                _tick = Math.max(_tick, tick);
+                _idle = true;
+                if (_pending.get() == null)
+                    LockSupport.park(this);
+                _idle = false;
+                //catch up with the time spent idle before placing the tasks scheduled
+                //meanwhile, rather than stepping through every tick of the idle period
+                _tick = Math.max(_tick, (System.nanoTime() - _startNanos) / _tickNanos);
+                continue;
+            }
+
+            if (tick <= _tick)
+            {
+                LockSupport.parkNanos(this, _startNanos + (_tick + 1) * _tickNanos - now);
+                continue;
+            }
+
+            while (_tick < tick && _running)
+            {
+                ++_tick;
+                cascade();
+                expire();
+            }
+        }
+    }
+
+    private void addPending()
+    {
+        WheelTask task = _pending.getAndSet(null);
+        while (task != null)
+        {
+            WheelTask next = task._nextPending;
+            task._nextPending = null;
+            if (task._state == WheelTask.SCHEDULED)
+                place(task, _tick + 1);
+            task = next;
+        }
+    }
+
+    private void removeCancelled()
+    {
+        WheelTask task = _cancelled.getAndSet(null);
+        while (task != null)
+        {
+            WheelTask next = task._nextCancelled;
+            task._nextCancelled = null;
+            if (task._bucket != null)
+            {
+                task._bucket.remove(task);
+                --_size;
+            }
+            task = next;
+        }
+    }
+
+    /**
+     * Places a task in the lowest wheel where its expiry tick shares with the current tick
+     * the digits of the higher wheels, in the slot of its expiry digit for that wheel.
+     *
+     * @param task the task to place
+     * @param earliest the earliest tick at which the task can expire
+     */
+    private void place(WheelTask task, long earliest)
+    {
+        long expiry = Math.min(Math.max(task._expiry, earliest), _tick + MAX_TICKS);
+        int level = 0;
+        while (level < LEVELS - 1 && (expiry >>> (BITS * (level + 1))) != (_tick >>> (BITS * (level + 1))))
+        {
+            ++level;
+        }
+        _wheels[level][(int)(expiry >>> (BITS * level)) & MASK].add(task);
+        ++_size;
+    }
+
+    /**
+     * Moves the tasks of the higher wheels, whose turn starts at this tick, down the wheels.
+     */
+    private void cascade()
+    {
+        for (int level = LEVELS - 1; level > 0; --level)
+        {
+            if ((_tick & ((1L << (BITS * level)) - 1)) != 0)
+                continue;
+            Bucket bucket = _wheels[level][(int)(_tick >>> (BITS * level)) & MASK];
+            WheelTask task = bucket.clear();
+            while (task != null)
+            {
+                WheelTask next = task._next;
+                task._next = null;
+                --_size;
+                //the slot of the current tick expires after the cascade
+                place(task, _tick);
+                task = next;
+            }
+        }
+    }
+
+    private void expire()
+    {
+        Bucket bucket = _wheels[0][(int)_tick & MASK];
+        WheelTask task = bucket.clear();
+        while (task != null)
+        {
+            WheelTask next = task._next;
+            task._next = null;
+            --_size;
+            if (task._expiry > _tick)
+                place(task, _tick + 1);
+            else
+                task.expire();
+            task = next;
+        }
+    }
+
+    @Override
+    public String dump()
+    {
+        return Dumpable.dump(this);
+    }
+
+    @Override
+    public void dump(Appendable out, String indent) throws IOException
+    {
+        Thread thread = _thread;
+        if (thread == null)
+            Dumpable.dumpObject(out, this);
+        else
+            Dumpable.dumpObjects(out, indent, this, (Object[])thread.getStackTrace());
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[%s,tick=%dms]", getClass().getSimpleName(), hashCode(), _name, getTickMs());
+    }
+
+    /**
+     * The tasks of a slot, in a doubly linked list, only accessed by the wheel thread.
+     */
+    private static class Bucket
+    {
+        private WheelTask _head;
+
+        private void add(WheelTask task)
+        {
+            task._bucket = this;
+            task._prev = null;
+            task._next = _head;
+            if (_head != null)
+                _head._prev = task;
+            _head = task;
+        }
+
+        private void remove(WheelTask task)
+        {
+            if (task._prev == null)
+                _head = task._next;
+            else
+                task._prev._next = task._next;
+            if (task._next != null)
+                task._next._prev = task._prev;
+            task._bucket = null;
+            task._prev = null;
+            task._next = null;
+        }
+
+        /**
+         * @return the first of the tasks removed, linked by their next task
+         */
+        private WheelTask clear()
+        {
+            WheelTask head = _head;
+            _head = null;
+            for (WheelTask task = head; task != null; task = task._next)
+            {
+                task._bucket = null;
+                task._prev = null;
+            }
+            return head;
+        }
+    }
+
+    private class WheelTask implements Task
+    {
+        private static final int SCHEDULED = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final Runnable _task;
+        private final long _expiry;
+        volatile int _state;
+        private WheelTask _nextPending;
+        private WheelTask _nextCancelled;
+        private Bucket _bucket;
+        private WheelTask _prev;
+        private WheelTask _next;
+
+        private WheelTask(Runnable task, long expiry)
+        {
+            _task = task;
+            _expiry = expiry;
+        }
+
+        @Override
+        public boolean cancel()
+        {
+            if (!STATE.compareAndSet(this, SCHEDULED, CANCELLED))
+                return false;
+            push(_cancelled, this, true);
+            return true;
+        }
+
+        private void expire()
+        {
+            if (!STATE.compareAndSet(this, SCHEDULED, EXPIRED))
+                return;
+            try
+            {
+                _task.run();
+            }
+            catch (Throwable x)
+            {
+                LOG.warn("Exception while executing task " + _task, x);
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s.%s@%x[%s]", TimingWheelScheduler.class.getSimpleName(), WheelTask.class.getSimpleName(), hashCode(), _task);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util.statistic;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class HistogramStatisticTest
+{
+    @Test
+    public void testBuckets()
+    {
+        HistogramStatistic histogram = new HistogramStatistic();
+        histogram.record(0);
+        histogram.record(1);
+        histogram.record(2);
+        histogram.record(3);
+        histogram.record(1000);
+        histogram.record(Long.MAX_VALUE);
+
+        long[] counts = histogram.getBucketCounts();
+        assertEquals(1, counts[0]);
+        assertEquals(1, counts[1]);
+        assertEquals(2, counts[2]);
+        assertEquals(1, counts[10]);
+        assertEquals(1, counts[63]);
+        assertEquals("{<=0:1,<=1:1,<=3:2,<=1023:1,<=" + Long.MAX_VALUE + ":1}", histogram.toHistogramString());
+    }
+
+    @Test
+    public void testPercentiles()
+    {
+        HistogramStatistic histogram = new HistogramStatistic();
+        assertEquals(0, histogram.getPercentile(99));
+
+        for (int i = 1; i <= 100; i++)
+        {
+            histogram.record(i);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(100, histogram.getMax());
+        assertEquals(50.5D, histogram.getMean());
+        // The 50th sample falls in the [32, 63] bucket.
+        assertEquals(63, histogram.getPercentile(50));
+        // The upper bound of the last bucket is capped by the max.
+        assertEquals(100, histogram.getPercentile(99));
+        assertEquals(1, histogram.getPercentile(0));
+        assertThrows(IllegalArgumentException.class, () -> histogram.getPercentile(101));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getPercentile(50));
+    }
+}
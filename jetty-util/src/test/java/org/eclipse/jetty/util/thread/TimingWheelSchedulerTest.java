@@ -0,0 +1,153 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util.thread;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TimingWheelSchedulerTest
+{
+    private TimingWheelScheduler scheduler;
+
+    @BeforeEach
+    public void before() throws Exception
+    {
+        // A tick of 1ms, so that the tasks are spread over more than one wheel.
+        scheduler = new TimingWheelScheduler(null, false, 1);
+        scheduler.start();
+    }
+
+    @AfterEach
+    public void after() throws Exception
+    {
+        scheduler.stop();
+    }
+
+    @Test
+    public void testManyTasksExpireOnTimeOrAreCancelled() throws Exception
+    {
+        int count = 2000;
+        Random random = new Random();
+        CountDownLatch latch = new CountDownLatch(count / 2);
+        AtomicInteger early = new AtomicInteger();
+        AtomicInteger cancelledRun = new AtomicInteger();
+        List<Scheduler.Task> cancellable = new ArrayList<>();
+        for (int i = 0; i < count; ++i)
+        {
+            long delay = random.nextInt(1500);
+            long expected = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+            if (i % 2 == 0)
+            {
+                scheduler.schedule(() ->
+                {
+                    if (System.nanoTime() < expected)
+                        early.incrementAndGet();
+                    latch.countDown();
+                }, delay, TimeUnit.MILLISECONDS);
+            }
+            else
+            {
+                cancellable.add(scheduler.schedule(cancelledRun::incrementAndGet, delay + 100, TimeUnit.MILLISECONDS));
+            }
+        }
+
+        for (Scheduler.Task task : cancellable)
+        {
+            assertTrue(task.cancel());
+            assertFalse(task.cancel());
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(0, early.get());
+        Thread.sleep(200);
+        assertEquals(0, cancelledRun.get());
+    }
+
+    @Test
+    public void testRescheduleAfterIdle() throws Exception
+    {
+        // The scheduler must wake up for a task scheduled while it is idle.
+        for (int i = 0; i < 3; ++i)
+        {
+            AtomicLong executed = new AtomicLong();
+            CountDownLatch latch = new CountDownLatch(1);
+            long expected = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(300);
+            scheduler.schedule(() ->
+            {
+                executed.set(System.nanoTime());
+                latch.countDown();
+            }, 300, TimeUnit.MILLISECONDS);
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            assertThat(executed.get(), greaterThanOrEqualTo(expected));
+            assertThat(executed.get() - expected, lessThan(TimeUnit.MILLISECONDS.toNanos(250)));
+            Thread.sleep(100);
+        }
+    }
+
+    @Test
+    public void testExpireOnTimeAfterLongIdle() throws Exception
+    {
+        // The scheduler idles over many ticks, then must not expire the next tasks early or late.
+        Thread.sleep(1000);
+        List<AtomicLong> executed = new ArrayList<>();
+        CountDownLatch latch = new CountDownLatch(3);
+        long start = System.nanoTime();
+        for (long delay : new long[]{0, 10, 300})
+        {
+            AtomicLong time = new AtomicLong();
+            executed.add(time);
+            scheduler.schedule(() ->
+            {
+                time.set(System.nanoTime() - start);
+                latch.countDown();
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertThat(executed.get(1).get(), greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(10)));
+        assertThat(executed.get(2).get(), greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(300)));
+        assertThat(executed.get(2).get(), lessThan(TimeUnit.MILLISECONDS.toNanos(550)));
+    }
+
+    @Test
+    public void testScheduleWhenStopped() throws Exception
+    {
+        scheduler.stop();
+        AtomicInteger executed = new AtomicInteger();
+        Scheduler.Task task = scheduler.schedule(executed::incrementAndGet, 0, TimeUnit.MILLISECONDS);
+        assertFalse(task.cancel());
+        Thread.sleep(50);
+        assertEquals(0, executed.get());
+    }
+}
@@ -161,8 +161,15 @@ public class JsrAnnotatedEventDriver extends AbstractJsrEventDriver
             return;
         }
 
-        ByteBuffer buf = ByteBuffer.wrap(data);
+        onBinaryMessage(ByteBuffer.wrap(data));
+    }
 
+    /**
+     * Entry point for binary frames destined for {@link Whole}
+     */
+    @Override
+    public void onBinaryMessage(ByteBuffer buf)
+    {
         if (LOG.isDebugEnabled())
         {
             LOG.debug("onBinaryMessage({})", BufferUtil.toDetailString(buf));
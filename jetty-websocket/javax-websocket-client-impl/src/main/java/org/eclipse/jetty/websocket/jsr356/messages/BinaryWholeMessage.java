@@ -25,7 +25,6 @@ import javax.websocket.Decoder.Binary;
 import javax.websocket.MessageHandler;
 import javax.websocket.MessageHandler.Whole;
 
-import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.websocket.api.WebSocketException;
 import org.eclipse.jetty.websocket.common.events.EventDriver;
 import org.eclipse.jetty.websocket.common.message.SimpleBinaryMessage;
@@ -51,11 +50,10 @@ public class BinaryWholeMessage extends SimpleBinaryMessage
     {
         super.finished = true;
 
-        byte[] data = (out == null) ? new byte[]{} : out.toByteArray();
+        ByteBuffer msg = takeMessage();
 
         DecoderFactory.Wrapper decoder = msgWrapper.getDecoder();
         Decoder.Binary<Object> binaryDecoder = (Binary<Object>)decoder.getDecoder();
-        ByteBuffer msg = BufferUtil.toBuffer(data);
 
         if (binaryDecoder.willDecode(msg.slice()))
         {
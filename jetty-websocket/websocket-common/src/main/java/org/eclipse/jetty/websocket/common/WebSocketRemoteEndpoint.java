@@ -39,6 +39,7 @@ import org.eclipse.jetty.websocket.common.frames.DataFrame;
 import org.eclipse.jetty.websocket.common.frames.PingFrame;
 import org.eclipse.jetty.websocket.common.frames.PongFrame;
 import org.eclipse.jetty.websocket.common.frames.TextFrame;
+import org.eclipse.jetty.websocket.common.io.EncodedFrame;
 import org.eclipse.jetty.websocket.common.io.FrameFlusher;
 import org.eclipse.jetty.websocket.common.io.FutureWriteCallback;
 
@@ -298,6 +299,35 @@ public class WebSocketRemoteEndpoint implements RemoteEndpoint
         }
     }
 
+    /**
+     * <p>Asynchronous write of a frame already encoded, typically shared by many
+     * remote endpoints to broadcast the same message.</p>
+     *
+     * @param frame the encoded frame
+     * @param callback the callback to notify when the frame has been written
+     */
+    public void sendEncodedFrame(EncodedFrame frame, WriteCallback callback)
+    {
+        lockMsg(MsgType.ASYNC);
+        try
+        {
+            if (LOG.isDebugEnabled())
+            {
+                LOG.debug("sendEncodedFrame({}, {})", frame, callback);
+            }
+            if (callback == null)
+                callback = NOOP_CALLBACK;
+            if (outgoing instanceof WebSocketSession)
+                ((WebSocketSession)outgoing).outgoingFrame(frame, callback, getBatchMode());
+            else
+                uncheckedSendFrame(frame.newFrame(), callback);
+        }
+        finally
+        {
+            unlockMsg(MsgType.ASYNC);
+        }
+    }
+
     public void uncheckedSendFrame(WebSocketFrame frame, WriteCallback callback)
     {
         BatchMode batchMode = BatchMode.OFF;
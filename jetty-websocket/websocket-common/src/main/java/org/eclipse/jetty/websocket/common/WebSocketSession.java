@@ -48,6 +48,7 @@ import org.eclipse.jetty.websocket.api.StatusCode;
 import org.eclipse.jetty.websocket.api.SuspendToken;
 import org.eclipse.jetty.websocket.api.UpgradeRequest;
 import org.eclipse.jetty.websocket.api.UpgradeResponse;
+import org.eclipse.jetty.websocket.api.WebSocketBehavior;
 import org.eclipse.jetty.websocket.api.WebSocketException;
 import org.eclipse.jetty.websocket.api.WebSocketPolicy;
 import org.eclipse.jetty.websocket.api.WriteCallback;
@@ -56,7 +57,10 @@ import org.eclipse.jetty.websocket.api.extensions.Frame;
 import org.eclipse.jetty.websocket.api.extensions.IncomingFrames;
 import org.eclipse.jetty.websocket.api.extensions.OutgoingFrames;
 import org.eclipse.jetty.websocket.common.events.EventDriver;
+import org.eclipse.jetty.websocket.common.extensions.ExtensionStack;
+import org.eclipse.jetty.websocket.common.io.AbstractWebSocketConnection;
 import org.eclipse.jetty.websocket.common.io.DisconnectCallback;
+import org.eclipse.jetty.websocket.common.io.EncodedFrame;
 import org.eclipse.jetty.websocket.common.scopes.WebSocketContainerScope;
 import org.eclipse.jetty.websocket.common.scopes.WebSocketSessionScope;
 
@@ -359,6 +363,60 @@ public class WebSocketSession extends ContainerLifeCycle implements Session, Rem
         outgoingHandler.outgoingFrame(frame, callback, batchMode);
     }
 
+    /**
+     * <p>Sends a frame already encoded, possibly shared with other sessions.</p>
+     * <p>The encoded bytes are written as they are if this is a server session that has
+     * not negotiated extensions; otherwise, an equivalent frame is sent normally.
+     * In both cases, the frame is queued after the frames already sent by this session.</p>
+     *
+     * @param frame the encoded frame
+     * @param callback the callback to notify when the frame has been written
+     * @param batchMode the batch mode
+     */
+    public void outgoingFrame(EncodedFrame frame, WriteCallback callback, BatchMode batchMode)
+    {
+        if (!isEncodedFrameWritable())
+        {
+            outgoingFrame(frame.newFrame(), callback, batchMode);
+            return;
+        }
+
+        // The frame may wait in the queue of the outgoing frames,
+        // so it is retained until it has been written or failed.
+        frame.retain();
+        outgoingFrame(frame.newCarrierFrame(), new WriteCallback()
+        {
+            @Override
+            public void writeSuccess()
+            {
+                frame.release();
+                if (callback != null)
+                    callback.writeSuccess();
+            }
+
+            @Override
+            public void writeFailed(Throwable x)
+            {
+                frame.release();
+                if (callback != null)
+                    callback.writeFailed(x);
+            }
+        }, batchMode);
+    }
+
+    private boolean isEncodedFrameWritable()
+    {
+        // Client frames must be masked, with a different mask for each frame.
+        if (policy.getBehavior() != WebSocketBehavior.SERVER)
+            return false;
+        if (!(connection instanceof AbstractWebSocketConnection))
+            return false;
+        OutgoingFrames outgoing = outgoingHandler;
+        if (outgoing == connection)
+            return true;
+        return outgoing instanceof ExtensionStack && !((ExtensionStack)outgoing).hasNegotiatedExtensions();
+    }
+
     @Override
     public boolean isOpen()
     {
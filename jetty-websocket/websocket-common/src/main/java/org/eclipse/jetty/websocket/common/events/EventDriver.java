@@ -23,6 +23,7 @@ import java.io.InputStream;
 import java.io.Reader;
 import java.nio.ByteBuffer;
 
+import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.websocket.api.BatchMode;
 import org.eclipse.jetty.websocket.api.WebSocketPolicy;
 import org.eclipse.jetty.websocket.api.extensions.Frame;
@@ -42,6 +43,18 @@ public interface EventDriver extends IncomingFrames
 
     void onBinaryMessage(byte[] data);
 
+    /**
+     * <p>Notifies a whole binary message, assembled by the implementation.</p>
+     * <p>The buffer is owned by the application, and is backed by an array
+     * when the implementation can avoid copies by exposing it.</p>
+     *
+     * @param data the binary message
+     */
+    default void onBinaryMessage(ByteBuffer data)
+    {
+        onBinaryMessage(BufferUtil.toArray(data));
+    }
+
     void onClose(CloseInfo close);
 
     void onConnect();
@@ -23,6 +23,7 @@ import java.io.InputStream;
 import java.io.Reader;
 import java.nio.ByteBuffer;
 
+import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
 import org.eclipse.jetty.websocket.api.BatchMode;
@@ -132,6 +133,21 @@ public class JettyAnnotatedEventDriver extends AbstractEventDriver
         }
     }
 
+    @Override
+    public void onBinaryMessage(ByteBuffer data)
+    {
+        if (!data.hasArray())
+        {
+            onBinaryMessage(BufferUtil.toArray(data));
+            return;
+        }
+
+        if (events.onBinary != null)
+        {
+            events.onBinary.call(websocket, session, data.array(), data.arrayOffset() + data.position(), data.remaining());
+        }
+    }
+
     @Override
     public void onClose(CloseInfo close)
     {
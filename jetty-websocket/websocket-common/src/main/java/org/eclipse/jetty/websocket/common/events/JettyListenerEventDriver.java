@@ -23,6 +23,7 @@ import java.io.InputStream;
 import java.io.Reader;
 import java.nio.ByteBuffer;
 
+import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Utf8StringBuilder;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
@@ -104,6 +105,21 @@ public class JettyListenerEventDriver extends AbstractEventDriver
         }
     }
 
+    @Override
+    public void onBinaryMessage(ByteBuffer data)
+    {
+        if (!data.hasArray())
+        {
+            onBinaryMessage(BufferUtil.toArray(data));
+            return;
+        }
+
+        if (listener instanceof WebSocketListener)
+        {
+            ((WebSocketListener)listener).onWebSocketBinary(data.array(), data.arrayOffset() + data.position(), data.remaining());
+        }
+    }
+
     @Override
     public void onClose(CloseInfo close)
     {
@@ -46,8 +46,8 @@ public class WebSocketExtensionFactory extends ExtensionFactory implements LifeC
     private WebSocketContainerScope container;
     private ServiceLoader<Extension> extensionLoader = ServiceLoader.load(Extension.class);
     private Map<String, Class<? extends Extension>> availableExtensions;
-    private final InflaterPool inflaterPool = new InflaterPool(CompressionPool.INFINITE_CAPACITY, true);
-    private final DeflaterPool deflaterPool = new DeflaterPool(CompressionPool.INFINITE_CAPACITY, Deflater.DEFAULT_COMPRESSION, true);
+    private final InflaterPool inflaterPool = new InflaterPool(CompressionPool.DEFAULT_CAPACITY, true);
+    private final DeflaterPool deflaterPool = new DeflaterPool(CompressionPool.DEFAULT_CAPACITY, Deflater.DEFAULT_COMPRESSION, true);
 
     public WebSocketExtensionFactory(WebSocketContainerScope container)
     {
@@ -71,6 +71,22 @@ public class WebSocketExtensionFactory extends ExtensionFactory implements LifeC
         containerLifeCycle.addBean(deflaterPool);
     }
 
+    /**
+     * @return the pool of the Inflaters of the compression extensions
+     */
+    public InflaterPool getInflaterPool()
+    {
+        return inflaterPool;
+    }
+
+    /**
+     * @return the pool of the Deflaters of the compression extensions
+     */
+    public DeflaterPool getDeflaterPool()
+    {
+        return deflaterPool;
+    }
+
     @Override
     public Map<String, Class<? extends Extension>> getAvailableExtensions()
     {
@@ -130,6 +130,34 @@ public abstract class CompressExtension extends AbstractExtension
         return inflaterImpl;
     }
 
+    /**
+     * <p>Returns the Deflater to the pool, so that it is not retained between messages
+     * when the compression context is not taken over from one message to the next.</p>
+     * <p>A Deflater is acquired again from the pool by the next {@link #getDeflater()}.</p>
+     */
+    protected void releaseDeflater()
+    {
+        if (deflaterImpl != null)
+        {
+            deflaterPool.release(deflaterImpl);
+            deflaterImpl = null;
+        }
+    }
+
+    /**
+     * <p>Returns the Inflater to the pool, so that it is not retained between messages
+     * when the decompression context is not taken over from one message to the next.</p>
+     * <p>An Inflater is acquired again from the pool by the next {@link #getInflater()}.</p>
+     */
+    protected void releaseInflater()
+    {
+        if (inflaterImpl != null)
+        {
+            inflaterPool.release(inflaterImpl);
+            inflaterImpl = null;
+        }
+    }
+
     /**
      * Indicates use of RSV1 flag for indicating deflation is in use.
      */
@@ -400,18 +428,8 @@ public abstract class CompressExtension extends AbstractExtension
     @Override
     protected void doStop() throws Exception
     {
-        if (deflaterImpl != null)
-        {
-            deflaterPool.release(deflaterImpl);
-            deflaterImpl = null;
-        }
-
-        if (inflaterImpl != null)
-        {
-            inflaterPool.release(inflaterImpl);
-            inflaterImpl = null;
-        }
-
+        releaseDeflater();
+        releaseInflater();
         super.doStop();
     }
 
@@ -103,11 +103,14 @@ public class PerMessageDeflateExtension extends CompressExtension
     @Override
     protected void nextIncomingFrame(Frame frame)
     {
-        if (frame.isFin() && !incomingContextTakeover)
+        // Control frames may be interleaved with the frames of a message.
+        if (frame.isFin() && !frame.getType().isControl() && !incomingContextTakeover)
         {
             LOG.debug("Incoming Context Reset");
             decompressCount.set(0);
-            getInflater().reset();
+            // Without context takeover the Inflater is only needed for the
+            // duration of a message; the pool resets it when released.
+            releaseInflater();
         }
         super.nextIncomingFrame(frame);
     }
@@ -115,10 +118,10 @@ public class PerMessageDeflateExtension extends CompressExtension
     @Override
     protected void nextOutgoingFrame(Frame frame, WriteCallback callback, BatchMode batchMode)
     {
-        if (frame.isFin() && !outgoingContextTakeover)
+        if (frame.isFin() && !frame.getType().isControl() && !outgoingContextTakeover)
         {
             LOG.debug("Outgoing Context Reset");
-            getDeflater().reset();
+            releaseDeflater();
         }
         super.nextOutgoingFrame(frame, callback, batchMode);
     }
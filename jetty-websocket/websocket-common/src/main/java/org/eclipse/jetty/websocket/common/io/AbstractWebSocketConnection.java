@@ -576,6 +576,32 @@ public abstract class AbstractWebSocketConnection extends AbstractConnection imp
             LOG.debug("outgoingFrame({}, {})", frame, callback);
         }
 
+        if (frame instanceof EncodedFrame.Carrier)
+        {
+            outgoingFrame(((EncodedFrame.Carrier)frame).getEncodedFrame(), callback, batchMode);
+            return;
+        }
+
+        if (flusher.enqueue(frame, callback, batchMode))
+        {
+            flusher.iterate();
+        }
+    }
+
+    /**
+     * Encoded frame destined for network, written without being processed by the extensions.
+     *
+     * @param frame the encoded frame
+     * @param callback the callback to notify when the frame has been written
+     * @param batchMode the batch mode
+     */
+    public void outgoingFrame(EncodedFrame frame, WriteCallback callback, BatchMode batchMode)
+    {
+        if (LOG.isDebugEnabled())
+        {
+            LOG.debug("outgoingFrame({}, {})", frame, callback);
+        }
+
         if (flusher.enqueue(frame, callback, batchMode))
         {
             flusher.iterate();
@@ -0,0 +1,165 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.websocket.common.io;
+
+import java.nio.ByteBuffer;
+
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.io.RetainableByteBuffer;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.Retainable;
+import org.eclipse.jetty.websocket.api.WebSocketPolicy;
+import org.eclipse.jetty.websocket.api.extensions.Frame;
+import org.eclipse.jetty.websocket.common.Generator;
+import org.eclipse.jetty.websocket.common.WebSocketFrame;
+import org.eclipse.jetty.websocket.common.frames.DataFrame;
+
+/**
+ * <p>A server frame, header and payload, generated once into a pooled buffer,
+ * so that it can be written as it is to many connections.</p>
+ * <p>The buffer is reference counted: each {@link FrameFlusher} the frame is
+ * {@link FrameFlusher#enqueue(EncodedFrame, org.eclipse.jetty.websocket.api.WriteCallback, org.eclipse.jetty.websocket.api.BatchMode) enqueued to}
+ * retains it until it has been written, and the creator of the frame must
+ * {@link #release()} it once it has been enqueued to all the connections.</p>
+ * <p>Server frames are not masked, so the same bytes are valid for all the
+ * connections, provided that they have not negotiated extensions that
+ * transform the frames, such as compression.</p>
+ */
+public class EncodedFrame implements Retainable
+{
+    private final Frame frame;
+    private final RetainableByteBuffer buffer;
+
+    private EncodedFrame(Frame frame, RetainableByteBuffer buffer)
+    {
+        this.frame = frame;
+        this.buffer = buffer;
+    }
+
+    /**
+     * @param bufferPool the pool to acquire the buffer of the encoded frame from
+     * @param frame the frame to encode, whose payload is not consumed
+     * @return the encoded frame, to be released when no longer needed
+     */
+    public static EncodedFrame encode(ByteBufferPool bufferPool, Frame frame)
+    {
+        ByteBuffer payload = frame.hasPayload() ? frame.getPayload().asReadOnlyBuffer() : null;
+        RetainableByteBuffer buffer = new RetainableByteBuffer(bufferPool, Generator.MAX_HEADER_LENGTH + BufferUtil.length(payload), true);
+        ByteBuffer bytes = buffer.getBuffer();
+        BufferUtil.clear(bytes);
+        new Generator(WebSocketPolicy.newServerPolicy(), bufferPool).generateHeaderBytes(frame, bytes);
+        if (payload != null)
+            BufferUtil.append(bytes, payload.slice());
+
+        DataFrame copy = new DataFrame(frame);
+        copy.setPayload(payload);
+        return new EncodedFrame(copy, buffer);
+    }
+
+    /**
+     * @return a frame with the same header and payload of this encoded frame,
+     * to be sent to connections that cannot write the encoded bytes
+     */
+    public WebSocketFrame newFrame()
+    {
+        DataFrame copy = new DataFrame(frame);
+        if (frame.hasPayload())
+            copy.setPayload(frame.getPayload().slice());
+        return copy;
+    }
+
+    /**
+     * <p>Returns a frame that carries this encoded frame through the queue of the
+     * outgoing frames of a session, in order with the frames already queued, to
+     * the connection, which writes the encoded bytes when it receives it.</p>
+     * <p>The returned frame has the same header and payload of this encoded frame,
+     * so that it is also valid if it is sent normally.</p>
+     *
+     * @return a frame carrying this encoded frame
+     */
+    public WebSocketFrame newCarrierFrame()
+    {
+        return new Carrier(this);
+    }
+
+    /**
+     * @return the frame that has been encoded
+     */
+    public Frame getFrame()
+    {
+        return frame;
+    }
+
+    /**
+     * @return a read-only view of the encoded bytes, with its own position and limit
+     */
+    public ByteBuffer getByteBuffer()
+    {
+        return buffer.getBuffer().asReadOnlyBuffer();
+    }
+
+    /**
+     * @return the number of encoded bytes
+     */
+    public int getLength()
+    {
+        return buffer.remaining();
+    }
+
+    @Override
+    public void retain()
+    {
+        buffer.retain();
+    }
+
+    /**
+     * @return the number of references left, the buffer being returned to the pool when it reaches 0
+     */
+    public int release()
+    {
+        return buffer.release();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[%s,%s]", getClass().getSimpleName(), hashCode(), frame, buffer);
+    }
+
+    /**
+     * A frame carrying an encoded frame to the connection.
+     */
+    static class Carrier extends DataFrame
+    {
+        private final EncodedFrame encoded;
+
+        private Carrier(EncodedFrame encoded)
+        {
+            super(encoded.frame);
+            this.encoded = encoded;
+            if (encoded.frame.hasPayload())
+                setPayload(encoded.frame.getPayload().slice());
+        }
+
+        EncodedFrame getEncodedFrame()
+        {
+            return encoded;
+        }
+    }
+}
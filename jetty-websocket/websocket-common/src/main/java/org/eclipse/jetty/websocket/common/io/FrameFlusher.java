@@ -77,8 +77,28 @@ public class FrameFlusher extends IteratingCallback
 
     public boolean enqueue(Frame frame, WriteCallback callback, BatchMode batchMode)
     {
-        FrameEntry entry = new FrameEntry(frame, callback, batchMode);
+        return enqueue(new FrameEntry(frame, callback, batchMode));
+    }
+
+    /**
+     * <p>Enqueues a frame already encoded, whose bytes are written as they are.</p>
+     * <p>The encoded frame is retained until it has been written.</p>
+     *
+     * @param frame the encoded frame
+     * @param callback the callback to notify when the frame has been written
+     * @param batchMode the batch mode
+     * @return whether the frame has been enqueued
+     */
+    public boolean enqueue(EncodedFrame frame, WriteCallback callback, BatchMode batchMode)
+    {
+        frame.retain();
+        return enqueue(new FrameEntry(frame, callback, batchMode));
+    }
 
+    private boolean enqueue(FrameEntry entry)
+    {
+        Frame frame = entry.frame;
+        WriteCallback callback = entry.callback;
         Throwable dead;
 
         synchronized (this)
@@ -120,6 +140,7 @@ public class FrameFlusher extends IteratingCallback
         }
 
         notifyCallbackFailure(callback, dead);
+        entry.release();
         return false;
     }
 
@@ -153,8 +174,7 @@ public class FrameFlusher extends IteratingCallback
                 if (entry.frame == FLUSH_FRAME)
                     currentBatchMode = BatchMode.OFF;
 
-                int payloadLength = BufferUtil.length(entry.frame.getPayload());
-                int approxFrameLength = Generator.MAX_HEADER_LENGTH + payloadLength;
+                int approxFrameLength = entry.getApproxFrameLength();
 
                 // If it is a "big" frame, avoid copying into the aggregate buffer.
                 if (approxFrameLength > (bufferSize >> 2))
@@ -204,6 +224,12 @@ public class FrameFlusher extends IteratingCallback
 
         for (FrameEntry entry : entries)
         {
+            if (entry.encoded != null)
+            {
+                BufferUtil.append(aggregate, entry.encoded.getByteBuffer());
+                continue;
+            }
+
             entry.generateHeaderBytes(aggregate);
 
             ByteBuffer payload = entry.frame.getPayload();
@@ -234,6 +260,13 @@ public class FrameFlusher extends IteratingCallback
             if (entry.frame == FLUSH_FRAME)
                 continue;
 
+            // Encoded frames are written as they are, without copies.
+            if (entry.encoded != null)
+            {
+                buffers.add(entry.encoded.getByteBuffer());
+                continue;
+            }
+
             buffers.add(entry.generateHeaderBytes());
             ByteBuffer payload = entry.frame.getPayload();
             if (BufferUtil.hasContent(payload))
@@ -411,6 +444,7 @@ public class FrameFlusher extends IteratingCallback
         private final Frame frame;
         private final WriteCallback callback;
         private final BatchMode batchMode;
+        private EncodedFrame encoded;
         private ByteBuffer headerBuffer;
 
         private FrameEntry(Frame frame, WriteCallback callback, BatchMode batchMode)
@@ -420,6 +454,19 @@ public class FrameFlusher extends IteratingCallback
             this.batchMode = batchMode;
         }
 
+        private FrameEntry(EncodedFrame encoded, WriteCallback callback, BatchMode batchMode)
+        {
+            this(encoded.getFrame(), callback, batchMode);
+            this.encoded = encoded;
+        }
+
+        private int getApproxFrameLength()
+        {
+            if (encoded != null)
+                return encoded.getLength();
+            return Generator.MAX_HEADER_LENGTH + BufferUtil.length(frame.getPayload());
+        }
+
         private ByteBuffer generateHeaderBytes()
         {
             return headerBuffer = generator.generateHeaderBytes(frame);
@@ -432,6 +479,11 @@ public class FrameFlusher extends IteratingCallback
 
         private void release()
         {
+            if (encoded != null)
+            {
+                encoded.release();
+                encoded = null;
+            }
             if (headerBuffer != null)
             {
                 generator.getBufferPool().release(headerBuffer);
@@ -22,14 +22,22 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 
 import org.eclipse.jetty.util.BufferUtil;
-import org.eclipse.jetty.util.ByteArrayOutputStream2;
 import org.eclipse.jetty.websocket.common.events.EventDriver;
 
+/**
+ * <p>Assembles the frames of a binary message into a single heap buffer.</p>
+ * <p>The frames of a fragmented message are appended to a heap buffer that
+ * grows geometrically, and that is handed over to the application without
+ * being copied again when the message is complete: the application owns it,
+ * and its array may be larger than the message, which is delivered with its
+ * offset and length. Single frame messages are copied directly into an array
+ * of their exact size.</p>
+ */
 public class SimpleBinaryMessage implements MessageAppender
 {
     private static final int BUFFER_SIZE = 65535;
     private final EventDriver onEvent;
-    protected ByteArrayOutputStream2 out;
+    protected ByteBuffer buffer;
     private int size;
     protected boolean finished;
 
@@ -56,22 +64,46 @@ public class SimpleBinaryMessage implements MessageAppender
         onEvent.getPolicy().assertValidBinaryMessageSize(size + payload.remaining());
         size += payload.remaining();
 
-        if (out == null)
-            out = isLast ? new ByteArrayOutputStream2(size) : new ByteArrayOutputStream2(BUFFER_SIZE);
-        BufferUtil.writeTo(payload, out);
+        if (buffer == null)
+        {
+            // A single frame message is copied into an array of its exact size.
+            buffer = BufferUtil.allocate(isLast ? size : Math.max(size, BUFFER_SIZE));
+        }
+        else if (buffer.capacity() < size)
+        {
+            buffer = grow(size);
+        }
+        // The buffer is kept in flush mode, appending to its limit.
+        BufferUtil.append(buffer, payload);
+    }
+
+    private ByteBuffer grow(int minCapacity)
+    {
+        long maxSize = onEvent.getPolicy().getMaxBinaryMessageSize();
+        long capacity = Math.max(minCapacity, 2L * buffer.capacity());
+        if (maxSize > 0)
+            capacity = Math.max(minCapacity, Math.min(capacity, maxSize));
+        ByteBuffer larger = BufferUtil.allocate((int)Math.min(capacity, Integer.MAX_VALUE - 8));
+        BufferUtil.append(larger, buffer);
+        return larger;
+    }
+
+    /**
+     * <p>Takes the assembled message, which is not copied.</p>
+     *
+     * @return the message, in a heap buffer owned by the caller
+     */
+    protected ByteBuffer takeMessage()
+    {
+        ByteBuffer data = buffer;
+        buffer = null;
+        return data == null ? BufferUtil.EMPTY_BUFFER : data;
     }
 
     @Override
     public void messageComplete()
     {
         finished = true;
-        byte[] data;
-        if (out == null)
-            data = new byte[]{};
-        else if (out.getCount() == out.getBuf().length)
-            data = out.getBuf();
-        else
-            data = out.toByteArray();
-        onEvent.onBinaryMessage(data);
+        onEvent.onBinaryMessage(takeMessage());
     }
 }
@@ -18,6 +18,12 @@
 
 package org.eclipse.jetty.websocket.common.events;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
 import examples.AdapterConnectCloseSocket;
 import examples.AnnotatedBinaryArraySocket;
 import examples.AnnotatedBinaryStreamSocket;
@@ -28,11 +34,14 @@ import examples.ListenerPingPongSocket;
 import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.io.MappedByteBufferPool;
 import org.eclipse.jetty.websocket.api.StatusCode;
+import org.eclipse.jetty.websocket.api.WebSocketAdapter;
 import org.eclipse.jetty.websocket.api.WebSocketException;
 import org.eclipse.jetty.websocket.api.WebSocketPolicy;
 import org.eclipse.jetty.websocket.api.extensions.Frame;
 import org.eclipse.jetty.websocket.common.CloseInfo;
+import org.eclipse.jetty.websocket.common.WebSocketFrame;
 import org.eclipse.jetty.websocket.common.frames.BinaryFrame;
+import org.eclipse.jetty.websocket.common.frames.ContinuationFrame;
 import org.eclipse.jetty.websocket.common.frames.PingFrame;
 import org.eclipse.jetty.websocket.common.frames.PongFrame;
 import org.eclipse.jetty.websocket.common.frames.TextFrame;
@@ -47,6 +56,7 @@ import org.junit.jupiter.api.TestInfo;
 import static org.eclipse.jetty.websocket.common.test.MoreMatchers.regex;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.startsWith;
 
 public class EventDriverTest
@@ -178,6 +188,44 @@ public class EventDriverTest
         }
     }
 
+    @Test
+    public void testListenerFragmentedBinary(TestInfo testInfo) throws Exception
+    {
+        BlockingQueue<ByteBuffer> messages = new LinkedBlockingQueue<>();
+        WebSocketAdapter socket = new WebSocketAdapter()
+        {
+            @Override
+            public void onWebSocketBinary(byte[] payload, int offset, int len)
+            {
+                messages.offer(ByteBuffer.wrap(payload, offset, len));
+            }
+        };
+        EventDriver driver = wrap(socket);
+        driver.getPolicy().setMaxBinaryMessageSize(1024 * 1024);
+
+        // Larger than the initial buffer, so that it must grow.
+        byte[] fragment = new byte[40000];
+        try (LocalWebSocketSession conn = new CloseableLocalWebSocketSession(container, testInfo.getDisplayName(), driver))
+        {
+            conn.start();
+            conn.open();
+            for (int i = 0; i < 3; i++)
+            {
+                Arrays.fill(fragment, (byte)('a' + i));
+                Frame frame = i == 0 ? new BinaryFrame() : new ContinuationFrame();
+                driver.incomingFrame(((WebSocketFrame)frame).setPayload(ByteBuffer.wrap(fragment)).setFin(i == 2));
+            }
+
+            ByteBuffer message = messages.poll(5, TimeUnit.SECONDS);
+            assertThat(message.remaining(), is(3 * fragment.length));
+            for (int i = 0; i < 3; i++)
+            {
+                assertThat(message.get(message.position() + i * fragment.length), is((byte)('a' + i)));
+                assertThat(message.get(message.position() + (i + 1) * fragment.length - 1), is((byte)('a' + i)));
+            }
+        }
+    }
+
     @Test
     public void testListenerPingPong(TestInfo testInfo) throws Exception
     {
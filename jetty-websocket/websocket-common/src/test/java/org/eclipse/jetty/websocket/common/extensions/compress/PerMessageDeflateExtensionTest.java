@@ -586,4 +586,64 @@ public class PerMessageDeflateExtensionTest extends AbstractExtensionTest
 
         tester.assertHasFrames("tora", "tora", "tora");
     }
+
+    @Test
+    public void testNoContextTakeoverReleasesCompressionContexts() throws Exception
+    {
+        DeflaterPool deflaterPool = new DeflaterPool(1, Deflater.DEFAULT_COMPRESSION, true);
+        InflaterPool inflaterPool = new InflaterPool(1, true);
+        deflaterPool.start();
+        inflaterPool.start();
+        try
+        {
+            PerMessageDeflateExtension ext = new PerMessageDeflateExtension();
+            ext.setBufferPool(bufferPool);
+            ext.setDeflaterPool(deflaterPool);
+            ext.setInflaterPool(inflaterPool);
+            ext.setPolicy(WebSocketPolicy.newServerPolicy());
+            ext.setConfig(ExtensionConfig.parse("permessage-deflate; client_no_context_takeover; server_no_context_takeover"));
+
+            OutgoingFramesCapture outgoing = new OutgoingFramesCapture();
+            ext.setNextOutgoingFrames(outgoing);
+            IncomingFramesCapture incoming = new IncomingFramesCapture();
+            ext.setNextIncomingFrames(incoming);
+
+            // The Deflater is retained only until the end of the message.
+            ext.outgoingFrame(new TextFrame().setPayload("Hello ").setFin(false), null, BatchMode.OFF);
+            assertThat(deflaterPool.getBorrowedCount(), is(1L));
+            ext.outgoingFrame(new PingFrame().setPayload("ping"), null, BatchMode.OFF);
+            assertThat(deflaterPool.getBorrowedCount(), is(1L));
+            ext.outgoingFrame(new ContinuationFrame().setPayload("World").setFin(true), null, BatchMode.OFF);
+            assertThat(deflaterPool.getBorrowedCount(), is(0L));
+            assertThat(deflaterPool.getPooledCount(), is(1));
+            ext.outgoingFrame(new TextFrame().setPayload("Hello"), null, BatchMode.OFF);
+            outgoing.assertFrameCount(4);
+            assertThat(deflaterPool.getBorrowedCount(), is(0L));
+            // The pooled Deflater is reused by the following messages.
+            assertThat(deflaterPool.getCreatedCount(), is(1L));
+            assertThat(deflaterPool.getNativeMemoryEstimate(), is(deflaterPool.getPooledCount() * 268288L));
+
+            // Same for the Inflater, with the compressed "Hello" from RFC 7692, section 7.2.3.1.
+            for (int i = 0; i < 2; ++i)
+            {
+                TextFrame frame = new TextFrame();
+                frame.setRsv1(true);
+                frame.setPayload(ByteBuffer.wrap(TypeUtil.fromHexString("f248cdc9c90700")));
+                ext.incomingFrame(frame);
+                assertThat(inflaterPool.getBorrowedCount(), is(0L));
+                assertThat(inflaterPool.getPooledCount(), is(1));
+            }
+            incoming.assertFrameCount(2);
+            for (WebSocketFrame frame : incoming.getFrames())
+            {
+                assertThat(frame.getPayloadAsUTF8(), is("Hello"));
+            }
+            assertThat(inflaterPool.getCreatedCount(), is(1L));
+        }
+        finally
+        {
+            deflaterPool.stop();
+            inflaterPool.stop();
+        }
+    }
 }
@@ -47,6 +47,7 @@ import org.junit.jupiter.api.Test;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -146,6 +147,48 @@ public class FrameFlusherTest
         System.out.printf("Received: %,d frames%n", endPoint.incomingFrames.size());
     }
 
+    /**
+     * Ensure that a frame encoded once can be written by many flushers,
+     * and that its buffer is released once written by all of them.
+     */
+    @Test
+    public void testEncodedFrameSharedByManyFlushers() throws Exception
+    {
+        WebSocketPolicy policy = WebSocketPolicy.newServerPolicy();
+        String message = "Hello Everybody";
+        EncodedFrame encoded = EncodedFrame.encode(bufferPool, new TextFrame().setPayload(message));
+
+        int flusherCount = 3;
+        CapturingEndPoint[] endPoints = new CapturingEndPoint[flusherCount];
+        for (int i = 0; i < flusherCount; i++)
+        {
+            endPoints[i] = new CapturingEndPoint(WebSocketPolicy.newClientPolicy(), bufferPool)
+            {
+                @Override
+                public void incomingFrame(Frame frame)
+                {
+                    // The parser releases the payload once the frame is delivered.
+                    super.incomingFrame(WebSocketFrame.copy(frame));
+                }
+            };
+            Generator generator = new Generator(policy, bufferPool);
+            FrameFlusher frameFlusher = new FrameFlusher(bufferPool, generator, endPoints[i], policy.getMaxBinaryMessageBufferSize(), 8);
+            FutureWriteCallback callback = new FutureWriteCallback();
+            assertTrue(frameFlusher.enqueue(encoded, callback, BatchMode.OFF));
+            frameFlusher.iterate();
+            callback.get(5, TimeUnit.SECONDS);
+        }
+
+        // Only the reference of the creator is left.
+        assertThat(encoded.release(), is(0));
+        for (CapturingEndPoint endPoint : endPoints)
+        {
+            Frame frame = endPoint.incomingFrames.poll(5, TimeUnit.SECONDS);
+            assertThat(frame, instanceOf(TextFrame.class));
+            assertThat(((TextFrame)frame).getPayloadAsUTF8(), is(message));
+        }
+    }
+
     public static class CapturingEndPoint extends MockEndPoint implements IncomingFrames
     {
         public Parser parser;
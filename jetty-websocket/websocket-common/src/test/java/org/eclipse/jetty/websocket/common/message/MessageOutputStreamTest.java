@@ -135,6 +135,6 @@ public class MessageOutputStreamTest
 
         assertThat("Socket.messageQueue.size", socket.messageQueue.size(), is(1));
         String msg = socket.messageQueue.poll();
-        assertThat("Message", msg, allOf(containsString("byte[" + bufsize + "]"), containsString("xxxo>>>")));
+        assertThat("Message", msg, allOf(containsString(",len=" + bufsize + ")"), containsString("xxxo>>>")));
     }
 }
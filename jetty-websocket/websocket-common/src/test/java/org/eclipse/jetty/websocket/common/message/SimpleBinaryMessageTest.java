@@ -0,0 +1,82 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.websocket.common.message;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.jetty.websocket.api.WebSocketAdapter;
+import org.eclipse.jetty.websocket.api.WebSocketPolicy;
+import org.eclipse.jetty.websocket.common.events.JettyListenerEventDriver;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class SimpleBinaryMessageTest
+{
+    private final List<ByteBuffer> messages = new ArrayList<>();
+    private final JettyListenerEventDriver driver = new JettyListenerEventDriver(WebSocketPolicy.newServerPolicy(), new WebSocketAdapter()
+    {
+        @Override
+        public void onWebSocketBinary(byte[] payload, int offset, int len)
+        {
+            messages.add(ByteBuffer.wrap(payload, offset, len));
+        }
+    });
+
+    @Test
+    public void testFragmentedMessageNotCopied() throws Exception
+    {
+        driver.getPolicy().setMaxBinaryMessageSize(1024 * 1024);
+        SimpleBinaryMessage message = new SimpleBinaryMessage(driver);
+        byte[] fragment = new byte[40000];
+        for (int i = 0; i < 3; i++)
+        {
+            Arrays.fill(fragment, (byte)('a' + i));
+            message.appendFrame(ByteBuffer.wrap(fragment), i == 2);
+        }
+        byte[] assembled = message.buffer.array();
+        message.messageComplete();
+
+        // The listener gets the array the frames were assembled in.
+        assertThat(messages.size(), is(1));
+        ByteBuffer received = messages.get(0);
+        assertThat(received.array(), sameInstance(assembled));
+        assertThat(received.remaining(), is(3 * fragment.length));
+        for (int i = 0; i < 3; i++)
+        {
+            assertThat(received.get(received.position() + i * fragment.length), is((byte)('a' + i)));
+        }
+    }
+
+    @Test
+    public void testSingleFrameMessageExactSize() throws Exception
+    {
+        SimpleBinaryMessage message = new SimpleBinaryMessage(driver);
+        message.appendFrame(ByteBuffer.wrap(new byte[]{1, 2, 3}), true);
+        message.messageComplete();
+
+        assertThat(messages.size(), is(1));
+        assertThat(messages.get(0).array().length, is(3));
+    }
+}
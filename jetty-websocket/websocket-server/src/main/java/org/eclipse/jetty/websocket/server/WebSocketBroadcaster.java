@@ -0,0 +1,156 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.websocket.server;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.eclipse.jetty.websocket.common.WebSocketFrame;
+import org.eclipse.jetty.websocket.common.WebSocketRemoteEndpoint;
+import org.eclipse.jetty.websocket.common.frames.BinaryFrame;
+import org.eclipse.jetty.websocket.common.frames.TextFrame;
+import org.eclipse.jetty.websocket.common.io.EncodedFrame;
+
+/**
+ * <p>Sends the same message to many server sessions.</p>
+ * <p>The message is encoded only once, header and payload, into a pooled buffer
+ * that is written as it is by all the sessions, and that is returned to the pool
+ * once written by the last of them. Sessions that cannot write the encoded bytes,
+ * for example because they have negotiated a compression extension, are sent the
+ * message normally.</p>
+ * <p>The sessions must not be sending a blocking or partial message
+ * while a message is broadcast to them; such sessions are failed.</p>
+ */
+@ManagedObject("Broadcasts messages to many WebSocket sessions")
+public class WebSocketBroadcaster
+{
+    private static final Logger LOG = Log.getLogger(WebSocketBroadcaster.class);
+
+    private final LongAdder broadcasts = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final ByteBufferPool bufferPool;
+
+    /**
+     * @param bufferPool the pool to acquire the buffers of the encoded messages from
+     */
+    public WebSocketBroadcaster(ByteBufferPool bufferPool)
+    {
+        this.bufferPool = bufferPool;
+    }
+
+    @ManagedAttribute(value = "The number of messages broadcast", readonly = true)
+    public long getBroadcastCount()
+    {
+        return broadcasts.sum();
+    }
+
+    @ManagedAttribute(value = "The number of messages sent to sessions", readonly = true)
+    public long getSentCount()
+    {
+        return sent.sum();
+    }
+
+    @ManagedAttribute(value = "The number of messages that could not be sent to sessions", readonly = true)
+    public long getFailedCount()
+    {
+        return failed.sum();
+    }
+
+    /**
+     * @param sessions the sessions to send the text message to
+     * @param text the text message
+     * @param callback the callback notified once for each session the message is sent to, or null
+     * @return the number of sessions the message has been sent to
+     */
+    public int broadcast(Iterable<? extends Session> sessions, String text, WriteCallback callback)
+    {
+        return broadcast(sessions, new TextFrame().setPayload(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8))), callback);
+    }
+
+    /**
+     * @param sessions the sessions to send the binary message to
+     * @param data the binary message, which is not consumed
+     * @param callback the callback notified once for each session the message is sent to, or null
+     * @return the number of sessions the message has been sent to
+     */
+    public int broadcast(Iterable<? extends Session> sessions, ByteBuffer data, WriteCallback callback)
+    {
+        return broadcast(sessions, new BinaryFrame().setPayload(data), callback);
+    }
+
+    private int broadcast(Iterable<? extends Session> sessions, WebSocketFrame frame, WriteCallback callback)
+    {
+        broadcasts.increment();
+        int count = 0;
+        EncodedFrame encoded = EncodedFrame.encode(bufferPool, frame);
+        try
+        {
+            for (Session session : sessions)
+            {
+                if (!session.isOpen())
+                    continue;
+                try
+                {
+                    RemoteEndpoint remote = session.getRemote();
+                    if (remote instanceof WebSocketRemoteEndpoint)
+                        ((WebSocketRemoteEndpoint)remote).sendEncodedFrame(encoded, callback);
+                    else if (frame instanceof TextFrame)
+                        remote.sendString(frame.getPayloadAsUTF8(), callback);
+                    else
+                        remote.sendBytes(frame.getPayload().slice(), callback);
+                    sent.increment();
+                    ++count;
+                }
+                catch (Throwable x)
+                {
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("Could not broadcast " + encoded + " to " + session, x);
+                    failed.increment();
+                    if (callback != null)
+                        callback.writeFailed(x);
+                }
+            }
+        }
+        finally
+        {
+            // Release the reference of this method; the
+            // sessions that are still writing retain theirs.
+            encoded.release();
+        }
+        if (LOG.isDebugEnabled())
+            LOG.debug("Broadcast {} to {} sessions", encoded, count);
+        return count;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[broadcasts=%d,sent=%d,failed=%d]", getClass().getSimpleName(), hashCode(), getBroadcastCount(), getSentCount(), getFailedCount());
+    }
+}
@@ -188,6 +188,9 @@ public class WebSocketServerFactory extends ContainerLifeCycle implements WebSoc
         addBean(bufferPool);
         addBean(sessionTracker);
         addBean(extensionFactory);
+        // The pools are managed by the extension factory, added here to be exported to JMX.
+        addBean(extensionFactory.getInflaterPool(), false);
+        addBean(extensionFactory.getDeflaterPool(), false);
         listeners.add(this.sessionTracker);
     }
 
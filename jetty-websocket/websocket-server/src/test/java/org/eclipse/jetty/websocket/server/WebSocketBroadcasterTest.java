@@ -0,0 +1,137 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.websocket.server;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.io.MappedByteBufferPool;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.SuspendToken;
+import org.eclipse.jetty.websocket.api.WebSocketAdapter;
+import org.eclipse.jetty.websocket.client.WebSocketClient;
+import org.eclipse.jetty.websocket.servlet.WebSocketServletFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WebSocketBroadcasterTest
+{
+    private static final int MESSAGES = 128;
+
+    private final WebSocketBroadcaster broadcaster = new WebSocketBroadcaster(new MappedByteBufferPool());
+    private final CountDownLatch broadcast = new CountDownLatch(1);
+    private Server server;
+    private ServerConnector connector;
+    private WebSocketClient client;
+
+    @BeforeEach
+    public void prepare() throws Exception
+    {
+        server = new Server();
+        connector = new ServerConnector(server);
+        server.addConnector(connector);
+
+        WebSocketHandler handler = new WebSocketHandler()
+        {
+            @Override
+            public void configure(WebSocketServletFactory factory)
+            {
+                // Without extensions, the sessions write the encoded frame as it is.
+                factory.getExtensionFactory().unregister("permessage-deflate");
+                factory.setCreator((req, resp) -> new BroadcastSocket());
+            }
+        };
+        server.setHandler(handler);
+
+        client = new WebSocketClient();
+        client.getPolicy().setMaxTextMessageSize(64 * 1024);
+        server.addBean(client, true);
+
+        server.start();
+    }
+
+    @AfterEach
+    public void dispose() throws Exception
+    {
+        server.stop();
+    }
+
+    @Test
+    public void testBroadcastAfterQueuedMessages() throws Exception
+    {
+        URI uri = URI.create("ws://localhost:" + connector.getLocalPort());
+        BlockingQueue<String> messages = new LinkedBlockingQueue<>();
+        WebSocketAdapter adapter = new WebSocketAdapter()
+        {
+            @Override
+            public void onWebSocketText(String message)
+            {
+                messages.offer(message);
+            }
+        };
+        try (Session session = client.connect(adapter, uri).get(5, TimeUnit.SECONDS))
+        {
+            // Stop reading, so that the messages sent by the server remain queued.
+            SuspendToken suspend = session.suspend();
+            session.getRemote().sendString("go");
+            assertTrue(broadcast.await(5, TimeUnit.SECONDS));
+            suspend.resume();
+
+            // The broadcast message is received after the messages queued before it.
+            for (int i = 0; i < MESSAGES; i++)
+            {
+                String message = messages.poll(5, TimeUnit.SECONDS);
+                assertThat(message, startsWith(i + ":"));
+            }
+            assertThat(messages.poll(5, TimeUnit.SECONDS), is("broadcast"));
+            assertThat(broadcaster.getSentCount(), is(1L));
+        }
+    }
+
+    public class BroadcastSocket extends WebSocketAdapter
+    {
+        @Override
+        public void onWebSocketText(String message)
+        {
+            // Large enough messages to be still queued when the broadcast is sent.
+            char[] chars = new char[60 * 1024];
+            Arrays.fill(chars, 'x');
+            String payload = new String(chars);
+            for (int i = 0; i < MESSAGES; i++)
+            {
+                getRemote().sendString(i + ":" + payload, null);
+            }
+            broadcaster.broadcast(Collections.singletonList(getSession()), "broadcast", null);
+            broadcast.countDown();
+        }
+    }
+}
@@ -18,7 +18,14 @@
 
 package org.eclipse.jetty.server.session;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.util.log.Log;
@@ -27,6 +34,10 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.startsWith;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
@@ -421,4 +432,160 @@ public class TestFileSessions extends AbstractTestBase
         FileTestHelper.assertFileExists(name2, false);
         FileTestHelper.assertFileExists(name3, true);
     }
+
+    /**
+     * Tests that the changes of a session are appended to its file,
+     * and applied when the session is loaded.
+     */
+    @Test
+    public void testStoreDeltas() throws Exception
+    {
+        for (SessionDataCodec codec : Arrays.asList(new JavaSessionDataCodec(), new CompactSessionDataCodec()))
+        {
+            //create the SessionDataStore
+            ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
+            context.setContextPath("/test");
+            FileSessionDataStoreFactory factory = FileTestHelper.newSessionDataStoreFactory();
+            factory.setGracePeriodSec(100);
+            factory.setSessionDataCodec(codec);
+            factory.setStoreDeltas(true);
+            factory.setMaxDeltas(2);
+            FileSessionDataStore store = (FileSessionDataStore)factory.getSessionDataStore(context.getSessionHandler());
+            SessionContext sessionContext = new SessionContext("foo", context.getServletContext());
+            store.initialize(sessionContext);
+            store.start();
+
+            long now = System.currentTimeMillis();
+            SessionData data = store.newSessionData("delta", now, now, now, TimeUnit.MINUTES.toMillis(10));
+            data.setLastNode(sessionContext.getWorkerName());
+            data.calcAndSetExpiry(now);
+            data.setAttribute("removed", "value");
+            data.setAttribute("list", new ArrayList<>(Arrays.asList("a", "b")));
+            data.setAttribute("counter", 1);
+            store.store("delta", data);
+            long length = FileTestHelper.getFile("delta").length();
+
+            //only the changed attribute and the metadata are appended
+            data.setAttribute("counter", 2);
+            data.setAttribute("removed", null);
+            data.setAttribute("added", "value");
+            data.setAccessed(now + 1000);
+            data.calcAndSetExpiry(now + 1000);
+            store.store("delta", data);
+            File file = FileTestHelper.getFile("delta");
+            assertThat(file.getName(), startsWith(Long.toString(data.getExpiry())));
+            assertThat(file.length() - length, lessThan(length));
+
+            //metadata only
+            data.setAccessed(now + 2000);
+            data.calcAndSetExpiry(now + 2000);
+            data.setMetaDataDirty(true);
+            store.store("delta", data);
+            assertThat(FileTestHelper.getFile("delta").length(), greaterThan(file.length()));
+
+            //the deltas are applied, even by another store
+            store.stop();
+            store.start();
+            SessionData loaded = store.load("delta");
+            assertEquals(data.getExpiry(), loaded.getExpiry());
+            assertEquals(now + 2000, loaded.getAccessed());
+            assertEquals(new HashSet<>(Arrays.asList("list", "counter", "added")), loaded.getKeys());
+            assertEquals(2, loaded.getAttribute("counter"));
+            assertEquals(Arrays.asList("a", "b"), loaded.getAttribute("list"));
+
+            //when there are too many deltas, the session is stored whole
+            loaded.setAttribute("counter", 3);
+            store.store("delta", loaded);
+            assertThat(FileTestHelper.getFile("delta").length(), lessThan(length + 10));
+            loaded = store.load("delta");
+            assertEquals(3, loaded.getAttribute("counter"));
+            assertEquals(Arrays.asList("a", "b"), loaded.getAttribute("list"));
+
+            //the attributes marked dirty without their names are stored whole
+            loaded.setDirty(true);
+            assertNull(loaded.getDirtyAttributes());
+            store.stop();
+            FileTestHelper.teardown();
+            FileTestHelper.setup();
+        }
+    }
+
+    /**
+     * Tests that the changes of a failed write-behind delta are written
+     * with a more recent delta of the same session queued meanwhile.
+     */
+    @Test
+    public void testWriteBehindRetriesFailedDelta() throws Exception
+    {
+        ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
+        context.setContextPath("/test");
+        CountDownLatch storing = new CountDownLatch(1);
+        CountDownLatch fail = new CountDownLatch(1);
+        AtomicInteger deltas = new AtomicInteger();
+        FileSessionDataStore store = new FileSessionDataStore()
+        {
+            @Override
+            public boolean doStoreDelta(String id, SessionData data, Set<String> dirtyAttributes, long lastSaveTime) throws Exception
+            {
+                if (deltas.incrementAndGet() == 1)
+                {
+                    storing.countDown();
+                    fail.await(5, TimeUnit.SECONDS);
+                    throw new IllegalStateException("Test failure");
+                }
+                return super.doStoreDelta(id, data, dirtyAttributes, lastSaveTime);
+            }
+        };
+        store.setStoreDir(FileTestHelper._tmpDir);
+        store.setGracePeriodSec(100);
+        store.setStoreDeltas(true);
+        WriteBehindSessionDataStore writeBehind = new WriteBehindSessionDataStore(store);
+        writeBehind.setFlushIntervalMs(TimeUnit.HOURS.toMillis(1));
+        writeBehind.setMaxBatchSize(1);
+        SessionContext sessionContext = new SessionContext("foo", context.getServletContext());
+        writeBehind.initialize(sessionContext);
+        writeBehind.start();
+
+        try (StacklessLogging stackless = new StacklessLogging(Log.getLogger("org.eclipse.jetty.server.session")))
+        {
+            long now = System.currentTimeMillis();
+            SessionData data = writeBehind.newSessionData("delta", now, now, now, TimeUnit.MINUTES.toMillis(10));
+            data.setLastNode(sessionContext.getWorkerName());
+            data.calcAndSetExpiry(now);
+            data.setAttribute("a", "v1");
+            data.setAttribute("b", "v1");
+            writeBehind.store("delta", data);
+            awaitWritten(writeBehind, 1);
+
+            //the delta of a fails while a delta of b is queued
+            data.setAttribute("a", "v2");
+            writeBehind.store("delta", data);
+            assertTrue(storing.await(5, TimeUnit.SECONDS));
+            data.setAttribute("b", "v2");
+            writeBehind.store("delta", data);
+            fail.countDown();
+            awaitWritten(writeBehind, 2);
+            assertEquals(1L, writeBehind.getFailedCount());
+
+            store.stop();
+            store.start();
+            SessionData loaded = store.load("delta");
+            assertEquals("v2", loaded.getAttribute("a"));
+            assertEquals("v2", loaded.getAttribute("b"));
+        }
+        finally
+        {
+            writeBehind.stop();
+        }
+    }
+
+    private static void awaitWritten(WriteBehindSessionDataStore store, long written) throws InterruptedException
+    {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (store.getWrittenCount() < written && System.nanoTime() < end)
+        {
+            Thread.sleep(10);
+        }
+        assertEquals(written, store.getWrittenCount());
+    }
 }
@@ -18,10 +18,25 @@
 
 package org.eclipse.jetty.server.session;
 
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 import org.testcontainers.junit.jupiter.Testcontainers;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 /**
  * JDBCSessionDataStoreTest
  */
@@ -83,4 +98,227 @@ public class JDBCSessionDataStoreTest extends AbstractSessionDataStoreTest
             Thread.currentThread().setContextClassLoader(old);
         }
     }
+
+    @Test
+    public void testStoreAll() throws Exception
+    {
+        ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
+        context.setContextPath("/test");
+        JDBCSessionDataStoreFactory factory = (JDBCSessionDataStoreFactory)createSessionDataStoreFactory();
+        factory.setGracePeriodSec(GRACE_PERIOD_SEC);
+        factory.setBatchSize(2);
+        JDBCSessionDataStore store = (JDBCSessionDataStore)factory.getSessionDataStore(context.getSessionHandler());
+        SessionContext sessionContext = new SessionContext("foo", context.getServletContext());
+        store.initialize(sessionContext);
+        store.start();
+
+        //insert 5 sessions, in 3 batches of at most 2 statements
+        long now = System.currentTimeMillis();
+        Map<String, SessionData> sessions = new LinkedHashMap<>();
+        for (int i = 0; i < 5; i++)
+        {
+            SessionData data = store.newSessionData("batch" + i, 100, now, now - 1, TimeUnit.MINUTES.toMillis(60));
+            data.setLastNode(sessionContext.getWorkerName());
+            data.setExpiry(now + TimeUnit.MINUTES.toMillis(60));
+            data.setAttribute("i", i);
+            sessions.put(data.getId(), data);
+        }
+        store.storeAll(sessions);
+        for (SessionData data : sessions.values())
+        {
+            assertTrue(data.getLastSaved() > 0);
+            assertFalse(data.isDirty());
+            assertTrue(checkSessionPersisted(data));
+        }
+        assertThat(store.getRoundTripsSaved(), greaterThan(0L));
+
+        //update 2 of them, only the dirty sessions are written
+        sessions.get("batch1").setAttribute("i", 11);
+        sessions.get("batch3").setAttribute("i", 33);
+        store.storeAll(sessions);
+        assertTrue(checkSessionPersisted(sessions.get("batch1")));
+        assertTrue(checkSessionPersisted(sessions.get("batch3")));
+    }
+
+    @Test
+    public void testWriteBehindWritesSessionsOneByOneAfterBatchFailure() throws Exception
+    {
+        ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
+        context.setContextPath("/test");
+        JDBCSessionDataStoreFactory factory = (JDBCSessionDataStoreFactory)createSessionDataStoreFactory();
+        factory.setGracePeriodSec(GRACE_PERIOD_SEC);
+        JDBCSessionDataStore delegate = (JDBCSessionDataStore)factory.getSessionDataStore(context.getSessionHandler());
+        WriteBehindSessionDataStore store = new WriteBehindSessionDataStore(delegate);
+        store.setFlushIntervalMs(TimeUnit.HOURS.toMillis(1));
+        SessionContext sessionContext = new SessionContext("foo", context.getServletContext());
+        store.initialize(sessionContext);
+        store.start();
+        try
+        {
+            long now = System.currentTimeMillis();
+            Map<String, SessionData> sessions = new LinkedHashMap<>();
+            for (int i = 0; i < 3; i++)
+            {
+                SessionData data = store.newSessionData("wb" + i, 100, now, now - 1, TimeUnit.MINUTES.toMillis(60));
+                data.setLastNode(sessionContext.getWorkerName());
+                data.setExpiry(now + TimeUnit.MINUTES.toMillis(60));
+                data.setAttribute("i", i);
+                sessions.put(data.getId(), data);
+            }
+            //a session that cannot be serialized fails the batch
+            sessions.get("wb1").setAttribute("unserializable", new Object());
+            for (SessionData data : sessions.values())
+            {
+                store.store(data.getId(), data);
+            }
+            store.flush();
+
+            assertEquals(1, store.getFailedCount());
+            assertEquals(2, store.getWrittenCount());
+            assertTrue(checkSessionExists(sessions.get("wb0")));
+            assertFalse(checkSessionExists(sessions.get("wb1")));
+            assertTrue(checkSessionExists(sessions.get("wb2")));
+        }
+        finally
+        {
+            //drop the unwriteable session rather than retrying it on stop
+            store.delete("wb1");
+            store.stop();
+        }
+    }
+
+    @Test
+    public void testStoreDeltas() throws Exception
+    {
+        ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
+        context.setContextPath("/test");
+        JDBCSessionDataStoreFactory factory = (JDBCSessionDataStoreFactory)createSessionDataStoreFactory();
+        factory.setGracePeriodSec(GRACE_PERIOD_SEC);
+        factory.setStoreDeltas(true);
+        JDBCSessionDataStore store = (JDBCSessionDataStore)factory.getSessionDataStore(context.getSessionHandler());
+        SessionContext sessionContext = new SessionContext("foo", context.getServletContext());
+        store.initialize(sessionContext);
+        store.start();
+
+        long now = System.currentTimeMillis();
+        SessionData data = store.newSessionData("delta", 100, now, now - 1, TimeUnit.MINUTES.toMillis(60));
+        data.setLastNode(sessionContext.getWorkerName());
+        data.setExpiry(now + TimeUnit.MINUTES.toMillis(60));
+        data.setAttribute("removed", "value");
+        data.setAttribute("counter", 1);
+        store.store("delta", data);
+
+        //the changes are stored in the attribute table, and override the map
+        data.setAttribute("removed", null);
+        data.setAttribute("counter", 2);
+        data.setAttribute("added", "value");
+        data.setExpiry(now + TimeUnit.MINUTES.toMillis(90));
+        store.store("delta", data);
+        assertEquals(3, JdbcTestHelper.countAttributeRows("delta"));
+        SessionData loaded = store.load("delta");
+        assertEquals(data.getExpiry(), loaded.getExpiry());
+        assertThat(loaded.getKeys(), containsInAnyOrder("counter", "added"));
+        assertEquals(2, loaded.getAttribute("counter"));
+
+        //the session stored whole replaces its changes
+        loaded.setDirty(true);
+        store.store("delta", loaded);
+        assertEquals(0, JdbcTestHelper.countAttributeRows("delta"));
+        loaded = store.load("delta");
+        assertThat(loaded.getKeys(), containsInAnyOrder("counter", "added"));
+        assertEquals(2, loaded.getAttribute("counter"));
+
+        loaded.setAttribute("counter", 3);
+        store.store("delta", loaded);
+        assertEquals(1, JdbcTestHelper.countAttributeRows("delta"));
+        assertTrue(store.delete("delta"));
+        assertFalse(checkSessionExists(data));
+        assertEquals(0, JdbcTestHelper.countAttributeRows("delta"));
+    }
+
+    @Test
+    public void testStoreAllDeltasOfMissingSessions() throws Exception
+    {
+        ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
+        context.setContextPath("/test");
+        JDBCSessionDataStoreFactory factory = (JDBCSessionDataStoreFactory)createSessionDataStoreFactory();
+        factory.setGracePeriodSec(GRACE_PERIOD_SEC);
+        factory.setStoreDeltas(true);
+        JDBCSessionDataStore store = (JDBCSessionDataStore)factory.getSessionDataStore(context.getSessionHandler());
+        SessionContext sessionContext = new SessionContext("foo", context.getServletContext());
+        store.initialize(sessionContext);
+        store.start();
+
+        //sessions saved before, but whose rows have been deleted, e.g. by another node
+        long now = System.currentTimeMillis();
+        Map<String, SessionData> sessions = new LinkedHashMap<>();
+        for (String id : new String[]{"stored", "missing"})
+        {
+            SessionData data = store.newSessionData(id, 100, now, now - 1, TimeUnit.MINUTES.toMillis(60));
+            data.setLastNode(sessionContext.getWorkerName());
+            data.setExpiry(now + TimeUnit.MINUTES.toMillis(60));
+            data.setAttribute("counter", 1);
+            sessions.put(id, data);
+        }
+        store.store("stored", sessions.get("stored"));
+        sessions.get("missing").setLastSaved(now - 1);
+
+        //the delta of the missing session is stored whole, without orphan attribute rows
+        for (SessionData data : sessions.values())
+        {
+            data.setAttribute("counter", 2);
+        }
+        store.storeAll(sessions);
+        assertEquals(1, JdbcTestHelper.countAttributeRows("stored"));
+        assertEquals(0, JdbcTestHelper.countAttributeRows("missing"));
+        for (String id : sessions.keySet())
+        {
+            SessionData loaded = store.load(id);
+            assertEquals(2, loaded.getAttribute("counter"));
+        }
+    }
+
+    @Test
+    public void testGetExpiredChecksCandidatesInBatches() throws Exception
+    {
+        ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
+        context.setContextPath("/test");
+        JDBCSessionDataStoreFactory factory = (JDBCSessionDataStoreFactory)createSessionDataStoreFactory();
+        factory.setGracePeriodSec(GRACE_PERIOD_SEC);
+        factory.setBatchSize(2);
+        JDBCSessionDataStore store = (JDBCSessionDataStore)factory.getSessionDataStore(context.getSessionHandler());
+        SessionContext sessionContext = new SessionContext("foo", context.getServletContext());
+        store.initialize(sessionContext);
+
+        //persist an expired session and 2 sessions that are not expired
+        long now = System.currentTimeMillis();
+        SessionData expired = store.newSessionData("expired", 100, 101, 100, TimeUnit.MINUTES.toMillis(60));
+        expired.setLastNode(sessionContext.getWorkerName());
+        expired.setExpiry(RECENT_TIMESTAMP);
+        persistSession(expired);
+        for (String id : new String[]{"valid1", "valid2"})
+        {
+            SessionData data = store.newSessionData(id, 100, now, now - 1, TimeUnit.MINUTES.toMillis(60));
+            data.setLastNode(sessionContext.getWorkerName());
+            data.setExpiry(now + TimeUnit.MINUTES.toMillis(60));
+            persistSession(data);
+        }
+
+        store.start();
+
+        //the candidates that are not in the database can be expired,
+        //the ones whose expiry has been extended cannot
+        Set<String> candidates = new HashSet<>();
+        candidates.add("valid1");
+        candidates.add("valid2");
+        candidates.add("gone1");
+        candidates.add("gone2");
+        candidates.add("gone3");
+        Set<String> expiredIds = store.getExpired(candidates);
+        assertThat(expiredIds, containsInAnyOrder("expired", "gone1", "gone2", "gone3"));
+        //1 query for the expired sessions, plus 3 queries for the 5 candidates,
+        //instead of 2 queries plus 1 query per candidate
+        assertEquals(4, store.getRoundTrips());
+        assertEquals(3, store.getRoundTripsSaved());
+    }
 }
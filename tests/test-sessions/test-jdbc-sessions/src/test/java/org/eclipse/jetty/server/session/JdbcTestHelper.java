@@ -378,4 +378,19 @@ public class JdbcTestHelper
             return ids;
         }
     }
+
+    public static int countAttributeRows(String id)
+        throws Exception
+    {
+        try (Connection con = getConnection())
+        {
+            PreparedStatement statement = con.prepareStatement("select count(*) from " +
+                new JDBCSessionDataStore.SessionTableSchema().getAttributeTableName() +
+                " where " + ID_COL + " = ?");
+            statement.setString(1, id);
+            ResultSet result = statement.executeQuery();
+            result.next();
+            return result.getInt(1);
+        }
+    }
 }
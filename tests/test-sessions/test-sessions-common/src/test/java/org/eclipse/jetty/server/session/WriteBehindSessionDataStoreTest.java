@@ -0,0 +1,215 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.server.session;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * WriteBehindSessionDataStoreTest
+ */
+public class WriteBehindSessionDataStoreTest
+{
+    private TestSessionDataStore _delegate;
+    private WriteBehindSessionDataStore _store;
+
+    private void start(long flushIntervalMs, int maxBatchSize) throws Exception
+    {
+        start(new TestSessionDataStore(), flushIntervalMs, maxBatchSize);
+    }
+
+    private void start(TestSessionDataStore delegate, long flushIntervalMs, int maxBatchSize) throws Exception
+    {
+        ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
+        context.setContextPath("/test");
+        _delegate = delegate;
+        _store = new WriteBehindSessionDataStore(_delegate);
+        _store.setFlushIntervalMs(flushIntervalMs);
+        _store.setMaxBatchSize(maxBatchSize);
+        _store.initialize(new SessionContext("foo", context.getServletContext()));
+        _store.start();
+    }
+
+    @AfterEach
+    public void dispose() throws Exception
+    {
+        if (_store != null)
+            _store.stop();
+    }
+
+    private SessionData newSessionData(String id, String value)
+    {
+        long now = System.currentTimeMillis();
+        SessionData data = _store.newSessionData(id, now, now, now, TimeUnit.MINUTES.toMillis(10));
+        data.setAttribute("a", value);
+        return data;
+    }
+
+    private void awaitSaves(int saves) throws InterruptedException
+    {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (_delegate._numSaves.get() < saves && System.nanoTime() < end)
+        {
+            Thread.sleep(10);
+        }
+        assertThat(_delegate._numSaves.get(), is(saves));
+    }
+
+    @Test
+    public void testStoresCoalescedAndWrittenInBackground() throws Exception
+    {
+        start(500, 100);
+
+        SessionData data = newSessionData("1234", "v1");
+        _store.store("1234", data);
+        assertFalse(data.isDirty());
+        data.setAttribute("a", "v2");
+        _store.store("1234", data);
+        data.setAttribute("a", "v3");
+        _store.store("1234", data);
+
+        //not written yet, but visible
+        assertThat(_delegate._numSaves.get(), is(0));
+        assertTrue(_store.exists("1234"));
+        assertThat(_store.load("1234").getAttribute("a"), is("v3"));
+
+        awaitSaves(1);
+        assertThat(_store.getCoalescedCount(), is(2L));
+        assertThat(_store.getPendingCount(), is(0));
+        assertThat(_delegate.load("1234").getAttribute("a"), is("v3"));
+
+        //not dirty, so not queued again
+        _store.store("1234", data);
+        assertThat(_store.getPendingCount(), is(0));
+    }
+
+    @Test
+    public void testFlushOnMaxBatchSizeAndOnStop() throws Exception
+    {
+        start(TimeUnit.HOURS.toMillis(1), 2);
+
+        _store.store("1", newSessionData("1", "v"));
+        _store.store("2", newSessionData("2", "v"));
+        awaitSaves(2);
+
+        _store.store("3", newSessionData("3", "v"));
+        assertThat(_store.getPendingCount(), is(1));
+
+        _store.stop();
+        assertThat(_delegate._numSaves.get(), is(3));
+        assertNotNull(_delegate._map.get("3"));
+    }
+
+    @Test
+    public void testDeleteRemovesQueuedStore() throws Exception
+    {
+        start(TimeUnit.HOURS.toMillis(1), 100);
+
+        _store.store("1234", newSessionData("1234", "v"));
+        assertTrue(_store.delete("1234"));
+        assertFalse(_store.exists("1234"));
+        assertNull(_store.load("1234"));
+
+        _store.stop();
+        assertThat(_delegate._numSaves.get(), is(0));
+    }
+
+    @Test
+    public void testFailedInsertRetriedAsInsert() throws Exception
+    {
+        CountDownLatch storing = new CountDownLatch(1);
+        CountDownLatch fail = new CountDownLatch(1);
+        List<Long> lastSaveTimes = new CopyOnWriteArrayList<>();
+        start(new TestSessionDataStore()
+        {
+            @Override
+            public void doStore(String id, SessionData data, long lastSaveTime) throws Exception
+            {
+                lastSaveTimes.add(lastSaveTime);
+                if (lastSaveTimes.size() == 1)
+                {
+                    storing.countDown();
+                    fail.await(5, TimeUnit.SECONDS);
+                    throw new IllegalStateException("Test failure");
+                }
+                super.doStore(id, data, lastSaveTime);
+            }
+        }, TimeUnit.HOURS.toMillis(1), 1);
+
+        SessionData data = newSessionData("1234", "v1");
+        _store.store("1234", data);
+        assertTrue(storing.await(5, TimeUnit.SECONDS));
+
+        // A more recent write is queued while the insert fails.
+        data.setAttribute("a", "v2");
+        _store.store("1234", data);
+        fail.countDown();
+
+        awaitSaves(1);
+        assertThat(_store.getFailedCount(), is(1L));
+        // The more recent write is an insert, as the session was never written.
+        assertThat(lastSaveTimes.size(), is(2));
+        assertThat(lastSaveTimes.get(1), is(0L));
+        assertThat(_delegate.load("1234").getAttribute("a"), is("v2"));
+    }
+
+    @Test
+    public void testFailedWriteDoesNotStopFlushOnStop() throws Exception
+    {
+        start(new TestSessionDataStore()
+        {
+            @Override
+            public void doStore(String id, SessionData data, long lastSaveTime) throws Exception
+            {
+                if ("bad".equals(id))
+                    throw new IllegalStateException("Test failure");
+                super.doStore(id, data, lastSaveTime);
+            }
+        }, TimeUnit.HOURS.toMillis(1), 100);
+
+        _store.store("bad", newSessionData("bad", "v"));
+        for (String id : new String[]{"1", "2", "3"})
+        {
+            _store.store(id, newSessionData(id, "v"));
+        }
+        assertThat(_store.getPendingCount(), is(4));
+
+        // The sessions queued after the failed one are written, in other batches.
+        _store.setMaxBatchSize(1);
+        _store.stop();
+        assertThat(_store.getFailedCount(), is(1L));
+        assertThat(_delegate._numSaves.get(), is(3));
+        assertThat(_delegate._map.keySet(), containsInAnyOrder("1", "2", "3"));
+        assertThat(_store.getPendingCount(), is(1));
+    }
+}